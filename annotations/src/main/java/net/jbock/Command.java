@@ -31,4 +31,83 @@ public @interface Command {
    * @return {@code true} to disable the {@code --help} mechanism
    */
   boolean helpDisabled() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then each non-flag parameter keeps its raw token,
+   * and runs its mapper only when its method is first invoked.
+   * The mapped value is then cached.
+   *
+   * @return {@code true} to map all parameters lazily
+   * @see Option#lazy()
+   */
+  boolean lazy() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then each token of the form {@code @path} is replaced by the tokens
+   * in the file at {@code path}.
+   * The file is split into tokens according to the parser's quoting rules.
+   * Tokens after {@code --} are not expanded.
+   *
+   * @return {@code true} to expand response files
+   */
+  boolean atFiles() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then the generated parser can also parse a single command line,
+   * like {@code parse(CharSequence)}, or a file with one command line per line,
+   * like {@code parseAll(Path)}.
+   * The command line is split into tokens according to the parser's quoting rules,
+   * see {@code withQuoting}.
+   *
+   * @return {@code true} to parse command lines
+   */
+  boolean commandLine() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then the generated parser has a {@code parse} method that takes a visitor,
+   * which receives the parameters in the order of the input.
+   * A command that has subcommands can't have a visitor.
+   *
+   * @return {@code true} to generate the visitor
+   */
+  boolean visitor() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then the generated parser has a {@code withDefaults} method,
+   * which reads default values for the options from a properties file.
+   * If this command is a subcommand, then the parent's parser passes its defaults file on.
+   *
+   * @return {@code true} to read defaults from a file
+   */
+  boolean defaultsFile() default false;
+
+  /**
+   * If this flag is set to {@code true},
+   * then the generated parser extends {@code net.jbock.runtime.CommandParser}
+   * from the {@code jbock-runtime} artifact, which must be on the classpath.
+   * The generated code is then reduced to a constant descriptor of the parameters,
+   * and an implementation of the annotated class.
+   * Lazy mapping, response files, command lines, visitors, defaults files,
+   * and {@code Stream} or {@code Iterator} params are not supported in this mode.
+   *
+   * @return {@code true} to use the shared parse engine
+   */
+  boolean runtime() default false;
+
+  /**
+   * Each of these classes must be annotated with {@link Command}.
+   * The first token that is not an option selects one of them, by its program name.
+   * After {@code --}, the next token selects the subcommand, even if it starts with a dash.
+   * The remaining tokens are then parsed by the selected subcommand's parser.
+   * The parsers of the other subcommands are not loaded.
+   * A command that has subcommands can't have any {@link Param} methods.
+   *
+   * @return the subcommands of this command
+   */
+  Class<?>[] subcommands() default {};
 }
@@ -36,6 +36,8 @@ public @interface Option {
    * {@link java.util.function.Function Function}
    * accepting strings,
    * or a {@link java.util.function.Supplier Supplier} thereof.
+   * The function may also return a {@link java.util.concurrent.CompletableFuture CompletableFuture}
+   * of the mapped type; such mappers run concurrently.
    *
    * @return an optional mapper class
    */
@@ -49,4 +51,45 @@ public @interface Option {
    * @return an optional collector class
    */
   Class<?> collectedBy() default Object.class;
+
+  /**
+   * Map this option lazily, when its method is first invoked.
+   * This has no effect on flags, primitive arrays and streams,
+   * or options with an asynchronous mapper.
+   *
+   * @return {@code true} to map this option lazily
+   * @see Command#lazy()
+   */
+  boolean lazy() default false;
+
+  /**
+   * An environment variable that provides the value of this option,
+   * if it is not given on the command line.
+   * This can only be used on an option that takes a single value.
+   *
+   * @return the name of an environment variable, or an empty string
+   * @see #property()
+   */
+  String env() default "";
+
+  /**
+   * A system property that provides the value of this option,
+   * if it is not given on the command line.
+   * If both {@link #env()} and {@code property} are defined, the system property wins.
+   * This can only be used on an option that takes a single value.
+   *
+   * @return the name of a system property, or an empty string
+   */
+  String property() default "";
+
+  /**
+   * If this repeatable option has at least this many values,
+   * they are mapped in parallel, on the common {@link java.util.concurrent.ForkJoinPool ForkJoinPool}.
+   * The order of the values is preserved.
+   * The mapper must be thread-safe, and a custom collector must have a valid combiner.
+   * The default value {@code 0} means that the values are always mapped sequentially.
+   *
+   * @return the minimum number of values for parallel mapping, or {@code 0}
+   */
+  int parallelThreshold() default 0;
 }
@@ -53,5 +53,11 @@ public @interface Param {
    * @return an optional bundle key
    */
   String bundleKey() default "";
+
+  /**
+   * @return the minimum number of values for parallel mapping, or {@code 0}
+   * @see Option#parallelThreshold
+   */
+  int parallelThreshold() default 0;
 }
 
@@ -1,9 +1,12 @@
 package net.jbock.coerce;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
+import net.jbock.compiler.IndyFree;
 import net.jbock.compiler.TypeTool;
 
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.io.File;
 import java.math.BigDecimal;
@@ -17,6 +20,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -30,19 +34,57 @@ class AutoMapper {
   private static final String COMPILE = "compile";
   private static final String PARSE = "parse";
 
-  private static Entry<Class<?>, CodeBlock> create(Class<?> clasz, String createFromString) {
-    return new AbstractMap.SimpleImmutableEntry<>(clasz, CodeBlock.of("$T::" + createFromString, clasz));
+  private static final class Mapping {
+
+    final CodeBlock mapExpr;
+
+    // same as mapExpr, but without lambdas or method references
+    final CodeBlock startupExpr;
+
+    // nullable
+    final Function<CodeBlock, CodeBlock> mapCall;
+
+    Mapping(CodeBlock mapExpr, CodeBlock startupExpr, Function<CodeBlock, CodeBlock> mapCall) {
+      this.mapExpr = mapExpr;
+      this.startupExpr = startupExpr;
+      this.mapCall = mapCall;
+    }
+  }
+
+  private static Entry<Class<?>, Mapping> create(Class<?> clasz, String createFromString) {
+    if (NEW.equals(createFromString)) {
+      return create(clasz, CodeBlock.of("$T::new", clasz), value -> CodeBlock.of("new $T($L)", clasz, value));
+    }
+    return create(clasz, CodeBlock.of("$T::" + createFromString, clasz),
+        value -> CodeBlock.of("$T." + createFromString + "($L)", clasz, value));
+  }
+
+  private static Entry<Class<?>, Mapping> create(Class<?> clasz, BiFunction<ParameterSpec, Boolean, CodeBlock> body) {
+    ParameterSpec s = ParameterSpec.builder(STRING, "s").build();
+    CodeBlock lambda = CodeBlock.builder()
+        .add("$N -> {\n", s).indent()
+        .add(body.apply(s, false))
+        .unindent().add("}").build();
+    return new AbstractMap.SimpleImmutableEntry<>(clasz,
+        new Mapping(lambda, IndyFree.function(STRING, ClassName.get(clasz), s.name, p -> body.apply(p, true)), null));
+  }
+
+  private static Entry<Class<?>, Mapping> create(Class<?> clasz, CodeBlock mapExpr, Function<CodeBlock, CodeBlock> mapCall) {
+    return new AbstractMap.SimpleImmutableEntry<>(clasz,
+        new Mapping(mapExpr, IndyFree.functionOf(STRING, ClassName.get(clasz), "s", mapCall), mapCall));
   }
 
-  private static Entry<Class<?>, CodeBlock> create(Class<?> clasz, CodeBlock mapExpr) {
-    return new AbstractMap.SimpleImmutableEntry<>(clasz, mapExpr);
+  private static Entry<Class<?>, Mapping> identity(Class<?> clasz) {
+    CodeBlock mapExpr = CodeBlock.of("$T.identity()", Function.class);
+    return new AbstractMap.SimpleImmutableEntry<>(clasz, new Mapping(mapExpr, mapExpr, Function.identity()));
   }
 
-  private static final List<Entry<Class<?>, CodeBlock>> MAPPERS = Arrays.asList(
-      create(String.class, CodeBlock.of("$T.identity()", Function.class)),
+  private static final List<Entry<Class<?>, Mapping>> MAPPERS = Arrays.asList(
+      identity(String.class),
+      identity(CharSequence.class),
       create(Integer.class, VALUE_OF),
-      create(Path.class, CodeBlock.of("$T::get", Paths.class)),
-      create(File.class, parseFileLambda()),
+      create(Path.class, CodeBlock.of("$T::get", Paths.class), value -> CodeBlock.of("$T.get($L)", Paths.class, value)),
+      create(File.class, AutoMapper::parseFile),
       create(URI.class, CREATE),
       create(Pattern.class, COMPILE),
       create(LocalDate.class, PARSE),
@@ -51,12 +93,12 @@ class AutoMapper {
       create(Byte.class, VALUE_OF),
       create(Float.class, VALUE_OF),
       create(Double.class, VALUE_OF),
-      create(Character.class, parseCharacterLambda()),
+      create(Character.class, AutoMapper::parseCharacter),
       create(BigInteger.class, NEW),
       create(BigDecimal.class, NEW));
 
-  static Optional<CodeBlock> findAutoMapper(TypeTool tool, TypeMirror testType) {
-    for (Entry<Class<?>, CodeBlock> coercion : MAPPERS) {
+  private static Optional<Mapping> findMapping(TypeTool tool, TypeMirror testType) {
+    for (Entry<Class<?>, Mapping> coercion : MAPPERS) {
       if (tool.isSameType(testType, coercion.getKey())) {
         return Optional.of(coercion.getValue());
       }
@@ -64,33 +106,61 @@ class AutoMapper {
     return Optional.empty();
   }
 
-  private static CodeBlock parseFileLambda() {
-    ParameterSpec s = ParameterSpec.builder(STRING, "s").build();
+  static Optional<CodeBlock> findAutoMapper(TypeTool tool, TypeMirror testType, boolean startup) {
+    return findMapping(tool, testType).map(mapping -> startup ? mapping.startupExpr : mapping.mapExpr);
+  }
+
+  /**
+   * The direct call avoids the function object.
+   * It is not available for mappers that need more than one statement.
+   */
+  static Optional<Function<CodeBlock, CodeBlock>> findMapCall(TypeTool tool, TypeMirror testType) {
+    return findMapping(tool, testType).flatMap(mapping -> Optional.ofNullable(mapping.mapCall));
+  }
+
+  /**
+   * Parse a primitive directly from the token, without boxing.
+   *
+   * @param kind a primitive type kind
+   * @return a function that creates the parse expression from a string expression
+   */
+  static Optional<Function<CodeBlock, CodeBlock>> findPrimitiveParser(TypeKind kind) {
+    switch (kind) {
+      case INT:
+        return Optional.of(value -> CodeBlock.of("$T.parseInt($L)", Integer.class, value));
+      case LONG:
+        return Optional.of(value -> CodeBlock.of("$T.parseLong($L)", Long.class, value));
+      case DOUBLE:
+        return Optional.of(value -> CodeBlock.of("$T.parseDouble($L)", Double.class, value));
+      default:
+        return Optional.empty();
+    }
+  }
+
+  private static CodeBlock parseFile(ParameterSpec s, boolean startupMode) {
     ParameterSpec f = ParameterSpec.builder(File.class, "f").build();
     return CodeBlock.builder()
-        .add("$N -> {\n", s).indent()
         .add("$T $N = new $T($N);\n", File.class, f, File.class, s)
         .beginControlFlow("if (!$N.exists())", f)
-        .add("throw new $T($S + $N);\n", IllegalStateException.class,
-            "File does not exist: ", s)
+        .add("throw new $T($L);\n", IllegalStateException.class,
+            IndyFree.concat(startupMode, CodeBlock.of("$S", "File does not exist: "), CodeBlock.of("$N", s)))
         .endControlFlow()
         .beginControlFlow("if (!$N.isFile())", f)
-        .add("throw new $T($S + $N);\n", IllegalStateException.class,
-            "Not a file: ", s)
+        .add("throw new $T($L);\n", IllegalStateException.class,
+            IndyFree.concat(startupMode, CodeBlock.of("$S", "Not a file: "), CodeBlock.of("$N", s)))
         .endControlFlow()
         .add("return $N;\n", f)
-        .unindent().add("}").build();
+        .build();
   }
 
-  private static CodeBlock parseCharacterLambda() {
-    ParameterSpec s = ParameterSpec.builder(STRING, "s").build();
+  private static CodeBlock parseCharacter(ParameterSpec s, boolean startupMode) {
     return CodeBlock.builder()
-        .add("$N -> {\n", s).indent()
         .beginControlFlow("if ($N.length() != 1)", s)
-        .add("throw new $T($S + $N + $S);\n", RuntimeException.class,
-            "Not a single character: <", s, ">")
+        .add("throw new $T($L);\n", RuntimeException.class,
+            IndyFree.concat(startupMode, CodeBlock.of("$S", "Not a single character: <"), CodeBlock.of("$N", s),
+                CodeBlock.of("$S", ">")))
         .endControlFlow()
         .add("return $N.charAt(0);\n", s)
-        .unindent().add("}").build();
+        .build();
   }
 }
@@ -4,14 +4,19 @@ import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.TypeName;
+import net.jbock.compiler.IndyFree;
 import net.jbock.compiler.ParamName;
 import net.jbock.compiler.TypeTool;
 import net.jbock.compiler.ValidationException;
 
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.util.Optional;
+import java.util.function.Function;
+
+import static net.jbock.compiler.Constants.STRING;
 
 /**
  * Coercion input: Information about a single parameter (option or param).
@@ -29,27 +34,50 @@ public class BasicInfo {
   // nullable
   private final TypeElement mapperClass;
 
+  // whether the generated code must avoid lambdas and method references
+  private final boolean startup;
+
   BasicInfo(Optional<TypeElement> mapperClass, ParamName paramName, ClassName optionType,
             ExecutableElement sourceMethod,
-            TypeTool tool) {
+            TypeTool tool, boolean startup) {
     this.mapperClass = mapperClass.orElse(null);
     this.paramName = paramName;
     this.optionType = optionType;
     this.sourceMethod = sourceMethod;
     this.tool = tool;
+    this.startup = startup;
   }
 
   public Optional<CodeBlock> findAutoMapper(TypeMirror testType) {
-    Optional<CodeBlock> mapExpr = AutoMapper.findAutoMapper(tool(), testType);
+    Optional<CodeBlock> mapExpr = AutoMapper.findAutoMapper(tool(), testType, startup);
     if (mapExpr.isPresent()) {
       return mapExpr;
     }
     if (tool.isEnumType(testType)) {
+      if (startup) {
+        return Optional.of(IndyFree.functionOf(STRING, TypeName.get(testType), "s",
+            value -> CodeBlock.of("$T.valueOf($L)", testType, value)));
+      }
       return Optional.of(CodeBlock.of("$T::valueOf", testType));
     }
     return Optional.empty();
   }
 
+  public Optional<Function<CodeBlock, CodeBlock>> findAutoMapCall(TypeMirror testType) {
+    Optional<Function<CodeBlock, CodeBlock>> mapCall = AutoMapper.findMapCall(tool(), testType);
+    if (mapCall.isPresent()) {
+      return mapCall;
+    }
+    if (tool.isEnumType(testType)) {
+      return Optional.of(value -> CodeBlock.of("$T.valueOf($L)", testType, value));
+    }
+    return Optional.empty();
+  }
+
+  public Optional<Function<CodeBlock, CodeBlock>> findPrimitiveParser(TypeKind kind) {
+    return AutoMapper.findPrimitiveParser(kind);
+  }
+
   public ParamName parameterName() {
     return paramName;
   }
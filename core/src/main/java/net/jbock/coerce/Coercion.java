@@ -2,8 +2,11 @@ package net.jbock.coerce;
 
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
 import net.jbock.compiler.ParamName;
 
+import java.util.Optional;
+
 public abstract class Coercion {
 
   private final ParameterSpec constructorParam;
@@ -23,11 +26,54 @@ public abstract class Coercion {
     return paramName;
   }
 
+  /**
+   * @return an expression of type {@link #mapperType()}
+   */
   public abstract CodeBlock mapExpr();
 
+  /**
+   * @return {@code Function<String, ? extends T>}, or
+   * {@code Function<CharSequence, ? extends T>} if the mapper reads {@link CharSequence};
+   * if the mapper is {@link #isAsync() async}, the output type is {@code ? extends CompletableFuture<? extends T>}
+   */
+  public abstract TypeName mapperType();
+
+  /**
+   * @param value an expression of type {@code String}, or {@code CharSequence}
+   * if the mapper reads {@link CharSequence}
+   * @return an expression that maps the value directly, without a function object,
+   * or empty if the value must be mapped with {@link #mapExpr()}
+   */
+  public abstract Optional<CodeBlock> mapCall(CodeBlock value);
+
   public abstract CodeBlock extractExpr();
 
-  public abstract CodeBlock collectExpr();
+  /**
+   * @return an expression of type {@code Collector} if there is a custom collector, otherwise empty
+   */
+  public abstract Optional<CodeBlock> collectExpr();
+
+  /**
+   * @return a suffix that turns the mapped {@code Stream} into the return type,
+   * if this param lazily consumes the remaining tokens, otherwise empty
+   */
+  public abstract Optional<CodeBlock> tailExpr();
 
   public abstract Skew getSkew();
+
+  /**
+   * @return {@code true} if the mapper reads {@link CharSequence},
+   * so the option value can be passed as a slice of the original token
+   */
+  public abstract boolean mapsCharSequence();
+
+  /**
+   * @return the primitive element type, if this parameter is stored in a primitive array
+   */
+  public abstract Optional<PrimitiveArray> primitiveArray();
+
+  /**
+   * @return {@code true} if the mapper returns a {@code CompletableFuture} of the mapped type
+   */
+  public abstract boolean isAsync();
 }
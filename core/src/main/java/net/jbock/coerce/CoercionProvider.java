@@ -12,14 +12,16 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static net.jbock.coerce.NonFlagSkew.REPEATABLE;
 
 public class CoercionProvider {
 
   public static Coercion nonFlagCoercion(ExecutableElement sourceMethod, ParamName paramName, Optional<TypeElement> mapperClass,
-                                         Optional<TypeElement> collectorClass, ClassName optionType, TypeTool tool) {
-    return findCoercion(new BasicInfo(mapperClass, paramName, optionType, sourceMethod, tool), collectorClass);
+                                         Optional<TypeElement> collectorClass, ClassName optionType, TypeTool tool,
+                                         boolean startup) {
+    return findCoercion(new BasicInfo(mapperClass, paramName, optionType, sourceMethod, tool, startup), collectorClass);
   }
 
   private static Coercion findCoercion(BasicInfo basicInfo, Optional<TypeElement> collector) {
@@ -28,11 +30,21 @@ public class CoercionProvider {
           basicInfo.tool(), collectorClass, basicInfo.returnType()).getCollectorInfo();
       ParameterSpec constructorParam = basicInfo.constructorParam(basicInfo.returnType());
       TypeMirror inputType = collectorInfo.inputType();
+      Function<CodeBlock, CodeBlock> mapCall = basicInfo.mapperClass().isPresent() ? null :
+          basicInfo.findAutoMapCall(inputType).orElse(null);
       CodeBlock mapExpr = basicInfo.mapperClass()
           .map(mapperClass -> collectorPresentExplicit(basicInfo, inputType, mapperClass))
           .orElseGet(() -> collectorPresentAuto(basicInfo, inputType));
-      return new NonFlagCoercion(basicInfo, mapExpr, collectorInfo.collectExpr(),
-          CodeBlock.of("$N", constructorParam), REPEATABLE, constructorParam);
+      basicInfo.mapperClass()
+          .filter(mapperClass -> new MapperClassValidator(basicInfo::failure, basicInfo.tool(), inputType, mapperClass).isAsync())
+          .ifPresent(mapperClass -> {
+            throw basicInfo.failure("An asynchronous mapper can't be used with a custom collector.");
+          });
+      boolean mapsCharSequence = basicInfo.mapperClass()
+          .map(mapperClass -> new MapperClassValidator(basicInfo::failure, basicInfo.tool(), inputType, mapperClass).isCharSequenceMapper())
+          .orElseGet(() -> basicInfo.tool().isSameType(inputType, CharSequence.class));
+      return new NonFlagCoercion(basicInfo, inputType, mapExpr, mapCall, collectorInfo.collectExpr(), null,
+          CodeBlock.of("$N", constructorParam), REPEATABLE, constructorParam, mapsCharSequence);
     }).orElseGet(() -> {
       if (basicInfo.mapperClass().isPresent()) {
         return new MapperMatcher(basicInfo, basicInfo.mapperClass().get()).findCoercion();
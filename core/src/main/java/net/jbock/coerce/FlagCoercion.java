@@ -2,10 +2,12 @@ package net.jbock.coerce;
 
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import net.jbock.compiler.ParamName;
 
 import javax.lang.model.element.ExecutableElement;
+import java.util.Optional;
 import java.util.function.Function;
 
 public class FlagCoercion extends Coercion {
@@ -22,11 +24,36 @@ public class FlagCoercion extends Coercion {
     return CodeBlock.of("$N", constructorParam());
   }
 
-  public CodeBlock collectExpr() {
-    return CodeBlock.of(".findAny().isPresent()");
+  // a flag is stored as a boolean, there is nothing to map or collect
+  public Optional<CodeBlock> collectExpr() {
+    return Optional.empty();
+  }
+
+  public Optional<CodeBlock> tailExpr() {
+    return Optional.empty();
   }
 
   public CodeBlock mapExpr() {
     return CodeBlock.of("$T.identity()", Function.class);
   }
+
+  public TypeName mapperType() {
+    return ParameterizedTypeName.get(Function.class, String.class, String.class);
+  }
+
+  public Optional<CodeBlock> mapCall(CodeBlock value) {
+    return Optional.empty();
+  }
+
+  public boolean mapsCharSequence() {
+    return true;
+  }
+
+  public Optional<PrimitiveArray> primitiveArray() {
+    return Optional.empty();
+  }
+
+  public boolean isAsync() {
+    return false;
+  }
 }
@@ -2,6 +2,8 @@ package net.jbock.coerce;
 
 import com.squareup.javapoet.CodeBlock;
 import net.jbock.coerce.either.Either;
+import net.jbock.coerce.either.Left;
+import net.jbock.coerce.either.Right;
 import net.jbock.coerce.reference.ReferenceTool;
 import net.jbock.coerce.reference.ReferencedType;
 import net.jbock.compiler.TypeTool;
@@ -10,6 +12,8 @@ import net.jbock.compiler.ValidationException;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 import static net.jbock.coerce.SuppliedClassValidator.commonChecks;
@@ -37,12 +41,63 @@ public final class MapperClassValidator {
     ReferencedType<Function> functionType = new ReferenceTool<>(FUNCTION, errorHandler, tool, mapperClass).getReferencedType();
     TypeMirror inputType = functionType.typeArguments().get(0);
     TypeMirror outputType = functionType.typeArguments().get(1);
-    return tool.unify(tool.asType(String.class), inputType).flatMap(FUNCTION::boom, inputSolution ->
+    return unifyInput(inputType).flatMap(FUNCTION::boom, inputSolution ->
         handle(functionType, outputType, inputSolution));
   }
 
+  /**
+   * A mapper that accepts {@link CharSequence} can read an attached option value
+   * in place, without copying it into a new string.
+   *
+   * @return {@code true} if the mapper accepts {@link CharSequence} but not {@link String}
+   */
+  public boolean isCharSequenceMapper() {
+    ReferencedType<Function> functionType = new ReferenceTool<>(FUNCTION, errorHandler, tool, mapperClass).getReferencedType();
+    TypeMirror inputType = functionType.typeArguments().get(0);
+    return tool.unify(tool.asType(String.class), inputType) instanceof Left &&
+        tool.unify(tool.asType(CharSequence.class), inputType) instanceof Right;
+  }
+
+  /**
+   * A mapper whose output is a {@link CompletableFuture} of the expected type runs asynchronously.
+   * A future is only unwrapped if the output does not match directly.
+   *
+   * @return {@code true} if the mapper returns a future of the expected type
+   */
+  public boolean isAsync() {
+    ReferencedType<Function> functionType = new ReferenceTool<>(FUNCTION, errorHandler, tool, mapperClass).getReferencedType();
+    TypeMirror outputType = functionType.typeArguments().get(1);
+    return tool.unify(expectedReturnType, outputType) instanceof Left &&
+        futureResultType(outputType).map(resultType -> tool.unify(expectedReturnType, resultType) instanceof Right)
+            .orElse(false);
+  }
+
+  private Either<String, TypevarMapping> unifyInput(TypeMirror inputType) {
+    Either<String, TypevarMapping> stringInput = tool.unify(tool.asType(String.class), inputType);
+    if (stringInput instanceof Right) {
+      return stringInput;
+    }
+    Either<String, TypevarMapping> charSequenceInput = tool.unify(tool.asType(CharSequence.class), inputType);
+    return charSequenceInput instanceof Right ? charSequenceInput : stringInput;
+  }
+
+  private Either<String, TypevarMapping> unifyOutput(TypeMirror outputType) {
+    Either<String, TypevarMapping> directOutput = tool.unify(expectedReturnType, outputType);
+    if (directOutput instanceof Right) {
+      return directOutput;
+    }
+    return futureResultType(outputType)
+        .map(resultType -> tool.unify(expectedReturnType, resultType))
+        .filter(futureOutput -> futureOutput instanceof Right)
+        .orElse(directOutput);
+  }
+
+  private Optional<TypeMirror> futureResultType(TypeMirror outputType) {
+    return tool.unwrap(CompletableFuture.class, outputType);
+  }
+
   private Either<String, CodeBlock> handle(ReferencedType<Function> functionType, TypeMirror outputType, TypevarMapping inputSolution) {
-    return tool.unify(expectedReturnType, outputType).flatMap(FUNCTION::boom, outputSolution ->
+    return unifyOutput(outputType).flatMap(FUNCTION::boom, outputSolution ->
         handle(functionType, inputSolution, outputSolution));
   }
 
@@ -1,40 +1,118 @@
 package net.jbock.coerce;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import javax.lang.model.type.TypeMirror;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class NonFlagCoercion extends Coercion {
 
+  // nullable
   private final CodeBlock collectExpr;
 
+  // nullable
+  private final CodeBlock tailExpr;
+
   private final CodeBlock mapExpr;
 
+  // nullable
+  private final Function<CodeBlock, CodeBlock> mapCall;
+
+  private final TypeName mapperType;
+
   private final CodeBlock extractExpr;
 
   private final Skew skew;
 
-  public NonFlagCoercion(BasicInfo basicInfo, CodeBlock mapExpr, CodeBlock collectExpr, CodeBlock extractExpr,
-                         NonFlagSkew skew, ParameterSpec constructorParam) {
+  private final boolean mapsCharSequence;
+
+  // nullable
+  private final PrimitiveArray primitiveArray;
+
+  private final boolean async;
+
+  /**
+   * @param mappedType the output type of the mapper
+   * @param mapCall direct call, or {@code null} if the mapper must be invoked via {@code mapExpr}
+   * @param collectExpr custom collector, or {@code null}
+   * @param tailExpr conversion of the mapped stream, or {@code null} if this is not a lazy tail
+   */
+  public NonFlagCoercion(BasicInfo basicInfo, TypeMirror mappedType, CodeBlock mapExpr, Function<CodeBlock, CodeBlock> mapCall,
+                         CodeBlock collectExpr, CodeBlock tailExpr, CodeBlock extractExpr, NonFlagSkew skew, ParameterSpec constructorParam,
+                         boolean mapsCharSequence) {
+    this(basicInfo, mappedType, mapExpr, mapCall, collectExpr, tailExpr, extractExpr, skew, constructorParam,
+        mapsCharSequence, null, false);
+  }
+
+  /**
+   * @param primitiveArray the element type, or {@code null} if the values are not stored in a primitive array
+   * @param async whether the mapper returns a {@code CompletableFuture} of the mapped type
+   */
+  public NonFlagCoercion(BasicInfo basicInfo, TypeMirror mappedType, CodeBlock mapExpr, Function<CodeBlock, CodeBlock> mapCall,
+                         CodeBlock collectExpr, CodeBlock tailExpr, CodeBlock extractExpr, NonFlagSkew skew, ParameterSpec constructorParam,
+                         boolean mapsCharSequence, PrimitiveArray primitiveArray, boolean async) {
     super(constructorParam, basicInfo.parameterName());
     this.collectExpr = collectExpr;
+    this.tailExpr = tailExpr;
     this.mapExpr = mapExpr;
+    this.mapCall = mapCall;
+    TypeName outputType = WildcardTypeName.subtypeOf(TypeName.get(mappedType));
+    if (async) {
+      outputType = WildcardTypeName.subtypeOf(ParameterizedTypeName.get(ClassName.get(CompletableFuture.class), outputType));
+    }
+    this.mapperType = ParameterizedTypeName.get(ClassName.get(Function.class),
+        ClassName.get(mapsCharSequence ? CharSequence.class : String.class), outputType);
     this.extractExpr = extractExpr;
     this.skew = skew.widen();
+    this.mapsCharSequence = mapsCharSequence;
+    this.primitiveArray = primitiveArray;
+    this.async = async;
   }
 
   public CodeBlock mapExpr() {
     return mapExpr;
   }
 
+  public TypeName mapperType() {
+    return mapperType;
+  }
+
+  public Optional<CodeBlock> mapCall(CodeBlock value) {
+    return Optional.ofNullable(mapCall).map(call -> call.apply(value));
+  }
+
   public CodeBlock extractExpr() {
     return extractExpr;
   }
 
-  public CodeBlock collectExpr() {
-    return collectExpr;
+  public Optional<CodeBlock> collectExpr() {
+    return Optional.ofNullable(collectExpr);
+  }
+
+  public Optional<CodeBlock> tailExpr() {
+    return Optional.ofNullable(tailExpr);
   }
 
   public Skew getSkew() {
     return skew;
   }
+
+  public boolean mapsCharSequence() {
+    return mapsCharSequence;
+  }
+
+  public Optional<PrimitiveArray> primitiveArray() {
+    return Optional.ofNullable(primitiveArray);
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
 }
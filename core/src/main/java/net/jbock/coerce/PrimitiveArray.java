@@ -0,0 +1,49 @@
+package net.jbock.coerce;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+import java.util.function.Function;
+
+/**
+ * A repeatable parameter of type {@code int[]}, {@code long[]} or {@code double[]},
+ * or {@code IntStream}, {@code LongStream} or {@code DoubleStream}.
+ * Each token is parsed when it is read, and stored in a growable primitive array,
+ * so the values are never boxed.
+ */
+public final class PrimitiveArray {
+
+  private final TypeName elementType;
+
+  private final Function<CodeBlock, CodeBlock> parse;
+
+  // whether the return type is a primitive stream
+  private final boolean stream;
+
+  public PrimitiveArray(TypeName elementType, Function<CodeBlock, CodeBlock> parse, boolean stream) {
+    this.elementType = elementType;
+    this.parse = parse;
+    this.stream = stream;
+  }
+
+  public TypeName elementType() {
+    return elementType;
+  }
+
+  public TypeName arrayType() {
+    return ArrayTypeName.of(elementType);
+  }
+
+  /**
+   * @param value an expression of type {@code String}
+   * @return an expression of the element type
+   */
+  public CodeBlock parse(CodeBlock value) {
+    return parse.apply(value);
+  }
+
+  public boolean isStream() {
+    return stream;
+  }
+}
@@ -2,14 +2,21 @@ package net.jbock.coerce.matching;
 
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
 import net.jbock.coerce.BasicInfo;
 import net.jbock.coerce.NonFlagCoercion;
 import net.jbock.coerce.NonFlagSkew;
+import net.jbock.coerce.PrimitiveArray;
 import net.jbock.compiler.TypeTool;
 
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static net.jbock.coerce.NonFlagSkew.OPTIONAL;
 import static net.jbock.coerce.NonFlagSkew.REPEATABLE;
@@ -27,8 +34,14 @@ public class AutoMatcher {
     TypeMirror returnType = basicInfo.returnType();
     Optional<Optionalish> opt = Optionalish.unwrap(returnType, tool());
     Optional<TypeMirror> listWrapped = tool().unwrap(List.class, returnType);
+    Optional<LazyTail> tail = LazyTail.unwrap(returnType, tool());
     if (opt.isPresent()) {
       Optionalish optional = opt.get();
+      Optional<NonFlagCoercion> primitive = optional.primitiveKind()
+          .flatMap(kind -> createPrimitiveCoercion(kind, optional.wrappedType(), OPTIONAL));
+      if (primitive.isPresent()) {
+        return primitive.get();
+      }
       // optional match
       ParameterSpec param = basicInfo.constructorParam(optional.liftedType());
       return createCoercion(optional.wrappedType(), optional.extractExpr(param), param, OPTIONAL);
@@ -38,18 +51,79 @@ public class AutoMatcher {
       ParameterSpec param = basicInfo.constructorParam(returnType);
       return createCoercion(listWrapped.get(), param, REPEATABLE);
     }
+    if (tail.isPresent()) {
+      // lazy repeatable match
+      ParameterSpec param = basicInfo.constructorParam(returnType);
+      return createCoercion(tail.get().wrappedType(), tail.get().tailExpr(), CodeBlock.of("$N", param), param, REPEATABLE);
+    }
+    Optional<NonFlagCoercion> primitiveArray = createPrimitiveArrayCoercion(returnType);
+    if (primitiveArray.isPresent()) {
+      return primitiveArray.get();
+    }
     // exact match (-> required)
+    if (returnType.getKind().isPrimitive()) {
+      Optional<NonFlagCoercion> primitive = createPrimitiveCoercion(returnType.getKind(), tool().box(returnType), REQUIRED);
+      if (primitive.isPresent()) {
+        return primitive.get();
+      }
+    }
     ParameterSpec param = basicInfo.constructorParam(returnType);
     return createCoercion(tool().box(returnType), param, REQUIRED);
   }
 
+  /**
+   * The value is parsed straight from the token, and stored without boxing.
+   * For {@code OptionalInt} et al., the constructor param has the original type.
+   */
+  private Optional<NonFlagCoercion> createPrimitiveCoercion(TypeKind kind, TypeMirror boxedType, NonFlagSkew skew) {
+    ParameterSpec param = basicInfo.constructorParam(basicInfo.returnType());
+    return basicInfo.findPrimitiveParser(kind).flatMap(mapCall -> basicInfo.findAutoMapper(boxedType)
+        .map(mapExpr -> new NonFlagCoercion(basicInfo, boxedType, mapExpr, mapCall, null, null,
+            CodeBlock.of("$N", param), skew, param, false)));
+  }
+
+  /**
+   * An {@code int[]}, {@code long[]} or {@code double[]}, or the corresponding primitive stream.
+   * Each value is parsed when its token is read, and stored without boxing.
+   * The boxed mapper is only used by the visitor.
+   */
+  private Optional<NonFlagCoercion> createPrimitiveArrayCoercion(TypeMirror returnType) {
+    if (returnType.getKind() == TypeKind.ARRAY) {
+      TypeMirror componentType = ((ArrayType) returnType).getComponentType();
+      return createPrimitiveArrayCoercion(componentType.getKind(), tool().box(componentType), false);
+    }
+    if (tool().isSameType(returnType, IntStream.class)) {
+      return createPrimitiveArrayCoercion(TypeKind.INT, tool().asType(Integer.class), true);
+    }
+    if (tool().isSameType(returnType, LongStream.class)) {
+      return createPrimitiveArrayCoercion(TypeKind.LONG, tool().asType(Long.class), true);
+    }
+    if (tool().isSameType(returnType, DoubleStream.class)) {
+      return createPrimitiveArrayCoercion(TypeKind.DOUBLE, tool().asType(Double.class), true);
+    }
+    return Optional.empty();
+  }
+
+  private Optional<NonFlagCoercion> createPrimitiveArrayCoercion(TypeKind kind, TypeMirror boxedType, boolean stream) {
+    ParameterSpec param = basicInfo.constructorParam(basicInfo.returnType());
+    return basicInfo.findPrimitiveParser(kind).flatMap(parse -> basicInfo.findAutoMapper(boxedType)
+        .map(mapExpr -> new NonFlagCoercion(basicInfo, boxedType, mapExpr, parse, null, null,
+            CodeBlock.of("$N", param), REPEATABLE, param, false,
+            new PrimitiveArray(TypeName.get(boxedType).unbox(), parse, stream), false)));
+  }
+
   private NonFlagCoercion createCoercion(TypeMirror testType, ParameterSpec constructorParam, NonFlagSkew skew) {
     return createCoercion(testType, CodeBlock.of("$N", constructorParam), constructorParam, skew);
   }
 
   private NonFlagCoercion createCoercion(TypeMirror testType, CodeBlock extractExpr, ParameterSpec constructorParam, NonFlagSkew skew) {
+    return createCoercion(testType, null, extractExpr, constructorParam, skew);
+  }
+
+  private NonFlagCoercion createCoercion(TypeMirror testType, CodeBlock tailExpr, CodeBlock extractExpr, ParameterSpec constructorParam, NonFlagSkew skew) {
     return basicInfo.findAutoMapper(testType)
-        .map(mapExpr -> new NonFlagCoercion(basicInfo, mapExpr, MatchingAttempt.autoCollectExpr(basicInfo, skew), extractExpr, skew, constructorParam))
+        .map(mapExpr -> new NonFlagCoercion(basicInfo, testType, mapExpr, basicInfo.findAutoMapCall(testType).orElse(null),
+            null, tailExpr, extractExpr, skew, constructorParam, tool().isSameType(testType, CharSequence.class)))
         .orElseThrow(() -> basicInfo.failure(String.format("Unknown parameter type: %s. Try defining a custom mapper or collector.",
             basicInfo.returnType())));
   }
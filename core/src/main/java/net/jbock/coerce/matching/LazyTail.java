@@ -0,0 +1,43 @@
+package net.jbock.coerce.matching;
+
+import com.squareup.javapoet.CodeBlock;
+import net.jbock.compiler.TypeTool;
+
+import javax.lang.model.type.TypeMirror;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A repeatable param of type {@code Stream<T>} or {@code Iterator<T>},
+ * which is mapped while the caller consumes it.
+ */
+class LazyTail {
+
+  private final TypeMirror wrappedType;
+
+  private final CodeBlock tailExpr;
+
+  private LazyTail(TypeMirror wrappedType, CodeBlock tailExpr) {
+    this.wrappedType = wrappedType;
+    this.tailExpr = tailExpr;
+  }
+
+  static Optional<LazyTail> unwrap(TypeMirror type, TypeTool tool) {
+    Optional<LazyTail> stream = tool.unwrap(Stream.class, type)
+        .map(wrapped -> new LazyTail(wrapped, CodeBlock.of("")));
+    if (stream.isPresent()) {
+      return stream;
+    }
+    return tool.unwrap(Iterator.class, type)
+        .map(wrapped -> new LazyTail(wrapped, CodeBlock.of(".iterator()")));
+  }
+
+  TypeMirror wrappedType() {
+    return wrappedType;
+  }
+
+  CodeBlock tailExpr() {
+    return tailExpr;
+  }
+}
@@ -35,6 +35,7 @@ public class MapperMatcher {
     TypeMirror returnType = basicInfo.returnType();
     Optional<Optionalish> opt = Optionalish.unwrap(returnType, tool());
     Optional<TypeMirror> listWrapped = tool().unwrap(List.class, returnType);
+    Optional<LazyTail> tail = LazyTail.unwrap(returnType, tool());
     List<MatchingAttempt> attempts = new ArrayList<>();
     opt.ifPresent(optional -> {
       ParameterSpec param = basicInfo.constructorParam(optional.liftedType());
@@ -48,6 +49,11 @@ public class MapperMatcher {
       // list match
       attempts.add(attempt(wrapped, param, REPEATABLE));
     });
+    tail.ifPresent(lazyTail -> {
+      ParameterSpec param = basicInfo.constructorParam(returnType);
+      // lazy repeatable match
+      attempts.add(new MatchingAttempt(lazyTail.wrappedType(), lazyTail.tailExpr(), CodeBlock.of("$N", param), param, REPEATABLE, mapperClass));
+    });
     ParameterSpec param = basicInfo.constructorParam(returnType);
     // exact match (-> required)
     attempts.add(attempt(tool().box(returnType), param, REQUIRED));
@@ -71,10 +77,10 @@ public class MapperMatcher {
   }
 
   private MatchingAttempt attempt(TypeMirror expectedReturnType, CodeBlock extractExpr, ParameterSpec constructorParam, NonFlagSkew skew) {
-    return new MatchingAttempt(expectedReturnType, extractExpr, constructorParam, skew, mapperClass);
+    return new MatchingAttempt(expectedReturnType, null, extractExpr, constructorParam, skew, mapperClass);
   }
 
   private MatchingAttempt attempt(TypeMirror expectedReturnType, ParameterSpec constructorParam, NonFlagSkew skew) {
-    return new MatchingAttempt(expectedReturnType, CodeBlock.of("$N", constructorParam), constructorParam, skew, mapperClass);
+    return new MatchingAttempt(expectedReturnType, null, CodeBlock.of("$N", constructorParam), constructorParam, skew, mapperClass);
   }
 }
@@ -12,41 +12,36 @@ import net.jbock.coerce.either.Either;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 class MatchingAttempt {
 
+  // nullable
+  private final CodeBlock tailExpr;
   private final CodeBlock extractExpr;
   private final ParameterSpec constructorParam;
   private final NonFlagSkew skew;
   private final TypeMirror testType;
   private final TypeElement mapperClass;
 
-  MatchingAttempt(TypeMirror testType, CodeBlock extractExpr, ParameterSpec constructorParam, NonFlagSkew skew, TypeElement mapperClass) {
+  MatchingAttempt(TypeMirror testType, CodeBlock tailExpr, CodeBlock extractExpr, ParameterSpec constructorParam, NonFlagSkew skew, TypeElement mapperClass) {
     this.testType = testType;
+    this.tailExpr = tailExpr;
     this.extractExpr = extractExpr;
     this.constructorParam = constructorParam;
     this.skew = skew;
     this.mapperClass = mapperClass;
   }
 
-  static CodeBlock autoCollectExpr(BasicInfo basicInfo, NonFlagSkew skew) {
-    switch (skew) {
-      case OPTIONAL:
-        return CodeBlock.of(".findAny()");
-      case REQUIRED:
-        return CodeBlock.of(".findAny().orElseThrow($T.$L::missingRequired)", basicInfo.optionType(),
-            basicInfo.parameterName().enumConstant());
-      case REPEATABLE:
-        return CodeBlock.of(".collect($T.toList())", Collectors.class);
-      default:
-        throw new AssertionError("unknown skew: " + skew);
-    }
-  }
-
   Either<String, Coercion> findCoercion(BasicInfo basicInfo) {
-    return new MapperClassValidator(basicInfo::failure, basicInfo.tool(), testType, mapperClass).getMapExpr()
-        .map(Function.identity(), mapExpr ->
-            new NonFlagCoercion(basicInfo, mapExpr, autoCollectExpr(basicInfo, skew), extractExpr, skew, constructorParam));
+    MapperClassValidator validator = new MapperClassValidator(basicInfo::failure, basicInfo.tool(), testType, mapperClass);
+    return validator.getMapExpr()
+        .map(Function.identity(), mapExpr -> {
+          boolean async = validator.isAsync();
+          if (async && tailExpr != null) {
+            throw basicInfo.failure("An asynchronous mapper can't be used with a Stream or Iterator.");
+          }
+          return new NonFlagCoercion(basicInfo, testType, mapExpr, null, null, tailExpr, extractExpr, skew, constructorParam,
+              validator.isCharSequenceMapper(), null, async);
+        });
   }
 }
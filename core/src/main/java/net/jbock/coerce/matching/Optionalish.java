@@ -4,6 +4,7 @@ import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.ParameterSpec;
 import net.jbock.compiler.TypeTool;
 
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.util.Arrays;
 import java.util.List;
@@ -16,9 +17,9 @@ import java.util.function.Function;
 class Optionalish {
 
   private static final List<OptionalPrimitive> OPTIONAL_PRIMITIVES = Arrays.asList(
-      new OptionalPrimitive(OptionalInt.class, Integer.class),
-      new OptionalPrimitive(OptionalLong.class, Long.class),
-      new OptionalPrimitive(OptionalDouble.class, Double.class));
+      new OptionalPrimitive(OptionalInt.class, Integer.class, TypeKind.INT),
+      new OptionalPrimitive(OptionalLong.class, Long.class, TypeKind.LONG),
+      new OptionalPrimitive(OptionalDouble.class, Double.class, TypeKind.DOUBLE));
 
   private final TypeMirror liftedType;
 
@@ -26,10 +27,14 @@ class Optionalish {
 
   private final Function<ParameterSpec, CodeBlock> extract;
 
+  // nullable
+  private final TypeKind primitiveKind;
+
   private Optionalish(
       Function<ParameterSpec, CodeBlock> extract,
-      TypeMirror liftedType, TypeMirror wrappedType) {
+      TypeMirror liftedType, TypeMirror wrappedType, TypeKind primitiveKind) {
     this.extract = extract;
+    this.primitiveKind = primitiveKind;
     this.wrappedType = wrappedType;
     this.liftedType = liftedType;
   }
@@ -38,10 +43,12 @@ class Optionalish {
 
     final Class<?> specialClass;
     final Class<? extends Number> wrapped;
+    final TypeKind kind;
 
-    OptionalPrimitive(Class<?> specialClass, Class<? extends Number> wrapped) {
+    OptionalPrimitive(Class<?> specialClass, Class<? extends Number> wrapped, TypeKind kind) {
       this.specialClass = specialClass;
       this.wrapped = wrapped;
+      this.kind = kind;
     }
 
     Function<ParameterSpec, CodeBlock> extractExpr() {
@@ -55,7 +62,7 @@ class Optionalish {
       return optionalPrimtive;
     }
     return tool.unwrap(Optional.class, type)
-        .map(wrapped -> new Optionalish(p -> CodeBlock.of("$N", p), type, wrapped));
+        .map(wrapped -> new Optionalish(p -> CodeBlock.of("$N", p), type, wrapped, null));
   }
 
   private static Optional<Optionalish> getOptionalPrimitive(TypeMirror type, TypeTool tool) {
@@ -64,7 +71,8 @@ class Optionalish {
         return Optional.of(new Optionalish(
             e.extractExpr(),
             tool.optionalOf(e.wrapped),
-            tool.asType(e.wrapped)));
+            tool.asType(e.wrapped),
+            e.kind));
       }
     }
     return Optional.empty();
@@ -92,6 +100,18 @@ class Optionalish {
     return extract.apply(constructorParam);
   }
 
+  /**
+   * <ul>
+   *   <li>{@code OptionalInt} -&gt; {@code INT}</li>
+   *   <li>{@code Optional<Integer>} -&gt; empty</li>
+   * </ul>
+   *
+   * @return primitive kind
+   */
+  Optional<TypeKind> primitiveKind() {
+    return Optional.ofNullable(primitiveKind);
+  }
+
   /**
    * <ul>
    *   <li>{@code OptionalInt} -&gt; {@code Integer}</li>
@@ -3,6 +3,7 @@ package net.jbock.compiler;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.AnnotationValueVisitor;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
@@ -10,6 +11,9 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVisitor;
 import javax.lang.model.util.SimpleAnnotationValueVisitor8;
 import javax.lang.model.util.SimpleTypeVisitor8;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -26,6 +30,22 @@ class AnnotationUtil {
     }
   };
 
+  private static final AnnotationValueVisitor<List<TypeMirror>, Void> GET_TYPES = new SimpleAnnotationValueVisitor8<List<TypeMirror>, Void>() {
+
+    @Override
+    public List<TypeMirror> visitArray(List<? extends AnnotationValue> values, Void _null) {
+      List<TypeMirror> result = new ArrayList<>(values.size());
+      for (AnnotationValue value : values) {
+        TypeMirror typeMirror = value.accept(GET_TYPE, null);
+        if (typeMirror == null) {
+          return null;
+        }
+        result.add(typeMirror);
+      }
+      return result;
+    }
+  };
+
   private static final TypeVisitor<Boolean, TypeTool> IS_JAVA_LANG_OBJECT = new SimpleTypeVisitor8<Boolean, TypeTool>() {
     @Override
     protected Boolean defaultAction(TypeMirror e, TypeTool tool) {
@@ -66,8 +86,32 @@ class AnnotationUtil {
     return Optional.of(tool.asTypeElement(typeMirror));
   }
 
-  private static AnnotationMirror getAnnotationMirror(TypeTool tool, ExecutableElement sourceMethod, Class<?> annotationClass) {
-    return sourceMethod.getAnnotationMirrors().stream()
+  /**
+   * Reads an attribute of type {@code Class<?>[]}.
+   */
+  static List<TypeElement> getTypes(TypeTool tool, Element element, Class<?> annotationClass, String attributeName) {
+    AnnotationMirror annotation = getAnnotationMirror(tool, element, annotationClass);
+    if (annotation == null) {
+      return Collections.emptyList();
+    }
+    AnnotationValue annotationValue = getAnnotationValue(annotation, attributeName);
+    if (annotationValue == null) {
+      // if the default value is not overridden
+      return Collections.emptyList();
+    }
+    List<TypeMirror> typeMirrors = annotationValue.accept(GET_TYPES, null);
+    if (typeMirrors == null) {
+      throw ValidationException.create(element, String.format("Invalid value of attribute '%s'.", attributeName));
+    }
+    List<TypeElement> result = new ArrayList<>(typeMirrors.size());
+    for (TypeMirror typeMirror : typeMirrors) {
+      result.add(tool.asTypeElement(typeMirror));
+    }
+    return result;
+  }
+
+  private static AnnotationMirror getAnnotationMirror(TypeTool tool, Element element, Class<?> annotationClass) {
+    return element.getAnnotationMirrors().stream()
         .filter(m -> tool.isSameType(m.getAnnotationType(), annotationClass))
         .findAny().orElse(null);
   }
@@ -23,6 +23,8 @@ public final class Constants {
 
   public static final TypeName LIST_OF_STRING = listOf(STRING);
 
+  public static final TypeName LIST_OF_CHAR_SEQUENCE = listOf(ClassName.get(CharSequence.class));
+
   public static final TypeName STRING_TO_STRING_MAP = mapOf(STRING, STRING);
 
   public static final TypeName STRING_ARRAY = ArrayTypeName.of(STRING);
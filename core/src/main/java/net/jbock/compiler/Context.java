@@ -30,49 +30,58 @@ public final class Context {
   // whether "--help" is a special token
   private final boolean helpParameterEnabled;
 
+  // whether "@path" tokens are expanded
+  private final boolean atFiles;
+
+  // whether a command line can be parsed
+  private final boolean commandLine;
+
+  // whether the parameters can be visited
+  private final boolean visitor;
+
+  // whether the options can have defaults in a file
+  private final boolean defaultsFile;
+
+  // whether the shared parse engine is used
+  private final boolean runtimeMode;
+
   // program name from attribute
   private final String programName;
 
   private final ClassName optionType;
 
-  Context(TypeElement sourceElement, ClassName generatedClass, ClassName optionType, List<Parameter> parameters) {
+  // whether lambdas and method references are avoided
+  private final boolean startupMode;
+
+  // selected by the first token that is not an option
+  private final List<Subcommand> subcommands;
+
+  Context(TypeElement sourceElement, ClassName generatedClass, ClassName optionType, List<Parameter> parameters,
+          boolean startupMode, List<Subcommand> subcommands) {
     this.sourceElement = sourceElement;
     this.generatedClass = generatedClass;
     this.parameters = parameters;
     this.params = parameters.stream().filter(Parameter::isPositional).collect(Collectors.toList());
     this.options = parameters.stream().filter(parameter -> !parameter.isPositional()).collect(Collectors.toList());
     this.helpParameterEnabled = !sourceElement.getAnnotation(Command.class).helpDisabled();
+    this.atFiles = sourceElement.getAnnotation(Command.class).atFiles();
+    this.commandLine = sourceElement.getAnnotation(Command.class).commandLine();
+    this.visitor = sourceElement.getAnnotation(Command.class).visitor();
+    this.defaultsFile = sourceElement.getAnnotation(Command.class).defaultsFile();
+    this.runtimeMode = sourceElement.getAnnotation(Command.class).runtime();
     this.programName = programName(sourceElement);
     this.optionType = optionType;
+    this.startupMode = startupMode;
+    this.subcommands = subcommands;
   }
 
-  private static String programName(TypeElement sourceType) {
+  static String programName(TypeElement sourceType) {
     if (!sourceType.getAnnotation(Command.class).value().isEmpty()) {
       return sourceType.getAnnotation(Command.class).value();
     }
     return ParamName.create(sourceType.getSimpleName().toString()).snake('-');
   }
 
-  public ClassName optionParserType() {
-    return generatedClass.nestedClass("OptionParser");
-  }
-
-  public ClassName repeatableParamParserType() {
-    return generatedClass.nestedClass("ParamParser");
-  }
-
-  public ClassName flagParserType() {
-    return generatedClass.nestedClass("FlagParser");
-  }
-
-  public ClassName regularOptionParserType() {
-    return generatedClass.nestedClass("RegularOptionParser");
-  }
-
-  public ClassName regularParamParserType() {
-    return generatedClass.nestedClass("RegularParamParser");
-  }
-
   public ClassName optionType() {
     return optionType;
   }
@@ -97,6 +106,72 @@ public final class Context {
     return generatedClass.nestedClass("ParsingFailed");
   }
 
+  public ClassName errorCodeType() {
+    return generatedClass.nestedClass("ErrorCode");
+  }
+
+  public ClassName parsingExceptionType() {
+    return generatedClass.nestedClass("ParsingException");
+  }
+
+  public boolean isCommandLine() {
+    return commandLine;
+  }
+
+  /**
+   * Whether there is a Tokenizer, which splits a command line or a response file into tokens.
+   */
+  public boolean hasTokenizer() {
+    return commandLine || atFiles;
+  }
+
+  public ClassName tokenizerType() {
+    return generatedClass.nestedClass("Tokenizer");
+  }
+
+  public ClassName quotingType() {
+    return generatedClass.nestedClass("Quoting");
+  }
+
+  public Optional<ClassName> atFileExpanderType() {
+    return atFiles ? Optional.of(generatedClass.nestedClass("AtFileExpander")) : Optional.empty();
+  }
+
+  /**
+   * Present if defaults files are enabled, and some option takes a single value,
+   * so it can have a default in a file.
+   */
+  public Optional<ClassName> defaultsType() {
+    return defaultsFile && options.stream().anyMatch(Parameter::isDefaultable) ?
+        Optional.of(generatedClass.nestedClass("Defaults")) :
+        Optional.empty();
+  }
+
+  /**
+   * Present if the visitor is enabled. A command that has subcommands can't have a visitor.
+   */
+  public Optional<ClassName> visitorType() {
+    return visitor && subcommands.isEmpty() ? Optional.of(generatedClass.nestedClass("Visitor")) : Optional.empty();
+  }
+
+  public Optional<ClassName> subcommandVisitorType() {
+    return subcommands.isEmpty() ? Optional.empty() : Optional.of(generatedClass.nestedClass("SubcommandVisitor"));
+  }
+
+  public ClassName valueType() {
+    return generatedClass.nestedClass("Value");
+  }
+
+  public ClassName visitStateType() {
+    return generatedClass.nestedClass("VisitState");
+  }
+
+  public Optional<ClassName> mappingFailedType() {
+    return parameters.stream().anyMatch(Parameter::isLazy) ?
+        Optional.of(generatedClass.nestedClass("MappingFailedException")) :
+        Optional.empty();
+  }
+
   public Optional<ClassName> helpRequestedType() {
     return helpParameterEnabled ? Optional.of(generatedClass.nestedClass("HelpRequested")) : Optional.empty();
   }
@@ -125,6 +200,41 @@ public final class Context {
     return options;
   }
 
+  public boolean isRuntimeMode() {
+    return runtimeMode;
+  }
+
+  public boolean isStartupMode() {
+    return startupMode;
+  }
+
+  /**
+   * The options that can be read from the environment, in the order of {@link #parameters()}.
+   */
+  public List<Parameter> fallbacks() {
+    return parameters.stream().filter(Parameter::hasFallback).collect(Collectors.toList());
+  }
+
+  public boolean hasFallbacks() {
+    return parameters.stream().anyMatch(Parameter::hasFallback);
+  }
+
+  public List<Parameter> asyncParameters() {
+    return parameters.stream().filter(param -> param.coercion().isAsync()).collect(Collectors.toList());
+  }
+
+  public boolean hasAsyncMappers() {
+    return parameters.stream().anyMatch(param -> param.coercion().isAsync());
+  }
+
+  public List<Subcommand> subcommands() {
+    return subcommands;
+  }
+
+  public boolean hasSubcommands() {
+    return !subcommands.isEmpty();
+  }
+
   public boolean isHelpParameterEnabled() {
     return helpParameterEnabled;
   }
@@ -0,0 +1,104 @@
+package net.jbock.compiler;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static javax.lang.model.element.Modifier.PUBLIC;
+
+/**
+ * In startup mode, the generated code uses anonymous classes instead of lambdas and method references,
+ * and explicit {@link StringBuilder} chains instead of string concatenation.
+ * This way, there is no invokedynamic bootstrap at runtime, regardless of the target release.
+ */
+public final class IndyFree {
+
+  private IndyFree() {
+  }
+
+  /**
+   * Creates an anonymous {@link Function}.
+   *
+   * @param inputType the input type, not primitive
+   * @param returnType the return type, not primitive
+   * @param param name of the lambda parameter
+   * @param body creates the statements of the {@code apply} method from the lambda parameter
+   * @return an expression of type {@code Function<inputType, returnType>}
+   */
+  public static CodeBlock function(TypeName inputType, TypeName returnType, String param,
+                                   Function<ParameterSpec, CodeBlock> body) {
+    ParameterSpec p = ParameterSpec.builder(inputType, param).build();
+    TypeSpec anonymous = TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Function.class), inputType, returnType))
+        .addMethod(MethodSpec.methodBuilder("apply")
+            .addAnnotation(Override.class)
+            .addModifiers(PUBLIC)
+            .addParameter(p)
+            .returns(returnType)
+            .addCode(body.apply(p))
+            .build())
+        .build();
+    return CodeBlock.of("$L", anonymous);
+  }
+
+  /**
+   * Creates an anonymous {@link Function} that returns a single expression.
+   *
+   * @param inputType the input type, not primitive
+   * @param returnType the return type, not primitive
+   * @param param name of the lambda parameter
+   * @param expr creates the returned expression from the lambda parameter
+   * @return an expression of type {@code Function<inputType, returnType>}
+   */
+  public static CodeBlock functionOf(TypeName inputType, TypeName returnType, String param,
+                                     Function<CodeBlock, CodeBlock> expr) {
+    return function(inputType, returnType, param,
+        p -> CodeBlock.builder().addStatement("return $L", expr.apply(CodeBlock.of("$N", p))).build());
+  }
+
+  /**
+   * Concatenates the parts. String concatenation compiles to invokedynamic
+   * when the target release is 9 or later.
+   *
+   * @param startupMode whether to generate a {@link StringBuilder} chain instead
+   * @param parts expressions of any type
+   * @return an expression of type {@code String}
+   */
+  public static CodeBlock concat(boolean startupMode, CodeBlock... parts) {
+    if (!startupMode) {
+      return CodeBlock.join(Arrays.asList(parts), " + ");
+    }
+    CodeBlock.Builder code = CodeBlock.builder().add("new $T()", StringBuilder.class);
+    for (CodeBlock part : parts) {
+      code.add(".append($L)", part);
+    }
+    return code.add(".toString()").build();
+  }
+
+  /**
+   * Creates an anonymous {@link Consumer} that does nothing.
+   *
+   * @param inputType the input type, not primitive
+   * @param param name of the lambda parameter
+   * @return an expression of type {@code Consumer<inputType>}
+   */
+  public static CodeBlock noopConsumer(TypeName inputType, String param) {
+    TypeSpec anonymous = TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Consumer.class), inputType))
+        .addMethod(MethodSpec.methodBuilder("accept")
+            .addAnnotation(Override.class)
+            .addModifiers(PUBLIC)
+            .addParameter(inputType, param)
+            .build())
+        .build();
+    return CodeBlock.of("$L", anonymous);
+  }
+}
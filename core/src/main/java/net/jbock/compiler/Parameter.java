@@ -50,6 +50,18 @@ public final class Parameter {
 
   private final Integer positionalIndex;
 
+  // the mapper runs on first invocation of the method
+  private final boolean lazy;
+
+  // environment variable, or empty string
+  private final String env;
+
+  // system property, or empty string
+  private final String property;
+
+  // minimum size for parallel mapping, or 0
+  private final int parallelThreshold;
+
   private static ParamName findParamName(List<Parameter> alreadyCreated, ExecutableElement sourceMethod) {
     String methodName = sourceMethod.getSimpleName().toString();
     ParamName result = ParamName.create(methodName);
@@ -76,7 +88,8 @@ public final class Parameter {
   }
 
   private Parameter(char mnemonic, String optionName, ExecutableElement sourceMethod, String bundleKey, String sample,
-                    List<String> names, Coercion coercion, List<String> description, Integer positionalIndex) {
+                    List<String> names, Coercion coercion, List<String> description, Integer positionalIndex,
+                    boolean lazy, String env, String property, int parallelThreshold) {
     this.mnemonic = mnemonic;
     this.optionName = optionName;
     this.sourceMethod = sourceMethod;
@@ -86,27 +99,39 @@ public final class Parameter {
     this.coercion = coercion;
     this.description = description;
     this.positionalIndex = positionalIndex;
+    this.lazy = lazy;
+    this.env = env;
+    this.property = property;
+    this.parallelThreshold = parallelThreshold;
   }
 
   public Coercion coercion() {
     return coercion;
   }
 
+  public boolean isLazy() {
+    return lazy;
+  }
+
   static Parameter createParam(TypeTool tool, List<Parameter> alreadyCreated, ExecutableElement sourceMethod,
-                               int positionalIndex, String[] description, ClassName optionType) {
+                               int positionalIndex, String[] description, ClassName optionType, boolean lazyCommand,
+                               boolean startup) {
     AnnotationUtil annotationUtil = new AnnotationUtil(tool, sourceMethod);
     Optional<TypeElement> mapperClass = annotationUtil.get(net.jbock.Param.class, "mappedBy");
     Optional<TypeElement> collectorClass = annotationUtil.get(net.jbock.Param.class, "collectedBy");
     net.jbock.Param parameter = sourceMethod.getAnnotation(net.jbock.Param.class);
     ParamName name = findParamName(alreadyCreated, sourceMethod);
-    Coercion coercion = CoercionProvider.nonFlagCoercion(sourceMethod, name, mapperClass, collectorClass, optionType, tool);
+    Coercion coercion = CoercionProvider.nonFlagCoercion(sourceMethod, name, mapperClass, collectorClass, optionType, tool, startup);
     checkBundleKey(parameter.bundleKey(), alreadyCreated, sourceMethod);
+    checkParallelThreshold(sourceMethod, coercion, parameter.parallelThreshold());
     return new Parameter(' ', null, sourceMethod, parameter.bundleKey(), name.snake().toLowerCase(Locale.US),
-        Collections.emptyList(), coercion, Arrays.asList(description), positionalIndex);
+        Collections.emptyList(), coercion, Arrays.asList(description), positionalIndex,
+        lazyCommand && !isParsedEagerly(coercion), "", "", parameter.parallelThreshold());
   }
 
   static Parameter createOption(boolean anyMnemonics, TypeTool tool, List<Parameter> alreadyCreated,
-                                ExecutableElement sourceMethod, String[] description, ClassName optionType) {
+                                ExecutableElement sourceMethod, String[] description, ClassName optionType,
+                                boolean lazyCommand, boolean startup) {
     AnnotationUtil annotationUtil = new AnnotationUtil(tool, sourceMethod);
     Optional<TypeElement> mapperClass = annotationUtil.get(Option.class, "mappedBy");
     Optional<TypeElement> collectorClass = annotationUtil.get(Option.class, "collectedBy");
@@ -117,11 +142,51 @@ public final class Parameter {
     boolean flag = isInferredFlag(mapperClass, collectorClass, sourceMethod.getReturnType(), tool);
     Coercion coercion = flag ?
         new FlagCoercion(name, sourceMethod) :
-        CoercionProvider.nonFlagCoercion(sourceMethod, name, mapperClass, collectorClass, optionType, tool);
+        CoercionProvider.nonFlagCoercion(sourceMethod, name, mapperClass, collectorClass, optionType, tool, startup);
     checkBundleKey(option.value(), alreadyCreated, sourceMethod);
     List<String> names = names(optionName, mnemonic);
+    checkFallback(sourceMethod, coercion, option.env());
+    checkFallback(sourceMethod, coercion, option.property());
+    checkParallelThreshold(sourceMethod, coercion, option.parallelThreshold());
     return new Parameter(mnemonic, optionName, sourceMethod, option.value(), sample(flag, name, names, anyMnemonics),
-        names, coercion, Arrays.asList(description), null);
+        names, coercion, Arrays.asList(description), null,
+        !flag && !isParsedEagerly(coercion) && (lazyCommand || option.lazy()),
+        option.env(), option.property(), option.parallelThreshold());
+  }
+
+  private static void checkFallback(ExecutableElement sourceMethod, Coercion coercion, String key) {
+    if (key.isEmpty()) {
+      return;
+    }
+    if (coercion.getSkew() == Skew.FLAG || coercion.getSkew() == Skew.REPEATABLE) {
+      throw ValidationException.create(sourceMethod, "A fallback can only be defined for an option that takes a single value.");
+    }
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (isWhitespace(c) || c == '=') {
+        throw ValidationException.create(sourceMethod, "Invalid fallback name: " + key);
+      }
+    }
+  }
+
+  // a primitive array is filled while the input is read, and an async mapper must be started by build()
+  private static boolean isParsedEagerly(Coercion coercion) {
+    return coercion.primitiveArray().isPresent() || coercion.isAsync();
+  }
+
+  private static void checkParallelThreshold(ExecutableElement sourceMethod, Coercion coercion, int threshold) {
+    if (threshold == 0) {
+      return;
+    }
+    if (threshold < 0) {
+      throw ValidationException.create(sourceMethod, "The parallel threshold may not be negative.");
+    }
+    if (coercion.getSkew() != Skew.REPEATABLE || coercion.tailExpr().isPresent() || coercion.primitiveArray().isPresent()) {
+      throw ValidationException.create(sourceMethod, "A parallel threshold can only be defined for a repeatable parameter of type List, or with a custom collector.");
+    }
+    if (coercion.isAsync()) {
+      throw ValidationException.create(sourceMethod, "A parallel threshold can't be used with an asynchronous mapper.");
+    }
   }
 
   private static boolean isInferredFlag(Optional<TypeElement> mapperClass, Optional<TypeElement> collectorClass, TypeMirror mirror, TypeTool tool) {
@@ -219,6 +284,14 @@ public final class Parameter {
     return coercion.getSkew() == Skew.REPEATABLE;
   }
 
+  /**
+   * A lazy tail is a repeatable param of type {@code Stream} or {@code Iterator},
+   * which takes all remaining tokens without reading them.
+   */
+  public boolean isLazyTail() {
+    return coercion.tailExpr().isPresent();
+  }
+
   public boolean isOptional() {
     return coercion.getSkew() == Skew.OPTIONAL;
   }
@@ -227,6 +300,32 @@ public final class Parameter {
     return coercion.getSkew() == Skew.FLAG;
   }
 
+  public Optional<String> env() {
+    return env.isEmpty() ? Optional.empty() : Optional.of(env);
+  }
+
+  public Optional<String> property() {
+    return property.isEmpty() ? Optional.empty() : Optional.of(property);
+  }
+
+  public boolean hasFallback() {
+    return !env.isEmpty() || !property.isEmpty();
+  }
+
+  /**
+   * @return the minimum number of values for parallel mapping, if any
+   */
+  public OptionalInt parallelThreshold() {
+    return parallelThreshold == 0 ? OptionalInt.empty() : OptionalInt.of(parallelThreshold);
+  }
+
+  /**
+   * An option that takes a single value can be read from a defaults file.
+   */
+  public boolean isDefaultable() {
+    return !isPositional() && (isRequired() || isOptional());
+  }
+
   public Optional<String> bundleKey() {
     return bundleKey.isEmpty() ? Optional.empty() : Optional.of(bundleKey);
   }
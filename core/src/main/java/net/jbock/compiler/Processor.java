@@ -7,6 +7,7 @@ import net.jbock.Command;
 import net.jbock.Option;
 import net.jbock.Param;
 import net.jbock.coerce.SuppliedClassValidator;
+import net.jbock.compiler.view.DescriptorClass;
 import net.jbock.compiler.view.GeneratedClass;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -14,6 +15,7 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
@@ -23,6 +25,8 @@ import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.OptionalInt;
 import java.util.Set;
@@ -31,10 +35,17 @@ import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toSet;
 import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.util.ElementFilter.methodsIn;
 
 public final class Processor extends AbstractProcessor {
 
+  /**
+   * Processor option {@code -Ajbock.startup=true}: generate code without lambdas or method references,
+   * which avoids invokedynamic bootstrap costs on a cold JVM.
+   */
+  static final String STARTUP_OPTION = "jbock.startup";
+
   private final boolean debug;
 
   public Processor() {
@@ -53,6 +64,15 @@ public final class Processor extends AbstractProcessor {
         .collect(toSet());
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return Collections.singleton(STARTUP_OPTION);
+  }
+
+  private boolean isStartupMode() {
+    return Boolean.parseBoolean(processingEnv.getOptions().get(STARTUP_OPTION));
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -90,10 +110,17 @@ public final class Processor extends AbstractProcessor {
       }
 
       checkOnlyOnePositionalList(parameters);
+      checkLazyTailIsParam(parameters);
       checkRankConsistentWithPosition(parameters);
+      if (sourceElement.getAnnotation(Command.class).runtime()) {
+        checkRuntimeMode(sourceElement, parameters);
+      }
 
-      Context context = new Context(sourceElement, generatedClass, optionType, parameters);
-      TypeSpec typeSpec = GeneratedClass.create(context).define();
+      List<Subcommand> subcommands = getSubcommands(tool, sourceElement, parameters);
+      Context context = new Context(sourceElement, generatedClass, optionType, parameters, isStartupMode(), subcommands);
+      TypeSpec typeSpec = context.isRuntimeMode() ?
+          DescriptorClass.create(context).define() :
+          GeneratedClass.create(context).define();
       write(sourceElement, context.generatedClass(), typeSpec);
     } catch (ValidationException e) {
       processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.about);
@@ -109,6 +136,111 @@ public final class Processor extends AbstractProcessor {
     });
   }
 
+  private static void checkLazyTailIsParam(List<Parameter> allParams) {
+    allParams.stream().filter(p -> p.isLazyTail() && !p.isPositional())
+        .findAny().ifPresent(p -> {
+      throw p.validationError("A Stream or Iterator can only be returned by a param.");
+    });
+  }
+
+  private static void checkRuntimeMode(TypeElement sourceElement, List<Parameter> allParams) {
+    if (sourceElement.getAnnotation(Command.class).atFiles()) {
+      throw ValidationException.create(sourceElement, "Response files are not supported in runtime mode.");
+    }
+    if (sourceElement.getAnnotation(Command.class).commandLine()) {
+      throw ValidationException.create(sourceElement, "Command lines are not supported in runtime mode.");
+    }
+    if (sourceElement.getAnnotation(Command.class).visitor()) {
+      throw ValidationException.create(sourceElement, "A visitor is not supported in runtime mode.");
+    }
+    if (sourceElement.getAnnotation(Command.class).defaultsFile()) {
+      throw ValidationException.create(sourceElement, "A defaults file is not supported in runtime mode.");
+    }
+    for (Parameter param : allParams) {
+      if (param.isLazyTail()) {
+        throw param.validationError("A Stream or Iterator is not supported in runtime mode.");
+      }
+      if (param.isLazy()) {
+        throw param.validationError("Lazy mapping is not supported in runtime mode.");
+      }
+      if (param.hasFallback()) {
+        throw param.validationError("A fallback is not supported in runtime mode.");
+      }
+      if (param.coercion().primitiveArray().isPresent()) {
+        throw param.validationError("A primitive array or stream is not supported in runtime mode.");
+      }
+      if (param.parallelThreshold().isPresent()) {
+        throw param.validationError("Parallel mapping is not supported in runtime mode.");
+      }
+      if (param.coercion().isAsync()) {
+        throw param.validationError("An asynchronous mapper is not supported in runtime mode.");
+      }
+    }
+  }
+
+  private List<Subcommand> getSubcommands(TypeTool tool, TypeElement sourceElement, List<Parameter> allParams) {
+    List<TypeElement> types = AnnotationUtil.getTypes(tool, sourceElement, Command.class, "subcommands");
+    if (types.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Command command = sourceElement.getAnnotation(Command.class);
+    if (command.runtime()) {
+      throw ValidationException.create(sourceElement, "Subcommands are not supported in runtime mode.");
+    }
+    allParams.stream().filter(Parameter::isPositional).findAny().ifPresent(p -> {
+      throw p.validationError("A command with subcommands can't have params.");
+    });
+    if (command.visitor()) {
+      throw ValidationException.create(sourceElement, "A command with subcommands can't have a visitor.");
+    }
+    Set<String> names = new HashSet<>();
+    List<Subcommand> result = new ArrayList<>(types.size());
+    for (TypeElement type : types) {
+      Command subcommand = type.getAnnotation(Command.class);
+      if (subcommand == null) {
+        throw subcommandError(sourceElement, type, "must be annotated with @" + Command.class.getSimpleName());
+      }
+      if (subcommand.runtime()) {
+        throw subcommandError(sourceElement, type, "can't use runtime mode");
+      }
+      if (!AnnotationUtil.getTypes(tool, type, Command.class, "subcommands").isEmpty()) {
+        throw subcommandError(sourceElement, type, "can't have subcommands");
+      }
+      if (command.helpDisabled() && !subcommand.helpDisabled()) {
+        throw subcommandError(sourceElement, type, "must have help disabled, like its parent command");
+      }
+      if (!type.getModifiers().contains(PUBLIC) && !getPackage(type).equals(getPackage(sourceElement))) {
+        throw subcommandError(sourceElement, type, "must be public, or in the same package");
+      }
+      String name = Context.programName(type);
+      if (!names.add(name)) {
+        throw ValidationException.create(sourceElement, "Duplicate subcommand name: " + name);
+      }
+      result.add(new Subcommand(name, ClassName.get(type), generatedClass(type), getDescription(type),
+          !subcommand.helpDisabled(), getSubcommandParams(tool, type), subcommand.defaultsFile()));
+    }
+    return result;
+  }
+
+  /**
+   * An invalid subcommand is reported when it is processed itself, and it has no parser then.
+   */
+  private List<Parameter> getSubcommandParams(TypeTool tool, TypeElement type) {
+    try {
+      return getParams(tool, type, generatedClass(type).nestedClass("Option"));
+    } catch (ValidationException e) {
+      return Collections.emptyList();
+    }
+  }
+
+  private static ValidationException subcommandError(TypeElement sourceElement, TypeElement subcommand, String message) {
+    return ValidationException.create(sourceElement, String.format("The subcommand %s %s.", subcommand.getSimpleName(), message));
+  }
+
+  private Name getPackage(TypeElement type) {
+    return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName();
+  }
+
   private static void checkRankConsistentWithPosition(List<Parameter> allParams) {
     int currentOrdinal = -1;
     for (Parameter param : allParams) {
@@ -149,13 +281,15 @@ public final class Processor extends AbstractProcessor {
     Methods methods = Methods.create(methodsIn(sourceElement.getEnclosedElements()).stream()
         .filter(method -> validateParameterMethod(method, tool))
         .collect(Collectors.toList()));
+    boolean lazy = sourceElement.getAnnotation(Command.class).lazy();
+    boolean startup = isStartupMode();
     List<Parameter> params = new ArrayList<>();
     for (int i = 0; i < methods.params().size(); i++) {
-      params.add(Parameter.createParam(tool, params, methods.params().get(i), i, getDescription(methods.params().get(i)), optionType));
+      params.add(Parameter.createParam(tool, params, methods.params().get(i), i, getDescription(methods.params().get(i)), optionType, lazy, startup));
     }
     boolean anyMnemonics = methods.options().stream().anyMatch(method -> method.getAnnotation(Option.class).mnemonic() != ' ');
     for (ExecutableElement option : methods.options()) {
-      params.add(Parameter.createOption(anyMnemonics, tool, params, option, getDescription(option), optionType));
+      params.add(Parameter.createOption(anyMnemonics, tool, params, option, getDescription(option), optionType, lazy, startup));
     }
     if (!sourceElement.getAnnotation(Command.class).helpDisabled()) {
       methods.options().forEach(this::checkHelp);
@@ -173,8 +307,8 @@ public final class Processor extends AbstractProcessor {
     }
   }
 
-  private String[] getDescription(ExecutableElement method) {
-    String docComment = processingEnv.getElementUtils().getDocComment(method);
+  private String[] getDescription(Element element) {
+    String docComment = processingEnv.getElementUtils().getDocComment(element);
     return docComment == null ? new String[0] : tokenizeJavadoc(docComment);
   }
 
@@ -0,0 +1,105 @@
+package net.jbock.compiler;
+
+import com.squareup.javapoet.ClassName;
+
+import java.util.List;
+
+/**
+ * A subcommand of the annotated class. It is a {@code @Command} in its own right,
+ * and has its own generated parser.
+ */
+public final class Subcommand {
+
+  // program name of the subcommand, which selects it
+  private final String name;
+
+  // the annotated class of the subcommand
+  private final ClassName sourceType;
+
+  // the generated parser of the subcommand
+  private final ClassName parserType;
+
+  // from the javadoc of the subcommand
+  private final String[] description;
+
+  // whether the subcommand's parser recognizes "--help"
+  private final boolean helpEnabled;
+
+  // the parameters of the subcommand, which decide what its parser can be configured with
+  private final List<Parameter> parameters;
+
+  // whether the subcommand's options can have defaults in a file
+  private final boolean defaultsFile;
+
+  Subcommand(String name, ClassName sourceType, ClassName parserType, String[] description, boolean helpEnabled,
+             List<Parameter> parameters, boolean defaultsFile) {
+    this.name = name;
+    this.sourceType = sourceType;
+    this.parserType = parserType;
+    this.description = description;
+    this.helpEnabled = helpEnabled;
+    this.parameters = parameters;
+    this.defaultsFile = defaultsFile;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public ClassName sourceType() {
+    return sourceType;
+  }
+
+  public ClassName parserType() {
+    return parserType;
+  }
+
+  public String[] description() {
+    return description;
+  }
+
+  public boolean isHelpEnabled() {
+    return helpEnabled;
+  }
+
+  /**
+   * Whether the subcommand's parser has {@code withEnvironment}.
+   */
+  public boolean hasFallbacks() {
+    return parameters.stream().anyMatch(Parameter::hasFallback);
+  }
+
+  /**
+   * Whether the subcommand's parser has {@code withDefaults}.
+   */
+  public boolean hasDefaults() {
+    return defaultsFile && parameters.stream().anyMatch(param -> !param.isPositional() && param.isDefaultable());
+  }
+
+  /**
+   * Whether the subcommand's parser has {@code withMapperTimeout}.
+   */
+  public boolean hasAsyncMappers() {
+    return parameters.stream().anyMatch(param -> param.coercion().isAsync());
+  }
+
+  public ClassName parseResultType() {
+    return parserType.nestedClass("ParseResult");
+  }
+
+  public ClassName parsingSuccessType() {
+    return parserType.nestedClass("ParsingSuccess");
+  }
+
+  public ClassName parsingFailedType() {
+    return parserType.nestedClass("ParsingFailed");
+  }
+
+  public ClassName errorCodeType() {
+    return parserType.nestedClass("ErrorCode");
+  }
+
+  public ClassName helpRequestedType() {
+    return parserType.nestedClass("HelpRequested");
+  }
+}
@@ -0,0 +1,140 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeName.BOOLEAN;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+import static net.jbock.compiler.Constants.STRING_ITERATOR;
+
+/**
+ * Defines the inner class AtFileExpander, which replaces each {@code @path} token
+ * with the tokens in that file.
+ * The file is memory-mapped, and its tokens are produced on demand by a Tokenizer.
+ * Response files are not expanded recursively,
+ * and tokens after the end-of-options marker {@code --} are not expanded.
+ */
+final class AtFileExpander {
+
+  static TypeSpec define(Context context, ClassName type) {
+    FieldSpec it = FieldSpec.builder(STRING_ITERATOR, "it", PRIVATE, FINAL).build();
+    FieldSpec quoting = FieldSpec.builder(context.quotingType(), "quoting", PRIVATE, FINAL).build();
+    FieldSpec file = FieldSpec.builder(context.tokenizerType(), "file", PRIVATE).build();
+    FieldSpec pending = FieldSpec.builder(STRING, "pending", PRIVATE).build();
+    FieldSpec literal = FieldSpec.builder(BOOLEAN, "literal", PRIVATE).build();
+    ParameterSpec itParam = builder(it.type, it.name).build();
+    ParameterSpec quotingParam = builder(quoting.type, quoting.name).build();
+    MethodSpec read = readMethod(context);
+    return TypeSpec.classBuilder(type)
+        .addSuperinterface(STRING_ITERATOR)
+        .addModifiers(PRIVATE, STATIC, FINAL)
+        .addFields(Arrays.asList(it, quoting, file, pending, literal))
+        .addMethod(MethodSpec.constructorBuilder()
+            .addParameters(Arrays.asList(itParam, quotingParam))
+            .addStatement("this.$N = $N", it, itParam)
+            .addStatement("this.$N = $N", quoting, quotingParam)
+            .build())
+        .addMethod(hasNextMethod(context, it, quoting, file, pending, literal, read))
+        .addMethod(nextMethod(file, pending, literal))
+        .addMethod(read)
+        .build();
+  }
+
+  /**
+   * Reads ahead until there is a token, skipping empty response files.
+   * An ordinary token is kept in {@code pending}.
+   */
+  private static MethodSpec hasNextMethod(Context context, FieldSpec it, FieldSpec quoting, FieldSpec file,
+                                          FieldSpec pending, FieldSpec literal, MethodSpec read) {
+    ParameterSpec token = builder(STRING, "token").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("if ($N != null)\n", pending).indent()
+        .addStatement("return true").unindent();
+    code.beginControlFlow("while ($N == null || !$N.hasNext())", file, file)
+        .add("if (!$N.hasNext())\n", it).indent()
+        .addStatement("return false").unindent()
+        .addStatement("$T $N = $N.next()", STRING, token, it)
+        .beginControlFlow("if ($N || $N.length() <= 1 || $N.charAt(0) != '@')", literal, token, token)
+        .addStatement("$N = $N", pending, token)
+        .addStatement("return true")
+        .endControlFlow()
+        .addStatement("$N = new $T($N($N.substring(1)), $N)", file, context.tokenizerType(), read, token, quoting)
+        .endControlFlow();
+    code.addStatement("return true");
+    return methodBuilder("hasNext")
+        .addAnnotation(Override.class)
+        .addModifiers(PUBLIC)
+        .returns(BOOLEAN)
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * After {@code --}, the remaining tokens are passed through unchanged.
+   */
+  private static MethodSpec nextMethod(FieldSpec file, FieldSpec pending, FieldSpec literal) {
+    ParameterSpec token = builder(STRING, "token").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("if (!hasNext())\n").indent()
+        .addStatement("throw new $T()", NoSuchElementException.class).unindent();
+    code.addStatement("$T $N", STRING, token);
+    code.beginControlFlow("if ($N != null)", pending)
+        .addStatement("$N = $N", token, pending)
+        .addStatement("$N = null", pending)
+        .nextControlFlow("else")
+        .addStatement("$N = $N.next()", token, file)
+        .endControlFlow();
+    code.add("if ($S.equals($N))\n", "--", token).indent()
+        .addStatement("$N = true", literal).unindent();
+    code.addStatement("return $N", token);
+    return methodBuilder("next")
+        .addAnnotation(Override.class)
+        .addModifiers(PUBLIC)
+        .returns(STRING)
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * The mapping stays valid after the channel is closed.
+   * It is decoded in chunks by the Tokenizer.
+   */
+  private static MethodSpec readMethod(Context context) {
+    ParameterSpec path = builder(STRING, "path").build();
+    ParameterSpec channel = builder(FileChannel.class, "channel").build();
+    ParameterSpec e = builder(IOException.class, "e").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("try ($T $N = $T.open($T.get($N), $T.READ))", FileChannel.class, channel,
+        FileChannel.class, Paths.class, path, StandardOpenOption.class)
+        .addStatement("return $N.map($T.MapMode.READ_ONLY, 0, $N.size())", channel, FileChannel.class, channel);
+    code.nextControlFlow("catch ($T $N)", IOException.class, e)
+        .addStatement("throw new $T($T.UNREADABLE_FILE, null, -1, $N, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), e, "Cannot read response file: %s", path)
+        .endControlFlow();
+    return methodBuilder("read")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameter(path)
+        .returns(MappedByteBuffer.class)
+        .addCode(code.build())
+        .build();
+  }
+}
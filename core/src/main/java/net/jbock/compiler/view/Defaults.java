@@ -0,0 +1,223 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeName.BOOLEAN;
+import static com.squareup.javapoet.TypeName.BYTE;
+import static com.squareup.javapoet.TypeName.INT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+
+/**
+ * Defines the inner class Defaults, which holds option values from a file of {@code name=value} lines.
+ * The file is memory-mapped. Reading it only finds the byte range of each value;
+ * a value is decoded when {@code ParserState.build()} asks for it,
+ * which happens only if the option is not on the command line.
+ * An instance is immutable, so it can be shared between parsers and threads.
+ */
+final class Defaults {
+
+  private static final TypeName INT_ARRAY = ArrayTypeName.of(INT);
+
+  static TypeSpec define(Context context, ClassName type) {
+    FieldSpec buffer = FieldSpec.builder(ByteBuffer.class, "buffer", PRIVATE, FINAL).build();
+    FieldSpec start = FieldSpec.builder(INT_ARRAY, "start", PRIVATE, FINAL).build();
+    FieldSpec end = FieldSpec.builder(INT_ARRAY, "end", PRIVATE, FINAL).build();
+    MethodSpec skipBlank = skipBlankMethod();
+    MethodSpec trimEnd = trimEndMethod();
+    MethodSpec decode = decodeMethod();
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder().addModifiers(PRIVATE);
+    for (FieldSpec field : Arrays.asList(buffer, start, end)) {
+      ParameterSpec param = builder(field.type, field.name).build();
+      constructor.addParameter(param).addStatement("this.$N = $N", field, param);
+    }
+    return TypeSpec.classBuilder(type)
+        .addModifiers(PUBLIC, STATIC, FINAL)
+        .addJavadoc("Option values from a file of {@code name=value} lines.\n" +
+            "Comment lines start with {@code #}, {@code !} or {@code ;}, and section headers are ignored.\n")
+        .addFields(Arrays.asList(buffer, start, end))
+        .addMethod(constructor.build())
+        .addMethod(readMethod(context, type, skipBlank, trimEnd, decode))
+        .addMethod(getMethod(context, buffer, start, end, decode))
+        .addMethod(skipBlank)
+        .addMethod(trimEnd)
+        .addMethod(decode)
+        .addMethod(isCommentMethod())
+        .addMethod(isBlankMethod())
+        .build();
+  }
+
+  /**
+   * The keys are long option names. Unknown keys are ignored. If a key is repeated, the last value wins.
+   */
+  private static MethodSpec readMethod(Context context, ClassName type, MethodSpec skipBlank,
+                                       MethodSpec trimEnd, MethodSpec decode) {
+    ParameterSpec path = builder(Path.class, "path").build();
+    ParameterSpec channel = builder(FileChannel.class, "channel").build();
+    ParameterSpec buffer = builder(ByteBuffer.class, "buffer").build();
+    ParameterSpec start = builder(INT_ARRAY, "start").build();
+    ParameterSpec end = builder(INT_ARRAY, "end").build();
+    ParameterSpec limit = builder(INT, "limit").build();
+    ParameterSpec lineStart = builder(INT, "lineStart").build();
+    ParameterSpec lineEnd = builder(INT, "lineEnd").build();
+    ParameterSpec next = builder(INT, "next").build();
+    ParameterSpec keyStart = builder(INT, "keyStart").build();
+    ParameterSpec separator = builder(INT, "separator").build();
+    ParameterSpec key = builder(STRING, "key").build();
+    ParameterSpec option = builder(context.optionType(), "option").build();
+    ParameterSpec valueStart = builder(INT, "valueStart").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N", ByteBuffer.class, buffer);
+    code.beginControlFlow("try ($T $N = $T.open($N, $T.READ))", FileChannel.class, channel,
+        FileChannel.class, path, StandardOpenOption.class)
+        .addStatement("$N = $N.map($T.MapMode.READ_ONLY, 0, $N.size())", buffer, channel, FileChannel.class, channel)
+        .endControlFlow();
+    code.addStatement("$T $N = new $T[$T.values().length]", start.type, start, INT, context.optionType());
+    code.addStatement("$T $N = new $T[$N.length]", end.type, end, INT, start);
+    code.addStatement("$T.fill($N, -1)", Arrays.class, start);
+    code.addStatement("$T $N = $N.limit()", INT, limit, buffer);
+    code.addStatement("$T $N = 0", INT, lineStart);
+    code.beginControlFlow("while ($N < $N)", lineStart, limit);
+    code.addStatement("$T $N = $N", INT, lineEnd, lineStart);
+    code.add("while ($N < $N && $N.get($N) != '\\n')\n", lineEnd, limit, buffer, lineEnd).indent()
+        .addStatement("$N++", lineEnd).unindent();
+    code.addStatement("$T $N = $N + 1", INT, next, lineEnd);
+    code.addStatement("$T $N = $N($N, $N, $N)", INT, keyStart, skipBlank, buffer, lineStart, lineEnd);
+    code.addStatement("$T $N = $N", INT, separator, keyStart);
+    code.add("while ($N < $N && $N.get($N) != '=' && $N.get($N) != ':')\n",
+        separator, lineEnd, buffer, separator, buffer, separator).indent()
+        .addStatement("$N++", separator).unindent();
+    code.beginControlFlow("if ($N < $N && !isComment($N.get($N)))", separator, lineEnd, buffer, keyStart)
+        .addStatement("$T $N = $S.concat($N($N, $N, $N($N, $N, $N)))", STRING, key, "--", decode, buffer, keyStart,
+            trimEnd, buffer, keyStart, separator)
+        .addStatement("$T $N = $T.$N($N, $N.length())", option.type, option, context.optionType(),
+            "forLongName", key, key)
+        .beginControlFlow("if ($N != null)", option)
+        .addStatement("$T $N = $N($N, $N + 1, $N)", INT, valueStart, skipBlank, buffer, separator, lineEnd)
+        .addStatement("$N[$N.ordinal()] = $N", start, option, valueStart)
+        .addStatement("$N[$N.ordinal()] = $N($N, $N, $N)", end, option, trimEnd, buffer, valueStart, lineEnd)
+        .endControlFlow()
+        .endControlFlow();
+    code.addStatement("$N = $N", lineStart, next);
+    code.endControlFlow();
+    code.addStatement("return new $T($N, $N, $N)", type, buffer, start, end);
+    return methodBuilder("read")
+        .addJavadoc("Maps the file, and finds the values of the options.\n" +
+            "The result can be passed to any number of parsers.\n")
+        .addModifiers(PUBLIC, STATIC)
+        .addParameter(path)
+        .addException(IOException.class)
+        .returns(type)
+        .addCode(code.build())
+        .build();
+  }
+
+  private static MethodSpec getMethod(Context context, FieldSpec buffer, FieldSpec start, FieldSpec end,
+                                      MethodSpec decode) {
+    ParameterSpec option = builder(context.optionType(), "option").build();
+    ParameterSpec i = builder(INT, "i").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $N.ordinal()", INT, i, option);
+    code.add("if ($N[$N] < 0)\n", start, i).indent()
+        .addStatement("return null").unindent();
+    code.addStatement("return $N($N, $N[$N], $N[$N])", decode, buffer, start, i, end, i);
+    return methodBuilder("get")
+        .addParameter(option)
+        .returns(STRING)
+        .addCode(code.build())
+        .build();
+  }
+
+  private static MethodSpec isCommentMethod() {
+    ParameterSpec b = builder(BYTE, "b").build();
+    return methodBuilder("isComment")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameter(b)
+        .returns(BOOLEAN)
+        .addStatement("return $N == '#' || $N == '!' || $N == ';' || $N == '['", b, b, b, b)
+        .build();
+  }
+
+  private static MethodSpec skipBlankMethod() {
+    ParameterSpec buffer = builder(ByteBuffer.class, "buffer").build();
+    ParameterSpec from = builder(INT, "from").build();
+    ParameterSpec to = builder(INT, "to").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("while ($N < $N && isBlank($N.get($N)))\n", from, to, buffer, from).indent()
+        .addStatement("$N++", from).unindent();
+    code.addStatement("return $N", from);
+    return methodBuilder("skipBlank")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameters(Arrays.asList(buffer, from, to))
+        .returns(INT)
+        .addCode(code.build())
+        .build();
+  }
+
+  private static MethodSpec trimEndMethod() {
+    ParameterSpec buffer = builder(ByteBuffer.class, "buffer").build();
+    ParameterSpec from = builder(INT, "from").build();
+    ParameterSpec to = builder(INT, "to").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("while ($N > $N && isBlank($N.get($N - 1)))\n", to, from, buffer, to).indent()
+        .addStatement("$N--", to).unindent();
+    code.addStatement("return $N", to);
+    return methodBuilder("trimEnd")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameters(Arrays.asList(buffer, from, to))
+        .returns(INT)
+        .addCode(code.build())
+        .build();
+  }
+
+  // a carriage return is blank, so that CRLF line endings work
+  private static MethodSpec isBlankMethod() {
+    ParameterSpec b = builder(BYTE, "b").build();
+    return methodBuilder("isBlank")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameter(b)
+        .returns(BOOLEAN)
+        .addStatement("return $N == ' ' || $N == '\\t' || $N == '\\r'", b, b, b)
+        .build();
+  }
+
+  /**
+   * Decodes the region {@code [from, to)} of a duplicate, so the shared buffer's position is not touched.
+   */
+  private static MethodSpec decodeMethod() {
+    ParameterSpec buffer = builder(ByteBuffer.class, "buffer").build();
+    ParameterSpec from = builder(INT, "from").build();
+    ParameterSpec to = builder(INT, "to").build();
+    ParameterSpec region = builder(ByteBuffer.class, "region").build();
+    return methodBuilder("decode")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameters(Arrays.asList(buffer, from, to))
+        .returns(STRING)
+        .addStatement("$T $N = $N.duplicate()", ByteBuffer.class, region, buffer)
+        .addStatement("$N.limit($N)", region, to)
+        .addStatement("$N.position($N)", region, from)
+        .addStatement("return $T.UTF_8.decode($N).toString()", StandardCharsets.class, region)
+        .build();
+  }
+}
@@ -0,0 +1,192 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+import net.jbock.coerce.Coercion;
+import net.jbock.compiler.Context;
+import net.jbock.compiler.IndyFree;
+import net.jbock.compiler.Parameter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Defines the generated class in runtime mode.
+ * The parse engine, the help renderer and the result types are shared, in the {@code jbock-runtime} artifact.
+ * What remains is a constant that describes the parameters, and the implementation of the annotated class.
+ *
+ * @see GeneratedClass
+ */
+public final class DescriptorClass {
+
+  private static final String RUNTIME_PACKAGE = "net.jbock.runtime";
+
+  private static final ClassName COMMAND_PARSER = ClassName.get(RUNTIME_PACKAGE, "CommandParser");
+
+  private static final ClassName COMMAND_DESCRIPTOR = ClassName.get(RUNTIME_PACKAGE, "CommandDescriptor");
+
+  private static final ClassName PARAMETER_DESCRIPTOR = ClassName.get(RUNTIME_PACKAGE, "ParameterDescriptor");
+
+  private static final ClassName KIND = PARAMETER_DESCRIPTOR.nestedClass("Kind");
+
+  private static final TypeName OBJECT_ARRAY = ArrayTypeName.of(Object.class);
+
+  private static final TypeName WILDCARD_OPTIONAL = ParameterizedTypeName.get(ClassName.get(Optional.class),
+      WildcardTypeName.subtypeOf(Object.class));
+
+  // primitive optional -> boxed value type
+  private static final Map<TypeName, TypeName> PRIMITIVE_OPTIONALS = new HashMap<>();
+
+  static {
+    PRIMITIVE_OPTIONALS.put(TypeName.get(OptionalInt.class), TypeName.get(Integer.class));
+    PRIMITIVE_OPTIONALS.put(TypeName.get(OptionalLong.class), TypeName.get(Long.class));
+    PRIMITIVE_OPTIONALS.put(TypeName.get(OptionalDouble.class), TypeName.get(Double.class));
+  }
+
+  private final Context context;
+
+  private final FieldSpec descriptor;
+
+  private DescriptorClass(Context context, FieldSpec descriptor) {
+    this.context = context;
+    this.descriptor = descriptor;
+  }
+
+  public static DescriptorClass create(Context context) {
+    FieldSpec descriptor = FieldSpec.builder(COMMAND_DESCRIPTOR, "DESCRIPTOR", PRIVATE, STATIC, FINAL).build();
+    return new DescriptorClass(context, descriptor);
+  }
+
+  public TypeSpec define() {
+    return TypeSpec.classBuilder(context.generatedClass())
+        .superclass(ParameterizedTypeName.get(COMMAND_PARSER, context.sourceType()))
+        .addField(descriptor.toBuilder().initializer(descriptorExpr()).build())
+        .addMethod(constructor())
+        .addType(defineImpl())
+        .addModifiers(FINAL)
+        .addModifiers(context.getAccessModifiers())
+        .addJavadoc(GeneratedClass.javadoc())
+        .build();
+  }
+
+  private MethodSpec constructor() {
+    CodeBlock factory = context.isStartupMode() ?
+        IndyFree.functionOf(OBJECT_ARRAY, context.sourceType(), "values",
+            values -> CodeBlock.of("new $T($L)", context.implType(), values)) :
+        CodeBlock.of("$T::new", context.implType());
+    return MethodSpec.constructorBuilder()
+        .addStatement("super($N, $L)", descriptor, factory)
+        .addModifiers(context.getAccessModifiers())
+        .build();
+  }
+
+  private CodeBlock descriptorExpr() {
+    HelpRenderer renderer = new HelpRenderer(context);
+    List<CodeBlock> args = new ArrayList<>();
+    args.add(CodeBlock.of("$S", renderer.synopsis()));
+    args.add(CodeBlock.of("$L", context.isHelpParameterEnabled()));
+    for (Parameter param : context.parameters()) {
+      args.add(parameterDescriptorExpr(param));
+    }
+    return CodeBlock.builder()
+        .add("new $T(", COMMAND_DESCRIPTOR).indent()
+        .add(CodeBlock.join(args, ",\n"))
+        .add(")").unindent()
+        .build();
+  }
+
+  private CodeBlock parameterDescriptorExpr(Parameter param) {
+    CodeBlock bundleKey = param.bundleKey().map(key -> CodeBlock.of("$S", key)).orElse(CodeBlock.of("null"));
+    String description = String.join(" ", param.description());
+    CodeBlock names = param.names().stream().map(name -> CodeBlock.of("$S", name)).collect(CodeBlock.joining(", "));
+    if (param.isFlag()) {
+      return CodeBlock.of("$T.flag($S, $L, $S, $S, $L)", PARAMETER_DESCRIPTOR, param.enumConstant(),
+          bundleKey, param.sample(), description, names);
+    }
+    Coercion coercion = param.coercion();
+    CodeBlock kind = CodeBlock.of("$T.$L", KIND, param.isRequired() ? "REQUIRED" : param.isOptional() ? "OPTIONAL" : "REPEATABLE");
+    CodeBlock mapper = coercion.mapExpr();
+    CodeBlock collector = coercion.collectExpr().orElse(CodeBlock.of("null"));
+    if (param.isPositional()) {
+      return CodeBlock.of("$T.param($S, $L, $L, $S, $S, $L, $L)", PARAMETER_DESCRIPTOR, param.enumConstant(), kind,
+          bundleKey, param.sample(), description, mapper, collector);
+    }
+    return CodeBlock.of("$T.option($S, $L, $L, $S, $S, $L, $L, $L)", PARAMETER_DESCRIPTOR, param.enumConstant(), kind,
+        bundleKey, param.sample(), description, mapper, collector, names);
+  }
+
+  /**
+   * The values are in descriptor order, which is the order of {@link Context#parameters()}.
+   */
+  private TypeSpec defineImpl() {
+    NameAllocator names = new NameAllocator();
+    for (Parameter param : context.parameters()) {
+      names.newName(param.coercion().constructorParam().name);
+    }
+    ParameterSpec values = ParameterSpec.builder(OBJECT_ARRAY, names.newName("values")).build();
+    NameAllocator fieldNames = new NameAllocator();
+    TypeSpec.Builder spec = TypeSpec.classBuilder(context.implType())
+        .superclass(context.sourceType())
+        .addModifiers(PRIVATE, STATIC, FINAL);
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder().addParameter(values);
+    boolean unchecked = false;
+    List<Parameter> parameters = context.parameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      Parameter param = parameters.get(i);
+      FieldSpec field = FieldSpec.builder(param.returnType(), fieldNames.newName(param.paramName().camel()), PRIVATE, FINAL).build();
+      ParameterSpec local = param.coercion().constructorParam();
+      CodeBlock value = CodeBlock.of("$N[$L]", values, i);
+      TypeName primitiveOptional = PRIMITIVE_OPTIONALS.get(local.type);
+      if (primitiveOptional != null) {
+        // the engine always returns java.util.Optional
+        String raw = names.newName(local.name + "Raw");
+        constructor.addStatement("$T $N = ($T) $L", WILDCARD_OPTIONAL, raw, WILDCARD_OPTIONAL, value);
+        value = CodeBlock.of("$N.isPresent() ? $T.of(($T) $N.get()) : $T.empty()", raw, local.type,
+            primitiveOptional, raw, local.type);
+      } else {
+        TypeName castType = local.type.isPrimitive() ? local.type.box() : local.type;
+        unchecked |= castType instanceof ParameterizedTypeName;
+        value = CodeBlock.of("($T) $L", castType, value);
+      }
+      CodeBlock extractExpr = param.coercion().extractExpr();
+      if (extractExpr.toString().equals(local.name)) {
+        constructor.addStatement("this.$N = $L", field, value);
+      } else {
+        constructor.addStatement("$T $N = $L", local.type, local, value);
+        constructor.addStatement("this.$N = $L", field, extractExpr);
+      }
+      spec.addField(field);
+      spec.addMethod(MethodSpec.methodBuilder(param.methodName())
+          .returns(param.returnType())
+          .addModifiers(param.getAccessModifiers())
+          .addStatement("return $N", field)
+          .build());
+    }
+    if (unchecked) {
+      constructor.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+          .addMember("value", "$S", "unchecked")
+          .build());
+    }
+    return spec.addMethod(constructor.build()).build();
+  }
+}
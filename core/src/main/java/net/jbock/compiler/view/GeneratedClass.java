@@ -1,38 +1,53 @@
 package net.jbock.compiler.view;
 
-import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import net.jbock.compiler.Constants;
 import net.jbock.compiler.Context;
+import net.jbock.compiler.IndyFree;
 import net.jbock.compiler.Parameter;
+import net.jbock.compiler.Subcommand;
 
 import javax.lang.model.element.Modifier;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.StringJoiner;
 import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.squareup.javapoet.MethodSpec.methodBuilder;
 import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeName.BOOLEAN;
 import static com.squareup.javapoet.TypeName.INT;
+import static com.squareup.javapoet.TypeName.LONG;
 import static java.util.Arrays.asList;
 import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
-import static net.jbock.coerce.Util.addBreaks;
+import static javax.lang.model.element.Modifier.VOLATILE;
 import static net.jbock.compiler.Constants.ENTRY_STRING_STRING;
 import static net.jbock.compiler.Constants.STRING;
 import static net.jbock.compiler.Constants.STRING_ARRAY;
@@ -49,158 +64,444 @@ public final class GeneratedClass {
 
   private static final String PROJECT_URL = "https://github.com/h908714124/jbock";
 
+  private static final String PARSE_SUBCOMMAND = "parseSubcommand";
+
   private final Context context;
   private final OptionEnum optionEnum;
   private final ParserState parserState;
   private final ParseResult parseResult;
 
-  private final FieldSpec out = FieldSpec.builder(PrintStream.class, "out", PRIVATE)
-      .initializer("$T.out", System.class).build();
+  private final FieldSpec out = FieldSpec.builder(PrintStream.class, "out", PRIVATE, FINAL).build();
+
+  private final FieldSpec err = FieldSpec.builder(PrintStream.class, "err", PRIVATE, FINAL).build();
 
-  private final FieldSpec err = FieldSpec.builder(PrintStream.class, "err", PRIVATE)
-      .initializer("$T.err", System.class).build();
+  private final FieldSpec maxLineWidth = FieldSpec.builder(INT, "maxLineWidth", PRIVATE, FINAL).build();
 
-  private final FieldSpec maxLineWidth = FieldSpec.builder(INT, "maxLineWidth", PRIVATE)
-      .initializer("$L", DEFAULT_WRAP_AFTER).build();
+  private final FieldSpec messages = FieldSpec.builder(STRING_TO_STRING_MAP, "messages", PRIVATE, FINAL).build();
 
-  private final FieldSpec messages = FieldSpec.builder(STRING_TO_STRING_MAP, "messages", PRIVATE)
-      .initializer("$T.emptyMap()", Collections.class).build();
+  // nullable; keys are looked up only while rendering help
+  private final FieldSpec bundle = FieldSpec.builder(ResourceBundle.class, "bundle", PRIVATE, FINAL).build();
 
   private final FieldSpec runBeforeExit;
 
+  private final FieldSpec quoting;
+
+  private final Tokenizer tokenizer;
+
+  // rendered on demand
+  private final FieldSpec helpText = FieldSpec.builder(STRING, "helpText", PRIVATE, VOLATILE).build();
+
+  // values of env variables and system properties, read when the parser is created
+  private final FieldSpec fallbacks = FieldSpec.builder(STRING_ARRAY, "fallbacks", PRIVATE, FINAL).build();
+
+  // values from a file, or null
+  private final Optional<FieldSpec> defaults;
+
+  // nanoseconds, or 0 to wait without limit
+  private final FieldSpec mapperTimeout = FieldSpec.builder(LONG, "mapperTimeout", PRIVATE, FINAL).build();
+
+  // passed on to the parser of a subcommand
+  private final FieldSpec environment = FieldSpec.builder(STRING_TO_STRING_MAP, "environment", PRIVATE, FINAL).build();
+
+  // nullable; passed on to the parser of a subcommand, which reads the file when it is created
+  private final FieldSpec defaultsPath = FieldSpec.builder(Path.class, "defaultsPath", PRIVATE, FINAL).build();
+
+  // holds the help text for the default configuration
+  private final ClassName defaultHelp;
+
+  // the idle parser state of each thread, reset after each parse
+  private final FieldSpec states;
+
+  private final MethodSpec appendWrapMethod;
+
+  private final MethodSpec messageMethod;
+
+  private final MethodSpec renderHelpMethod;
+
+  private final MethodSpec helpTextMethod;
+
   private GeneratedClass(
       Context context,
       OptionEnum optionEnum,
       ParserState parserState,
       ParseResult parseResult,
-      FieldSpec runBeforeExit) {
+      FieldSpec runBeforeExit,
+      Tokenizer tokenizer) {
     this.context = context;
     this.optionEnum = optionEnum;
     this.parserState = parserState;
     this.parseResult = parseResult;
     this.runBeforeExit = runBeforeExit;
+    this.quoting = FieldSpec.builder(context.quotingType(), "quoting", PRIVATE, FINAL).build();
+    this.tokenizer = tokenizer;
+    this.defaultHelp = context.generatedClass().nestedClass("DefaultHelp");
+    this.states = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ThreadLocal.class), context.parserStateType()),
+        "states", PRIVATE, FINAL).initializer("new $T<>()", ThreadLocal.class).build();
+    this.appendWrapMethod = appendWrapMethod(maxLineWidth);
+    this.messageMethod = messageMethod(context, messages, bundle);
+    this.renderHelpMethod = renderHelpMethod();
+    this.helpTextMethod = helpTextMethod(helpText, defaultHelp, maxLineWidth, messages, bundle, renderHelpMethod);
+    this.defaults = context.defaultsType().map(type -> FieldSpec.builder(type, "defaults", PRIVATE, FINAL).build());
   }
 
   public static GeneratedClass create(Context context) {
     OptionEnum optionEnum = OptionEnum.create(context);
     ParserState state = ParserState.create(context, optionEnum);
     ParseResult parseResult = new ParseResult(context);
-    FieldSpec runBeforeExit = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Consumer.class), context.parseResultType()), "runBeforeExit").addModifiers(PRIVATE)
-        .initializer("r -> {}")
+    FieldSpec runBeforeExit = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Consumer.class), context.parseResultType()), "runBeforeExit").addModifiers(PRIVATE, FINAL)
         .build();
-    return new GeneratedClass(context, optionEnum, state, parseResult, runBeforeExit);
+    return new GeneratedClass(context, optionEnum, state, parseResult, runBeforeExit, new Tokenizer(context));
   }
 
   public TypeSpec define() {
     Modifier[] accessModifiers = context.getAccessModifiers();
     TypeSpec.Builder spec = TypeSpec.classBuilder(context.generatedClass())
-        .addMethod(parseMethod(accessModifiers))
-        .addMethod(maxLineWidthMethod(accessModifiers))
-        .addMethod(withMessagesMethod(accessModifiers))
+        .addMethod(defaultConstructor(accessModifiers))
+        .addMethod(privateConstructor())
+        .addMethod(parseMethod(accessModifiers));
+    if (context.isCommandLine()) {
+      spec.addMethod(parseCommandLineMethod(accessModifiers));
+    }
+    spec.addMethod(parseIteratorMethod(accessModifiers))
+        .addMethod(parseStreamMethod(accessModifiers))
+        .addMethod(parseAllMethod(accessModifiers));
+    if (context.isCommandLine()) {
+      spec.addMethod(parseAllPathMethod(accessModifiers));
+    }
+    context.visitorType().ifPresent(type -> spec.addMethod(parseVisitorMethod(type, accessModifiers)));
+    spec.addMethod(maxLineWidthMethod(accessModifiers));
+    if (context.hasTokenizer()) {
+      spec.addMethod(withQuotingMethod(accessModifiers));
+    }
+    spec.addMethod(withMessagesMethod(accessModifiers))
         .addMethod(withResourceBundleMethod(accessModifiers))
         .addMethod(runBeforeExitMethod(accessModifiers))
         .addMethod(withErrorStreamMethod(accessModifiers));
+    if (context.hasFallbacks() || anySubcommand(Subcommand::hasFallbacks)) {
+      spec.addMethod(withEnvironmentMethod(accessModifiers));
+    }
+    if (defaults.isPresent() || anySubcommand(Subcommand::hasDefaults)) {
+      spec.addMethod(withDefaultsPathMethod(accessModifiers));
+    }
+    defaults.ifPresent(field -> spec.addMethod(withDefaultsMethod(field, accessModifiers)));
+    if (hasMapperTimeout()) {
+      spec.addMethod(withMapperTimeoutMethod(accessModifiers));
+    }
     if (context.isHelpParameterEnabled()) {
       spec.addMethod(withHelpStreamMethod(accessModifiers));
     }
     spec.addMethod(parseOrExitMethod(accessModifiers))
         .addMethod(buildRowsMethod(accessModifiers))
-        .addMethod(printOnlineHelpMethod(accessModifiers))
-        .addMethod(printWrapMethod(accessModifiers))
+        .addMethod(printOnlineHelpMethod(accessModifiers));
+    if (context.hasSubcommands() && context.isHelpParameterEnabled()) {
+      spec.addMethod(printSubcommandHelpMethod(accessModifiers));
+    }
+    spec.addMethod(printWrapMethod(accessModifiers))
         .addMethod(synopsisMethod(accessModifiers));
 
     // PRIVATE Methods
-    spec.addMethod(parseMethodOverloadIterator())
-        .addMethod(readOptionArgumentMethod());
-
-    if (context.isHelpParameterEnabled()) {
-      spec.addField(out);
+    spec.addMethod(parseTokensMethod());
+    if (context.hasSubcommands()) {
+      spec.addMethod(parseSubcommandMethod());
+      for (Subcommand subcommand : context.subcommands()) {
+        spec.addMethod(errorCodeMethod(subcommand));
+      }
+    }
+    if (context.hasFallbacks()) {
+      spec.addMethod(readFallbacksMethod());
+    }
+    spec
+        .addMethod(helpTextMethod)
+        .addMethod(renderHelpMethod)
+        .addMethod(messageMethod)
+        .addMethod(appendWrapMethod);
+    if (context.isHelpParameterEnabled() || lazyTail().isPresent()) {
+      spec.addMethod(prependMethod());
     }
-    spec.addFields(Arrays.asList(err, maxLineWidth, runBeforeExit, messages));
 
-    spec.addType(parserState.define())
-        .addType(Impl.define(context))
+    spec.addFields(configFields())
+        .addField(helpText)
+        .addField(states);
+    spec.addType(defaultHelpType());
+
+    spec.addType(parserState.define());
+    if (context.hasTokenizer()) {
+      spec.addType(tokenizer.define())
+          .addType(tokenizer.defineQuoting());
+    }
+    spec.addType(Impl.define(context))
         .addType(optionEnum.define())
-        .addTypes(OptionParser.define(context))
-        .addTypes(ParamParser.define(context))
-        .addTypes(parseResult.defineResultTypes());
+        .addTypes(parseResult.defineResultTypes())
+        .addType(ParsingException.define(context))
+        .addType(ParsingException.defineErrorCode(context));
+    context.mappingFailedType()
+        .map(type -> MappingFailed.define(context, type))
+        .ifPresent(spec::addType);
+    context.atFileExpanderType()
+        .map(type -> AtFileExpander.define(context, type))
+        .ifPresent(spec::addType);
+    context.defaultsType()
+        .map(type -> Defaults.define(context, type))
+        .ifPresent(spec::addType);
+    context.visitorType().ifPresent(type -> spec.addType(Visitor.define(context, type))
+        .addType(Visitor.defineValue(context))
+        .addType(new VisitState(context, optionEnum, type).define()));
 
     return spec.addModifiers(FINAL)
         .addModifiers(accessModifiers)
         .addJavadoc(javadoc()).build();
   }
 
+  /**
+   * The configuration is immutable, so that a single parser instance
+   * can be shared between threads. Each wither returns a modified copy.
+   */
+  private List<FieldSpec> configFields() {
+    List<FieldSpec> fields = new ArrayList<>();
+    if (context.isHelpParameterEnabled()) {
+      fields.add(out);
+    }
+    fields.addAll(Arrays.asList(err, maxLineWidth, runBeforeExit, messages, bundle));
+    if (context.hasTokenizer()) {
+      fields.add(quoting);
+    }
+    if (context.hasFallbacks()) {
+      fields.add(fallbacks);
+    }
+    defaults.ifPresent(fields::add);
+    if (hasMapperTimeout()) {
+      fields.add(mapperTimeout);
+    }
+    if (anySubcommand(Subcommand::hasFallbacks)) {
+      fields.add(environment);
+    }
+    if (anySubcommand(Subcommand::hasDefaults)) {
+      fields.add(defaultsPath);
+    }
+    return fields;
+  }
+
+  private boolean anySubcommand(Predicate<Subcommand> predicate) {
+    return context.subcommands().stream().anyMatch(predicate);
+  }
+
+  private boolean hasMapperTimeout() {
+    return context.hasAsyncMappers() || anySubcommand(Subcommand::hasAsyncMappers);
+  }
+
+  private MethodSpec defaultConstructor(Modifier[] accessModifiers) {
+    Map<FieldSpec, CodeBlock> defaults = new HashMap<>();
+    defaults.put(out, CodeBlock.of("$T.out", System.class));
+    defaults.put(err, CodeBlock.of("$T.err", System.class));
+    defaults.put(maxLineWidth, CodeBlock.of("$L", DEFAULT_WRAP_AFTER));
+    defaults.put(runBeforeExit, context.isStartupMode() ?
+        IndyFree.noopConsumer(context.parseResultType(), "r") :
+        CodeBlock.of("r -> {}"));
+    defaults.put(messages, CodeBlock.of("$T.emptyMap()", Collections.class));
+    defaults.put(bundle, CodeBlock.of("null"));
+    defaults.put(quoting, CodeBlock.of("$T.POSIX", context.quotingType()));
+    defaults.put(fallbacks, CodeBlock.of("readFallbacks($T.getenv())", System.class));
+    this.defaults.ifPresent(field -> defaults.put(field, CodeBlock.of("null")));
+    defaults.put(mapperTimeout, CodeBlock.of("0L"));
+    defaults.put(environment, CodeBlock.of("$T.getenv()", System.class));
+    defaults.put(defaultsPath, CodeBlock.of("null"));
+    CodeBlock args = configFields().stream()
+        .map(defaults::get)
+        .collect(CodeBlock.joining(", "));
+    return MethodSpec.constructorBuilder()
+        .addStatement("this($L)", args)
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  private MethodSpec privateConstructor() {
+    MethodSpec.Builder spec = MethodSpec.constructorBuilder();
+    for (FieldSpec field : configFields()) {
+      ParameterSpec param = builder(field.type, field.name).build();
+      spec.addParameter(param);
+      spec.addStatement("this.$N = $N", field, param);
+    }
+    return spec.addModifiers(PRIVATE).build();
+  }
+
+  private CodeBlock copyWith(FieldSpec field, CodeBlock value) {
+    return copyWith(Collections.singletonMap(field, value));
+  }
+
+  private CodeBlock copyWith(Map<FieldSpec, CodeBlock> values) {
+    CodeBlock args = configFields().stream()
+        .map(f -> values.getOrDefault(f, CodeBlock.of("$N", f)))
+        .collect(CodeBlock.joining(", "));
+    return CodeBlock.of("return new $T($L)", context.generatedClass(), args);
+  }
+
   private MethodSpec buildRowsMethod(Modifier[] accessModifiers) {
     ParameterSpec rows = builder(Constants.listOf(ENTRY_STRING_STRING), "rows").build();
     ParameterSpec optionParam = builder(context.optionType(), "option").build();
-    ParameterSpec message = builder(STRING, "message").build();
-    CodeBlock.Builder builder = CodeBlock.builder();
-    builder.add("return $T.stream($T.values()).map($N -> {\n", Arrays.class, context.optionType(), optionParam).indent()
-        .addStatement("$T $N = $N.getOrDefault($N.bundleKey, $T.join($S, $N.description)).trim()",
-            STRING, message, messages, optionParam, String.class, " ", optionParam)
-        .addStatement("return new $T($N.shape, $N)", ParameterizedTypeName.get(ClassName.get(SimpleImmutableEntry.class), STRING, STRING),
-            optionParam, message)
-        .unindent()
-        .add("}).collect($T.toList());\n", Collectors.class);
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = new $T<>($T.values().length)", rows.type, rows, ArrayList.class, context.optionType());
+    code.add("for ($T $N : $T.values())\n", context.optionType(), optionParam, context.optionType()).indent()
+        .addStatement("$N.add(new $T<>($N.shape, $N($N)))", rows, SimpleImmutableEntry.class, optionParam, messageMethod, optionParam)
+        .unindent();
+    code.addStatement("return $N", rows);
     return methodBuilder("buildRows").returns(rows.type)
-        .addCode(builder.build())
+        .addCode(code.build())
         .addModifiers(accessModifiers)
         .build();
   }
 
+  /**
+   * The bundle is never enumerated. Only the bundle keys of the options are looked up.
+   */
+  private static MethodSpec messageMethod(Context context, FieldSpec messages, FieldSpec bundle) {
+    ParameterSpec optionParam = builder(context.optionType(), "option").build();
+    ParameterSpec message = builder(STRING, "message").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $N.get($N.bundleKey)", STRING, message, messages, optionParam);
+    code.beginControlFlow("if ($N == null && $N != null && $N.bundleKey != null)", message, bundle, optionParam)
+        .beginControlFlow("try")
+        .addStatement("$N = $N.getString($N.bundleKey)", message, bundle, optionParam)
+        .nextControlFlow("catch ($T e)", MissingResourceException.class)
+        .add("// fall back to the description\n")
+        .endControlFlow()
+        .endControlFlow();
+    code.add("if ($N == null)\n", message).indent()
+        .addStatement("$N = $T.join($S, $N.description)", message, String.class, " ", optionParam).unindent();
+    code.addStatement("return $N.trim()", message);
+    return methodBuilder("message")
+        .addParameter(optionParam)
+        .returns(STRING)
+        .addCode(code.build())
+        .addModifiers(PRIVATE)
+        .build();
+  }
+
+  /**
+   * The help text is written in a single call.
+   */
   private MethodSpec printOnlineHelpMethod(Modifier[] accessModifiers) {
-    List<Parameter> params = context.parameters();
-    // 2 space padding on both sides
-    int totalPadding = 4;
-    int width = params.stream().map(Parameter::sample).mapToInt(String::length).max().orElse(0) + totalPadding;
-    String format = "  %1$-" + (width - 2) + "s";
-    ParameterSpec row = builder(ENTRY_STRING_STRING, "row").build();
     ParameterSpec printStream = builder(PrintStream.class, "printStream").build();
-    ParameterSpec key = builder(STRING, "key").build();
-    MethodSpec.Builder spec = methodBuilder("printOnlineHelp");
-    spec.addStatement("printWrap($N, 8, $S, $S + synopsis())", printStream, "", "Usage: ");
-    spec.addStatement("$N.println()", printStream);
-    spec.beginControlFlow("for ($T $N : buildRows())", row.type, row)
-        .addStatement("$T $N = $T.format($S, $N.getKey())", STRING, key, STRING, format, row)
-        .addStatement("printWrap($N, $L, $N, $N.getValue())", printStream, width, key, row)
-        .endControlFlow();
-    return spec.addParameter(printStream)
+    return methodBuilder("printOnlineHelp")
+        .addStatement("$N.print($N())", printStream, helpTextMethod)
+        .addParameter(printStream)
         .addModifiers(accessModifiers)
         .build();
   }
 
+  /**
+   * The help text depends only on the configuration, so it is rendered at most once per parser instance.
+   * This also memoizes the descriptions that were resolved from the resource bundle.
+   * The help text for the default configuration is shared by all instances.
+   * A race only means that the text is rendered twice; the field is volatile, so the text is published safely.
+   */
+  private static MethodSpec helpTextMethod(FieldSpec helpText, ClassName defaultHelp, FieldSpec maxLineWidth,
+                                           FieldSpec messages, FieldSpec bundle, MethodSpec renderHelp) {
+    ParameterSpec result = builder(STRING, "result").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("if ($N == $L && $N.isEmpty() && $N == null)\n", maxLineWidth, DEFAULT_WRAP_AFTER, messages, bundle).indent()
+        .addStatement("return $T.TEXT", defaultHelp).unindent();
+    code.addStatement("$T $N = $N", STRING, result, helpText);
+    code.beginControlFlow("if ($N == null)", result)
+        .addStatement("$N = $N()", result, renderHelp)
+        .addStatement("$N = $N", helpText, result)
+        .endControlFlow();
+    code.addStatement("return $N", result);
+    return methodBuilder("helpText")
+        .returns(STRING)
+        .addCode(code.build())
+        .addModifiers(PRIVATE)
+        .build();
+  }
+
+  /**
+   * The help text for the default configuration is rendered when it is first needed.
+   * The class initialization makes sure that this happens only once, and publishes the text safely.
+   */
+  private TypeSpec defaultHelpType() {
+    FieldSpec text = FieldSpec.builder(STRING, "TEXT", STATIC, FINAL)
+        .initializer("new $T().$N()", context.generatedClass(), renderHelpMethod)
+        .build();
+    return TypeSpec.classBuilder(defaultHelp)
+        .addModifiers(PRIVATE, STATIC, FINAL)
+        .addField(text)
+        .build();
+  }
+
+  private MethodSpec renderHelpMethod() {
+    HelpRenderer renderer = new HelpRenderer(context);
+    ParameterSpec sb = builder(StringBuilder.class, "sb").build();
+    ParameterSpec optionParam = builder(context.optionType(), "option").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = new $T()", StringBuilder.class, sb, StringBuilder.class);
+    code.addStatement("$N($N, 8, $S, $S)", appendWrapMethod, sb, "", "Usage: " + renderer.synopsis());
+    code.addStatement("$N.append($T.lineSeparator())", sb, System.class);
+    code.add("for ($T $N : $T.values())\n", context.optionType(), optionParam, context.optionType()).indent()
+        .addStatement("$N($N, $L, $T.format($S, $N.shape), $N($N))", appendWrapMethod, sb, renderer.shapeWidth(),
+            String.class, renderer.shapeFormat(), optionParam, messageMethod, optionParam)
+        .unindent();
+    if (context.hasSubcommands()) {
+      code.addStatement("$N.append($T.lineSeparator()).append($S).append($T.lineSeparator())",
+          sb, System.class, HelpRenderer.COMMANDS_HEADING, System.class);
+      for (Subcommand subcommand : context.subcommands()) {
+        code.addStatement("$N($N, $L, $S, $S)", appendWrapMethod, sb, renderer.shapeWidth(),
+            String.format(renderer.shapeFormat(), subcommand.name()), HelpRenderer.description(subcommand));
+      }
+    }
+    code.addStatement("return $N.toString()", sb);
+    return methodBuilder("renderHelp")
+        .returns(STRING)
+        .addCode(code.build())
+        .addModifiers(PRIVATE)
+        .build();
+  }
+
   private MethodSpec printWrapMethod(Modifier[] accessModifiers) {
     ParameterSpec printStream = builder(PrintStream.class, "printStream").build();
     ParameterSpec continuationIndent = builder(INT, "continuationIndent").build();
+    ParameterSpec init = builder(STRING, "init").build();
+    ParameterSpec input = builder(STRING, "input").build();
+    ParameterSpec sb = builder(StringBuilder.class, "sb").build();
+    return methodBuilder("printWrap")
+        .addModifiers(accessModifiers)
+        .addStatement("$T $N = new $T()", StringBuilder.class, sb, StringBuilder.class)
+        .addStatement("$N($N, $N, $N, $N)", appendWrapMethod, sb, continuationIndent, init, input)
+        .addStatement("$N.print($N)", printStream, sb)
+        .addParameters(Arrays.asList(printStream, continuationIndent, init, input))
+        .build();
+  }
+
+  private static MethodSpec appendWrapMethod(FieldSpec maxLineWidth) {
+    ParameterSpec out = builder(StringBuilder.class, "out").build();
+    ParameterSpec continuationIndent = builder(INT, "continuationIndent").build();
     ParameterSpec i = builder(INT, "i").build();
     ParameterSpec trim = builder(STRING, "trim").build();
     ParameterSpec init = builder(STRING, "init").build();
     ParameterSpec input = builder(STRING, "input").build();
     ParameterSpec sb = builder(StringBuilder.class, "sb").build();
     ParameterSpec token = builder(STRING, "token").build();
-    ParameterSpec tokens = builder(ArrayTypeName.of(String.class), "tokens").build();
+    ParameterSpec nl = builder(STRING, "nl").build();
     CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $T.lineSeparator()", STRING, nl, System.class);
     code.beginControlFlow("if ($N.isEmpty())", input)
         .addStatement("$T $N = $N.trim()", STRING, trim, init)
-        .addStatement("$N.println($N.substring(0, $N.indexOf($N)) + $N)",
-            printStream, init, init, trim, trim)
+        .addStatement("$N.append($N, 0, $N.indexOf($N)).append($N).append($N)",
+            out, init, init, trim, trim, nl)
         .addStatement("return")
         .endControlFlow();
-    code.addStatement("$T $N = $N.split($S, $L)", tokens.type, tokens, input, "\\s+", -1);
     code.addStatement("$T $N = new $T($N)", sb.type, sb, StringBuilder.class, init);
-    code.beginControlFlow("for ($T $N : $N)", STRING, token, tokens);
+    code.beginControlFlow("for ($T $N : $N.split($S, $L))", STRING, token, input, "\\s+", -1);
 
     code.beginControlFlow("if ($N.length() + $N.length() + 1 > $N)",
         token, sb, maxLineWidth);
-    code.beginControlFlow("if ($N.toString().isEmpty())", sb)
-        .addStatement("$N.println($N)", printStream, token)
+    code.beginControlFlow("if ($N.length() == 0)", sb)
+        .addStatement("$N.append($N).append($N)", out, token, nl)
         .endControlFlow();
     code.beginControlFlow("else")
-        .addStatement("$N.println($N)", printStream, sb)
+        .addStatement("$N.append($N).append($N)", out, sb, nl)
         .addStatement("$N.setLength(0)", sb)
         .add("for ($T $N = 0; $N < $N; $N++)\n",
             INT, i, i, continuationIndent, i).indent()
-        .addStatement(" $N.append(' ')", sb).unindent()
+        .addStatement("$N.append(' ')", sb).unindent()
         .addStatement("$N.append($N)", sb, token)
         .endControlFlow();
     code.endControlFlow();
@@ -213,11 +514,11 @@ public final class GeneratedClass {
     code.endControlFlow();
 
     code.add("if ($N.length() > 0)\n", sb).indent()
-        .addStatement("$N.println($N)", printStream, sb).unindent();
-    return methodBuilder("printWrap")
-        .addModifiers(accessModifiers)
+        .addStatement("$N.append($N).append($N)", out, sb, nl).unindent();
+    return methodBuilder("appendWrap")
+        .addModifiers(PRIVATE)
         .addCode(code.build())
-        .addParameters(Arrays.asList(printStream, continuationIndent, init, input))
+        .addParameters(Arrays.asList(out, continuationIndent, init, input))
         .build();
   }
 
@@ -225,8 +526,17 @@ public final class GeneratedClass {
     ParameterSpec indentParam = builder(maxLineWidth.type, "chars").build();
     return methodBuilder("maxLineWidth")
         .addParameter(indentParam)
-        .addStatement("this.$N = $N", maxLineWidth, indentParam)
-        .addStatement("return this")
+        .addStatement(copyWith(maxLineWidth, CodeBlock.of("$N", indentParam)))
+        .returns(context.generatedClass())
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  private MethodSpec withQuotingMethod(Modifier[] accessModifiers) {
+    ParameterSpec param = builder(quoting.type, quoting.name).build();
+    return methodBuilder("withQuoting")
+        .addParameter(param)
+        .addStatement(copyWith(quoting, CodeBlock.of("$N", param)))
         .returns(context.generatedClass())
         .addModifiers(accessModifiers)
         .build();
@@ -236,8 +546,7 @@ public final class GeneratedClass {
     ParameterSpec param = builder(runBeforeExit.type, runBeforeExit.name).build();
     return methodBuilder("runBeforeExit")
         .addParameter(param)
-        .addStatement("this.$N = $N", runBeforeExit, param)
-        .addStatement("return this")
+        .addStatement(copyWith(runBeforeExit, CodeBlock.of("$N", param)))
         .returns(context.generatedClass())
         .addModifiers(accessModifiers)
         .build();
@@ -246,41 +555,149 @@ public final class GeneratedClass {
   private MethodSpec withMessagesMethod(Modifier[] accessModifiers) {
     ParameterSpec resourceBundleParam = builder(messages.type, "map").build();
     MethodSpec.Builder spec = methodBuilder("withMessages");
+    Map<FieldSpec, CodeBlock> values = new HashMap<>();
+    values.put(messages, CodeBlock.of("$T.unmodifiableMap(new $T<>($N))",
+        Collections.class, HashMap.class, resourceBundleParam));
+    values.put(bundle, CodeBlock.of("null"));
     return spec.addParameter(resourceBundleParam)
-        .addStatement("this.$N = $N", messages, resourceBundleParam)
-        .addStatement("return this")
+        .addStatement(copyWith(values))
         .returns(context.generatedClass())
         .addModifiers(accessModifiers)
         .build();
   }
 
+  /**
+   * The bundle is not copied. Its keys are resolved when the help text is rendered.
+   */
   private MethodSpec withResourceBundleMethod(Modifier[] accessModifiers) {
-    ParameterSpec bundle = builder(ResourceBundle.class, "bundle").build();
-    CodeBlock.Builder code = CodeBlock.builder();
-    code.add("return withMessages($T.list($N.getKeys()).stream()\n", Collections.class, bundle).indent()
-        .addStatement(".collect($T.toMap($T.identity(), $N::getString)))", Collectors.class, Function.class, bundle).unindent();
-    return methodBuilder("withResourceBundle").addParameter(bundle)
+    ParameterSpec bundleParam = builder(bundle.type, bundle.name).build();
+    Map<FieldSpec, CodeBlock> values = new HashMap<>();
+    values.put(messages, CodeBlock.of("$T.emptyMap()", Collections.class));
+    values.put(bundle, CodeBlock.of("$T.requireNonNull($N)", Objects.class, bundleParam));
+    return methodBuilder("withResourceBundle").addParameter(bundleParam)
+        .returns(context.generatedClass())
+        .addStatement(copyWith(values))
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  /**
+   * Replaces the environment, for example in a test.
+   * The system properties are read again.
+   * The environment is also passed on to the parser of a subcommand.
+   */
+  private MethodSpec withEnvironmentMethod(Modifier[] accessModifiers) {
+    ParameterSpec env = builder(STRING_TO_STRING_MAP, "env").build();
+    Map<FieldSpec, CodeBlock> values = new HashMap<>();
+    if (context.hasFallbacks()) {
+      values.put(fallbacks, CodeBlock.of("readFallbacks($T.requireNonNull($N))", Objects.class, env));
+    }
+    if (anySubcommand(Subcommand::hasFallbacks)) {
+      values.put(environment, CodeBlock.of("$T.requireNonNull($N)", Objects.class, env));
+    }
+    return methodBuilder("withEnvironment")
+        .addParameter(env)
+        .addStatement(copyWith(values))
+        .returns(context.generatedClass())
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  /**
+   * Reads only the variables and properties that are used by some option,
+   * so each parse does not have to look them up again.
+   */
+  private MethodSpec readFallbacksMethod() {
+    ParameterSpec env = builder(STRING_TO_STRING_MAP, "env").build();
+    List<CodeBlock> values = new ArrayList<>();
+    for (Parameter param : context.fallbacks()) {
+      CodeBlock envValue = param.env()
+          .map(key -> CodeBlock.of("$N.get($S)", env, key))
+          .orElse(CodeBlock.of("null"));
+      values.add(param.property()
+          .map(key -> CodeBlock.of("$T.getProperty($S, $L)", System.class, key, envValue))
+          .orElse(envValue));
+    }
+    return methodBuilder("readFallbacks")
+        .addParameter(env)
+        .addStatement("return new $T[]{$L}", STRING, CodeBlock.join(values, ", "))
+        .returns(STRING_ARRAY)
+        .addModifiers(PRIVATE, STATIC)
+        .build();
+  }
+
+  /**
+   * The file is read here, not during parsing.
+   * The parser of a subcommand reads it again, for its own options, when the subcommand is parsed.
+   */
+  private MethodSpec withDefaultsPathMethod(Modifier[] accessModifiers) {
+    ParameterSpec path = builder(Path.class, "path").build();
+    ParameterSpec e = builder(IOException.class, "e").build();
+    Map<FieldSpec, CodeBlock> values = new HashMap<>();
+    if (anySubcommand(Subcommand::hasDefaults)) {
+      values.put(defaultsPath, CodeBlock.of("$T.requireNonNull($N)", Objects.class, path));
+    }
+    MethodSpec.Builder spec = methodBuilder("withDefaults")
+        .addParameter(path)
+        .returns(context.generatedClass())
+        .addModifiers(accessModifiers);
+    if (!defaults.isPresent()) {
+      return spec.addStatement(copyWith(values)).build();
+    }
+    FieldSpec field = defaults.get();
+    values.put(field, CodeBlock.of("$T.read($N)", field.type, path));
+    return spec.beginControlFlow("try")
+        .addStatement(copyWith(values))
+        .nextControlFlow("catch ($T $N)", IOException.class, e)
+        .addStatement("throw new $T($N)", UncheckedIOException.class, e)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * These defaults are only for the options of this command; a subcommand can't use them.
+   */
+  private MethodSpec withDefaultsMethod(FieldSpec defaults, Modifier[] accessModifiers) {
+    ParameterSpec param = builder(defaults.type, defaults.name).build();
+    return methodBuilder("withDefaults")
+        .addParameter(param)
+        .addStatement(copyWith(defaults, CodeBlock.of("$T.requireNonNull($N)", Objects.class, param)))
+        .returns(context.generatedClass())
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  /**
+   * A zero duration means that the asynchronous mappers are awaited without limit.
+   * The timeout is also passed on to the parser of a subcommand.
+   */
+  private MethodSpec withMapperTimeoutMethod(Modifier[] accessModifiers) {
+    ParameterSpec timeout = builder(Duration.class, "timeout").build();
+    return methodBuilder("withMapperTimeout")
+        .addParameter(timeout)
+        .beginControlFlow("if ($N.isNegative())", timeout)
+        .addStatement("throw new $T($S)", IllegalArgumentException.class, "negative timeout")
+        .endControlFlow()
+        .addStatement(copyWith(mapperTimeout, CodeBlock.of("$N.toNanos()", timeout)))
         .returns(context.generatedClass())
-        .addCode(code.build())
         .addModifiers(accessModifiers)
         .build();
   }
 
   private MethodSpec withHelpStreamMethod(Modifier[] accessModifiers) {
-    return withPrintStreamMethod("withHelpStream", context, out, accessModifiers);
+    return withPrintStreamMethod("withHelpStream", out, accessModifiers);
   }
 
   private MethodSpec withErrorStreamMethod(Modifier[] accessModifiers) {
-    return withPrintStreamMethod("withErrorStream", context, err, accessModifiers);
+    return withPrintStreamMethod("withErrorStream", err, accessModifiers);
   }
 
-  private static MethodSpec withPrintStreamMethod(
-      String methodName, Context context, FieldSpec stream, Modifier[] accessModifiers) {
+  private MethodSpec withPrintStreamMethod(
+      String methodName, FieldSpec stream, Modifier[] accessModifiers) {
     ParameterSpec param = builder(stream.type, stream.name).build();
     return methodBuilder(methodName)
         .addParameter(param)
-        .addStatement("this.$N = $N", stream, param)
-        .addStatement("return this")
+        .addStatement(copyWith(stream, CodeBlock.of("$N", param)))
         .returns(context.generatedClass())
         .addModifiers(accessModifiers)
         .build();
@@ -298,7 +715,7 @@ public final class GeneratedClass {
             .unindent());
 
     code.beginControlFlow("try")
-        .addStatement("return new $T(parse($T.asList($N).iterator()))", context.parsingSuccessType(), Arrays.class, args)
+        .addStatement("return $L", parseTokens(CodeBlock.of("$T.asList($N).iterator()", Arrays.class, args)))
         .endControlFlow();
 
     code.beginControlFlow("catch ($T $N)", RuntimeException.class, e)
@@ -313,92 +730,245 @@ public final class GeneratedClass {
         .build();
   }
 
-  private CodeBlock handleEndOfOptionParsing(ParameterSpec state, ParameterSpec it, ParameterSpec position, ParameterSpec token) {
-    CodeBlock.Builder code = CodeBlock.builder().beginControlFlow("while ($N.hasNext())", it);
-    code.addStatement("$N = $N.next()", token, it);
-    code.add("if ($N >= $N.$N.size())\n", position, state, parserState.positionalParsersField()).indent()
-        .addStatement(throwInvalidOptionStatement(token, "Excess param"))
-        .unindent();
-    code.addStatement("$N += $N.$N.get($N).read($N)", position, state, parserState.positionalParsersField(), position, token);
-    code.endControlFlow(); // end loop
-    return code.build();
+  /**
+   * Nothing is stored or mapped, and no result object is created.
+   * Exceptions from the visitor are not caught, except those that
+   * {@code Value.get()} throws when a mapper fails.
+   */
+  private MethodSpec parseVisitorMethod(ClassName visitorType, Modifier[] accessModifiers) {
+    ParameterSpec args = builder(Constants.STRING_ARRAY, "args").build();
+    ParameterSpec visitor = builder(visitorType, "visitor").build();
+    ParameterSpec it = builder(STRING_ITERATOR, "it").build();
+    ParameterSpec e = builder(context.parsingExceptionType(), "e").build();
+    List<CodeBlock> stateArgs = new ArrayList<>();
+    stateArgs.add(CodeBlock.of("$T.requireNonNull($N)", Objects.class, visitor));
+    if (context.hasFallbacks()) {
+      stateArgs.add(CodeBlock.of("$N", fallbacks));
+    }
+    defaults.ifPresent(field -> stateArgs.add(CodeBlock.of("$N", field)));
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $T.asList($N).iterator()", it.type, it, Arrays.class, args);
+    context.atFileExpanderType().ifPresent(type ->
+        code.addStatement("$N = new $T($N, $N)", it, type, it, quoting));
+    code.beginControlFlow("try")
+        .addStatement("new $T($L).visit($N)", context.visitStateType(), CodeBlock.join(stateArgs, ", "), it)
+        .addStatement("return $T.empty()", Optional.class)
+        .nextControlFlow("catch ($T $N)", e.type, e)
+        .addStatement("return $T.of(new $T($N))", Optional.class, context.parsingFailedType(), e)
+        .endControlFlow();
+    return MethodSpec.methodBuilder("parse")
+        .addJavadoc("Passes each parameter to the visitor, in the order of the input.\n" +
+            "The {@code --help} token is not special here.\n\n" +
+            "@param args command line input\n" +
+            "@param visitor receives the parameters\n" +
+            "@return the failure, or an empty optional if the input is valid\n")
+        .addParameters(Arrays.asList(args, visitor))
+        .returns(ParameterizedTypeName.get(ClassName.get(Optional.class), context.parsingFailedType()))
+        .addCode(code.build())
+        .addModifiers(accessModifiers)
+        .build();
   }
 
-  private static CodeBlock throwInvalidOptionStatement(ParameterSpec token, String message) {
-    return CodeBlock.builder()
-        .add("throw new $T($S + $N)", RuntimeException.class,
-            message + ": ", token)
+  /**
+   * The command line is split into tokens on demand,
+   * according to the configured quoting rules.
+   */
+  private MethodSpec parseCommandLineMethod(Modifier[] accessModifiers) {
+
+    ParameterSpec commandLine = builder(CharSequence.class, "commandLine").build();
+    ParameterSpec tokens = builder(context.tokenizerType(), "tokens").build();
+    ParameterSpec e = builder(RuntimeException.class, "e").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+
+    code.beginControlFlow("try")
+        .addStatement("$T $N = new $T($N, $N)", tokens.type, tokens, tokens.type, commandLine, quoting);
+    context.helpRequestedType().ifPresent(helpRequestedType ->
+        code.add("if ($N.hasNext() && $S.equals($N.peek()))\n", tokens, "--help", tokens).indent()
+            .addStatement("return new $T()", helpRequestedType)
+            .unindent());
+    code.addStatement("return $L", parseTokens(CodeBlock.of("$N", tokens)))
+        .endControlFlow();
+
+    code.beginControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("return new $T($N)",
+            context.parsingFailedType(), e)
+        .endControlFlow();
+
+    return MethodSpec.methodBuilder("parse").addParameter(commandLine)
+        .returns(context.parseResultType())
+        .addCode(code.build())
+        .addModifiers(accessModifiers)
         .build();
   }
 
-  private CodeBlock javadoc() {
-    return CodeBlock.builder().add("Generated by <a href=\"" + PROJECT_URL + "\">jbock " +
-        getClass().getPackage().getImplementationVersion() +
-        "</a>\n").build();
-  }
+  /**
+   * The tokens are read one at a time, so the input is never copied.
+   */
+  private MethodSpec parseIteratorMethod(Modifier[] accessModifiers) {
 
-  private static MethodSpec readOptionArgumentMethod() {
+    ParameterSpec tokens = builder(STRING_ITERATOR, "tokens").build();
     ParameterSpec token = builder(STRING, "token").build();
-    ParameterSpec it = builder(STRING_ITERATOR, "it").build();
+    ParameterSpec e = builder(RuntimeException.class, "e").build();
     CodeBlock.Builder code = CodeBlock.builder();
 
-    code.add("if ($N.charAt(1) == '-' && $N.indexOf('=') >= 0)\n", token, token).indent()
-        .addStatement("return $N.substring($N.indexOf('=') + 1)", token, token).unindent();
-
-    code.add("if ($N.charAt(1) != '-' && $N.length() >= 3)\n", token, token).indent()
-        .addStatement("return $N.substring(2)", token).unindent();
+    code.beginControlFlow("try");
+    context.helpRequestedType().ifPresent(helpRequestedType ->
+        code.beginControlFlow("if ($N.hasNext())", tokens)
+            .addStatement("$T $N = $N.next()", STRING, token, tokens)
+            .add("if ($S.equals($N))\n", "--help", token).indent()
+            .addStatement("return new $T()", helpRequestedType)
+            .unindent()
+            .addStatement("return $L", parseTokens(CodeBlock.of("prepend($N, $N)", token, tokens)))
+            .endControlFlow());
+    code.addStatement("return $L", parseTokens(CodeBlock.of("$N", tokens)))
+        .endControlFlow();
 
-    code.add("if (!$N.hasNext())\n", it).indent()
-        .addStatement("throw new $T($S + $N)", RuntimeException.class,
-            "Missing value after token: ", token)
-        .unindent();
+    code.beginControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("return new $T($N)",
+            context.parsingFailedType(), e)
+        .endControlFlow();
 
-    code.addStatement("return $N.next()", it);
-    return methodBuilder("readOptionArgument")
+    return MethodSpec.methodBuilder("parse").addParameter(tokens)
+        .returns(context.parseResultType())
         .addCode(code.build())
-        .addParameters(asList(token, it))
-        .returns(STRING)
-        .addModifiers(PRIVATE, STATIC)
+        .addModifiers(accessModifiers)
         .build();
   }
 
-  private MethodSpec synopsisMethod(Modifier[] accessModifiers) {
-    MethodSpec.Builder spec = MethodSpec.methodBuilder("synopsis");
+  private MethodSpec parseStreamMethod(Modifier[] accessModifiers) {
+    ParameterSpec tokens = builder(ParameterizedTypeName.get(Stream.class, String.class), "tokens").build();
+    return MethodSpec.methodBuilder("parse").addParameter(tokens)
+        .returns(context.parseResultType())
+        .addStatement("return parse($N.iterator())", tokens)
+        .addModifiers(accessModifiers)
+        .build();
+  }
 
-    ParameterSpec joiner = builder(StringJoiner.class, "joiner").build();
+  /**
+   * The parser is immutable, so the argument vectors can be parsed in parallel.
+   * The results are in input order.
+   */
+  private MethodSpec parseAllMethod(Modifier[] accessModifiers) {
+    ParameterSpec argvs = builder(ParameterizedTypeName.get(ClassName.get(Stream.class), STRING_ARRAY), "argvs").build();
+    return MethodSpec.methodBuilder("parseAll").addParameter(argvs)
+        .returns(ParameterizedTypeName.get(ClassName.get(List.class), context.parseResultType()))
+        .addStatement("return $N.parallel().map($L).collect($T.toList())", argvs,
+            parseFunction(STRING_ARRAY, "argv"), Collectors.class)
+        .addModifiers(accessModifiers)
+        .build();
+  }
 
-    spec.addCode("return new $T($S)", StringJoiner.class, " ");
+  /**
+   * Each line of the file is a command line, see {@code parse(CharSequence)}.
+   * The lines are read and parsed while the caller consumes the stream,
+   * so the results don't have to fit in memory at once.
+   */
+  private MethodSpec parseAllPathMethod(Modifier[] accessModifiers) {
+    ParameterSpec path = builder(Path.class, "path").build();
+    return MethodSpec.methodBuilder("parseAll").addParameter(path)
+        .addJavadoc("Parses each line of the file like {@code parse(CharSequence)}.\n" +
+            "The stream is parallel and ordered.\n" +
+            "It holds the file open, so it should be closed after use.\n\n" +
+            "@param path a file that contains one command line per line\n" +
+            "@return the result for each line, in file order\n" +
+            "@throws IOException if the file can't be opened\n")
+        .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), context.parseResultType()))
+        .addStatement("return $T.lines($N).parallel().map($L)", Files.class, path, parseFunction(STRING, "line"))
+        .addException(IOException.class)
+        .addModifiers(accessModifiers)
+        .build();
+  }
 
-    List<Parameter> requiredOptions = context.options().stream().filter(Parameter::isRequired).collect(Collectors.toList());
-    List<Parameter> optionalOptions = context.options().stream().filter(p -> !p.isRequired()).collect(Collectors.toList());
+  private CodeBlock parseFunction(TypeName inputType, String param) {
+    if (!context.isStartupMode()) {
+      return CodeBlock.of("this::parse");
+    }
+    return IndyFree.functionOf(inputType, context.parseResultType(), param,
+        value -> CodeBlock.of("$T.this.parse($L)", context.generatedClass(), value));
+  }
 
-    spec.addCode(".add($S)", context.programName());
+  /**
+   * Puts back a token that was already read.
+   */
+  private static MethodSpec prependMethod() {
+    ParameterSpec token = builder(STRING, "token").build();
+    ParameterSpec it = builder(STRING_ITERATOR, "it").build();
+    FieldSpec first = FieldSpec.builder(BOOLEAN, "first", PRIVATE).initializer("true").build();
+    TypeSpec iterator = TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(STRING_ITERATOR)
+        .addField(first)
+        .addMethod(methodBuilder("hasNext")
+            .addAnnotation(Override.class)
+            .addModifiers(PUBLIC)
+            .returns(BOOLEAN)
+            .addStatement("return $N || $N.hasNext()", first, it)
+            .build())
+        .addMethod(methodBuilder("next")
+            .addAnnotation(Override.class)
+            .addModifiers(PUBLIC)
+            .returns(STRING)
+            .beginControlFlow("if ($N)", first)
+            .addStatement("$N = false", first)
+            .addStatement("return $N", token)
+            .endControlFlow()
+            .addStatement("return $N.next()", it)
+            .build())
+        .build();
+    return methodBuilder("prepend")
+        .addParameters(asList(token, it))
+        .addStatement("return $L", iterator)
+        .returns(STRING_ITERATOR)
+        .addModifiers(PRIVATE, STATIC)
+        .build();
+  }
 
-    if (!optionalOptions.isEmpty()) {
-      spec.addCode(".add($S)", "[options...]");
-    }
+  private Optional<Parameter> lazyTail() {
+    return context.params().stream().filter(Parameter::isLazyTail).findFirst();
+  }
 
-    for (Parameter option : requiredOptions) {
-      spec.addCode(addBreaks(".add($T.format($S, $T.$L.names.get(0), $T.$L.name().toLowerCase($T.US)))"),
-          String.class, "%s <%s>",
-          context.optionType(), option.enumConstant(),
-          context.optionType(), option.enumConstant(), Locale.class);
-    }
+  /**
+   * Once the position of a lazy tail is reached, the remaining tokens
+   * are stored without reading them.
+   */
+  private CodeBlock storeLazyTail(ParameterSpec state, ParameterSpec position, CodeBlock rest) {
+    return lazyTail().map(param -> CodeBlock.builder()
+        .beginControlFlow("if ($N == $L)", position, param.positionalIndex().orElseThrow(AssertionError::new))
+        .addStatement("$N.$N = $L", state, parserState.field(param), rest)
+        .addStatement("return $N.build()", state)
+        .endControlFlow()
+        .build())
+        .orElse(CodeBlock.of(""));
+  }
 
-    for (Parameter param : context.params()) {
-      if (param.isOptional()) {
-        spec.addCode("$Z.add($S)", "[<" + param.paramName().snake() + ">]");
-      } else if (param.isRequired()) {
-        spec.addCode("$Z.add($S)", "<" + param.paramName().snake() + ">");
-      } else if (param.isRepeatable()) {
-        spec.addCode("$Z.add($S)", "<" + param.paramName().snake() + ">...");
-      } else {
-        throw new AssertionError("all cases handled (param can't be flag)");
-      }
-    }
+  private CodeBlock handleEndOfOptionParsing(ParameterSpec state, ParameterSpec it, ParameterSpec position, ParameterSpec token) {
+    CodeBlock.Builder code = CodeBlock.builder().beginControlFlow("while ($N.hasNext())", it);
+    code.add(storeLazyTail(state, position, CodeBlock.of("$N", it)));
+    code.addStatement("$N = $N.next()", token, it);
+    code.addStatement("$N.$N++", state, ParserState.tokenIndex());
+    code.addStatement("$N += $N.$N($N, $N)", position, state, parserState.readParam(), position, token);
+    code.endControlFlow(); // end loop
+    return code.build();
+  }
+
+  private CodeBlock throwInvalidOptionStatement(ParameterSpec state, ParameterSpec token, String code, String message) {
+    return CodeBlock.builder()
+        .add("throw new $T($T.$L, null, $N.$N, null, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), code, state, ParserState.tokenIndex(), message + ": %s", token)
+        .build();
+  }
 
-    spec.addCode("$Z.toString();\n", joiner);
-    return spec.returns(STRING).addModifiers(accessModifiers).build();
+  static CodeBlock javadoc() {
+    return CodeBlock.builder().add("Generated by <a href=\"" + PROJECT_URL + "\">jbock " +
+        GeneratedClass.class.getPackage().getImplementationVersion() +
+        "</a>\n").build();
+  }
+
+  private MethodSpec synopsisMethod(Modifier[] accessModifiers) {
+    return MethodSpec.methodBuilder("synopsis")
+        .addStatement("return $S", new HelpRenderer(context).synopsis())
+        .returns(STRING)
+        .addModifiers(accessModifiers)
+        .build();
   }
 
   private MethodSpec parseOrExitMethod(Modifier[] accessModifiers) {
@@ -415,17 +985,17 @@ public final class GeneratedClass {
 
     context.helpRequestedType().ifPresent(helpRequestedType -> code
         .beginControlFlow("if ($N instanceof $T)", result, helpRequestedType)
-        .addStatement("printOnlineHelp($N)", out)
+        .add(printHelpStatement(CodeBlock.of("(($T) $N)", helpRequestedType, result)))
         .addStatement("$N.flush()", out)
         .addStatement("$N.accept($N)", runBeforeExit, result)
         .addStatement("$T.exit(0)", System.class)
         .endControlFlow());
 
-    code.addStatement("(($T) $N).getError().printStackTrace($N)", context.parsingFailedType(), result, err);
     if (!context.isHelpParameterEnabled()) {
       code.addStatement("printOnlineHelp($N)", err);
     }
-    code.addStatement("$N.println($S + (($T) $N).getError().getMessage())", err, "Error: ", context.parsingFailedType(), result);
+    code.addStatement("$N.println($L)", err, IndyFree.concat(context.isStartupMode(), CodeBlock.of("$S", "Error: "),
+        CodeBlock.of("(($T) $N).getError().getMessage()", context.parsingFailedType(), result)));
     if (context.isHelpParameterEnabled()) {
       code.addStatement("$N.println($S)", err, "Try '--help' for more information.");
     }
@@ -441,7 +1011,7 @@ public final class GeneratedClass {
         .build();
   }
 
-  private MethodSpec parseMethodOverloadIterator() {
+  private MethodSpec parseTokensMethod() {
 
     ParameterSpec state = builder(context.parserStateType(), "state").build();
     ParameterSpec it = builder(STRING_ITERATOR, "it").build();
@@ -450,13 +1020,33 @@ public final class GeneratedClass {
     ParameterSpec position = builder(INT, "position").build();
 
     CodeBlock.Builder code = CodeBlock.builder();
-    code.addStatement("$T $N = $L", position.type, position, 0);
-    code.addStatement("$T $N = new $T()", state.type, state, state.type);
+    context.atFileExpanderType().ifPresent(type ->
+        code.addStatement("$N = new $T($N, $N)", it, type, it, quoting));
+    if (!context.params().isEmpty()) {
+      code.addStatement("$T $N = $L", position.type, position, 0);
+    }
+    List<CodeBlock> stateArgs = new ArrayList<>();
+    if (context.hasFallbacks()) {
+      stateArgs.add(CodeBlock.of("$N", fallbacks));
+    }
+    defaults.ifPresent(field -> stateArgs.add(CodeBlock.of("$N", field)));
+    if (context.hasAsyncMappers()) {
+      stateArgs.add(CodeBlock.of("$N", mapperTimeout));
+    }
+    // a nested parse on the same thread, for example from a mapper, finds no idle state and creates its own
+    code.addStatement("$T $N = $N.get()", state.type, state, states)
+        .beginControlFlow("if ($N == null)", state)
+        .addStatement("$N = new $T($L)", state, state.type, CodeBlock.join(stateArgs, ", "))
+        .nextControlFlow("else")
+        .addStatement("$N.set(null)", states)
+        .endControlFlow();
+    code.beginControlFlow("try");
 
     // begin parsing loop
     code.beginControlFlow("while ($N.hasNext())", it);
 
     code.addStatement("$T $N = $N.next()", STRING, token, it);
+    code.addStatement("$N.$N++", state, ParserState.tokenIndex());
 
     if (!context.params().isEmpty()) {
       code.beginControlFlow("if ($S.equals($N))", "--", token)
@@ -468,34 +1058,222 @@ public final class GeneratedClass {
     if (!context.options().isEmpty()) {
       code.addStatement("$T $N = $N.$N($N)", context.optionType(), option, state, parserState.tryReadOption(), token);
       code.beginControlFlow("if ($N != null)", option)
-          .addStatement("$N.$N.get($N).read($N, $N, $N)", state, parserState.parsersField(), option, option, token, it)
+          .addStatement("$N.$N($N, $N, $N)", state, parserState.read(), option, token, it)
           .addStatement("continue")
           .endControlFlow();
     }
 
+    // the token after "--" is the subcommand, even if it starts with a dash
+    if (context.hasSubcommands()) {
+      code.beginControlFlow("if ($S.equals($N))", "--", token)
+          .add("if (!$N.hasNext())\n", it).indent()
+          .addStatement("break")
+          .unindent()
+          .addStatement("$N = $N.next()", token, it)
+          .addStatement("$N.$N++", state, ParserState.tokenIndex())
+          .add(parseSubcommandStatement(state, it, token))
+          .endControlFlow();
+    }
+
     // handle unknown token
     code.add("if (!$N.isEmpty() && $N.charAt(0) == '-')\n", token, token).indent()
-        .addStatement(throwInvalidOptionStatement(token, "Invalid option"))
-        .unindent();
-
-    code.add("if ($N >= $N.$N.size())\n", position, state, parserState.positionalParsersField()).indent()
-        .addStatement(throwInvalidOptionStatement(token, "Excess param"))
+        .addStatement(throwInvalidOptionStatement(state, token, "UNKNOWN_OPTION", "Invalid option"))
         .unindent();
 
-    if (!context.params().isEmpty()) {
-      code.addStatement("$N += $N.$N.get($N).read($N)", position, state, parserState.positionalParsersField(), position, token);
+    if (context.hasSubcommands()) {
+      code.add(parseSubcommandStatement(state, it, token));
+    } else if (context.params().isEmpty()) {
+      code.addStatement(throwInvalidOptionStatement(state, token, "EXCESS_PARAM", "Excess param"));
+    } else {
+      code.add(storeLazyTail(state, position, CodeBlock.of("prepend($N, $N)", token, it)));
+      code.addStatement("$N += $N.$N($N, $N)", position, state, parserState.readParam(), position, token);
     }
 
     // end parsing loop
     code.endControlFlow();
 
-    code.addStatement("return $N.build()", state);
+    if (context.hasSubcommands()) {
+      code.addStatement("throw new $T($T.MISSING_REQUIRED, null, -1, null, $S)", context.parsingExceptionType(),
+          context.errorCodeType(), "Missing command");
+    } else {
+      code.addStatement("return $N.build()", state);
+    }
 
-    return MethodSpec.methodBuilder("parse")
+    code.nextControlFlow("finally")
+        .addStatement("$N.$N()", state, parserState.reset())
+        .addStatement("$N.set($N)", states, state)
+        .endControlFlow();
+
+    return MethodSpec.methodBuilder("parseTokens")
         .addParameter(it)
         .addCode(code.build())
         .addModifiers(PRIVATE)
-        .returns(context.sourceType())
+        .returns(context.hasSubcommands() ? context.parseResultType() : context.sourceType())
+        .build();
+  }
+
+  private CodeBlock parseSubcommandStatement(ParameterSpec state, ParameterSpec it, ParameterSpec token) {
+    return CodeBlock.builder()
+        .addStatement("return $N($N, $N, $N.$N, $N.build())", PARSE_SUBCOMMAND, token, it, state, ParserState.tokenIndex(), state)
+        .build();
+  }
+
+  /**
+   * With subcommands, {@code parseTokens} returns the complete result.
+   */
+  private CodeBlock parseTokens(CodeBlock tokens) {
+    if (context.hasSubcommands()) {
+      return CodeBlock.of("parseTokens($L)", tokens);
+    }
+    return CodeBlock.of("new $T(parseTokens($L))", context.parsingSuccessType(), tokens);
+  }
+
+  /**
+   * The subcommand is selected by a string switch.
+   * Its parser reads the remaining tokens from the same iterator, so they are not copied.
+   * The parser class of a subcommand is referenced only in its own case,
+   * so it is not loaded unless that subcommand is selected.
+   */
+  /**
+   * The parser of the subcommand is created only when the subcommand is selected,
+   * and it gets the environment, defaults file and mapper timeout of this parser.
+   * A failure of the subcommand is reported with the same code, option name, message and cause,
+   * and the index is that of the token in the complete input.
+   */
+  private MethodSpec parseSubcommandMethod() {
+    ParameterSpec name = builder(STRING, "name").build();
+    ParameterSpec it = builder(STRING_ITERATOR, "it").build();
+    ParameterSpec index = builder(INT, "index").build();
+    ParameterSpec result = builder(context.sourceType(), "result").build();
+    ParameterSpec parser = builder(Object.class, "parser").build();
+    ParameterSpec subcommandResult = builder(Object.class, "subcommand").build();
+    ParameterSpec failed = builder(Object.class, "failed").build();
+    ParameterSpec error = builder(RuntimeException.class, "error").build();
+    ParameterSpec code = builder(context.errorCodeType(), "code").build();
+    CodeBlock.Builder body = CodeBlock.builder();
+    body.beginControlFlow("switch ($N)", name);
+    for (Subcommand subcommand : context.subcommands()) {
+      body.add("case $S: {\n", subcommand.name()).indent();
+      body.add(subcommandParserStatements(subcommand, parser));
+      body.addStatement("$T $N = $N.parse($N)", subcommand.parseResultType(), subcommandResult, parser, it);
+      body.add("if ($N instanceof $T)\n", subcommandResult, subcommand.parsingSuccessType()).indent()
+          .addStatement("return new $T($N, (($T) $N).getResult())", context.parsingSuccessType(), result,
+              subcommand.parsingSuccessType(), subcommandResult)
+          .unindent();
+      if (subcommand.isHelpEnabled()) {
+        context.helpRequestedType().ifPresent(helpRequestedType ->
+            body.add("if ($N instanceof $T)\n", subcommandResult, subcommand.helpRequestedType()).indent()
+                .addStatement("return new $T($N)", helpRequestedType, name)
+                .unindent());
+      }
+      body.addStatement("$T $N = ($T) $N", subcommand.parsingFailedType(), failed, subcommand.parsingFailedType(), subcommandResult);
+      body.addStatement("$T $N = $N.getError()", error.type, error, failed);
+      body.addStatement("$T $N = errorCode($N.getCode())", code.type, code, failed);
+      body.addStatement("throw new $T($N, null, $N.getOption().isPresent() ? $N.getOption().get().name() : null,\n" +
+              "$N.getIndex() == -1 ? -1 : $N + 1 + $N.getIndex(),\n" +
+              "$N == $T.UNEXPECTED ? $N : $N.getCause(), $S, $N.getMessage())",
+          context.parsingExceptionType(), code, failed, failed,
+          failed, index, failed,
+          code, context.errorCodeType(), error, error, "%s", error);
+      body.unindent().add("}\n");
+    }
+    body.add("default:\n").indent()
+        .addStatement("throw new $T($T.UNKNOWN_COMMAND, null, $N, null, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), index, "Unknown command: %s", name)
+        .unindent();
+    body.endControlFlow();
+    return methodBuilder(PARSE_SUBCOMMAND)
+        .addParameters(asList(name, it, index, result))
+        .returns(context.parseResultType())
+        .addCode(body.build())
+        .addModifiers(PRIVATE)
+        .build();
+  }
+
+  private CodeBlock subcommandParserStatements(Subcommand subcommand, ParameterSpec parser) {
+    CodeBlock.Builder created = CodeBlock.builder().add("new $T()", subcommand.parserType());
+    if (subcommand.hasFallbacks()) {
+      created.add(".withEnvironment($N)", environment);
+    }
+    if (subcommand.hasAsyncMappers()) {
+      created.add(".withMapperTimeout($T.ofNanos($N))", Duration.class, mapperTimeout);
+    }
+    CodeBlock.Builder code = CodeBlock.builder()
+        .addStatement("$T $N = $L", subcommand.parserType(), parser, created.build());
+    if (subcommand.hasDefaults()) {
+      code.add("if ($N != null)\n", defaultsPath).indent()
+          .addStatement("$N = $N.withDefaults($N)", parser, parser, defaultsPath)
+          .unindent();
+    }
+    return code.build();
+  }
+
+  /**
+   * The error codes of a subcommand are the same, except that it has no subcommands of its own.
+   */
+  private MethodSpec errorCodeMethod(Subcommand subcommand) {
+    ParameterSpec code = builder(subcommand.errorCodeType(), "code").build();
+    CodeBlock.Builder body = CodeBlock.builder().beginControlFlow("switch ($N)", code);
+    for (String constant : ParsingException.errorCodes()) {
+      body.add("case $L:\n", constant).indent()
+          .addStatement("return $T.$L", context.errorCodeType(), constant)
+          .unindent();
+    }
+    body.add("default:\n").indent()
+        .addStatement("throw new $T($N)", AssertionError.class, code)
+        .unindent();
+    body.endControlFlow();
+    return methodBuilder("errorCode")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameter(code)
+        .returns(context.errorCodeType())
+        .addCode(body.build())
+        .build();
+  }
+
+  /**
+   * Prints the online help of a subcommand, like {@code printOnlineHelp} does for this command.
+   * The subcommand's parser gets the same messages or resource bundle, and the same line width.
+   */
+  private MethodSpec printSubcommandHelpMethod(Modifier[] accessModifiers) {
+    ParameterSpec name = builder(STRING, "name").build();
+    ParameterSpec printStream = builder(PrintStream.class, "printStream").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("switch ($N)", name);
+    for (Subcommand subcommand : context.subcommands()) {
+      if (!subcommand.isHelpEnabled()) {
+        continue;
+      }
+      code.add("case $S:\n", subcommand.name()).indent()
+          .addStatement("($N != null ? new $T().withResourceBundle($N) : new $T().withMessages($N))\n" +
+                  ".maxLineWidth($N).printOnlineHelp($N)",
+              bundle, subcommand.parserType(), bundle, subcommand.parserType(), messages, maxLineWidth, printStream)
+          .addStatement("break")
+          .unindent();
+    }
+    code.add("default:\n").indent()
+        .addStatement("printOnlineHelp($N)", printStream)
+        .unindent();
+    code.endControlFlow();
+    return methodBuilder("printSubcommandHelp")
+        .addParameters(asList(name, printStream))
+        .addCode(code.build())
+        .addModifiers(accessModifiers)
+        .build();
+  }
+
+  private CodeBlock printHelpStatement(CodeBlock helpRequested) {
+    if (!context.hasSubcommands()) {
+      return CodeBlock.builder().addStatement("printOnlineHelp($N)", out).build();
+    }
+    ParameterSpec subcommand = builder(ParameterizedTypeName.get(Optional.class, String.class), "subcommand").build();
+    return CodeBlock.builder()
+        .addStatement("$T $N = $L.getSubcommand()", subcommand.type, subcommand, helpRequested)
+        .beginControlFlow("if ($N.isPresent())", subcommand)
+        .addStatement("printSubcommandHelp($N.get(), $N)", subcommand, out)
+        .nextControlFlow("else")
+        .addStatement("printOnlineHelp($N)", out)
+        .endControlFlow()
         .build();
   }
 }
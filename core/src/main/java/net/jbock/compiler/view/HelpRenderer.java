@@ -0,0 +1,74 @@
+package net.jbock.compiler.view;
+
+import net.jbock.compiler.Context;
+import net.jbock.compiler.Parameter;
+import net.jbock.compiler.Subcommand;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the parts of the online help that don't depend on the parser's configuration,
+ * like the synopsis and the width of the first column, at compile time.
+ * The text is wrapped at runtime, by the generated method {@code appendWrap}.
+ */
+final class HelpRenderer {
+
+  // 2 space padding on both sides
+  private static final int TOTAL_PADDING = 4;
+
+  static final String COMMANDS_HEADING = "Commands:";
+
+  private final Context context;
+
+  HelpRenderer(Context context) {
+    this.context = context;
+  }
+
+  String synopsis() {
+    StringJoiner joiner = new StringJoiner(" ");
+    List<Parameter> requiredOptions = context.options().stream().filter(Parameter::isRequired).collect(Collectors.toList());
+    boolean anyOptional = context.options().stream().anyMatch(p -> !p.isRequired());
+    joiner.add(context.programName());
+    if (anyOptional) {
+      joiner.add("[options...]");
+    }
+    for (Parameter option : requiredOptions) {
+      joiner.add(option.names().get(0) + " <" + option.enumConstant().toLowerCase(Locale.US) + ">");
+    }
+    for (Parameter param : context.params()) {
+      if (param.isOptional()) {
+        joiner.add("[<" + param.paramName().snake() + ">]");
+      } else if (param.isRequired()) {
+        joiner.add("<" + param.paramName().snake() + ">");
+      } else if (param.isRepeatable()) {
+        joiner.add("<" + param.paramName().snake() + ">...");
+      } else {
+        throw new AssertionError("all cases handled (param can't be flag)");
+      }
+    }
+    if (context.hasSubcommands()) {
+      joiner.add("<command> [<args>...]");
+    }
+    return joiner.toString();
+  }
+
+  /**
+   * Width of the first column, which contains the shapes of the parameters.
+   */
+  int shapeWidth() {
+    int parameterWidth = context.parameters().stream().map(Parameter::sample).mapToInt(String::length).max().orElse(0);
+    int subcommandWidth = context.subcommands().stream().map(Subcommand::name).mapToInt(String::length).max().orElse(0);
+    return Math.max(parameterWidth, subcommandWidth) + TOTAL_PADDING;
+  }
+
+  String shapeFormat() {
+    return "  %1$-" + (shapeWidth() - 2) + "s";
+  }
+
+  static String description(Subcommand subcommand) {
+    return String.join(" ", subcommand.description()).trim();
+  }
+}
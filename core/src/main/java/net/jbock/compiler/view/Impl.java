@@ -1,50 +1,143 @@
 package net.jbock.compiler.view;
 
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.TypeSpec;
 import net.jbock.compiler.Context;
 import net.jbock.compiler.Parameter;
 
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.Map;
 
 import static javax.lang.model.element.Modifier.PRIVATE;
 import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.element.Modifier.VOLATILE;
 
 /**
  * Defines the *_Impl inner class.
+ * A lazy parameter keeps its raw value, and is mapped on first invocation of its method.
  *
  * @see GeneratedClass
  */
 final class Impl {
 
+  private final Context context;
+
+  // parameter -> field that holds the (mapped) value
+  private final Map<Parameter, FieldSpec> fields;
+
+  // lazy parameter -> field that holds the raw value, until it is mapped
+  private final Map<Parameter, FieldSpec> rawFields;
+
+  // lazy parameter -> volatile field that is set after mapping
+  private final Map<Parameter, FieldSpec> mappedFields;
+
+  private Impl(Context context, Map<Parameter, FieldSpec> fields,
+               Map<Parameter, FieldSpec> rawFields, Map<Parameter, FieldSpec> mappedFields) {
+    this.context = context;
+    this.fields = fields;
+    this.rawFields = rawFields;
+    this.mappedFields = mappedFields;
+  }
+
   static TypeSpec define(Context context) {
+    NameAllocator names = new NameAllocator();
+    Map<Parameter, FieldSpec> fields = new HashMap<>();
+    Map<Parameter, FieldSpec> rawFields = new HashMap<>();
+    Map<Parameter, FieldSpec> mappedFields = new HashMap<>();
+    for (Parameter param : context.parameters()) {
+      String name = names.newName(param.paramName().camel());
+      fields.put(param, FieldSpec.builder(param.returnType(), name, PRIVATE).build());
+    }
+    for (Parameter param : context.parameters()) {
+      if (!param.isLazy()) {
+        continue;
+      }
+      String camel = param.paramName().camel();
+      rawFields.put(param, FieldSpec.builder(ParserState.stateField(param).type, names.newName(camel + "Raw"), PRIVATE).build());
+      mappedFields.put(param, FieldSpec.builder(boolean.class, names.newName(camel + "Mapped"), PRIVATE, VOLATILE).build());
+    }
+    return new Impl(context, fields, rawFields, mappedFields).define();
+  }
+
+  private TypeSpec define() {
     TypeSpec.Builder spec = TypeSpec.classBuilder(context.implType())
         .superclass(context.sourceType());
     for (Parameter param : context.parameters()) {
-      spec.addField(FieldSpec.builder(param.returnType(), param.paramName().camel()).build());
+      spec.addField(fields.get(param));
+      if (param.isLazy()) {
+        spec.addField(rawFields.get(param));
+        spec.addField(mappedFields.get(param));
+      }
     }
-    return spec.addModifiers(PRIVATE, STATIC)
-        .addMethod(implConstructor(context))
-        .addMethods(context.parameters().stream()
-            .map(Impl::parameterMethodOverride)
-            .collect(Collectors.toList()))
+    spec.addModifiers(PRIVATE, STATIC)
+        .addMethod(implConstructor());
+    for (Parameter param : context.parameters()) {
+      spec.addMethod(param.isLazy() ? lazyMethodOverride(param) : parameterMethodOverride(param));
+    }
+    return spec.build();
+  }
+
+  private MethodSpec parameterMethodOverride(Parameter param) {
+    return MethodSpec.methodBuilder(param.methodName())
+        .returns(param.returnType())
+        .addModifiers(param.getAccessModifiers())
+        .addStatement("return $N", fields.get(param))
         .build();
   }
 
-  private static MethodSpec parameterMethodOverride(Parameter param) {
+  /**
+   * Double-checked locking: The volatile write of the "mapped" field
+   * publishes the value. If the mapper fails, nothing is cached.
+   * After mapping, the raw value is released; it is not read again.
+   */
+  private MethodSpec lazyMethodOverride(Parameter param) {
+    FieldSpec field = fields.get(param);
+    FieldSpec mapped = mappedFields.get(param);
+    ParameterSpec local = param.coercion().constructorParam();
+    NameAllocator names = new NameAllocator();
+    names.newName(local.name);
+    String e = names.newName("e");
+    String token = names.newName("token");
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("if (!$N)", mapped)
+        .beginControlFlow("synchronized (this)")
+        .beginControlFlow("if (!$N)", mapped);
+    code.beginControlFlow("try")
+        .add(ParserState.mapStatements(context, param, rawFields.get(param), local, token, names))
+        .addStatement("this.$N = $L", field, param.coercion().extractExpr())
+        .endControlFlow();
+    code.beginControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("throw $T.$L.mappingFailed($N)", context.optionType(), param.enumConstant(), e)
+        .endControlFlow();
+    code.addStatement("this.$N = null", rawFields.get(param));
+    code.addStatement("this.$N = true", mapped);
+    code.endControlFlow()
+        .endControlFlow()
+        .endControlFlow();
     return MethodSpec.methodBuilder(param.methodName())
         .returns(param.returnType())
         .addModifiers(param.getAccessModifiers())
-        .addStatement("return $N", FieldSpec.builder(param.returnType(), param.paramName().camel()).build())
+        .addCode(code.build())
+        .addStatement("return this.$N", field)
         .build();
   }
 
-  private static MethodSpec implConstructor(Context context) {
+  private MethodSpec implConstructor() {
     MethodSpec.Builder spec = MethodSpec.constructorBuilder();
     for (Parameter p : context.parameters()) {
-      spec.addStatement("this.$N = $L", FieldSpec.builder(p.returnType(), p.paramName().camel()).build(), p.coercion().extractExpr());
-      spec.addParameter(p.coercion().constructorParam());
+      if (p.isLazy()) {
+        FieldSpec raw = rawFields.get(p);
+        ParameterSpec param = ParameterSpec.builder(raw.type, fields.get(p).name).build();
+        spec.addStatement("this.$N = $N", raw, param);
+        spec.addParameter(param);
+      } else {
+        spec.addStatement("this.$N = $L", fields.get(p), p.coercion().extractExpr());
+        spec.addParameter(p.coercion().constructorParam());
+      }
     }
     return spec.build();
   }
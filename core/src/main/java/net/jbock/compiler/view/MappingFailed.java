@@ -0,0 +1,52 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+
+import static com.squareup.javapoet.MethodSpec.constructorBuilder;
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeSpec.classBuilder;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+
+/**
+ * Defines the inner class MappingFailedException,
+ * which is thrown when a lazy parameter can't be mapped.
+ * The cause is the exception that was thrown by the mapper.
+ */
+final class MappingFailed {
+
+  static TypeSpec define(Context context, ClassName mappingFailedType) {
+    ParameterSpec paramParameter = builder(STRING, "parameter").build();
+    ParameterSpec paramMessage = builder(STRING, "message").build();
+    ParameterSpec paramCause = builder(RuntimeException.class, "cause").build();
+    FieldSpec fieldParameter = FieldSpec.builder(STRING, paramParameter.name, PRIVATE, FINAL).build();
+    return classBuilder(mappingFailedType)
+        .superclass(RuntimeException.class)
+        .addField(fieldParameter)
+        .addMethod(constructorBuilder()
+            .addModifiers(PRIVATE)
+            .addParameter(paramParameter)
+            .addParameter(paramMessage)
+            .addParameter(paramCause)
+            .addStatement("super($N, $N)", paramMessage, paramCause)
+            .addStatement("this.$N = $N", fieldParameter, paramParameter)
+            .build())
+        .addModifiers(STATIC, FINAL)
+        .addModifiers(context.getAccessModifiers())
+        .addJavadoc("Thrown when a lazy parameter can't be mapped.\n")
+        .addMethod(methodBuilder("getParameter")
+            .addJavadoc("@return the enum constant of the parameter, for example {@code FILE}\n")
+            .addStatement("return $N", fieldParameter)
+            .addModifiers(context.getAccessModifiers())
+            .returns(STRING)
+            .build())
+        .build();
+  }
+}
@@ -5,28 +5,31 @@ import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import net.jbock.compiler.Context;
+import net.jbock.compiler.IndyFree;
 import net.jbock.compiler.Parameter;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumMap;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static com.squareup.javapoet.ParameterSpec.builder;
 import static com.squareup.javapoet.TypeSpec.anonymousClassBuilder;
 import static java.util.Arrays.asList;
 import static java.util.Collections.nCopies;
-import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.STATIC;
 import static net.jbock.compiler.Constants.LIST_OF_STRING;
 import static net.jbock.compiler.Constants.STRING;
-import static net.jbock.compiler.Constants.listOf;
-import static net.jbock.compiler.Constants.mapOf;
 
 /**
  * Defines the *_Parser.Option enum.
@@ -43,37 +46,33 @@ final class OptionEnum {
 
   private final FieldSpec bundleKeyField;
 
-  private final MethodSpec optionNamesMethod;
+  private final MethodSpec forMnemonicMethod;
 
-  private final MethodSpec optionParsersMethod;
-
-  private final MethodSpec paramParsersMethod;
+  private final MethodSpec forLongNameMethod;
 
   private final FieldSpec shapeField;
 
   private OptionEnum(Context context, FieldSpec bundleKeyField, FieldSpec descriptionField, FieldSpec namesField,
-                     MethodSpec optionNamesMethod, MethodSpec optionParsersMethod, FieldSpec shapeField, MethodSpec paramParsersMethod) {
+                     MethodSpec forMnemonicMethod, MethodSpec forLongNameMethod, FieldSpec shapeField) {
     this.context = context;
     this.bundleKeyField = bundleKeyField;
     this.descriptionField = descriptionField;
     this.namesField = namesField;
-    this.optionNamesMethod = optionNamesMethod;
-    this.optionParsersMethod = optionParsersMethod;
+    this.forMnemonicMethod = forMnemonicMethod;
+    this.forLongNameMethod = forLongNameMethod;
     this.shapeField = shapeField;
-    this.paramParsersMethod = paramParsersMethod;
   }
 
   static OptionEnum create(Context context) {
-    FieldSpec namesField = FieldSpec.builder(LIST_OF_STRING, "names").build();
-    FieldSpec bundleKeyField = FieldSpec.builder(STRING, "bundleKey").build();
-    FieldSpec descriptionField = FieldSpec.builder(LIST_OF_STRING, "description").build();
-    FieldSpec shapeField = FieldSpec.builder(STRING, "shape").build();
-    MethodSpec optionNamesMethod = optionNamesMethod(context.optionType(), namesField);
-    MethodSpec optionParsersMethod = optionParsersMethod(context);
-    MethodSpec paramParsersMethod = paramParsersMethod(context);
-
-    return new OptionEnum(context, bundleKeyField, descriptionField, namesField, optionNamesMethod,
-        optionParsersMethod, shapeField, paramParsersMethod);
+    FieldSpec namesField = FieldSpec.builder(LIST_OF_STRING, "names", FINAL).build();
+    FieldSpec bundleKeyField = FieldSpec.builder(STRING, "bundleKey", FINAL).build();
+    FieldSpec descriptionField = FieldSpec.builder(LIST_OF_STRING, "description", FINAL).build();
+    FieldSpec shapeField = FieldSpec.builder(STRING, "shape", FINAL).build();
+    MethodSpec forMnemonicMethod = forMnemonicMethod(context);
+    MethodSpec forLongNameMethod = forLongNameMethod(context);
+
+    return new OptionEnum(context, bundleKeyField, descriptionField, namesField, forMnemonicMethod,
+        forLongNameMethod, shapeField);
   }
 
   TypeSpec define() {
@@ -83,16 +82,18 @@ final class OptionEnum {
       String enumConstant = param.enumConstant();
       spec.addEnumConstant(enumConstant, optionEnumConstant(param));
     }
-    return spec.addModifiers(PRIVATE)
+    spec.addModifiers(context.getAccessModifiers())
+        .addJavadoc("The parameters of this command.\n")
         .addField(namesField)
         .addField(bundleKeyField)
         .addField(descriptionField)
         .addField(shapeField)
         .addMethod(missingRequiredMethod())
-        .addMethod(privateConstructor())
-        .addMethod(optionNamesMethod)
-        .addMethod(optionParsersMethod)
-        .addMethod(paramParsersMethod)
+        .addMethod(describeMethod());
+    context.mappingFailedType().ifPresent(type -> spec.addMethod(mappingFailedMethod(type)));
+    return spec.addMethod(privateConstructor())
+        .addMethod(forMnemonicMethod)
+        .addMethod(forLongNameMethod)
         .build();
   }
 
@@ -141,91 +142,129 @@ final class OptionEnum {
         String.join(",$W", nCopies(strings.size(), "$S"))), args);
   }
 
-  private static MethodSpec optionNamesMethod(ClassName optionType, FieldSpec namesField) {
-    ParameterSpec result = builder(mapOf(STRING, optionType), "result").build();
-    ParameterSpec option = builder(optionType, "option").build();
-    ParameterSpec name = builder(STRING, "name").build();
+  /**
+   * Dispatches on the character after the single dash.
+   * The names are known at compile time, so no lookup table is needed.
+   */
+  private static MethodSpec forMnemonicMethod(Context context) {
+    ParameterSpec c = builder(TypeName.CHAR, "c").build();
     CodeBlock.Builder code = CodeBlock.builder();
-    code.addStatement("$T $N = new $T<>($T.values().length)",
-        result.type, result, HashMap.class, option.type);
-
-    code.add("for ($T $N : $T.values())\n", option.type, option, option.type).indent()
-        .addStatement("$N.$N.forEach($N -> $N.put($N, $N))", option, namesField, name, result, name, option)
+    code.beginControlFlow("switch ($N)", c);
+    for (Parameter option : context.options()) {
+      for (String name : option.names()) {
+        if (!name.startsWith("--")) {
+          code.add("case $L:\n", CodeBlock.of("'$L'", escapeChar(name.charAt(1)))).indent()
+              .addStatement("return $L", option.enumConstant())
+              .unindent();
+        }
+      }
+    }
+    code.add("default:\n").indent()
+        .addStatement("return null")
         .unindent();
-    code.addStatement("return $N", result);
-
-    return MethodSpec.methodBuilder("optionNames").returns(result.type)
+    code.endControlFlow();
+    return MethodSpec.methodBuilder("forMnemonic")
+        .addParameter(c)
+        .returns(context.optionType())
         .addCode(code.build())
         .addModifiers(STATIC)
         .build();
   }
 
-  private static MethodSpec optionParsersMethod(Context context) {
-    ParameterSpec parsers = builder(mapOf(context.optionType(), context.optionParserType()), "parsers").build();
-
-    return MethodSpec.methodBuilder("optionParsers").returns(parsers.type)
-        .addCode(optionParsersMethodCode(context, parsers))
-        .addModifiers(STATIC).build();
-  }
-
-  private static CodeBlock optionParsersMethodCode(Context context, ParameterSpec parsers) {
-    List<Parameter> options = context.options();
-    if (options.isEmpty()) {
-      return CodeBlock.builder().addStatement("return $T.emptyMap()", Collections.class).build();
-    }
-    if (options.size() == 1) {
-      Parameter param = options.get(0);
-      return CodeBlock.builder().addStatement("return $T.singletonMap($L, new $T())",
-          Collections.class, param.enumConstant(), optionParserType(context, param)).build();
+  /**
+   * Matches the region {@code [0, end)} of the token against the long names.
+   * The names are grouped by length first. If there is more than one name
+   * of the same length, the switch continues on the first character
+   * that tells them apart, if there is such a character.
+   */
+  private static MethodSpec forLongNameMethod(Context context) {
+    ParameterSpec token = builder(STRING, "token").build();
+    ParameterSpec end = builder(TypeName.INT, "end").build();
+    Map<Integer, Map<String, Parameter>> byLength = new TreeMap<>();
+    for (Parameter option : context.options()) {
+      for (String name : option.names()) {
+        if (name.startsWith("--")) {
+          byLength.computeIfAbsent(name.length(), k -> new LinkedHashMap<>()).put(name, option);
+        }
+      }
     }
     CodeBlock.Builder code = CodeBlock.builder();
-    code.addStatement("$T $N = new $T<>($T.class)", parsers.type, parsers, EnumMap.class, context.optionType());
-    for (Parameter param : options) {
-      code.addStatement("$N.put($L, new $T())", parsers, param.enumConstant(), optionParserType(context, param));
+    code.beginControlFlow("switch ($N)", end);
+    for (Map.Entry<Integer, Map<String, Parameter>> group : byLength.entrySet()) {
+      code.add("case $L:\n", group.getKey()).indent();
+      code.add(matchLongNames(token, group.getValue()));
+      code.unindent();
     }
-    code.addStatement("return $N", parsers);
-    return code.build();
+    code.add("default:\n").indent()
+        .addStatement("return null")
+        .unindent();
+    code.endControlFlow();
+    return MethodSpec.methodBuilder("forLongName")
+        .addParameters(asList(token, end))
+        .returns(context.optionType())
+        .addCode(code.build())
+        .addModifiers(STATIC)
+        .build();
   }
 
-  private static ClassName optionParserType(Context context, Parameter param) {
-    if (param.isRepeatable()) {
-      return context.optionParserType();
+  private static CodeBlock matchLongNames(ParameterSpec token, Map<String, Parameter> names) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    OptionalInt discriminator = discriminatingIndex(names.keySet());
+    if (names.size() == 1 || !discriminator.isPresent()) {
+      for (Map.Entry<String, Parameter> e : names.entrySet()) {
+        code.add(matchLongName(token, e.getKey(), e.getValue()));
+      }
+      return code.addStatement("return null").build();
     }
-    if (param.isFlag()) {
-      return context.flagParserType();
+    int index = discriminator.getAsInt();
+    code.beginControlFlow("switch ($N.charAt($L))", token, index);
+    for (Map.Entry<String, Parameter> e : names.entrySet()) {
+      code.add("case $L:\n", CodeBlock.of("'$L'", escapeChar(e.getKey().charAt(index)))).indent()
+          .add(matchLongName(token, e.getKey(), e.getValue()))
+          .addStatement("return null")
+          .unindent();
     }
-    return context.regularOptionParserType();
+    code.add("default:\n").indent()
+        .addStatement("return null")
+        .unindent();
+    return code.endControlFlow().build();
   }
 
-  private static MethodSpec paramParsersMethod(Context context) {
-    ParameterSpec parsers = builder(listOf(context.repeatableParamParserType()), "parsers").build();
-    CodeBlock code = paramParsersMethodCode(context);
-    return MethodSpec.methodBuilder("paramParsers")
-        .returns(parsers.type)
-        .addModifiers(STATIC)
-        .addStatement(code)
-        .build();
+  private static CodeBlock matchLongName(ParameterSpec token, String name, Parameter option) {
+    return CodeBlock.builder()
+        .add("if ($N.startsWith($S))\n", token, name).indent()
+        .addStatement("return $L", option.enumConstant())
+        .unindent().build();
   }
 
-  private static CodeBlock paramParsersMethodCode(Context context) {
-    List<Parameter> params = context.params();
-    if (params.isEmpty()) {
-      return CodeBlock.of("return $T.emptyList()", Collections.class);
-    }
-    if (params.size() == 1) {
-      Parameter param = params.get(0);
-      return CodeBlock.of("return $T.singletonList(new $T())", Collections.class, param.isRepeatable() ? context.repeatableParamParserType() : context.regularParamParserType());
-    }
-    CodeBlock.Builder code = CodeBlock.builder();
-    code.add("return $T.asList(", Arrays.class);
-    for (int i = 0; i < params.size(); i++) {
-      Parameter param = params.get(i);
-      code.add("new $T()", param.isRepeatable() ? context.repeatableParamParserType() : context.regularParamParserType());
-      if (i < params.size() - 1) {
-        code.add(",$W");
+  // first index at which all names have pairwise distinct characters
+  private static OptionalInt discriminatingIndex(Collection<String> names) {
+    int length = names.iterator().next().length();
+    for (int i = 2; i < length; i++) {
+      Set<Character> seen = new HashSet<>();
+      boolean distinct = true;
+      for (String name : names) {
+        if (!seen.add(name.charAt(i))) {
+          distinct = false;
+          break;
+        }
+      }
+      if (distinct) {
+        return OptionalInt.of(i);
       }
     }
-    return code.add(")").build();
+    return OptionalInt.empty();
+  }
+
+  private static String escapeChar(char c) {
+    switch (c) {
+      case '\\':
+        return "\\\\";
+      case '\'':
+        return "\\'";
+      default:
+        return Character.toString(c);
+    }
   }
 
   private MethodSpec privateConstructor() {
@@ -242,25 +281,42 @@ final class OptionEnum {
         .build();
   }
 
-  private MethodSpec missingRequiredMethod() {
+  private MethodSpec mappingFailedMethod(ClassName mappingFailedType) {
+    ParameterSpec e = ParameterSpec.builder(RuntimeException.class, "e").build();
     CodeBlock.Builder code = CodeBlock.builder()
-        .add("return new $T($S + name() +\n", RuntimeException.class, "Missing required: ").indent()
-        .addStatement("(names.isEmpty() ? $S : $S + $T.join($S, names) + $S))", "", " (", String.class, ", ", ")").unindent();
-    return MethodSpec.methodBuilder("missingRequired")
+        .addStatement("return new $T(name(), $L, $N)", mappingFailedType,
+            IndyFree.concat(context.isStartupMode(), CodeBlock.of("$S", "Invalid value for "), CodeBlock.of("describe()"),
+                CodeBlock.of("$S", ": "), CodeBlock.of("$N.getMessage()", e)), e);
+    return MethodSpec.methodBuilder("mappingFailed")
+        .addParameter(e)
         .returns(RuntimeException.class)
         .addCode(code.build())
         .build();
   }
 
-  MethodSpec optionNamesMethod() {
-    return optionNamesMethod;
+  private MethodSpec missingRequiredMethod() {
+    return MethodSpec.methodBuilder("missingRequired")
+        .returns(RuntimeException.class)
+        .addStatement("return new $T($T.MISSING_REQUIRED, this, -1, null, $S, this)",
+            context.parsingExceptionType(), context.errorCodeType(), "Missing required: %s")
+        .build();
   }
 
-  MethodSpec optionParsersMethod() {
-    return optionParsersMethod;
+  private MethodSpec describeMethod() {
+    return MethodSpec.methodBuilder("describe")
+        .returns(STRING)
+        .addStatement("return names.isEmpty() ? name() : $L",
+            IndyFree.concat(context.isStartupMode(), CodeBlock.of("name()"), CodeBlock.of("$S", " ("),
+                CodeBlock.of("$T.join($S, names)", String.class, ", "), CodeBlock.of("$S", ")")))
+        .build();
+  }
+
+  MethodSpec forMnemonicMethod() {
+    return forMnemonicMethod;
   }
 
-  MethodSpec paramParsersMethod() {
-    return paramParsersMethod;
+  MethodSpec forLongNameMethod() {
+    return forLongNameMethod;
   }
+
 }
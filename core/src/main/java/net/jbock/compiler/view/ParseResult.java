@@ -1,14 +1,20 @@
 package net.jbock.compiler.view;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
 import net.jbock.compiler.Context;
+import net.jbock.compiler.Subcommand;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static com.squareup.javapoet.MethodSpec.constructorBuilder;
 import static com.squareup.javapoet.MethodSpec.methodBuilder;
@@ -17,13 +23,17 @@ import static com.squareup.javapoet.TypeSpec.classBuilder;
 import static javax.lang.model.element.Modifier.ABSTRACT;
 import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
 
 /**
  * Defines the inner class ParseResult.
  */
 final class ParseResult {
 
+  private static final TypeVariableName R = TypeVariableName.get("R");
+
   private final Context context;
 
   private final FieldSpec result;
@@ -45,14 +55,57 @@ final class ParseResult {
     context.helpRequestedType()
         .map(this::defineHelpRequestedResult)
         .ifPresent(result::add);
+    context.subcommandVisitorType()
+        .map(this::defineSubcommandVisitor)
+        .ifPresent(result::add);
     return result;
   }
 
+  private TypeSpec defineSubcommandVisitor(ClassName visitorType) {
+    TypeSpec.Builder spec = TypeSpec.interfaceBuilder(visitorType)
+        .addTypeVariable(R)
+        .addModifiers(STATIC)
+        .addModifiers(context.getAccessModifiers())
+        .addJavadoc("Receives the parsed subcommand.\n\n" +
+            "@param <R> the result of the visit\n");
+    for (Subcommand subcommand : context.subcommands()) {
+      spec.addMethod(methodBuilder("visit")
+          .addJavadoc("Subcommand: $L\n", subcommand.name())
+          .addModifiers(PUBLIC, ABSTRACT)
+          .addParameter(subcommand.sourceType(), "subcommand")
+          .returns(R)
+          .build());
+    }
+    return spec.build();
+  }
+
   private TypeSpec defineHelpRequestedResult(ClassName helpRequestedType) {
-    return classBuilder(helpRequestedType)
+    TypeSpec.Builder spec = classBuilder(helpRequestedType)
         .superclass(context.parseResultType())
         .addModifiers(STATIC, FINAL)
-        .addModifiers(context.getAccessModifiers())
+        .addModifiers(context.getAccessModifiers());
+    if (!context.hasSubcommands()) {
+      return spec.build();
+    }
+    // nullable
+    ParameterSpec paramSubcommand = builder(STRING, "subcommand").build();
+    FieldSpec fieldSubcommand = FieldSpec.builder(paramSubcommand.type, paramSubcommand.name, PRIVATE, FINAL).build();
+    return spec.addField(fieldSubcommand)
+        .addMethod(constructorBuilder()
+            .addModifiers(PRIVATE)
+            .addStatement("this(null)")
+            .build())
+        .addMethod(constructorBuilder()
+            .addModifiers(PRIVATE)
+            .addParameter(paramSubcommand)
+            .addStatement("this.$N = $N", fieldSubcommand, paramSubcommand)
+            .build())
+        .addMethod(methodBuilder("getSubcommand")
+            .addJavadoc("@return the name of the subcommand, if the help of a subcommand was requested\n")
+            .addStatement("return $T.ofNullable($N)", Optional.class, fieldSubcommand)
+            .addModifiers(context.getAccessModifiers())
+            .returns(ParameterizedTypeName.get(Optional.class, String.class))
+            .build())
         .build();
   }
 
@@ -74,22 +127,91 @@ final class ParseResult {
             .addModifiers(context.getAccessModifiers())
             .returns(fieldError.type)
             .build())
+        .addMethod(methodBuilder("getCode")
+            .addJavadoc("@return the kind of failure\n")
+            .addStatement("return $N instanceof $T ? (($T) $N).code : $T.UNEXPECTED",
+                fieldError, context.parsingExceptionType(), context.parsingExceptionType(), fieldError, context.errorCodeType())
+            .addModifiers(context.getAccessModifiers())
+            .returns(context.errorCodeType())
+            .build())
+        .addMethod(methodBuilder("getOption")
+            .addJavadoc("@return the option or param that could not be read, if any\n")
+            .addStatement("return $N instanceof $T ? $T.ofNullable((($T) $N).option) : $T.empty()",
+                fieldError, context.parsingExceptionType(), Optional.class, context.parsingExceptionType(), fieldError, Optional.class)
+            .addModifiers(context.getAccessModifiers())
+            .returns(ParameterizedTypeName.get(ClassName.get(Optional.class), context.optionType()))
+            .build())
+        .addMethod(methodBuilder("getOptionName")
+            .addJavadoc("@return the name of the option or param that could not be read, if any;\n" +
+                "if a subcommand failed, this is the name of a constant in its own {@code Option} enum\n")
+            .addStatement("return $N instanceof $T ? $T.ofNullable((($T) $N).optionName) : $T.empty()",
+                fieldError, context.parsingExceptionType(), Optional.class, context.parsingExceptionType(), fieldError, Optional.class)
+            .addModifiers(context.getAccessModifiers())
+            .returns(ParameterizedTypeName.get(Optional.class, String.class))
+            .build())
+        .addMethod(methodBuilder("getIndex")
+            .addJavadoc("@return the index of the offending token in the input, or {@code -1} if there is no such token\n")
+            .addStatement("return $N instanceof $T ? (($T) $N).index : -1",
+                fieldError, context.parsingExceptionType(), context.parsingExceptionType(), fieldError)
+            .addModifiers(context.getAccessModifiers())
+            .returns(TypeName.INT)
+            .build())
         .build();
   }
 
   private TypeSpec defineSuccessResult() {
     ParameterSpec paramResult = builder(result.type, result.name).build();
-    return classBuilder(context.parsingSuccessType())
+    TypeSpec.Builder spec = classBuilder(context.parsingSuccessType())
         .superclass(context.parseResultType())
         .addField(result)
+        .addModifiers(STATIC, FINAL)
+        .addModifiers(context.getAccessModifiers())
+        .addMethod(getResultMethod());
+    if (!context.hasSubcommands()) {
+      return spec.addMethod(constructorBuilder()
+          .addModifiers(PRIVATE)
+          .addParameter(paramResult)
+          .addStatement("this.$N = $N", result, paramResult)
+          .build())
+          .build();
+    }
+    ParameterSpec paramSubcommand = builder(Object.class, "subcommand").build();
+    FieldSpec fieldSubcommand = FieldSpec.builder(paramSubcommand.type, paramSubcommand.name, PRIVATE, FINAL).build();
+    return spec.addField(fieldSubcommand)
         .addMethod(constructorBuilder()
             .addModifiers(PRIVATE)
             .addParameter(paramResult)
+            .addParameter(paramSubcommand)
             .addStatement("this.$N = $N", result, paramResult)
+            .addStatement("this.$N = $N", fieldSubcommand, paramSubcommand)
             .build())
-        .addModifiers(STATIC, FINAL)
+        .addMethod(acceptMethod(fieldSubcommand))
+        .build();
+  }
+
+  /**
+   * The subcommand's class selects the visitor method.
+   */
+  private MethodSpec acceptMethod(FieldSpec fieldSubcommand) {
+    ClassName visitorType = context.subcommandVisitorType().orElseThrow(AssertionError::new);
+    ParameterSpec visitor = builder(ParameterizedTypeName.get(visitorType, R), "visitor").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    for (Subcommand subcommand : context.subcommands()) {
+      code.add("if ($N instanceof $T)\n", fieldSubcommand, subcommand.sourceType()).indent()
+          .addStatement("return $N.visit(($T) $N)", visitor, subcommand.sourceType(), fieldSubcommand)
+          .unindent();
+    }
+    code.addStatement("throw new $T($N)", AssertionError.class, fieldSubcommand);
+    return methodBuilder("accept")
+        .addJavadoc("Passes the parsed subcommand to the visitor.\n\n" +
+            "@param visitor receives the subcommand\n" +
+            "@param <R> the result of the visit\n" +
+            "@return the result of the visitor\n")
+        .addTypeVariable(R)
+        .addParameter(visitor)
+        .returns(R)
+        .addCode(code.build())
         .addModifiers(context.getAccessModifiers())
-        .addMethod(getResultMethod())
         .build();
   }
 
@@ -1,78 +1,263 @@
 package net.jbock.compiler.view;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import net.jbock.coerce.Coercion;
+import net.jbock.coerce.PrimitiveArray;
+import net.jbock.coerce.Skew;
 import net.jbock.compiler.Context;
+import net.jbock.compiler.IndyFree;
 import net.jbock.compiler.Parameter;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
+import static com.squareup.javapoet.TypeName.BOOLEAN;
 import static com.squareup.javapoet.TypeName.INT;
+import static com.squareup.javapoet.TypeName.LONG;
+import static java.util.Arrays.asList;
+import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
 import static javax.lang.model.element.Modifier.STATIC;
-import static net.jbock.coerce.Util.addBreaks;
+import static net.jbock.compiler.Constants.LIST_OF_CHAR_SEQUENCE;
+import static net.jbock.compiler.Constants.LIST_OF_STRING;
 import static net.jbock.compiler.Constants.STRING;
-import static net.jbock.compiler.Constants.listOf;
-import static net.jbock.compiler.Constants.mapOf;
+import static net.jbock.compiler.Constants.STRING_ARRAY;
+import static net.jbock.compiler.Constants.STRING_ITERATOR;
 
 /**
- * Defines the inner class ParserState
+ * Defines the inner class ParserState.
+ * Each parameter has its own field in this class:
+ * A flag is a {@code boolean}, a repeatable parameter is a list,
+ * and any other parameter is a single slot that is {@code null} until its token is read.
+ * A primitive array, or primitive stream, is stored in a growable array and a size field;
+ * its values are parsed as soon as they are read.
+ * A lazy tail holds the unread remainder of the input.
+ * If the command has them, the state also holds the parser's snapshot of fallback values,
+ * the parser's defaults file, and the timeout for asynchronous mappers.
  */
 final class ParserState {
 
   private final Context context;
 
-  private final FieldSpec optionNamesField;
+  // parameter -> field, in the order of context.parameters()
+  private final Map<Parameter, FieldSpec> fields;
 
-  private final FieldSpec optionParsersField;
+  // primitive array -> number of values in its field
+  private final Map<Parameter, FieldSpec> sizes;
 
-  private final FieldSpec paramParsersField;
+  // mapped parameter -> index of the token that holds its value, or an array of indexes if it is repeatable
+  private final Map<Parameter, FieldSpec> indexes;
 
   private final MethodSpec tryReadOptionMethod;
 
-  private ParserState(Context context, FieldSpec optionNamesField, FieldSpec optionParsersField,
-                      FieldSpec paramParsersField, MethodSpec tryReadOptionMethod) {
-    this.context = context;
-    this.optionNamesField = optionNamesField;
-    this.optionParsersField = optionParsersField;
-    this.paramParsersField = paramParsersField;
-    this.tryReadOptionMethod = tryReadOptionMethod;
-  }
+  private final MethodSpec readMethod;
 
-  static ParserState create(Context context, OptionEnum optionEnum) {
+  private final MethodSpec readParamMethod;
 
-    // read-only lookups
-    FieldSpec optionNamesField = FieldSpec.builder(mapOf(STRING, context.optionType()), "optionNames")
-        .initializer("$T.$N()", context.optionType(), optionEnum.optionNamesMethod())
-        .build();
+  private final MethodSpec resetMethod;
 
-    // stateful parsers
-    FieldSpec optionParsersField = FieldSpec.builder(mapOf(context.optionType(), context.optionParserType()), "optionParsers")
-        .initializer("$T.$N()", context.optionType(), optionEnum.optionParsersMethod())
-        .build();
+  // values from a file, or null
+  private final Optional<FieldSpec> defaults;
 
-    FieldSpec paramParsersField = FieldSpec.builder(listOf(context.repeatableParamParserType()), "paramParsers")
-        .initializer("$T.$N()", context.optionType(), optionEnum.paramParsersMethod())
-        .build();
+  // index of the last token that was read
+  private static final FieldSpec TOKEN_INDEX = FieldSpec.builder(INT, "tokenIndex").initializer("-1").build();
+
+  // index of the token that holds the value that is being mapped, or -1 if it is not known
+  private static final FieldSpec MAPPING_INDEX = FieldSpec.builder(INT, "mappingIndex").initializer("-1").build();
+
+  // fallback values, in the order of context.fallbacks()
+  private static final FieldSpec FALLBACKS = FieldSpec.builder(STRING_ARRAY, "fallbacks", PRIVATE, FINAL).build();
+
+  // nanoseconds, or 0 to wait without limit
+  private static final FieldSpec MAPPER_TIMEOUT = FieldSpec.builder(LONG, "mapperTimeout", PRIVATE, FINAL).build();
+
+  // List<CompletableFuture<?>>
+  private static final ParameterizedTypeName PENDING_TYPE = ParameterizedTypeName.get(ClassName.get(List.class),
+      ParameterizedTypeName.get(ClassName.get(CompletableFuture.class), WildcardTypeName.subtypeOf(Object.class)));
+
+  private static final String FAILED_FUTURE = "failedFuture";
+
+  private ParserState(Context context, Map<Parameter, FieldSpec> fields, Map<Parameter, FieldSpec> sizes,
+                      Map<Parameter, FieldSpec> indexes, MethodSpec tryReadOptionMethod, MethodSpec readMethod,
+                      MethodSpec readParamMethod) {
+    this.context = context;
+    this.fields = fields;
+    this.sizes = sizes;
+    this.indexes = indexes;
+    this.tryReadOptionMethod = tryReadOptionMethod;
+    this.readMethod = readMethod;
+    this.readParamMethod = readParamMethod;
+    this.resetMethod = resetMethod(fields, sizes, indexes);
+    this.defaults = context.defaultsType().map(type -> FieldSpec.builder(type, "defaults", PRIVATE, FINAL).build());
+  }
 
-    MethodSpec tryReadOptionMethod = tryReadOptionMethod(context, optionNamesField);
+  static ParserState create(Context context, OptionEnum optionEnum) {
+    Map<Parameter, FieldSpec> fields = new LinkedHashMap<>();
+    Map<Parameter, FieldSpec> sizes = new LinkedHashMap<>();
+    NameAllocator names = new NameAllocator();
+    for (Parameter param : context.parameters()) {
+      fields.put(param, stateField(param));
+      names.newName(param.paramName().camel());
+    }
+    for (Parameter param : context.parameters()) {
+      if (param.coercion().primitiveArray().isPresent()) {
+        sizes.put(param, FieldSpec.builder(INT, names.newName(param.paramName().camel() + "Size")).build());
+      }
+    }
+    Map<Parameter, FieldSpec> indexes = new LinkedHashMap<>();
+    for (Parameter param : context.parameters()) {
+      if (param.isFlag() || param.isLazyTail() || param.isLazy() || sizes.containsKey(param)) {
+        // nothing to map here, or the index is reported when the value is read
+        continue;
+      }
+      String camel = param.paramName().camel();
+      indexes.put(param, param.isRepeatable() ?
+          FieldSpec.builder(int[].class, names.newName(camel + "Indexes")).initializer("new int[0]").build() :
+          FieldSpec.builder(INT, names.newName(camel + "Index")).initializer("-1").build());
+    }
+    MethodSpec tryReadOptionMethod = tryReadOptionMethod(context, optionEnum);
+    MethodSpec readMethod = readMethod(context, new FieldStore(context, fields, sizes, indexes));
+    MethodSpec readParamMethod = readParamMethod(context, fields, sizes, indexes);
+    return new ParserState(context, fields, sizes, indexes, tryReadOptionMethod, readMethod, readParamMethod);
+  }
 
-    return new ParserState(context, optionNamesField, optionParsersField, paramParsersField, tryReadOptionMethod);
+  static FieldSpec stateField(Parameter param) {
+    String name = param.paramName().camel();
+    if (param.isFlag()) {
+      return FieldSpec.builder(BOOLEAN, name).build();
+    }
+    if (param.isLazyTail()) {
+      return FieldSpec.builder(STRING_ITERATOR, name).build();
+    }
+    Optional<PrimitiveArray> primitiveArray = param.coercion().primitiveArray();
+    if (primitiveArray.isPresent()) {
+      return FieldSpec.builder(primitiveArray.get().arrayType(), name)
+          .initializer("new $T[0]", primitiveArray.get().elementType())
+          .build();
+    }
+    if (param.isRepeatable()) {
+      TypeName type = param.isPositional() ? LIST_OF_STRING : LIST_OF_CHAR_SEQUENCE;
+      return FieldSpec.builder(type, name).initializer("new $T<>()", ArrayList.class).build();
+    }
+    return FieldSpec.builder(param.isPositional() ? STRING : TypeName.get(CharSequence.class), name).build();
   }
 
   TypeSpec define() {
-    return TypeSpec.classBuilder(context.parserStateType())
+    TypeSpec.Builder spec = TypeSpec.classBuilder(context.parserStateType())
         .addModifiers(PRIVATE, STATIC)
-        .addMethod(buildMethod())
-        .addMethod(tryReadOptionMethod)
-        .addFields(Arrays.asList(optionNamesField, optionParsersField, paramParsersField))
+        .addFields(fields.values())
+        .addFields(sizes.values())
+        .addFields(indexes.values())
+        .addField(TOKEN_INDEX);
+    if (!indexes.isEmpty()) {
+      spec.addField(MAPPING_INDEX);
+    }
+    List<FieldSpec> finalFields = new ArrayList<>();
+    if (context.hasFallbacks()) {
+      finalFields.add(FALLBACKS);
+    }
+    defaults.ifPresent(finalFields::add);
+    if (context.hasAsyncMappers()) {
+      finalFields.add(MAPPER_TIMEOUT);
+    }
+    if (!finalFields.isEmpty()) {
+      MethodSpec.Builder constructor = MethodSpec.constructorBuilder();
+      for (FieldSpec field : finalFields) {
+        ParameterSpec param = ParameterSpec.builder(field.type, field.name).build();
+        constructor.addParameter(param).addStatement("this.$N = $N", field, param);
+      }
+      spec.addFields(finalFields);
+      spec.addMethod(constructor.build());
+    }
+    spec.addMethod(buildMethod());
+    spec.addMethod(resetMethod);
+    if (context.hasAsyncMappers()) {
+      spec.addMethod(awaitMethod());
+      spec.addMethod(failedFutureMethod());
+    }
+    if (!context.options().isEmpty()) {
+      spec.addMethod(tryReadOptionMethod);
+      spec.addMethod(readMethod);
+      spec.addMethod(readOptionArgumentMethod(context));
+    }
+    if (!context.params().isEmpty()) {
+      spec.addMethod(readParamMethod);
+    }
+    return spec.build();
+  }
+
+  /**
+   * Clears the state, so that it can be used for the next parse on the same thread.
+   * A growable array keeps its capacity, unless it is the backing array of a primitive stream.
+   * A list that the Impl holds on to, because it maps its values later, is replaced.
+   */
+  private static MethodSpec resetMethod(Map<Parameter, FieldSpec> fields, Map<Parameter, FieldSpec> sizes,
+                                        Map<Parameter, FieldSpec> indexes) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    for (Map.Entry<Parameter, FieldSpec> entry : fields.entrySet()) {
+      Parameter param = entry.getKey();
+      FieldSpec field = entry.getValue();
+      Optional<PrimitiveArray> primitiveArray = param.coercion().primitiveArray();
+      if (param.isFlag()) {
+        code.addStatement("this.$N = false", field);
+      } else if (param.isLazyTail()) {
+        code.addStatement("this.$N = null", field);
+      } else if (param.isLazy() && param.isRepeatable()) {
+        code.addStatement("this.$N = new $T<>()", field, ArrayList.class);
+      } else if (primitiveArray.isPresent()) {
+        if (primitiveArray.get().isStream()) {
+          code.addStatement("this.$N = new $T[0]", field, primitiveArray.get().elementType());
+        }
+        code.addStatement("this.$N = 0", sizes.get(param));
+      } else if (param.isRepeatable()) {
+        code.addStatement("this.$N.clear()", field);
+      } else {
+        code.addStatement("this.$N = null", field);
+      }
+    }
+    for (Map.Entry<Parameter, FieldSpec> entry : indexes.entrySet()) {
+      if (!entry.getKey().isRepeatable()) {
+        code.addStatement("this.$N = -1", entry.getValue());
+      }
+    }
+    code.addStatement("this.$N = -1", TOKEN_INDEX);
+    if (!indexes.isEmpty()) {
+      code.addStatement("this.$N = -1", MAPPING_INDEX);
+    }
+    return MethodSpec.methodBuilder("reset")
+        .addCode(code.build())
         .build();
   }
 
-  private static MethodSpec tryReadOptionMethod(Context context, FieldSpec optionNamesField) {
+  static MethodSpec tryReadOptionMethod(Context context, OptionEnum optionEnum) {
     ParameterSpec token = ParameterSpec.builder(STRING, "token").build();
     ParameterSpec index = ParameterSpec.builder(INT, "index").build();
 
@@ -81,11 +266,11 @@ final class ParserState {
         .addStatement("return null").unindent();
 
     code.add("if ($N.charAt(1) != '-')\n", token).indent()
-        .addStatement("return $N.get($N.substring(0, 2))", optionNamesField, token).unindent();
+        .addStatement("return $T.$N($N.charAt(1))", context.optionType(), optionEnum.forMnemonicMethod(), token).unindent();
 
     code.addStatement("$T $N = $N.indexOf('=')", INT, index, token)
-        .addStatement("return $N.get($N.substring(0, $N < 0 ? $N.length() : $N))",
-            optionNamesField, token, index, token, index);
+        .addStatement("return $T.$N($N, $N < 0 ? $N.length() : $N)",
+            context.optionType(), optionEnum.forLongNameMethod(), token, index, token, index);
 
     return MethodSpec.methodBuilder("tryReadOption")
         .addParameter(token)
@@ -93,61 +278,845 @@ final class ParserState {
         .returns(context.optionType()).build();
   }
 
+  /**
+   * Dispatches on the option constant.
+   * What each case does with its option is up to the store;
+   * the parser state writes directly into the field of that option.
+   * In a token like {@code -xzf}, each flag is followed by the next mnemonic,
+   * which is looked up by its character, until an option that takes a value ends the cluster.
+   */
+  static MethodSpec readMethod(Context context, Store store) {
+    ParameterSpec option = ParameterSpec.builder(context.optionType(), "option").build();
+    ParameterSpec token = ParameterSpec.builder(STRING, "token").build();
+    ParameterSpec it = ParameterSpec.builder(STRING_ITERATOR, "it").build();
+    ParameterSpec position = ParameterSpec.builder(INT, "position").build();
+    ParameterSpec next = ParameterSpec.builder(context.optionType(), "next").build();
+    boolean anyFlags = context.options().stream().anyMatch(Parameter::isFlag);
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (anyFlags) {
+      code.add("// the index of the current mnemonic, if the token is not a long option\n");
+      code.addStatement("$T $N = 1", INT, position);
+      code.beginControlFlow("while (true)");
+    }
+    code.beginControlFlow("switch ($N)", option);
+    CodeBlock positionArg = anyFlags ? CodeBlock.of("$N", position) : CodeBlock.of("1");
+    for (Parameter param : context.options()) {
+      code.add("case $L:\n", param.enumConstant()).indent();
+      if (param.isFlag()) {
+        code.add("if ($N.charAt(1) == '-' && $N.indexOf('=') >= 0)\n", token, token).indent()
+            .addStatement(throwInvalidTokenStatement(context, option, token))
+            .unindent();
+        code.add(store.flag(param, option));
+        code.addStatement("break").unindent();
+        continue;
+      }
+      code.add(store.option(param, option, CodeBlock.of("readOptionArgument($N, $N, $L, $N)", option, token, positionArg, it)));
+      code.addStatement("return").unindent();
+    }
+    code.add("default:\n").indent()
+        .addStatement("throw new $T($N)", AssertionError.class, option)
+        .unindent();
+    code.endControlFlow();
+    if (anyFlags) {
+      code.add("// the option was a flag\n");
+      code.add("if ($N.charAt(1) == '-' || ++$N == $N.length())\n", token, position, token).indent()
+          .addStatement("return")
+          .unindent();
+      code.addStatement("$T $N = $T.forMnemonic($N.charAt($N))", next.type, next, context.optionType(), token, position);
+      code.add("if ($N == null)\n", next).indent()
+          .addStatement(throwInvalidTokenStatement(context, option, token))
+          .unindent();
+      code.addStatement("$N = $N", option, next);
+      code.endControlFlow();
+    }
+    return MethodSpec.methodBuilder("read")
+        .addParameters(asList(option, token, it))
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * What the read method does with an option, once it is recognized.
+   */
+  interface Store {
+
+    /**
+     * @return statements that handle the flag
+     */
+    CodeBlock flag(Parameter param, ParameterSpec option);
+
+    /**
+     * @param argument an expression that reads the value, it must be evaluated once
+     * @return statements that handle the option
+     */
+    CodeBlock option(Parameter param, ParameterSpec option, CodeBlock argument);
+  }
+
+  /**
+   * Writes each option into its field.
+   */
+  private static final class FieldStore implements Store {
+
+    private final Context context;
+    private final Map<Parameter, FieldSpec> fields;
+    private final Map<Parameter, FieldSpec> sizes;
+    private final Map<Parameter, FieldSpec> indexes;
+
+    FieldStore(Context context, Map<Parameter, FieldSpec> fields, Map<Parameter, FieldSpec> sizes,
+               Map<Parameter, FieldSpec> indexes) {
+      this.context = context;
+      this.fields = fields;
+      this.sizes = sizes;
+      this.indexes = indexes;
+    }
+
+    @Override
+    public CodeBlock flag(Parameter param, ParameterSpec option) {
+      FieldSpec field = fields.get(param);
+      return CodeBlock.builder()
+          .add("if (this.$N)\n", field).indent()
+          .addStatement(throwRepetitionErrorStatement(context, option))
+          .unindent()
+          .addStatement("this.$N = true", field)
+          .build();
+    }
+
+    @Override
+    public CodeBlock option(Parameter param, ParameterSpec option, CodeBlock argument) {
+      FieldSpec field = fields.get(param);
+      if (sizes.containsKey(param)) {
+        return appendStatements(context, param, field, sizes.get(param), CodeBlock.of("$N", option),
+            CodeBlock.of("$L.toString()", argument));
+      }
+      if (param.isRepeatable()) {
+        return CodeBlock.builder()
+            .addStatement("this.$N.add($L)", field, argument)
+            .add(storeIndexStatements(param, field, indexes.get(param)))
+            .build();
+      }
+      return CodeBlock.builder()
+          .add("if (this.$N != null)\n", field).indent()
+          .addStatement(throwRepetitionErrorStatement(context, option))
+          .unindent()
+          .addStatement("this.$N = $L", field, argument)
+          .add(storeIndexStatements(param, field, indexes.get(param)))
+          .build();
+    }
+  }
+
+  /**
+   * Remembers the index of the token that holds the value that was just stored,
+   * so that a mapping failure can be reported with this index.
+   * The indexes of a repeatable parameter are parallel to its list.
+   *
+   * @param index the index field, or {@code null} if the parameter is lazy
+   */
+  private static CodeBlock storeIndexStatements(Parameter param, FieldSpec field, FieldSpec index) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (index == null) {
+      return code.build();
+    }
+    if (!param.isRepeatable()) {
+      return code.addStatement("this.$N = this.$N", index, TOKEN_INDEX).build();
+    }
+    return code.add("if (this.$N.size() > this.$N.length)\n", field, index).indent()
+        .addStatement("this.$N = $T.copyOf(this.$N, 2 * this.$N.length + 8)", index, Arrays.class, index, index)
+        .unindent()
+        .addStatement("this.$N[this.$N.size() - 1] = this.$N", index, field, TOKEN_INDEX)
+        .build();
+  }
+
+  /**
+   * Parses the value, and appends it to the array.
+   * The array grows by at least half of its length, so the number of copies is logarithmic.
+   * The failure is reported here, because the token index is not known later.
+   *
+   * @param option an expression of the option type
+   * @param value an expression of type {@code String}
+   */
+  private static CodeBlock appendStatements(Context context, Parameter param, FieldSpec field, FieldSpec size,
+                                            CodeBlock option, CodeBlock value) {
+    PrimitiveArray primitiveArray = param.coercion().primitiveArray().orElseThrow(AssertionError::new);
+    ParameterSpec e = ParameterSpec.builder(NumberFormatException.class, "e").build();
+    return CodeBlock.builder()
+        .add("if (this.$N == this.$N.length)\n", size, field).indent()
+        .addStatement("this.$N = $T.copyOf(this.$N, 2 * this.$N + 8)", field, Arrays.class, field, size)
+        .unindent()
+        .beginControlFlow("try")
+        .addStatement("this.$N[this.$N] = $L", field, size, primitiveArray.parse(value))
+        .nextControlFlow("catch ($T $N)", e.type, e)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $L, $N, $N, $S, $N.getMessage())", context.parsingExceptionType(),
+            context.errorCodeType(), option, TOKEN_INDEX, e, "%s", e)
+        .endControlFlow()
+        .addStatement("this.$N++", size)
+        .build();
+  }
+
+  static CodeBlock throwInvalidTokenStatement(Context context, ParameterSpec option, ParameterSpec token) {
+    return CodeBlock.of("throw new $T($T.INVALID_TOKEN, $N, $N, null, $S, $N)", context.parsingExceptionType(),
+        context.errorCodeType(), option, TOKEN_INDEX, "Invalid token: %s", token);
+  }
+
+  /**
+   * Stores the token in the param at the given position.
+   *
+   * @return the increment of the position, which is {@code 0} for the repeatable param
+   */
+  private static MethodSpec readParamMethod(Context context, Map<Parameter, FieldSpec> fields,
+                                            Map<Parameter, FieldSpec> sizes, Map<Parameter, FieldSpec> indexes) {
+    ParameterSpec position = ParameterSpec.builder(INT, "position").build();
+    ParameterSpec token = ParameterSpec.builder(STRING, "token").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("switch ($N)", position);
+    for (Parameter param : context.params()) {
+      if (param.isLazyTail()) {
+        // the parse loop stops before this position
+        continue;
+      }
+      FieldSpec field = fields.get(param);
+      code.add("case $L:\n", param.positionalIndex().orElseThrow(AssertionError::new)).indent();
+      if (sizes.containsKey(param)) {
+        code.add(appendStatements(context, param, field, sizes.get(param),
+            CodeBlock.of("$T.$L", context.optionType(), param.enumConstant()), CodeBlock.of("$N", token)))
+            .addStatement("return 0");
+      } else if (param.isRepeatable()) {
+        code.addStatement("this.$N.add($N)", field, token)
+            .add(storeIndexStatements(param, field, indexes.get(param)))
+            .addStatement("return 0");
+      } else {
+        code.addStatement("this.$N = $N", field, token)
+            .add(storeIndexStatements(param, field, indexes.get(param)))
+            .addStatement("return 1");
+      }
+      code.unindent();
+    }
+    code.add("default:\n").indent()
+        .addStatement("throw new $T($T.EXCESS_PARAM, null, $N, null, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), TOKEN_INDEX, "Excess param: %s", token)
+        .unindent();
+    code.endControlFlow();
+    return MethodSpec.methodBuilder("readParam")
+        .addParameters(asList(position, token))
+        .returns(INT)
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * The parameters are extracted one after another, in declaration order,
+   * so the first failure decides the error message.
+   * Streams are only used if there is a custom collector, or a lazy tail.
+   * An exception in a mapper or collector is reported as a failure of the current parameter,
+   * at the index of the token that holds the failing value, if it is known.
+   * A fallback value, and then a value from the defaults file,
+   * is only used if the option was not on the command line,
+   * and it goes through the same mapper.
+   * Asynchronous mappers are started first, so they run while the other parameters are mapped;
+   * their results are awaited in declaration order.
+   * If the build fails, the futures that are still running are cancelled.
+   */
   private MethodSpec buildMethod() {
 
-    CodeBlock.Builder args = CodeBlock.builder().add("\n");
+    // the locals are named like the parameters, other names must not collide with them
+    NameAllocator names = new NameAllocator();
+    for (Parameter param : context.parameters()) {
+      names.newName(param.coercion().constructorParam().name);
+    }
+    String token = names.newName("token");
+    ParameterSpec current = ParameterSpec.builder(context.optionType(), names.newName("option")).build();
+    ParameterSpec e = ParameterSpec.builder(RuntimeException.class, names.newName("e")).build();
+
+    boolean mapping = false;
+    CodeBlock.Builder code = CodeBlock.builder();
+    CodeBlock.Builder args = CodeBlock.builder();
+    Map<Parameter, String> futures = new HashMap<>();
+    String start = null;
+    String pending = null;
+    if (context.hasAsyncMappers()) {
+      mapping = true;
+      start = names.newName("start");
+      pending = names.newName("pending");
+      code.addStatement("$T $N = $T.nanoTime()", LONG, start, System.class);
+    }
+    for (Parameter param : context.asyncParameters()) {
+      FieldSpec field = fields.get(param);
+      String future = names.newName(param.coercion().constructorParam().name + (param.isRepeatable() ? "Futures" : "Future"));
+      futures.put(param, future);
+      code.add(fillStatements(param, field));
+      code.add(startStatements(param, field, future, pending, token, e, names));
+    }
     for (int j = 0; j < context.parameters().size(); j++) {
       Parameter param = context.parameters().get(j);
-      args.add(extractExpression(param));
+      FieldSpec field = fields.get(param);
+      if (!futures.containsKey(param)) {
+        code.add(fillStatements(param, field));
+      }
+      code.add(checkRequiredStatements(param, field));
+      if (param.isLazy()) {
+        // the Impl maps the raw value later
+        args.add("this.$N", field);
+      } else if (sizes.containsKey(param)) {
+        // already parsed
+        ParameterSpec local = param.coercion().constructorParam();
+        PrimitiveArray primitiveArray = param.coercion().primitiveArray().orElseThrow(AssertionError::new);
+        code.addStatement("$T $N = $T.$L(this.$N, $L, this.$N)", local.type, local, Arrays.class,
+            primitiveArray.isStream() ? "stream" : "copyOfRange", field, 0, sizes.get(param));
+        args.add("$N", local);
+      } else {
+        ParameterSpec local = param.coercion().constructorParam();
+        if (!param.isFlag() && !param.isLazyTail()) {
+          mapping = true;
+          code.addStatement("$N = $T.$L", current, context.optionType(), param.enumConstant());
+          if (param.isRepeatable()) {
+            code.addStatement("this.$N = -1", MAPPING_INDEX);
+          } else {
+            code.addStatement("this.$N = this.$N", MAPPING_INDEX, indexes.get(param));
+          }
+        }
+        if (futures.containsKey(param)) {
+          code.add(awaitStatements(param, local, futures.get(param), start, names));
+        } else {
+          code.add(mapStatements(context, param, field, indexes.get(param), local, token, names));
+        }
+        args.add("$N", local);
+      }
       if (j < context.parameters().size() - 1) {
-        args.add(",\n");
+        args.add(", ");
       }
     }
-    return MethodSpec.methodBuilder("build")
-        .addStatement("return new $T($L)", context.implType(), args.build())
-        .returns(context.sourceType())
+    code.addStatement("return new $T($L)", context.implType(), args.build());
+    MethodSpec.Builder spec = MethodSpec.methodBuilder("build")
+        .returns(context.sourceType());
+    if (!mapping) {
+      return spec.addCode(code.build()).build();
+    }
+    spec.addStatement("$T $N = null", current.type, current);
+    if (pending != null) {
+      spec.addStatement("$T $N = new $T<>()", PENDING_TYPE, pending, ArrayList.class);
+    }
+    spec.beginControlFlow("try")
+        .addCode(code.build())
+        .nextControlFlow("catch ($T $N)", context.parsingExceptionType(), e)
+        .addStatement("throw $N", e)
+        .nextControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $N, this.$N, $N, $S, $N.getMessage())", context.parsingExceptionType(),
+            context.errorCodeType(), current, MAPPING_INDEX, e, "%s", e);
+    if (pending != null) {
+      // after a failure, nobody waits for the remaining futures
+      String future = names.clone().newName("future");
+      spec.nextControlFlow("finally")
+          .beginControlFlow("for ($T $N : $N)", PENDING_TYPE.typeArguments.get(0), future, pending)
+          .addCode(CodeBlock.builder()
+              .add("if ($N != null)\n", future).indent()
+              .addStatement("$N.cancel(true)", future).unindent()
+              .build())
+          .endControlFlow();
+    }
+    return spec.endControlFlow().build();
+  }
+
+  /**
+   * Fills in the fallback or default value, if the option was not on the command line.
+   */
+  private CodeBlock fillStatements(Parameter param, FieldSpec field) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (param.hasFallback()) {
+      code.add("if (this.$N == null)\n", field).indent()
+          .addStatement("this.$N = this.$N[$L]", field, FALLBACKS, context.fallbacks().indexOf(param))
+          .unindent();
+    }
+    if (param.isDefaultable()) {
+      defaults.ifPresent(defaultsField -> code.add("if (this.$N == null && this.$N != null)\n", field, defaultsField)
+          .indent()
+          .addStatement("this.$N = this.$N.get($T.$L)", field, defaultsField, context.optionType(), param.enumConstant())
+          .unindent());
+    }
+    return code.build();
+  }
+
+  /**
+   * Checks that a required parameter is present.
+   */
+  private CodeBlock checkRequiredStatements(Parameter param, FieldSpec field) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (param.coercion().getSkew() == Skew.REQUIRED) {
+      code.add("if (this.$N == null)\n", field).indent()
+          .addStatement("throw $T.$L.missingRequired()", context.optionType(), param.enumConstant())
+          .unindent();
+    }
+    return code.build();
+  }
+
+  /**
+   * Invokes an asynchronous mapper, and declares a local variable that holds the future,
+   * or a list of futures if the parameter is repeatable.
+   * An absent value has a {@code null} future; a required value is checked later, in declaration order.
+   * If the mapper throws, the exception is kept in a failed future,
+   * so it is reported when the parameter is awaited.
+   */
+  private static CodeBlock startStatements(Parameter param, FieldSpec field, String future, String pending,
+                                           String token, ParameterSpec e, NameAllocator names) {
+    Coercion coercion = param.coercion();
+    TypeName futureType = futureType(coercion);
+    boolean toString = !param.isPositional() && !coercion.mapsCharSequence();
+    CodeBlock value = param.isRepeatable() ? CodeBlock.of("$N", token) : CodeBlock.of("this.$N", field);
+    if (toString) {
+      value = CodeBlock.of("$L.toString()", value);
+    }
+    CodeBlock.Builder start = CodeBlock.builder();
+    CodeBlock mapped = mapCall(coercion, value, names, start);
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (param.isRepeatable()) {
+      code.addStatement("$T $N = new $T<>(this.$N.size())", ParameterizedTypeName.get(ClassName.get(List.class), futureType),
+          future, ArrayList.class, field);
+      start.add("for ($T $N : this.$N)\n", param.isPositional() ? STRING : TypeName.get(CharSequence.class), token, field)
+          .indent()
+          .addStatement("$N.add($L)", future, mapped)
+          .unindent();
+      return code.beginControlFlow("try")
+          .add(start.build())
+          .nextControlFlow("catch ($T $N)", e.type, e)
+          .addStatement("$N.add($N($N))", future, FAILED_FUTURE, e)
+          .endControlFlow()
+          .addStatement("$N.addAll($N)", pending, future)
+          .build();
+    }
+    start.addStatement("$N = $L", future, mapped);
+    return code.addStatement("$T $N = null", futureType, future)
+        .beginControlFlow("if (this.$N != null)", field)
+        .beginControlFlow("try")
+        .add(start.build())
+        .nextControlFlow("catch ($T $N)", e.type, e)
+        .addStatement("$N = $N($N)", future, FAILED_FUTURE, e)
+        .endControlFlow()
+        .addStatement("$N.add($N)", pending, future)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Declares a local variable that holds the result of an asynchronous mapper.
+   */
+  private CodeBlock awaitStatements(Parameter param, ParameterSpec local, String future, String start,
+                                    NameAllocator names) {
+    Coercion coercion = param.coercion();
+    TypeName futureType = futureType(coercion);
+    TypeName mappedType = ((WildcardTypeName) ((ParameterizedTypeName) futureType).typeArguments.get(0)).upperBounds.get(0);
+    CodeBlock option = CodeBlock.of("$T.$L", context.optionType(), param.enumConstant());
+    FieldSpec index = indexes.get(param);
+    CodeBlock.Builder code = CodeBlock.builder();
+    switch (coercion.getSkew()) {
+      case REQUIRED:
+        return code.addStatement("$T $N = this.<$T>await($L, this.$N, $N, $N)", local.type, local, mappedType, option,
+            index, future, start).build();
+      case OPTIONAL:
+        TypeName optionalType = rawType(local.type);
+        boolean nullable = optionalType.equals(TypeName.get(Optional.class));
+        return code.addStatement("$T $N = $N == null ? $T.empty() : $T.$L(this.<$T>await($L, this.$N, $N, $N))", local.type,
+            local, future, optionalType, optionalType, nullable ? "ofNullable" : "of", mappedType, option, index, future,
+            start).build();
+      case REPEATABLE:
+        // the loop variable is scoped to the loop, so the name can be reused
+        String i = names.clone().newName("i");
+        code.addStatement("$T $N = new $T<>($N.size())", local.type, local, ArrayList.class, future);
+        code.add("for ($T $N = 0; $N < $N.size(); $N++)\n", INT, i, i, future, i)
+            .indent()
+            .addStatement("$N.add(this.<$T>await($L, this.$N[$N], $N.get($N), $N))", local, mappedType, option, index, i,
+                future, i, start)
+            .unindent();
+        return code.build();
+      default:
+        throw new AssertionError("unexpected skew: " + coercion.getSkew());
+    }
+  }
+
+  // CompletableFuture<? extends T>
+  private static TypeName futureType(Coercion coercion) {
+    TypeName output = ((ParameterizedTypeName) coercion.mapperType()).typeArguments.get(1);
+    return ((WildcardTypeName) output).upperBounds.get(0);
+  }
+
+  private static MethodSpec failedFutureMethod() {
+    TypeVariableName e = TypeVariableName.get("E");
+    TypeName futureType = ParameterizedTypeName.get(ClassName.get(CompletableFuture.class), e);
+    ParameterSpec failure = ParameterSpec.builder(Throwable.class, "failure").build();
+    ParameterSpec future = ParameterSpec.builder(futureType, "future").build();
+    return MethodSpec.methodBuilder(FAILED_FUTURE)
+        .addModifiers(PRIVATE, STATIC)
+        .addTypeVariable(e)
+        .addParameter(failure)
+        .returns(futureType)
+        .addStatement("$T $N = new $T<>()", futureType, future, CompletableFuture.class)
+        .addStatement("$N.completeExceptionally($N)", future, failure)
+        .addStatement("return $N", future)
         .build();
   }
 
-  private CodeBlock extractExpression(Parameter param) {
-    return getStreamExpression(param)
-        .add(".values.stream()")
-        .add(".map($L)", param.coercion().mapExpr())
-        .add(param.coercion().collectExpr())
+  /**
+   * Waits for the result of an asynchronous mapper.
+   * The timeout is shared by all mappers; it starts when the first mapper is invoked.
+   * A failed future is reported like a failing mapper, at the index of the token that holds the value.
+   */
+  private MethodSpec awaitMethod() {
+    TypeVariableName e = TypeVariableName.get("E");
+    ParameterSpec option = ParameterSpec.builder(context.optionType(), "option").build();
+    ParameterSpec index = ParameterSpec.builder(INT, "index").build();
+    ParameterSpec future = ParameterSpec.builder(ParameterizedTypeName.get(ClassName.get(CompletableFuture.class),
+        WildcardTypeName.subtypeOf(e)), "future").build();
+    ParameterSpec start = ParameterSpec.builder(LONG, "start").build();
+    ParameterSpec executionException = ParameterSpec.builder(ExecutionException.class, "e").build();
+    ParameterSpec timeoutException = ParameterSpec.builder(TimeoutException.class, "e").build();
+    ParameterSpec interruptedException = ParameterSpec.builder(InterruptedException.class, "e").build();
+    CodeBlock code = CodeBlock.builder()
+        .beginControlFlow("try")
+        .add("if (this.$N == 0)\n", MAPPER_TIMEOUT).indent()
+        .addStatement("return $N.get()", future).unindent()
+        .addStatement("return $N.get($T.max(0, this.$N - ($T.nanoTime() - $N)), $T.NANOSECONDS)", future, Math.class,
+            MAPPER_TIMEOUT, System.class, start, TimeUnit.class)
+        .nextControlFlow("catch ($T $N)", executionException.type, executionException)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $N, $N, $N.getCause(), $S, $N.getCause().getMessage())",
+            context.parsingExceptionType(), context.errorCodeType(), option, index, executionException, "%s",
+            executionException)
+        .nextControlFlow("catch ($T $N)", timeoutException.type, timeoutException)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $N, $N, $N, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), option, index, timeoutException, "Mapping timed out: %s", option)
+        .nextControlFlow("catch ($T $N)", interruptedException.type, interruptedException)
+        .addStatement("$T.currentThread().interrupt()", Thread.class)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $N, $N, $N, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), option, index, interruptedException, "Interrupted: %s", option)
+        .endControlFlow()
+        .build();
+    return MethodSpec.methodBuilder("await")
+        .addModifiers(PRIVATE)
+        .addTypeVariable(e)
+        .addParameters(asList(option, index, future, start))
+        .returns(e)
+        .addCode(code)
         .build();
   }
 
-  static CodeBlock throwRepetitionErrorStatement(ParameterSpec optionParam) {
-    return CodeBlock.of(addBreaks("throw new $T($T.format($S, $N, $T.join($S, $N.names)))"),
-        RuntimeException.class, String.class,
-        "Option %s (%s) is not repeatable",
-        optionParam, String.class, ", ", optionParam);
+  /**
+   * Declares a local variable that holds the mapped value.
+   *
+   * @param context the command context
+   * @param field the field that holds the raw value, as defined by {@link #stateField(Parameter)}
+   * @param local the variable to declare
+   * @param token name of the loop variable
+   * @param names local names that are already taken
+   * @return code that declares the local
+   */
+  static CodeBlock mapStatements(Context context, Parameter param, FieldSpec field, ParameterSpec local, String token, NameAllocator names) {
+    return mapStatements(context, param, field, null, local, token, names);
+  }
+
+  /**
+   * Like {@link #mapStatements(Context, Parameter, FieldSpec, ParameterSpec, String, NameAllocator)},
+   * but the index of the token that holds each value of a repeatable parameter
+   * is stored in the mapping index before the value is mapped.
+   *
+   * @param indexField the token indexes of a repeatable parameter, parallel to the list in {@code field};
+   *                   {@code null} if the indexes are not known
+   */
+  private static CodeBlock mapStatements(Context context, Parameter param, FieldSpec field, FieldSpec indexField,
+                                         ParameterSpec local, String token, NameAllocator names) {
+    boolean indexed = indexField != null && param.isRepeatable();
+    Coercion coercion = param.coercion();
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (param.isFlag()) {
+      return code.addStatement("$T $N = this.$N", local.type, local, field).build();
+    }
+    Optional<CodeBlock> tailExpr = coercion.tailExpr();
+    if (tailExpr.isPresent()) {
+      TypeName mappedType = ((ParameterizedTypeName) local.type).typeArguments.get(0);
+      return code.addStatement("$T $N = $T.stream($T.spliteratorUnknownSize(this.$N == null ? $T.emptyIterator() : this.$N, $T.ORDERED), false).<$T>map($L)$L",
+          local.type, local, StreamSupport.class, Spliterators.class, field, Collections.class, field,
+          Spliterator.class, mappedType, coercion.mapExpr(), tailExpr.get()).build();
+    }
+    boolean toString = !param.isPositional() && !coercion.mapsCharSequence();
+    OptionalInt threshold = param.parallelThreshold();
+    if (threshold.isPresent()) {
+      return parallelMapStatements(context, param, field, indexed ? indexField : null, local, token, names,
+          threshold.getAsInt());
+    }
+    Optional<CodeBlock> collectExpr = coercion.collectExpr();
+    if (collectExpr.isPresent()) {
+      // a lambda with a block body can't be part of a statement
+      return code.add("$T $N = $L$L.map($L).collect($L);\n", local.type, local,
+          indexed ? indexedStream(context, param, field, indexField, names) : CodeBlock.of("this.$N.stream()", field),
+          toString ? CodeBlock.of(".map($L)", charSequenceToString(context)) : "",
+          coercion.mapExpr(), collectExpr.get()).build();
+    }
+    CodeBlock value = param.isRepeatable() ? CodeBlock.of("$N", token) : CodeBlock.of("this.$N", field);
+    if (toString) {
+      value = CodeBlock.of("$L.toString()", value);
+    }
+    CodeBlock mapped = mapCall(coercion, value, names, code);
+    switch (coercion.getSkew()) {
+      case REQUIRED:
+        return code.addStatement("$T $N = $L", local.type, local, mapped).build();
+      case OPTIONAL:
+        TypeName optionalType = rawType(local.type);
+        boolean nullable = optionalType.equals(TypeName.get(Optional.class));
+        return code.addStatement("$T $N = this.$N == null ? $T.empty() : $T.$L($L)", local.type, local, field,
+            optionalType, optionalType, nullable ? "ofNullable" : "of", mapped).build();
+      case REPEATABLE:
+        code.addStatement("$T $N = new $T<>(this.$N.size())", local.type, local, ArrayList.class, field);
+        return code.add(mapLoop(param, field, indexField, local, token, mapped, names)).build();
+      default:
+        throw new AssertionError("unexpected skew: " + coercion.getSkew());
+    }
   }
 
   /**
-   * @return An expression that extracts the value of the given param from the parser state.
-   * This expression will evaluate either to a {@link java.util.stream.Stream} or a {@link java.util.Optional}.
+   * Adds each mapped value to the list. If the token indexes are known,
+   * the index of each value is stored in the mapping index before it is mapped.
+   *
+   * @param indexField the token indexes, parallel to the list in {@code field}; {@code null} if they are not known
    */
-  private CodeBlock.Builder getStreamExpression(Parameter param) {
-    if (param.isPositional()) {
-      return CodeBlock.builder().add(
-          "$N.get($L)", paramParsersField,
-          param.positionalIndex().orElseThrow(AssertionError::new));
+  private static CodeBlock mapLoop(Parameter param, FieldSpec field, FieldSpec indexField, ParameterSpec local,
+                                   String token, CodeBlock mapped, NameAllocator names) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (indexField == null) {
+      return code.add("for ($T $N : this.$N)\n", inputType(param), token, field)
+          .indent()
+          .addStatement("$N.add($L)", local, mapped)
+          .unindent()
+          .build();
     }
-    return CodeBlock.builder().add(
-        "$N.get($T.$N)", optionParsersField,
-        context.optionType(), param.enumConstant());
+    // the loop variable is scoped to the loop, so the name can be reused
+    String i = names.clone().newName("i");
+    return code.beginControlFlow("for ($T $N = 0; $N < this.$N.size(); $N++)", INT, i, i, field, i)
+        .addStatement("$T $N = this.$N.get($N)", inputType(param), token, field, i)
+        .addStatement("this.$N = this.$N[$N]", MAPPING_INDEX, indexField, i)
+        .addStatement("$N.add($L)", local, mapped)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * A sequential stream of the values of a repeatable parameter, which stores the index of each value
+   * in the mapping index when the value is passed on.
+   * The next value is only read after the previous one has been mapped and collected,
+   * so a mapper or collector that fails sees the index of its own value.
+   * In startup mode, the function is an inner class, so the fields are qualified.
+   */
+  private static CodeBlock indexedStream(Context context, Parameter param, FieldSpec field, FieldSpec indexField,
+                                         NameAllocator names) {
+    // the parameter is scoped to the function, so the name can be reused
+    String i = names.clone().newName("i");
+    ClassName state = context.parserStateType();
+    CodeBlock body = CodeBlock.builder()
+        .addStatement("$T.this.$N = $T.this.$N[$N]", state, MAPPING_INDEX, state, indexField, i)
+        .addStatement("return $T.this.$N.get($N)", state, field, i)
+        .build();
+    CodeBlock function = context.isStartupMode() ?
+        IndyFree.function(TypeName.get(Integer.class), inputType(param), i, p -> body) :
+        CodeBlock.of("$N -> {\n$>$L$<}", i, body);
+    return CodeBlock.of("$T.range(0, this.$N.size()).boxed().map($L)", IntStream.class, field, function);
+  }
+
+  /**
+   * Creates a function for a parallel stream, that maps the value at a position in the list
+   * and records the first failure, at the index of its token.
+   * In startup mode, the function is an inner class, so the fields are qualified.
+   *
+   * @param mapped maps the value in {@code token}
+   * @param failure an {@link AtomicReference} that records the first failure
+   */
+  private static CodeBlock indexedFunction(Context context, Parameter param, FieldSpec field, FieldSpec indexField,
+                                           String token, CodeBlock mapped, String failure, NameAllocator names) {
+    // these names are scoped to the function, so they can be reused
+    NameAllocator scoped = names.clone();
+    String i = scoped.newName("i");
+    String e = scoped.newName("failure");
+    String mappingFailed = scoped.newName("mappingFailed");
+    ClassName state = context.parserStateType();
+    CodeBlock body = CodeBlock.builder()
+        .addStatement("$T $N = $T.this.$N.get($N)", inputType(param), token, state, field, i)
+        .beginControlFlow("try")
+        .addStatement("return $L", mapped)
+        .nextControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("$T $N = new $T($T.MAPPING_FAILED, $T.$L, $T.this.$N[$N], $N, $S, $N.getMessage())",
+            context.parsingExceptionType(), mappingFailed, context.parsingExceptionType(), context.errorCodeType(),
+            context.optionType(), param.enumConstant(), state, indexField, i, e, "%s", e)
+        .addStatement("$N.compareAndSet(null, $N)", failure, mappingFailed)
+        .addStatement("throw $N", mappingFailed)
+        .endControlFlow()
+        .build();
+    return context.isStartupMode() ?
+        IndyFree.function(TypeName.get(Integer.class), mappedType(param.coercion()), i, p -> body) :
+        CodeBlock.of("$N -> {\n$>$L$<}", i, body);
+  }
+
+  private static TypeName inputType(Parameter param) {
+    return param.isPositional() ? STRING : TypeName.get(CharSequence.class);
+  }
+
+  private static TypeName mappedType(Coercion coercion) {
+    TypeName outputType = ((ParameterizedTypeName) coercion.mapperType()).typeArguments.get(1);
+    return outputType instanceof WildcardTypeName ? ((WildcardTypeName) outputType).upperBounds.get(0) : outputType;
+  }
+
+  /**
+   * Like {@link #mapStatements}, but if there are enough values, they are mapped on the common pool.
+   * A parallel stream keeps the encounter order of the list, unless the collector is unordered.
+   * Below the threshold, the values are mapped on the calling thread.
+   * The pool may rethrow a worker's exception as a copy, so the mapper's own exception
+   * is recorded when it is thrown, and rethrown after the stream has finished.
+   * If the token indexes are known, the failure is reported at the index of the failing value.
+   *
+   * @param indexField the token indexes, parallel to the list in {@code field}; {@code null} if they are not known
+   */
+  private static CodeBlock parallelMapStatements(Context context, Parameter param, FieldSpec field, FieldSpec indexField,
+                                                 ParameterSpec local, String token, NameAllocator names, int threshold) {
+    Coercion coercion = param.coercion();
+    boolean toString = !param.isPositional() && !coercion.mapsCharSequence();
+    TypeName inputType = inputType(param);
+    TypeName mappedType = mappedType(coercion);
+    CodeBlock collector = coercion.collectExpr().orElse(CodeBlock.of("$T.toList()", Collectors.class));
+    // these names are scoped to the if block, so they can be reused
+    NameAllocator scoped = names.clone();
+    String failure = scoped.newName("firstFailure");
+    String e = scoped.newName("failure");
+    CodeBlock.Builder code = CodeBlock.builder();
+    CodeBlock mapped = mapCall(coercion, toString ? CodeBlock.of("$N.toString()", token) : CodeBlock.of("$N", token),
+        names, code);
+    code.addStatement("$T $N", local.type, local);
+    code.beginControlFlow("if (this.$N.size() >= $L)", field, threshold);
+    code.addStatement("$T $N = new $T<>()", ParameterizedTypeName.get(AtomicReference.class, RuntimeException.class),
+        failure, AtomicReference.class);
+    CodeBlock stream;
+    CodeBlock function;
+    if (indexField != null) {
+      stream = CodeBlock.of("$T.range(0, this.$N.size()).parallel().boxed()", IntStream.class, field);
+      function = indexedFunction(context, param, field, indexField, token, mapped, failure, names);
+    } else {
+      CodeBlock body = CodeBlock.builder()
+          .beginControlFlow("try")
+          .addStatement("return $L", mapped)
+          .nextControlFlow("catch ($T $N)", RuntimeException.class, e)
+          .addStatement("$N.compareAndSet(null, $N)", failure, e)
+          .addStatement("throw $N", e)
+          .endControlFlow()
+          .build();
+      stream = CodeBlock.of("this.$N.parallelStream()", field);
+      function = context.isStartupMode() ?
+          IndyFree.function(inputType, mappedType, token, p -> body) :
+          CodeBlock.of("$N -> {\n$>$L$<}", token, body);
+    }
+    code.beginControlFlow("try")
+        // a lambda with a block body can't be part of a statement
+        .add("$N = $L.<$T>map($L).collect($L);\n", local, stream, mappedType, function, collector)
+        .nextControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("throw $N.get() != null ? $N.get() : $N", failure, failure, e)
+        .endControlFlow();
+    code.nextControlFlow("else");
+    if (coercion.collectExpr().isPresent()) {
+      code.add("$N = $L$L.map($L).collect($L);\n", local,
+          indexField != null ? indexedStream(context, param, field, indexField, names) : CodeBlock.of("this.$N.stream()", field),
+          toString ? CodeBlock.of(".map($L)", charSequenceToString(context)) : "", coercion.mapExpr(), collector);
+    } else {
+      code.addStatement("$N = new $T<>(this.$N.size())", local, ArrayList.class, field);
+      code.add(mapLoop(param, field, indexField, local, token, mapped, names));
+    }
+    return code.endControlFlow().build();
+  }
+
+  /**
+   * If there is no direct call, the mapper is stored in a local variable first,
+   * so it is created only once.
+   */
+  private static CodeBlock mapCall(Coercion coercion, CodeBlock value, NameAllocator names, CodeBlock.Builder code) {
+    Optional<CodeBlock> mapCall = coercion.mapCall(value);
+    if (mapCall.isPresent()) {
+      return mapCall.get();
+    }
+    String mapper = names.newName(coercion.constructorParam().name + "Mapper");
+    code.addStatement("$T $N = $L", coercion.mapperType(), mapper, coercion.mapExpr());
+    return CodeBlock.of("$N.apply($L)", mapper, value);
+  }
+
+  private static CodeBlock charSequenceToString(Context context) {
+    if (!context.isStartupMode()) {
+      return CodeBlock.of("$T::toString", CharSequence.class);
+    }
+    return IndyFree.functionOf(TypeName.get(CharSequence.class), STRING, "s",
+        value -> CodeBlock.of("$L.toString()", value));
+  }
+
+  private static TypeName rawType(TypeName type) {
+    if (type instanceof ParameterizedTypeName) {
+      return ((ParameterizedTypeName) type).rawType;
+    }
+    return type;
+  }
+
+  static CodeBlock throwRepetitionErrorStatement(Context context, ParameterSpec optionParam) {
+    return CodeBlock.of("throw new $T($T.REPEATED, $N, $N, null, $S, $N)", context.parsingExceptionType(),
+        context.errorCodeType(), optionParam, TOKEN_INDEX, "Option %s is not repeatable", optionParam);
+  }
+
+  /**
+   * An attached value is returned as a view of the token, so it is never copied
+   * unless the mapper needs a {@link String}.
+   * In a short token, the value starts after the mnemonic at {@code position}.
+   */
+  static MethodSpec readOptionArgumentMethod(Context context) {
+    ParameterSpec option = ParameterSpec.builder(context.optionType(), "option").build();
+    ParameterSpec token = ParameterSpec.builder(STRING, "token").build();
+    ParameterSpec position = ParameterSpec.builder(INT, "position").build();
+    ParameterSpec it = ParameterSpec.builder(STRING_ITERATOR, "it").build();
+    ParameterSpec index = ParameterSpec.builder(INT, "index").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+
+    code.beginControlFlow("if ($N.charAt(1) == '-')", token)
+        .addStatement("$T $N = $N.indexOf('=')", INT, index, token)
+        .add("if ($N >= 0)\n", index).indent()
+        .addStatement("return $T.wrap($N, $N + 1, $N.length())", CharBuffer.class, token, index, token).unindent()
+        .endControlFlow();
+
+    code.add("else if ($N.length() > $N + 1)\n", token, position).indent()
+        .addStatement("return $T.wrap($N, $N + 1, $N.length())", CharBuffer.class, token, position, token).unindent();
+
+    code.add("if (!$N.hasNext())\n", it).indent()
+        .addStatement("throw new $T($T.MISSING_VALUE, $N, $N, null, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), option, TOKEN_INDEX, "Missing value after token: %s", token)
+        .unindent();
+
+    code.addStatement("$N++", TOKEN_INDEX);
+    code.addStatement("return $N.next()", it);
+    return MethodSpec.methodBuilder("readOptionArgument")
+        .addCode(code.build())
+        .addParameters(asList(option, token, position, it))
+        .returns(CharSequence.class)
+        .build();
+  }
+
+  static FieldSpec fallbacks() {
+    return FALLBACKS;
+  }
+
+  static FieldSpec tokenIndex() {
+    return TOKEN_INDEX;
+  }
+
+  FieldSpec field(Parameter param) {
+    return fields.get(param);
   }
 
   MethodSpec tryReadOption() {
     return tryReadOptionMethod;
   }
 
-  FieldSpec parsersField() {
-    return optionParsersField;
+  MethodSpec reset() {
+    return resetMethod;
+  }
+
+  MethodSpec read() {
+    return readMethod;
   }
 
-  FieldSpec positionalParsersField() {
-    return paramParsersField;
+  MethodSpec readParam() {
+    return readParamMethod;
   }
 }
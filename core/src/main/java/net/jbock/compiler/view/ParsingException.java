@@ -0,0 +1,130 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.squareup.javapoet.MethodSpec.constructorBuilder;
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeSpec.classBuilder;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+
+/**
+ * Defines the inner class ParsingException, which is thrown when the input is invalid,
+ * and the inner enum ErrorCode.
+ * The exception does not capture a stack trace, and its message is formatted only when it is read,
+ * so a parsing failure is cheap.
+ */
+final class ParsingException {
+
+  private static final String[][] ERROR_CODES = {
+      {"UNKNOWN_OPTION", "A token looks like an option, but there is no such option."},
+      {"MISSING_REQUIRED", "A required parameter is absent."},
+      {"REPEATED", "A parameter that is not repeatable appears more than once."},
+      {"EXCESS_PARAM", "There are more positional tokens than params."},
+      {"MISSING_VALUE", "A binding option is the last token."},
+      {"MAPPING_FAILED", "A mapper or collector threw an exception, which is the cause."},
+      {"INVALID_TOKEN", "A flag has an attached value, or a token is malformed."},
+      {"INVALID_QUOTING", "A quote is not closed, or there is a trailing backslash."},
+      {"UNREADABLE_FILE", "A response file can't be read."},
+      {"UNEXPECTED", "An exception that is not a parsing failure, for example from the input iterator, is the error."},
+  };
+
+  /**
+   * The constants of ErrorCode that every generated parser has.
+   */
+  static List<String> errorCodes() {
+    return Arrays.stream(ERROR_CODES).map(code -> code[0]).collect(Collectors.toList());
+  }
+
+  static TypeSpec defineErrorCode(Context context) {
+    TypeSpec.Builder spec = TypeSpec.enumBuilder(context.errorCodeType())
+        .addJavadoc("The kind of a parsing failure.\n");
+    for (String[] code : ERROR_CODES) {
+      spec.addEnumConstant(code[0], TypeSpec.anonymousClassBuilder("")
+          .addJavadoc(code[1] + "\n")
+          .build());
+    }
+    if (context.hasSubcommands()) {
+      spec.addEnumConstant("UNKNOWN_COMMAND", TypeSpec.anonymousClassBuilder("")
+          .addJavadoc("The first token that is not an option is not the name of a subcommand.\n")
+          .build());
+    }
+    return spec.addModifiers(context.getAccessModifiers()).build();
+  }
+
+  static TypeSpec define(Context context) {
+    FieldSpec fieldCode = FieldSpec.builder(context.errorCodeType(), "code", FINAL).build();
+    FieldSpec fieldOption = FieldSpec.builder(context.optionType(), "option", FINAL).build();
+    // the option may belong to a subcommand
+    FieldSpec fieldOptionName = FieldSpec.builder(STRING, "optionName", FINAL).build();
+    FieldSpec fieldIndex = FieldSpec.builder(TypeName.INT, "index", FINAL).build();
+    FieldSpec fieldFormat = FieldSpec.builder(STRING, "format", PRIVATE, FINAL).build();
+    FieldSpec fieldArgs = FieldSpec.builder(ArrayTypeName.of(Object.class), "args", PRIVATE, FINAL).build();
+    ParameterSpec paramCause = builder(Throwable.class, "cause").build();
+    ParameterSpec paramCode = builder(fieldCode.type, fieldCode.name).build();
+    ParameterSpec paramOption = builder(fieldOption.type, fieldOption.name).build();
+    ParameterSpec paramOptionName = builder(fieldOptionName.type, fieldOptionName.name).build();
+    ParameterSpec paramIndex = builder(fieldIndex.type, fieldIndex.name).build();
+    ParameterSpec paramFormat = builder(fieldFormat.type, fieldFormat.name).build();
+    ParameterSpec paramArgs = builder(fieldArgs.type, fieldArgs.name).build();
+    return classBuilder(context.parsingExceptionType())
+        .superclass(RuntimeException.class)
+        .addFields(Arrays.asList(fieldCode, fieldOption, fieldOptionName, fieldIndex, fieldFormat, fieldArgs))
+        .addMethod(constructorBuilder()
+            .addParameters(Arrays.asList(paramCode, paramOption, paramIndex, paramCause, paramFormat, paramArgs))
+            .varargs()
+            .addStatement("this($N, $N, $N == null ? null : $N.name(), $N, $N, $N, $N)", paramCode, paramOption,
+                paramOption, paramOption, paramIndex, paramCause, paramFormat, paramArgs)
+            .build())
+        .addMethod(constructorBuilder()
+            .addParameters(Arrays.asList(paramCode, paramOption, paramOptionName, paramIndex, paramCause, paramFormat, paramArgs))
+            .varargs()
+            .addStatement("super(null, $N, false, false)", paramCause)
+            .addStatement("this.$N = $N", fieldCode, paramCode)
+            .addStatement("this.$N = $N", fieldOption, paramOption)
+            .addStatement("this.$N = $N", fieldOptionName, paramOptionName)
+            .addStatement("this.$N = $N", fieldIndex, paramIndex)
+            .addStatement("this.$N = $N", fieldFormat, paramFormat)
+            .addStatement("this.$N = $N", fieldArgs, paramArgs)
+            .build())
+        .addMethod(getMessageMethod(context, fieldFormat, fieldArgs))
+        .addModifiers(PRIVATE, STATIC, FINAL)
+        .build();
+  }
+
+  /**
+   * An option in the arguments is described by its name and its names on the command line.
+   */
+  private static MethodSpec getMessageMethod(Context context, FieldSpec format, FieldSpec args) {
+    ParameterSpec values = builder(args.type, "values").build();
+    ParameterSpec i = builder(TypeName.INT, "i").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $N.clone()", values.type, values, args);
+    code.beginControlFlow("for ($T $N = 0; $N < $N.length; $N++)", TypeName.INT, i, i, values, i)
+        .add("if ($N[$N] instanceof $T)\n", values, i, context.optionType()).indent()
+        .addStatement("$N[$N] = (($T) $N[$N]).describe()", values, i, context.optionType(), values, i).unindent()
+        .endControlFlow();
+    code.addStatement("return $T.format($N, $N)", String.class, format, values);
+    return methodBuilder("getMessage")
+        .addAnnotation(Override.class)
+        .addModifiers(PUBLIC)
+        .returns(STRING)
+        .addCode(code.build())
+        .build();
+  }
+}
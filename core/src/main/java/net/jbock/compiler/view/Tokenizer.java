@@ -0,0 +1,384 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeName.BOOLEAN;
+import static com.squareup.javapoet.TypeName.INT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+
+/**
+ * Defines the inner class Tokenizer, which splits a command line, or a response file, into tokens,
+ * and the inner enum Quoting.
+ * The tokens are produced on demand, so there is no intermediate array.
+ * A token that contains neither quotes nor backslashes is a single copy
+ * of a region of the input.
+ * The bytes of a response file are decoded in chunks into a reusable buffer,
+ * and only the characters from the start of the current token are kept.
+ */
+final class Tokenizer {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final Context context;
+
+  private final FieldSpec input = FieldSpec.builder(CharSequence.class, "input", PRIVATE).build();
+
+  private final FieldSpec bytes = FieldSpec.builder(ByteBuffer.class, "bytes", PRIVATE, FINAL).build();
+
+  private final FieldSpec decoder = FieldSpec.builder(CharsetDecoder.class, "decoder", PRIVATE, FINAL).build();
+
+  private final FieldSpec buffer = FieldSpec.builder(char[].class, "buffer", PRIVATE)
+      .initializer("new char[0]")
+      .build();
+
+  private final FieldSpec posix = FieldSpec.builder(BOOLEAN, "posix", PRIVATE, FINAL).build();
+
+  private final FieldSpec lines = FieldSpec.builder(BOOLEAN, "lines", PRIVATE, FINAL).build();
+
+  private final FieldSpec pos = FieldSpec.builder(INT, "pos", PRIVATE).build();
+
+  private final FieldSpec offset = FieldSpec.builder(INT, "offset", PRIVATE).build();
+
+  private final FieldSpec mark = FieldSpec.builder(INT, "mark", PRIVATE).build();
+
+  private final ParameterSpec sb = builder(StringBuilder.class, "sb").build();
+
+  private final MethodSpec fill;
+
+  private final MethodSpec available;
+
+  private final MethodSpec charAt;
+
+  private final MethodSpec isSeparator;
+
+  private final MethodSpec skipSeparators;
+
+  private final MethodSpec readSingleQuoted;
+
+  private final MethodSpec readDoubleQuoted;
+
+  private final MethodSpec nextQuoted;
+
+  Tokenizer(Context context) {
+    this.context = context;
+    this.fill = fillMethod();
+    this.available = availableMethod();
+    this.charAt = charAtMethod();
+    this.isSeparator = isSeparatorMethod();
+    this.skipSeparators = skipSeparatorsMethod();
+    this.readSingleQuoted = readSingleQuotedMethod();
+    this.readDoubleQuoted = readDoubleQuotedMethod();
+    this.nextQuoted = nextQuotedMethod();
+  }
+
+  TypeSpec defineQuoting() {
+    return TypeSpec.enumBuilder(context.quotingType())
+        .addJavadoc("How a command line, or a response file, is split into tokens.\n")
+        .addEnumConstant("POSIX", TypeSpec.anonymousClassBuilder("")
+            .addJavadoc("Tokens are separated by whitespace.\n" +
+                "Characters between single quotes are taken literally.\n" +
+                "Between double quotes, a backslash escapes {@code \\}, {@code \"}, {@code $$} and {@code `};\n" +
+                "other backslashes are taken literally.\n" +
+                "Outside of quotes, a backslash escapes the next character.\n" +
+                "A backslash followed by a newline is removed.\n" +
+                "Quotes that are not closed, or a trailing backslash, cause a parsing failure.\n")
+            .build())
+        .addEnumConstant("WHITESPACE", TypeSpec.anonymousClassBuilder("")
+            .addJavadoc("Tokens are separated by whitespace. Quotes and backslashes are taken literally.\n")
+            .build())
+        .addEnumConstant("LINES", TypeSpec.anonymousClassBuilder("")
+            .addJavadoc("Each line is a token. Quotes, backslashes and other whitespace are taken literally.\n" +
+                "Empty lines are ignored.\n")
+            .build())
+        .addModifiers(context.getAccessModifiers())
+        .build();
+  }
+
+  TypeSpec define() {
+    ParameterSpec inputParam = builder(input.type, input.name).build();
+    ParameterSpec bytesParam = builder(bytes.type, bytes.name).build();
+    ParameterSpec quoting = builder(context.quotingType(), "quoting").build();
+    return TypeSpec.classBuilder(context.tokenizerType())
+        .addSuperinterface(ParameterizedTypeName.get(Iterator.class, String.class))
+        .addModifiers(PRIVATE, STATIC, FINAL)
+        .addField(FieldSpec.builder(INT, "CHUNK_SIZE", PRIVATE, STATIC, FINAL)
+            .initializer("$L", CHUNK_SIZE)
+            .build())
+        .addFields(Arrays.asList(input, bytes, decoder, buffer, posix, lines, pos, offset, mark))
+        .addMethod(MethodSpec.constructorBuilder()
+            .addParameters(Arrays.asList(inputParam, quoting))
+            .addStatement("this($N, null, $N)", inputParam, quoting)
+            .build())
+        .addMethod(MethodSpec.constructorBuilder()
+            .addParameters(Arrays.asList(bytesParam, quoting))
+            .addStatement("this($T.allocate(0), $N, $N)", CharBuffer.class, bytesParam, quoting)
+            .build())
+        .addMethod(MethodSpec.constructorBuilder()
+            .addModifiers(PRIVATE)
+            .addParameters(Arrays.asList(inputParam, bytesParam, quoting))
+            .addStatement("this.$N = $N", input, inputParam)
+            .addStatement("this.$N = $N", bytes, bytesParam)
+            .addStatement("this.$N = $N == null ? null : $T.UTF_8.newDecoder()\n" +
+                    ".onMalformedInput($T.REPLACE)\n" +
+                    ".onUnmappableCharacter($T.REPLACE)", decoder, bytesParam, StandardCharsets.class,
+                CodingErrorAction.class, CodingErrorAction.class)
+            .addStatement("this.$N = $N == $T.POSIX", posix, quoting, context.quotingType())
+            .addStatement("this.$N = $N == $T.LINES", lines, quoting, context.quotingType())
+            .addStatement("$N()", skipSeparators)
+            .build())
+        .addMethod(methodBuilder("hasNext")
+            .addAnnotation(Override.class)
+            .addModifiers(PUBLIC)
+            .returns(BOOLEAN)
+            .addStatement("return $N($N)", available, pos)
+            .build())
+        .addMethod(peekMethod())
+        .addMethod(nextMethod())
+        .addMethod(nextQuoted)
+        .addMethod(readSingleQuoted)
+        .addMethod(readDoubleQuoted)
+        .addMethod(isSeparator)
+        .addMethod(skipSeparators)
+        .addMethod(available)
+        .addMethod(charAt)
+        .addMethod(fill)
+        .build();
+  }
+
+  /**
+   * Positions are counted from the start of the input.
+   * The current chunk begins at {@code offset}.
+   */
+  private MethodSpec availableMethod() {
+    ParameterSpec i = builder(INT, "i").build();
+    return methodBuilder("available")
+        .addModifiers(PRIVATE)
+        .addParameter(i)
+        .returns(BOOLEAN)
+        .addStatement("return $N - $N < $N.length() || $N($N)", i, offset, input, fill, i)
+        .build();
+  }
+
+  private MethodSpec charAtMethod() {
+    ParameterSpec i = builder(INT, "i").build();
+    return methodBuilder("charAt")
+        .addModifiers(PRIVATE)
+        .addParameter(i)
+        .returns(char.class)
+        .addStatement("return $N.charAt($N - $N)", input, i, offset)
+        .build();
+  }
+
+  /**
+   * Decodes the next chunk of a response file into the buffer.
+   * The characters before {@code mark}, the start of the current token, are dropped.
+   * The characters of the current token are only moved when {@code mark} has advanced,
+   * or when the buffer grows, so a token that spans many chunks is not copied again for each chunk.
+   */
+  private MethodSpec fillMethod() {
+    ParameterSpec i = builder(INT, "i").build();
+    ParameterSpec keep = builder(INT, "keep").build();
+    ParameterSpec target = builder(char[].class, "target").build();
+    ParameterSpec chunk = builder(CharBuffer.class, "chunk").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("if ($N == null)\n", bytes).indent()
+        .addStatement("return false").unindent();
+    code.beginControlFlow("while ($N - $N >= $N.length())", i, offset, input)
+        .add("if (!$N.hasRemaining())\n", bytes).indent()
+        .addStatement("return false").unindent()
+        .addStatement("$T $N = $N.length() - ($N - $N)", INT, keep, input, mark, offset)
+        .addStatement("$T $N = $N", target.type, target, buffer)
+        .add("if ($N + CHUNK_SIZE > $N.length)\n", keep, buffer).indent()
+        .addStatement("$N = new char[$T.max(2 * $N.length, $N + CHUNK_SIZE)]", target, Math.class, buffer, keep)
+        .unindent()
+        .add("if ($N != $N || $N != $N)\n", target, buffer, mark, offset).indent()
+        .addStatement("$T.arraycopy($N, $N - $N, $N, 0, $N)", System.class, buffer, mark, offset, target, keep)
+        .unindent()
+        .addStatement("$N = $N", buffer, target)
+        .addStatement("$N = $N", offset, mark)
+        .addStatement("$T $N = $T.wrap($N, $N, $N.length - $N)", CharBuffer.class, chunk, CharBuffer.class,
+            buffer, keep, buffer, keep)
+        .addStatement("$N.decode($N, $N, true)", decoder, bytes, chunk)
+        .add("if (!$N.hasRemaining())\n", bytes).indent()
+        .addStatement("$N.flush($N)", decoder, chunk).unindent()
+        .addStatement("$N = $T.wrap($N, 0, $N.position())", input, CharBuffer.class, buffer, chunk)
+        .endControlFlow();
+    code.addStatement("return true");
+    return methodBuilder("fill")
+        .addModifiers(PRIVATE)
+        .addParameter(i)
+        .returns(BOOLEAN)
+        .addCode(code.build())
+        .build();
+  }
+
+  private MethodSpec isSeparatorMethod() {
+    ParameterSpec c = builder(char.class, "c").build();
+    return methodBuilder("isSeparator")
+        .addModifiers(PRIVATE)
+        .addParameter(c)
+        .returns(BOOLEAN)
+        .addStatement("return $N ? $N == '\\n' || $N == '\\r' : $T.isWhitespace($N)", lines, c, c, Character.class, c)
+        .build();
+  }
+
+  private MethodSpec skipSeparatorsMethod() {
+    return methodBuilder("skipSeparators")
+        .addModifiers(PRIVATE)
+        .addCode(CodeBlock.builder()
+            .add("while ($N($N) && $N($N($N)))\n", available, pos, isSeparator, charAt, pos)
+            .indent().addStatement("$N = ++$N", mark, pos).unindent()
+            .build())
+        .build();
+  }
+
+  private MethodSpec peekMethod() {
+    ParameterSpec mark = builder(INT, "mark").build();
+    ParameterSpec token = builder(STRING, "token").build();
+    return methodBuilder("peek")
+        .returns(STRING)
+        .addStatement("$T $N = $N", INT, mark, pos)
+        .addStatement("$T $N = next()", STRING, token)
+        .addStatement("$N = $N", pos, mark)
+        .addStatement("this.$N = $N", this.mark, mark)
+        .addStatement("return $N", token)
+        .build();
+  }
+
+  private MethodSpec nextMethod() {
+    ParameterSpec start = builder(INT, "start").build();
+    ParameterSpec c = builder(char.class, "c").build();
+    ParameterSpec token = builder(STRING, "token").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.add("if (!hasNext())\n").indent()
+        .addStatement("throw new $T()", NoSuchElementException.class).unindent();
+    code.addStatement("$T $N = $N", INT, start, pos);
+    code.beginControlFlow("while ($N($N))", available, pos)
+        .addStatement("$T $N = $N($N)", char.class, c, charAt, pos)
+        .add("if ($N($N))\n", isSeparator, c).indent()
+        .addStatement("break").unindent()
+        .add("if ($N && ($N == '\\'' || $N == '\"' || $N == '\\\\'))\n", posix, c, c, c).indent()
+        .addStatement("return $N($N)", nextQuoted, start).unindent()
+        .addStatement("$N++", pos)
+        .endControlFlow();
+    code.addStatement("$T $N = $N.subSequence($N - $N, $N - $N).toString()", STRING, token, input, start, offset,
+        pos, offset);
+    code.addStatement("$N()", skipSeparators);
+    code.addStatement("return $N", token);
+    return methodBuilder("next")
+        .addAnnotation(Override.class)
+        .addModifiers(PUBLIC)
+        .returns(STRING)
+        .addCode(code.build())
+        .build();
+  }
+
+  private MethodSpec nextQuotedMethod() {
+    ParameterSpec start = builder(INT, "start").build();
+    ParameterSpec c = builder(char.class, "c").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = new $T($N - $N + 16)", StringBuilder.class, sb, StringBuilder.class, pos, start);
+    code.addStatement("$N.append($N, $N - $N, $N - $N)", sb, input, start, offset, pos, offset);
+    code.beginControlFlow("while ($N($N))", available, pos)
+        .addStatement("$T $N = $N($N)", char.class, c, charAt, pos)
+        .add("if ($T.isWhitespace($N))\n", Character.class, c).indent()
+        .addStatement("break").unindent()
+        .addStatement("$N++", pos);
+    code.beginControlFlow("if ($N == '\\\\')", c)
+        .add("if (!$N($N))\n", available, pos).indent()
+        .addStatement("throw new $T($T.INVALID_QUOTING, null, -1, null, $S)", context.parsingExceptionType(),
+            context.errorCodeType(), "Missing character after backslash").unindent()
+        .add("if ($N($N) != '\\n')\n", charAt, pos).indent()
+        .addStatement("$N.append($N($N))", sb, charAt, pos).unindent()
+        .addStatement("$N++", pos);
+    code.nextControlFlow("else if ($N == '\\'')", c)
+        .addStatement("$N($N)", readSingleQuoted, sb);
+    code.nextControlFlow("else if ($N == '\"')", c)
+        .addStatement("$N($N)", readDoubleQuoted, sb);
+    code.nextControlFlow("else")
+        .addStatement("$N.append($N)", sb, c);
+    code.endControlFlow();
+    code.endControlFlow();
+    code.addStatement("$N()", skipSeparators);
+    code.addStatement("return $N.toString()", sb);
+    return methodBuilder("nextQuoted")
+        .addModifiers(PRIVATE)
+        .addParameter(start)
+        .returns(STRING)
+        .addCode(code.build())
+        .build();
+  }
+
+  private MethodSpec readSingleQuotedMethod() {
+    ParameterSpec end = builder(INT, "end").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $N", INT, end, pos);
+    code.add("while ($N($N) && $N($N) != '\\'')\n", available, end, charAt, end).indent()
+        .addStatement("$N++", end).unindent();
+    code.add("if (!$N($N))\n", available, end).indent()
+        .addStatement("throw new $T($T.INVALID_QUOTING, null, -1, null, $S, $N - 1)", context.parsingExceptionType(),
+            context.errorCodeType(), "Unterminated quote at position %s", pos).unindent();
+    code.addStatement("$N.append($N, $N - $N, $N - $N)", sb, input, pos, offset, end, offset);
+    code.addStatement("$N = $N + 1", pos, end);
+    return methodBuilder("readSingleQuoted")
+        .addModifiers(PRIVATE)
+        .addParameter(sb)
+        .addCode(code.build())
+        .build();
+  }
+
+  private MethodSpec readDoubleQuotedMethod() {
+    ParameterSpec start = builder(INT, "start").build();
+    ParameterSpec c = builder(char.class, "c").build();
+    ParameterSpec next = builder(char.class, "next").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.addStatement("$T $N = $N - 1", INT, start, pos);
+    code.beginControlFlow("while (true)")
+        .add("if (!$N($N))\n", available, pos).indent()
+        .addStatement("throw new $T($T.INVALID_QUOTING, null, -1, null, $S, $N)", context.parsingExceptionType(),
+            context.errorCodeType(), "Unterminated quote at position %s", start).unindent()
+        .addStatement("$T $N = $N($N++)", char.class, c, charAt, pos)
+        .add("if ($N == '\"')\n", c).indent()
+        .addStatement("return").unindent();
+    code.beginControlFlow("if ($N == '\\\\' && $N($N))", c, available, pos)
+        .addStatement("$T $N = $N($N)", char.class, next, charAt, pos)
+        .beginControlFlow("if ($N == '\"' || $N == '\\\\' || $N == '$$' || $N == '`')", next, next, next, next)
+        .addStatement("$N.append($N)", sb, next)
+        .addStatement("$N++", pos)
+        .addStatement("continue")
+        .endControlFlow()
+        .beginControlFlow("if ($N == '\\n')", next)
+        .addStatement("$N++", pos)
+        .addStatement("continue")
+        .endControlFlow()
+        .endControlFlow();
+    code.addStatement("$N.append($N)", sb, c);
+    code.endControlFlow();
+    return methodBuilder("readDoubleQuoted")
+        .addModifiers(PRIVATE)
+        .addParameter(sb)
+        .addCode(code.build())
+        .build();
+  }
+}
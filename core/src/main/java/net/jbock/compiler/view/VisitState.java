@@ -0,0 +1,226 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeSpec;
+import net.jbock.compiler.Context;
+import net.jbock.compiler.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static com.squareup.javapoet.TypeName.BOOLEAN;
+import static com.squareup.javapoet.TypeName.INT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+import static net.jbock.compiler.Constants.STRING;
+import static net.jbock.compiler.Constants.STRING_ARRAY;
+import static net.jbock.compiler.Constants.STRING_ITERATOR;
+
+/**
+ * Defines the inner class VisitState, which reads the tokens like the ParserState does,
+ * but passes each parameter to a Visitor instead of storing it.
+ * Its memory use does not depend on the number of tokens:
+ * it only remembers which options were seen, and the position of the next param.
+ * Nothing is mapped unless the visitor asks for it.
+ *
+ * @see Visitor
+ */
+final class VisitState {
+
+  private final Context context;
+
+  private final OptionEnum optionEnum;
+
+  private final FieldSpec visitor;
+
+  // option -> whether it was seen, by ordinal
+  private final FieldSpec seen = FieldSpec.builder(ArrayTypeName.of(BOOLEAN), "seen", PRIVATE, FINAL).build();
+
+  private final FieldSpec fallbacks = FieldSpec.builder(STRING_ARRAY, "fallbacks", PRIVATE, FINAL).build();
+
+  VisitState(Context context, OptionEnum optionEnum, ClassName visitorType) {
+    this.context = context;
+    this.optionEnum = optionEnum;
+    this.visitor = FieldSpec.builder(visitorType, "visitor", PRIVATE, FINAL).build();
+  }
+
+  TypeSpec define() {
+    List<FieldSpec> finalFields = new ArrayList<>();
+    finalFields.add(visitor);
+    if (context.hasFallbacks()) {
+      finalFields.add(fallbacks);
+    }
+    context.defaultsType().ifPresent(type -> finalFields.add(defaultsField(type)));
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder();
+    for (FieldSpec field : finalFields) {
+      ParameterSpec param = builder(field.type, field.name).build();
+      constructor.addParameter(param).addStatement("this.$N = $N", field, param);
+    }
+    TypeSpec.Builder spec = TypeSpec.classBuilder(context.visitStateType())
+        .addModifiers(PRIVATE, STATIC, FINAL)
+        .addFields(finalFields);
+    if (!context.options().isEmpty()) {
+      spec.addField(seen.toBuilder().initializer("new $T[$T.values().length]", BOOLEAN, context.optionType()).build());
+    }
+    spec.addField(ParserState.tokenIndex())
+        .addMethod(constructor.build())
+        .addMethod(visitMethod());
+    if (!context.options().isEmpty()) {
+      spec.addMethod(ParserState.tryReadOptionMethod(context, optionEnum))
+          .addMethod(ParserState.readMethod(context, new VisitorStore()))
+          .addMethod(ParserState.readOptionArgumentMethod(context));
+    }
+    if (!context.params().isEmpty()) {
+      spec.addMethod(readParamMethod());
+    }
+    return spec.build();
+  }
+
+  /**
+   * Options and params are checked like in {@code parseTokens}.
+   * A required option with a fallback is not missing if the fallback has a value.
+   */
+  private MethodSpec visitMethod() {
+    ParameterSpec it = builder(STRING_ITERATOR, "it").build();
+    ParameterSpec option = builder(context.optionType(), "option").build();
+    ParameterSpec token = builder(STRING, "token").build();
+    ParameterSpec position = builder(INT, "position").build();
+    FieldSpec tokenIndex = ParserState.tokenIndex();
+    CodeBlock.Builder code = CodeBlock.builder();
+    if (!context.params().isEmpty()) {
+      code.addStatement("$T $N = 0", INT, position);
+    }
+    code.beginControlFlow("while ($N.hasNext())", it);
+    code.addStatement("$T $N = $N.next()", STRING, token, it);
+    code.addStatement("$N++", tokenIndex);
+    if (!context.params().isEmpty()) {
+      code.beginControlFlow("if ($S.equals($N))", "--", token)
+          .beginControlFlow("while ($N.hasNext())", it)
+          .addStatement("$N++", tokenIndex)
+          .addStatement("$N += readParam($N, $N.next())", position, position, it)
+          .endControlFlow()
+          .addStatement("break")
+          .endControlFlow();
+    }
+    if (!context.options().isEmpty()) {
+      code.addStatement("$T $N = tryReadOption($N)", option.type, option, token);
+      code.beginControlFlow("if ($N != null)", option)
+          .addStatement("read($N, $N, $N)", option, token, it)
+          .addStatement("continue")
+          .endControlFlow();
+    }
+    code.add("if (!$N.isEmpty() && $N.charAt(0) == '-')\n", token, token).indent()
+        .addStatement(throwStatement("UNKNOWN_OPTION", "Invalid option", token))
+        .unindent();
+    if (context.params().isEmpty()) {
+      code.addStatement(throwStatement("EXCESS_PARAM", "Excess param", token));
+    } else {
+      code.addStatement("$N += readParam($N, $N)", position, position, token);
+    }
+    code.endControlFlow();
+    List<Parameter> fallbackParams = context.fallbacks();
+    for (Parameter param : context.parameters()) {
+      if (!param.isRequired()) {
+        continue;
+      }
+      CodeBlock missing = param.isPositional() ?
+          CodeBlock.of("$N <= $L", position, param.positionalIndex().orElseThrow(AssertionError::new)) :
+          CodeBlock.of("!$N[$T.$L.ordinal()]", seen, context.optionType(), param.enumConstant());
+      if (param.hasFallback()) {
+        missing = CodeBlock.of("$L && $N[$L] == null", missing, fallbacks, fallbackParams.indexOf(param));
+      }
+      if (!param.isPositional() && context.defaultsType().isPresent()) {
+        FieldSpec defaults = defaultsField(context.defaultsType().get());
+        missing = CodeBlock.of("$L && ($N == null || $N.get($T.$L) == null)", missing, defaults, defaults,
+            context.optionType(), param.enumConstant());
+      }
+      code.add("if ($L)\n", missing).indent()
+          .addStatement("throw $T.$L.missingRequired()", context.optionType(), param.enumConstant())
+          .unindent();
+    }
+    return methodBuilder("visit")
+        .addParameter(it)
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * Like {@code ParserState.readParam}, but the lazy tail is visited token by token.
+   */
+  private MethodSpec readParamMethod() {
+    ParameterSpec position = builder(INT, "position").build();
+    ParameterSpec token = builder(STRING, "token").build();
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("switch ($N)", position);
+    for (Parameter param : context.params()) {
+      code.add("case $L:\n", param.positionalIndex().orElseThrow(AssertionError::new)).indent();
+      code.addStatement("$N.$L(new $T<>($T.$L, $N, $N))", visitor, param.methodName(), context.valueType(),
+          context.optionType(), param.enumConstant(), token, ParserState.tokenIndex());
+      code.addStatement("return $L", param.isRepeatable() ? 0 : 1);
+      code.unindent();
+    }
+    code.add("default:\n").indent()
+        .addStatement(throwStatement("EXCESS_PARAM", "Excess param", token))
+        .unindent();
+    code.endControlFlow();
+    return methodBuilder("readParam")
+        .addParameters(Arrays.asList(position, token))
+        .returns(INT)
+        .addCode(code.build())
+        .build();
+  }
+
+  private CodeBlock throwStatement(String code, String message, ParameterSpec token) {
+    return CodeBlock.of("throw new $T($T.$L, null, $N, null, $S, $N)", context.parsingExceptionType(),
+        context.errorCodeType(), code, ParserState.tokenIndex(), message + ": %s", token);
+  }
+
+  private static FieldSpec defaultsField(ClassName type) {
+    return FieldSpec.builder(type, "defaults", PRIVATE, FINAL).build();
+  }
+
+  /**
+   * Marks the option as seen, and passes it to the visitor.
+   * Repeated options are rejected, like in the parser state.
+   */
+  private final class VisitorStore implements ParserState.Store {
+
+    @Override
+    public CodeBlock flag(Parameter param, ParameterSpec option) {
+      return CodeBlock.builder()
+          .add(checkRepetition(option))
+          .addStatement("$N.$L()", visitor, param.methodName())
+          .build();
+    }
+
+    @Override
+    public CodeBlock option(Parameter param, ParameterSpec option, CodeBlock argument) {
+      CodeBlock.Builder code = CodeBlock.builder();
+      if (!param.isRepeatable()) {
+        code.add(checkRepetition(option));
+      }
+      // the index is read after the argument, which may be the next token
+      return code.addStatement("$N.$L(new $T<>($N, $L, $N))", visitor, param.methodName(), context.valueType(),
+          option, argument, ParserState.tokenIndex())
+          .build();
+    }
+
+    private CodeBlock checkRepetition(ParameterSpec option) {
+      return CodeBlock.builder()
+          .add("if ($N[$N.ordinal()])\n", seen, option).indent()
+          .addStatement(ParserState.throwRepetitionErrorStatement(context, option))
+          .unindent()
+          .addStatement("$N[$N.ordinal()] = true", seen, option)
+          .build();
+    }
+  }
+}
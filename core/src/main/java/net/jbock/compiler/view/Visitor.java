@@ -0,0 +1,205 @@
+package net.jbock.compiler.view;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.NameAllocator;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import net.jbock.coerce.Coercion;
+import net.jbock.compiler.Context;
+import net.jbock.compiler.Parameter;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.squareup.javapoet.MethodSpec.methodBuilder;
+import static com.squareup.javapoet.ParameterSpec.builder;
+import static javax.lang.model.element.Modifier.DEFAULT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Defines the inner interface Visitor, and the inner class Value.
+ * The visitor has a callback for each parameter, which does nothing by default.
+ * A value holds the token, and maps it only on request.
+ *
+ * @see VisitState
+ */
+final class Visitor {
+
+  private static final TypeVariableName E = TypeVariableName.get("E");
+
+  static TypeSpec define(Context context, ClassName type) {
+    TypeSpec.Builder spec = TypeSpec.interfaceBuilder(type)
+        .addModifiers(PUBLIC, STATIC)
+        .addJavadoc("Receives the parameters in the order of the input.\n" +
+            "Each method is invoked once per occurrence of its parameter.\n" +
+            "The visitor may throw an exception to stop the parsing.\n");
+    for (Parameter param : context.parameters()) {
+      MethodSpec.Builder callback = methodBuilder(param.methodName())
+          .addModifiers(PUBLIC, DEFAULT);
+      if (param.isFlag()) {
+        callback.addJavadoc("A flag: $L\n", String.join(", ", param.names()));
+      } else {
+        callback.addJavadoc("$L: $L\n", param.isPositional() ? "A param" : "An option",
+            param.isPositional() ? param.paramName().enumConstant() : String.join(", ", param.names()));
+        callback.addParameter(ParameterizedTypeName.get(context.valueType(), mappedType(param)), "value");
+      }
+      spec.addMethod(callback.build());
+    }
+    return spec.build();
+  }
+
+  static TypeSpec defineValue(Context context) {
+    FieldSpec option = FieldSpec.builder(context.optionType(), "option", PRIVATE, FINAL).build();
+    FieldSpec token = FieldSpec.builder(CharSequence.class, "token", PRIVATE, FINAL).build();
+    FieldSpec index = FieldSpec.builder(TypeName.INT, "index", PRIVATE, FINAL).build();
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder();
+    for (FieldSpec field : Arrays.asList(option, token, index)) {
+      ParameterSpec param = builder(field.type, field.name).build();
+      constructor.addParameter(param).addStatement("this.$N = $N", field, param);
+    }
+    MethodSpec map = mapMethod(context);
+    return TypeSpec.classBuilder(context.valueType())
+        .addTypeVariable(E)
+        .addModifiers(PUBLIC, STATIC, FINAL)
+        .addJavadoc("The value of a parameter, as it appears in the input.\n" +
+            "@param <E> the type of the mapped value\n")
+        .addFields(Arrays.asList(option, token, index))
+        .addMethod(constructor.build())
+        .addMethod(methodBuilder("option")
+            .addJavadoc("@return the parameter\n")
+            .addModifiers(PUBLIC)
+            .returns(option.type)
+            .addStatement("return $N", option)
+            .build())
+        .addMethod(methodBuilder("token")
+            .addJavadoc("@return the unmapped value, which may be a part of a token\n")
+            .addModifiers(PUBLIC)
+            .returns(CharSequence.class)
+            .addStatement("return $N", token)
+            .build())
+        .addMethod(methodBuilder("index")
+            .addJavadoc("@return the index of the token that contains the value\n")
+            .addModifiers(PUBLIC)
+            .returns(TypeName.INT)
+            .addStatement("return $N", index)
+            .build())
+        .addMethod(getMethod(context, option, token, index, map))
+        .addMethod(map)
+        .build();
+  }
+
+  /**
+   * A failing mapper stops the parsing, unless the visitor catches the exception.
+   */
+  private static MethodSpec getMethod(Context context, FieldSpec option, FieldSpec token, FieldSpec index,
+                                      MethodSpec map) {
+    ParameterSpec e = builder(RuntimeException.class, "e").build();
+    CodeBlock code = CodeBlock.builder()
+        .beginControlFlow("try")
+        .addStatement("return ($T) $N($N, $N)", E, map, option, token)
+        .nextControlFlow("catch ($T $N)", RuntimeException.class, e)
+        .addStatement("throw new $T($T.MAPPING_FAILED, $N, $N, $N, $S, $N.getMessage())", context.parsingExceptionType(),
+            context.errorCodeType(), option, index, e, "%s", e)
+        .endControlFlow()
+        .build();
+    return methodBuilder("get")
+        .addJavadoc("Runs the mapper. The result is not cached.\n\n" +
+            "@return the mapped value\n")
+        .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+            .addMember("value", "$S", "unchecked")
+            .build())
+        .addModifiers(PUBLIC)
+        .returns(E)
+        .addCode(code)
+        .build();
+  }
+
+  private static MethodSpec mapMethod(Context context) {
+    ParameterSpec option = builder(context.optionType(), "option").build();
+    ParameterSpec token = builder(CharSequence.class, "token").build();
+    NameAllocator names = new NameAllocator();
+    names.newName(option.name);
+    names.newName(token.name);
+    CodeBlock.Builder code = CodeBlock.builder();
+    code.beginControlFlow("switch ($N)", option);
+    for (Parameter param : context.parameters()) {
+      if (param.isFlag()) {
+        continue;
+      }
+      Coercion coercion = param.coercion();
+      CodeBlock value = coercion.mapsCharSequence() ? CodeBlock.of("$N", token) : CodeBlock.of("$N.toString()", token);
+      Optional<CodeBlock> mapCall = coercion.mapCall(value);
+      code.add("case $L:\n", param.enumConstant()).indent();
+      if (mapCall.isPresent()) {
+        code.addStatement("return $L", mapCall.get());
+      } else {
+        String mapper = names.newName(param.paramName().camel() + "Mapper");
+        code.addStatement("$T $N = $L", localMapperType(coercion), mapper, coercion.mapExpr());
+        code.addStatement("return $N.apply($L)", mapper, value);
+      }
+      code.unindent();
+    }
+    code.add("default:\n").indent()
+        .addStatement("throw new $T($N)", AssertionError.class, option)
+        .unindent();
+    code.endControlFlow();
+    return methodBuilder("map")
+        .addModifiers(PRIVATE, STATIC)
+        .addParameters(Arrays.asList(option, token))
+        .returns(Object.class)
+        .addCode(code.build())
+        .build();
+  }
+
+  /**
+   * @return the output type of the mapper, or a wildcard if it is not known in the generated class
+   */
+  private static TypeName mappedType(Parameter param) {
+    TypeName mapperType = param.coercion().mapperType();
+    TypeName mapped = ((ParameterizedTypeName) mapperType).typeArguments.get(1);
+    if (mapped instanceof WildcardTypeName) {
+      mapped = ((WildcardTypeName) mapped).upperBounds.get(0);
+    }
+    return hasTypeVariable(mapped) ? WildcardTypeName.subtypeOf(Object.class) : mapped;
+  }
+
+  // the output type doesn't matter, because the mapped value is returned as Object
+  private static TypeName localMapperType(Coercion coercion) {
+    ParameterizedTypeName mapperType = (ParameterizedTypeName) coercion.mapperType();
+    if (!hasTypeVariable(mapperType)) {
+      return mapperType;
+    }
+    return ParameterizedTypeName.get(mapperType.rawType, mapperType.typeArguments.get(0),
+        WildcardTypeName.subtypeOf(Object.class));
+  }
+
+  private static boolean hasTypeVariable(TypeName type) {
+    if (type instanceof TypeVariableName) {
+      return true;
+    }
+    if (type instanceof ArrayTypeName) {
+      return hasTypeVariable(((ArrayTypeName) type).componentType);
+    }
+    if (type instanceof WildcardTypeName) {
+      WildcardTypeName wildcard = (WildcardTypeName) type;
+      return wildcard.upperBounds.stream().anyMatch(Visitor::hasTypeVariable) ||
+          wildcard.lowerBounds.stream().anyMatch(Visitor::hasTypeVariable);
+    }
+    if (type instanceof ParameterizedTypeName) {
+      return ((ParameterizedTypeName) type).typeArguments.stream().anyMatch(Visitor::hasTypeVariable);
+    }
+    return false;
+  }
+}
@@ -35,7 +35,7 @@ class CollectorClassValidatorTest {
       TypeElement collectorClass = elements.getTypeElement("ToSetCollector");
       CollectorInfo collectorInfo = new CollectorClassValidator(s -> null, tool, collectorClass, returnType)
           .getCollectorInfo();
-      CodeBlock expected = CodeBlock.of(".collect(new $T<$T>().get())", types.erasure(collectorClass.asType()), String.class);
+      CodeBlock expected = CodeBlock.of("new $T<$T>().get()", types.erasure(collectorClass.asType()), String.class);
       assertEquals(expected, collectorInfo.collectExpr());
     });
   }
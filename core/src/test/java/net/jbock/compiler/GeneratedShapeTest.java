@@ -0,0 +1,97 @@
+package net.jbock.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static net.jbock.compiler.ProcessorTest.fromSource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The nested types of an optional feature are only generated if the command enables the feature.
+ */
+class GeneratedShapeTest {
+
+  private static final String[] OPTIONAL_TYPES = {"Tokenizer", "Quoting", "Visitor", "Value", "VisitState", "Defaults"};
+
+  @Test
+  void noOptionalFeatures() throws IOException {
+    Compilation compilation = compile("@Command");
+    Set<String> nestedTypes = nestedTypes(compilation);
+    for (String type : OPTIONAL_TYPES) {
+      assertFalse(nestedTypes.contains(type), type);
+    }
+    String source = parserSource(compilation);
+    assertFalse(source.contains("withQuoting("));
+    assertFalse(source.contains("parse(CharSequence"));
+    assertFalse(source.contains("parseAll(Path"));
+    assertFalse(source.contains("withDefaults("));
+  }
+
+  @Test
+  void allOptionalFeatures() throws IOException {
+    Compilation compilation = compile("@Command(commandLine = true, visitor = true, defaultsFile = true)");
+    Set<String> nestedTypes = nestedTypes(compilation);
+    for (String type : OPTIONAL_TYPES) {
+      assertTrue(nestedTypes.contains(type), type);
+    }
+    String source = parserSource(compilation);
+    assertTrue(source.contains("withQuoting("));
+    assertTrue(source.contains("parse(CharSequence"));
+    assertTrue(source.contains("parseAll(Path"));
+    assertTrue(source.contains("withDefaults(Path"));
+  }
+
+  @Test
+  void atFilesNeedTheTokenizer() throws IOException {
+    Compilation compilation = compile("@Command(atFiles = true)");
+    Set<String> nestedTypes = nestedTypes(compilation);
+    assertTrue(nestedTypes.contains("Tokenizer"));
+    assertTrue(nestedTypes.contains("Quoting"));
+    assertFalse(nestedTypes.contains("Visitor"));
+    String source = parserSource(compilation);
+    assertTrue(source.contains("withQuoting("));
+    assertFalse(source.contains("parse(CharSequence"));
+  }
+
+  private static Compilation compile(String annotation) {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new Processor())
+        .compile(fromSource(
+            annotation,
+            "abstract class Arguments {",
+            "  @Option(\"count\") abstract Optional<Integer> count();",
+            "  @Option(\"name\") abstract List<String> names();",
+            "  @Param(1) abstract String file();",
+            "}"));
+    assertThat(compilation).succeededWithoutWarnings();
+    return compilation;
+  }
+
+  // simple names of the classes that are nested in the parser
+  private static Set<String> nestedTypes(Compilation compilation) {
+    String prefix = "Arguments_Parser$";
+    return compilation.generatedFiles().stream()
+        .filter(file -> file.getKind() == JavaFileObject.Kind.CLASS)
+        .map(JavaFileObject::getName)
+        .map(name -> name.substring(name.lastIndexOf('/') + 1, name.length() - ".class".length()))
+        .filter(name -> name.startsWith(prefix))
+        .map(name -> name.substring(prefix.length()))
+        .collect(Collectors.toSet());
+  }
+
+  private static String parserSource(Compilation compilation) throws IOException {
+    JavaFileObject source = compilation.generatedSourceFile("test.Arguments_Parser")
+        .orElseThrow(AssertionError::new);
+    assertEquals(JavaFileObject.Kind.SOURCE, source.getKind());
+    return source.getCharContent(false).toString();
+  }
+}
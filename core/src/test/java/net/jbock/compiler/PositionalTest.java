@@ -112,6 +112,46 @@ class PositionalTest {
         .compilesWithoutError();
   }
 
+  @Test
+  void lazyTail() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Param(1) abstract String a();",
+        "  @Param(2) abstract java.util.stream.Stream<Integer> b();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .compilesWithoutError();
+  }
+
+  @Test
+  void lazyTailOption() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Option(\"a\") abstract java.util.Iterator<String> a();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A Stream or Iterator can only be returned by a param.");
+  }
+
+  @Test
+  void lazyTailAndList() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Param(1) abstract List<String> a();",
+        "  @Param(2) abstract java.util.stream.Stream<String> b();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("There can only be one repeatable param.");
+  }
+
   @Test
   void twoPositionalLists() {
     JavaFileObject javaFile = fromSource(
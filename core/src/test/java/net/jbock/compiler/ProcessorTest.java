@@ -153,12 +153,12 @@ class ProcessorTest {
         "abstract class Arguments {",
         "",
         "  @Option(\"x\")",
-        "  abstract int[] a();",
+        "  abstract Integer[] a();",
         "}");
     assertAbout(javaSources()).that(singletonList(javaFile))
         .processedWith(new Processor())
         .failsToCompile()
-        .withErrorContaining("Unknown parameter type: int[]. Try defining a custom mapper or collector.");
+        .withErrorContaining("Unknown parameter type: java.lang.Integer[]. Try defining a custom mapper or collector.");
   }
 
   @Test
@@ -477,6 +477,220 @@ class ProcessorTest {
         .withErrorContaining("The class may not not be private");
   }
 
+  @Test
+  void runtimeModeLazy() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true)",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", lazy = true) abstract Optional<Integer> a();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("Lazy mapping is not supported in runtime mode.");
+  }
+
+  @Test
+  void runtimeModeAtFiles() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true, atFiles = true)",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract Optional<Integer> a();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("Response files are not supported in runtime mode.");
+  }
+
+  @Test
+  void runtimeModeVisitor() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true, visitor = true)",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract Optional<Integer> a();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A visitor is not supported in runtime mode.");
+  }
+
+  @Test
+  void subcommandsWithVisitor() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(subcommands = Arguments.Add.class, visitor = true)",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract boolean x();",
+        "",
+        "  @Command",
+        "  static abstract class Add {",
+        "    @Param(1) abstract String b();",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A command with subcommands can't have a visitor.");
+  }
+
+  @Test
+  void subcommandsWithParam() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(subcommands = Arguments.Add.class)",
+        "abstract class Arguments {",
+        "  @Param(1) abstract String a();",
+        "",
+        "  @Command",
+        "  static abstract class Add {",
+        "    @Param(1) abstract String b();",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A command with subcommands can't have params.");
+  }
+
+  @Test
+  void subcommandNotAnnotated() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(subcommands = Arguments.Add.class)",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract boolean x();",
+        "",
+        "  static abstract class Add {",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("The subcommand Add must be annotated with @Command.");
+  }
+
+  @Test
+  void duplicateSubcommandName() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(subcommands = {Arguments.Add.class, Arguments.Plus.class})",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract boolean x();",
+        "",
+        "  @Command(\"add\")",
+        "  static abstract class Add {",
+        "    @Param(1) abstract String a();",
+        "  }",
+        "",
+        "  @Command(\"add\")",
+        "  static abstract class Plus {",
+        "    @Param(1) abstract String b();",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("Duplicate subcommand name: add");
+  }
+
+  @Test
+  void fallbackOnFlag() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", env = \"X\") abstract boolean x();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A fallback can only be defined for an option that takes a single value.");
+  }
+
+  @Test
+  void fallbackInRuntimeMode() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true)",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", property = \"x\") abstract String x();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A fallback is not supported in runtime mode.");
+  }
+
+  @Test
+  void primitiveArrayInRuntimeMode() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true)",
+        "abstract class Arguments {",
+        "  @Option(\"x\") abstract int[] x();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A primitive array or stream is not supported in runtime mode.");
+  }
+
+  @Test
+  void parallelThresholdOnSingleValue() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", parallelThreshold = 100) abstract String x();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("A parallel threshold can only be defined for a repeatable parameter of type List, or with a custom collector.");
+  }
+
+  @Test
+  void negativeParallelThreshold() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Param(value = 1, parallelThreshold = -1) abstract List<String> x();",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("The parallel threshold may not be negative.");
+  }
+
+  @Test
+  void asyncMapperWithCollector() {
+    JavaFileObject javaFile = fromSource(
+        "@Command",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", mappedBy = Mapper.class, collectedBy = ToSet.class) abstract Set<String> x();",
+        "  static class Mapper implements Function<String, java.util.concurrent.CompletableFuture<String>> {",
+        "    public java.util.concurrent.CompletableFuture<String> apply(String s) { return null; }",
+        "  }",
+        "  static class ToSet<E> implements Supplier<Collector<E, ?, Set<E>>> {",
+        "    public Collector<E, ?, Set<E>> get() { return null; }",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("An asynchronous mapper can't be used with a custom collector.");
+  }
+
+  @Test
+  void asyncMapperInRuntimeMode() {
+    JavaFileObject javaFile = fromSource(
+        "@Command(runtime = true)",
+        "abstract class Arguments {",
+        "  @Option(value = \"x\", mappedBy = Mapper.class) abstract String x();",
+        "  static class Mapper implements Function<String, java.util.concurrent.CompletableFuture<String>> {",
+        "    public java.util.concurrent.CompletableFuture<String> apply(String s) { return null; }",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(singletonList(javaFile))
+        .processedWith(new Processor())
+        .failsToCompile()
+        .withErrorContaining("An asynchronous mapper is not supported in runtime mode.");
+  }
+
   static JavaFileObject fromSource(String... lines) {
     List<String> sourceLines = withImports(lines);
     return forSourceLines("test.Arguments", sourceLines);
@@ -0,0 +1,92 @@
+package net.jbock.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static net.jbock.compiler.ProcessorTest.fromSource;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupModeTest {
+
+  private static final JavaFileObject JAVA_FILE = fromSource(
+      "@Command",
+      "abstract class Arguments {",
+      "",
+      "  enum Color { RED, GREEN }",
+      "",
+      "  @Option(\"count\") abstract int count();",
+      "  @Option(\"number\") abstract Optional<Integer> number();",
+      "  @Option(value = \"file\", parallelThreshold = 2) abstract List<java.io.File> files();",
+      "  @Option(\"initial\") abstract Optional<Character> initial();",
+      "  @Option(value = \"path\", lazy = true) abstract Optional<java.nio.file.Path> path();",
+      "  @Option(value = \"name\", collectedBy = ToSet.class, parallelThreshold = 2) abstract Set<String> names();",
+      "  @Param(1) abstract Color color();",
+      "  @Option(value = \"host\", mappedBy = Async.class) abstract Optional<String> host();",
+      "  @Param(2) abstract java.util.stream.Stream<Long> rest();",
+      "",
+      "  static class Async implements Function<String, java.util.concurrent.CompletableFuture<String>> {",
+      "    public java.util.concurrent.CompletableFuture<String> apply(String s) { return null; }",
+      "  }",
+      "",
+      "  static class ToSet<E> implements Supplier<Collector<E, ?, Set<E>>> {",
+      "    public Collector<E, ?, Set<E>> get() { return null; }",
+      "  }",
+      "}");
+
+  @Test
+  void noInvokedynamicInStartupMode() throws IOException {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new Processor())
+        .withOptions("-Ajbock.startup=true")
+        .compile(JAVA_FILE);
+    assertThat(compilation).succeededWithoutWarnings();
+    List<JavaFileObject> classFiles = classFiles(compilation);
+    assertFalse(classFiles.isEmpty());
+    for (JavaFileObject classFile : classFiles) {
+      assertFalse(hasBootstrapMethods(classFile), classFile.getName());
+    }
+  }
+
+  @Test
+  void invokedynamicByDefault() throws IOException {
+    Compilation compilation = Compiler.javac()
+        .withProcessors(new Processor())
+        .compile(JAVA_FILE);
+    assertThat(compilation).succeededWithoutWarnings();
+    boolean any = false;
+    for (JavaFileObject classFile : classFiles(compilation)) {
+      any |= hasBootstrapMethods(classFile);
+    }
+    assertTrue(any);
+  }
+
+  private static List<JavaFileObject> classFiles(Compilation compilation) {
+    return compilation.generatedFiles().stream()
+        .filter(file -> file.getKind() == JavaFileObject.Kind.CLASS)
+        .collect(Collectors.toList());
+  }
+
+  // a class file that contains an invokedynamic instruction has a BootstrapMethods attribute
+  private static boolean hasBootstrapMethods(JavaFileObject classFile) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = classFile.openInputStream()) {
+      byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.ISO_8859_1).contains("BootstrapMethods");
+  }
+}
@@ -0,0 +1,88 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Command
+abstract class AsyncArguments {
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable);
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // futures returned by Lookup, so the tests can check that they are cancelled
+  static final Queue<CompletableFuture<String>> STARTED = new ConcurrentLinkedQueue<>();
+
+  @Option(value = "port", mnemonic = 'p')
+  abstract OptionalInt port();
+
+  @Option(value = "key", mnemonic = 'k', mappedBy = Lookup.class)
+  abstract String key();
+
+  @Option(value = "mount", mnemonic = 'm', mappedBy = LookupSupplier.class)
+  abstract Optional<String> mount();
+
+  @Param(value = 1, mappedBy = Lookup.class)
+  abstract List<String> hosts();
+
+  /**
+   * Simulates a slow lookup.
+   * A token of the form {@code name:millis} takes that long,
+   * The name {@code fail} fails, and the name {@code throw} makes the mapper throw
+   * instead of returning a future.
+   */
+  static class Lookup implements Function<String, CompletableFuture<String>> {
+
+    @Override
+    public CompletableFuture<String> apply(String token) {
+      if (token.equals("throw")) {
+        throw new IllegalArgumentException("Lookup not started: " + token);
+      }
+      CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+        String[] parts = token.split(":", 2);
+        if (parts.length == 2) {
+          sleep(Long.parseLong(parts[1]));
+        }
+        if (parts[0].equals("fail")) {
+          throw new IllegalArgumentException("Lookup failed: " + token);
+        }
+        return parts[0].toUpperCase(Locale.US);
+      }, EXECUTOR);
+      STARTED.add(future);
+      return future;
+    }
+  }
+
+  static class LookupSupplier implements Supplier<Function<String, CompletableFuture<String>>> {
+
+    @Override
+    public Function<String, CompletableFuture<String>> get() {
+      return new Lookup();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+@Command
+abstract class CharSequenceArguments {
+
+  @Option(value = "payload", mnemonic = 'p')
+  abstract Optional<CharSequence> payload();
+
+  @Option(value = "digits", mnemonic = 'd', mappedBy = DigitSumMapper.class)
+  abstract List<Integer> digitSums();
+
+  @Param(value = 1, mappedBy = DigitSumMapper.class)
+  abstract Optional<Integer> positional();
+
+  static class DigitSumMapper implements Function<CharSequence, Integer> {
+
+    @Override
+    public Integer apply(CharSequence s) {
+      int result = 0;
+      for (int i = 0; i < s.length(); i++) {
+        result += Character.digit(s.charAt(i), 10);
+      }
+      return result;
+    }
+  }
+}
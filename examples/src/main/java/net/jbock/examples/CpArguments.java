@@ -6,7 +6,7 @@ import net.jbock.Param;
 
 import java.util.Optional;
 
-@Command
+@Command(commandLine = true, visitor = true)
 abstract class CpArguments {
 
   enum Control {
@@ -0,0 +1,57 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+
+@Command(value = "diff", runtime = true)
+abstract class DiffArguments {
+
+  enum Format {
+    NORMAL,
+    UNIFIED,
+    CONTEXT
+  }
+
+  /**
+   * The original file
+   */
+  @Param(1)
+  abstract Path original();
+
+  /**
+   * The changed files
+   */
+  @Param(2)
+  abstract List<Path> changed();
+
+  /**
+   * Ignore case differences
+   */
+  @Option(value = "ignore-case", mnemonic = 'i')
+  abstract boolean ignoreCase();
+
+  /**
+   * Output NUM lines of context
+   */
+  @Option(value = "context", mnemonic = 'C')
+  abstract OptionalInt context();
+
+  @Option("width")
+  abstract int width();
+
+  @Option("format")
+  abstract Optional<Format> format();
+
+  /**
+   * Skip files that match the pattern
+   */
+  @Option(value = "exclude", mnemonic = 'x', collectedBy = ToSetCollector.class)
+  abstract Set<String> excludes();
+}
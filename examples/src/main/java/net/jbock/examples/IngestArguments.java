@@ -0,0 +1,48 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Command
+abstract class IngestArguments {
+
+  @Param(value = 1, parallelThreshold = 100)
+  abstract List<BigDecimal> amounts();
+
+  @Option(value = "tag", mnemonic = 't', collectedBy = ToSetCollector.class, parallelThreshold = 100)
+  abstract Set<String> tags();
+
+  @Option(value = "code", mnemonic = 'c', mappedBy = CodeMapper.class, parallelThreshold = 100)
+  abstract List<Integer> codes();
+
+  static class CodeMapper implements Supplier<Function<String, Integer>> {
+
+    @Override
+    public Function<String, Integer> get() {
+      return s -> {
+        if (!s.startsWith("C")) {
+          throw new IllegalArgumentException("Invalid code: " + s);
+        }
+        try {
+          return digits(s.substring(1));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("Invalid code: " + s, e);
+        }
+      };
+    }
+
+    private static int digits(String s) {
+      if (s.isEmpty() || !s.chars().allMatch(Character::isDigit)) {
+        throw new IllegalArgumentException("Not a number: " + s);
+      }
+      return Integer.parseInt(s);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+@Command(atFiles = true)
+abstract class JavacArguments {
+
+  @Option(value = "d", mnemonic = 'd')
+  abstract Optional<String> directory();
+
+  @Option("verbose")
+  abstract boolean verbose();
+
+  @Param(1)
+  abstract List<String> sources();
+}
@@ -0,0 +1,45 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+@Command(lazy = true)
+abstract class LazyArguments {
+
+  static final AtomicInteger MAPPER_CALLS = new AtomicInteger();
+
+  @Param(1)
+  abstract int count();
+
+  @Option(value = "pattern", mnemonic = 'p')
+  abstract Optional<Pattern> pattern();
+
+  @Option(value = "number", mnemonic = 'n')
+  abstract List<Integer> numbers();
+
+  @Option(value = "limit", mnemonic = 'l')
+  abstract OptionalInt limit();
+
+  @Option(value = "counted", mnemonic = 'c', mappedBy = CountingMapper.class)
+  abstract Optional<String> counted();
+
+  @Option(value = "verbose", mnemonic = 'v')
+  abstract boolean verbose();
+
+  static class CountingMapper implements Function<String, String> {
+
+    @Override
+    public String apply(String s) {
+      MAPPER_CALLS.incrementAndGet();
+      return s.toUpperCase();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+@Command(visitor = true)
+abstract class PrimitiveArraysArguments {
+
+  @Param(1)
+  abstract IntStream numbers();
+
+  @Option(value = "id", mnemonic = 'i')
+  abstract int[] ids();
+
+  @Option(value = "offset", mnemonic = 'o')
+  abstract LongStream offsets();
+
+  @Option(value = "weight", mnemonic = 'w')
+  abstract double[] weights();
+}
@@ -0,0 +1,31 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+@Command
+abstract class PrimitiveNumbersArguments {
+
+  @Param(1)
+  abstract int count();
+
+  @Option(value = "size", mnemonic = 's')
+  abstract long size();
+
+  @Option(value = "ratio", mnemonic = 'r')
+  abstract double ratio();
+
+  @Option(value = "int", mnemonic = 'i')
+  abstract OptionalInt optionalInt();
+
+  @Option(value = "long", mnemonic = 'l')
+  abstract OptionalLong optionalLong();
+
+  @Option(value = "double", mnemonic = 'd')
+  abstract OptionalDouble optionalDouble();
+}
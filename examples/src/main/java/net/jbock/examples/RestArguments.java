@@ -6,7 +6,7 @@ import net.jbock.Param;
 
 import java.util.List;
 
-@Command
+@Command(visitor = true)
 abstract class RestArguments {
 
   /**
@@ -0,0 +1,22 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.util.OptionalInt;
+
+@Command(defaultsFile = true)
+abstract class ServiceArguments {
+
+  /**
+   * The host to bind to.
+   */
+  @Option(value = "host", mnemonic = 'h', env = "SERVICE_HOST", property = "service.host")
+  abstract String host();
+
+  @Option(value = "port", mnemonic = 'p', env = "SERVICE_PORT")
+  abstract OptionalInt port();
+
+  @Option(value = "verbose", mnemonic = 'v')
+  abstract boolean verbose();
+}
@@ -0,0 +1,25 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.util.Optional;
+
+@Command
+abstract class SimilarNamesArguments {
+
+  @Option(value = "aab", mnemonic = 'a')
+  abstract Optional<String> aab();
+
+  @Option(value = "aba", mnemonic = 'b')
+  abstract Optional<String> aba();
+
+  @Option("baa")
+  abstract Optional<String> baa();
+
+  @Option("cats")
+  abstract boolean cat();
+
+  @Option("caps")
+  abstract boolean cap();
+}
@@ -0,0 +1,17 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.Iterator;
+
+@Command
+abstract class SumArguments {
+
+  @Option(value = "hex", mnemonic = 'x')
+  abstract boolean hex();
+
+  @Param(1)
+  abstract Iterator<Long> numbers();
+}
@@ -4,7 +4,7 @@ package net.jbock.examples;
 import net.jbock.Command;
 import net.jbock.Option;
 
-@Command
+@Command(visitor = true)
 abstract class TarArguments {
 
   @Option(value = "x", mnemonic = 'x')
@@ -0,0 +1,23 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.util.List;
+
+/**
+ * Add file contents to the index
+ */
+@Command("add")
+abstract class VcsAdd {
+
+  /**
+   * Add all files
+   */
+  @Option(value = "all", mnemonic = 'A')
+  abstract boolean all();
+
+  @Param(1)
+  abstract List<String> paths();
+}
@@ -0,0 +1,14 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+@Command(value = "vcs", subcommands = {VcsAdd.class, VcsCommit.class})
+abstract class VcsArguments {
+
+  /**
+   * Be verbose
+   */
+  @Option(value = "verbose", mnemonic = 'v')
+  abstract boolean verbose();
+}
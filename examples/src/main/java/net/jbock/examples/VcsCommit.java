@@ -0,0 +1,28 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.util.Optional;
+
+/**
+ * Record changes to the repository
+ */
+@Command(value = "commit", defaultsFile = true)
+abstract class VcsCommit {
+
+  /**
+   * Use the given message
+   */
+  @Option(value = "message", mnemonic = 'm')
+  abstract String message();
+
+  @Option("amend")
+  abstract boolean amend();
+
+  /**
+   * Override the commit author
+   */
+  @Option(value = "author", env = "VCS_AUTHOR")
+  abstract Optional<String> author();
+}
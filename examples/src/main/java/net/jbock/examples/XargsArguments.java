@@ -0,0 +1,28 @@
+package net.jbock.examples;
+
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Param;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Command
+abstract class XargsArguments {
+
+  @Option(value = "verbose", mnemonic = 't')
+  abstract boolean verbose();
+
+  @Option(value = "max-args", mnemonic = 'n')
+  abstract Optional<Integer> maxArgs();
+
+  @Param(1)
+  abstract String command();
+
+  /**
+   * All remaining tokens, mapped on demand
+   */
+  @Param(2)
+  abstract Stream<Path> files();
+}
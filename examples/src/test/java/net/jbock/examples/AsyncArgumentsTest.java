@@ -0,0 +1,97 @@
+package net.jbock.examples;
+
+import net.jbock.examples.AsyncArguments_Parser.ErrorCode;
+import net.jbock.examples.AsyncArguments_Parser.ParseResult;
+import net.jbock.examples.AsyncArguments_Parser.ParsingFailed;
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncArgumentsTest {
+
+  private ParserTestFixture<AsyncArguments> f =
+      ParserTestFixture.create(new AsyncArguments_Parser());
+
+  @Test
+  void success() {
+    f.assertThat("-k", "a", "--mount=b", "c", "d").succeeds(
+        "key", "A",
+        "mount", Optional.of("B"),
+        "hosts", asList("C", "D"));
+  }
+
+  @Test
+  void absentOptional() {
+    f.assertThat("-k", "a").succeeds(
+        "key", "A",
+        "mount", Optional.empty(),
+        "hosts", asList());
+  }
+
+  @Test
+  void missingRequired() {
+    f.assertThat("-m", "b").failsWithMessage("Missing required: KEY (-k, --key)");
+  }
+
+  @Test
+  void failedFuture() {
+    f.assertThat("-k", "a", "c", "fail").failsWithMessage("Lookup failed: fail");
+  }
+
+  @Test
+  void mapperThrows() {
+    f.assertThat("-k", "throw").failsWithMessage("Lookup not started: throw");
+  }
+
+  @Test
+  void firstFailureInDeclarationOrder() {
+    f.assertThat("-p", "x", "-m", "b").failsWithMessage("For input string: \"x\"");
+    f.assertThat("-p", "x", "-k", "throw").failsWithMessage("For input string: \"x\"");
+    f.assertThat("-k", "throw", "fail").failsWithMessage("Lookup failed: fail");
+  }
+
+  @Test
+  void pendingFuturesCancelled() {
+    AsyncArguments.STARTED.clear();
+    f.assertThat("-k", "a:5000", "-m", "b:5000", "fail").failsWithMessage("Lookup failed: fail");
+    assertEquals(3, AsyncArguments.STARTED.size());
+    for (CompletableFuture<String> future : AsyncArguments.STARTED) {
+      assertTrue(future.isCompletedExceptionally());
+    }
+    assertEquals(2, AsyncArguments.STARTED.stream().filter(CompletableFuture::isCancelled).count());
+  }
+
+  @Test
+  void mappersRunConcurrently() {
+    long start = System.nanoTime();
+    AsyncArguments parsed = f.parse("-k", "a:500", "-m", "b:500", "c:500", "d:500");
+    long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+    assertEquals(asList("C", "D"), parsed.hosts());
+    assertTrue(millis < 1500, "took " + millis + "ms");
+  }
+
+  @Test
+  void timeout() {
+    ParseResult result = new AsyncArguments_Parser()
+        .withMapperTimeout(Duration.ofMillis(100))
+        .parse(new String[]{"-k", "a", "-m", "b:5000"});
+    assertTrue(result instanceof ParsingFailed);
+    ParsingFailed failed = (ParsingFailed) result;
+    assertEquals(ErrorCode.MAPPING_FAILED, failed.getCode());
+    assertEquals("Mapping timed out: MOUNT (-m, --mount)", failed.getError().getMessage());
+  }
+
+  @Test
+  void negativeTimeout() {
+    AsyncArguments_Parser parser = new AsyncArguments_Parser();
+    assertThrows(IllegalArgumentException.class, () -> parser.withMapperTimeout(Duration.ofMillis(-1)));
+  }
+}
@@ -0,0 +1,123 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AtFileTest {
+
+  @TempDir
+  Path tmp;
+
+  private final JavacArguments_Parser parser = new JavacArguments_Parser();
+
+  private final ParserTestFixture<JavacArguments> f = ParserTestFixture.create(parser);
+
+  private Path write(String name, String content) throws IOException {
+    Path file = tmp.resolve(name);
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test
+  void quotedFormat() throws IOException {
+    Path file = write("args", "-d out\n'A b.java'  \"C\\\"d.java\"\n");
+    f.assertThat("--verbose", "@" + file, "E.java").succeeds(
+        "verbose", true,
+        "directory", Optional.of("out"),
+        "sources", Arrays.asList("A b.java", "C\"d.java", "E.java"));
+  }
+
+  @Test
+  void lineFormat() throws IOException {
+    Path file = write("args", "-d\r\nmy out\n\n 'x'.java\n");
+    ParserTestFixture<JavacArguments> lines = ParserTestFixture.create(
+        parser.withQuoting(JavacArguments_Parser.Quoting.LINES));
+    lines.assertThat("@" + file).succeeds(
+        "directory", Optional.of("my out"),
+        "sources", Collections.singletonList(" 'x'.java"));
+  }
+
+  @Test
+  void emptyFiles() throws IOException {
+    Path empty = write("empty", "  \n");
+    f.assertThat("@" + empty, "@" + empty, "a").succeeds("sources", Collections.singletonList("a"));
+  }
+
+  @Test
+  void notRecursive() throws IOException {
+    Path inner = write("inner", "a");
+    Path outer = write("outer", "@" + inner);
+    f.assertThat("@" + outer, "@").succeeds("sources", Arrays.asList("@" + inner, "@"));
+  }
+
+  @Test
+  void largeFile() throws IOException {
+    Path file = write("args", IntStream.range(0, 500_000)
+        .mapToObj(i -> "F" + i + ".java")
+        .collect(Collectors.joining("\n")));
+    List<String> sources = f.assertThat("@" + file).succeeds().sources();
+    assertEquals(500_000, sources.size());
+    assertEquals("F499999.java", sources.get(499_999));
+  }
+
+  @Test
+  void tokensAcrossChunks() throws IOException {
+    String filler = String.join("", Collections.nCopies(8190, " "));
+    Path file = write("args", filler + "'\u00e4 b' \"c\\\"d\" \u00e9\n");
+    List<String> sources = f.assertThat("@" + file).succeeds().sources();
+    assertEquals(Arrays.asList("\u00e4 b", "c\"d", "\u00e9"), sources);
+  }
+
+  @Test
+  void unterminatedQuoteInLaterChunk() throws IOException {
+    String filler = String.join("", Collections.nCopies(20_000, "a\n"));
+    Path file = write("args", filler + "'b");
+    f.assertThat("@" + file).failsWithMessage("Unterminated quote at position 40000");
+  }
+
+  @Test
+  void tokensLargerThanChunk() throws IOException {
+    String plain = String.join("", Collections.nCopies(100_000, "x\u00e4"));
+    String quoted = String.join(" ", Collections.nCopies(50_000, "y"));
+    Path file = write("args", "a " + plain + " '" + quoted + "' " + plain + "\"z\" b");
+    f.assertThat("@" + file).succeeds("sources", Arrays.asList("a", plain, quoted, plain + "z", "b"));
+  }
+
+  @Test
+  void notExpandedAfterEndOfOptions() throws IOException {
+    Path file = write("args", "a");
+    f.assertThat("@" + file, "--", "@" + file, "-d").succeeds("sources", Arrays.asList("a", "@" + file, "-d"));
+  }
+
+  @Test
+  void endOfOptionsInFile() throws IOException {
+    Path file = write("args", "a -- @b");
+    f.assertThat("@" + file, "@c").succeeds("sources", Arrays.asList("a", "@b", "@c"));
+  }
+
+  @Test
+  void missingFile() {
+    Path file = tmp.resolve("missing");
+    f.assertThat("@" + file).failsWithMessage("Cannot read response file: " + file);
+  }
+
+  @Test
+  void unterminatedQuote() throws IOException {
+    Path file = write("args", "'a");
+    f.assertThat("@" + file).failsWithMessage("Unterminated quote at position 0");
+  }
+}
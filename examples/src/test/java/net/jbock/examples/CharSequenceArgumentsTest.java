@@ -0,0 +1,49 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CharSequenceArgumentsTest {
+
+  private ParserTestFixture<CharSequenceArguments> f =
+      ParserTestFixture.create(new CharSequenceArguments_Parser());
+
+  @Test
+  void attachedValueIsSlice() {
+    CharSequenceArguments args = f.parse("--payload=eyJhIjoxfQ==");
+    assertTrue(args.payload().isPresent());
+    assertEquals("eyJhIjoxfQ==", args.payload().get().toString());
+    args = f.parse("-peyJhIjoxfQ==");
+    assertEquals("eyJhIjoxfQ==", args.payload().get().toString());
+  }
+
+  @Test
+  void detachedValue() {
+    CharSequenceArguments args = f.parse("--payload", "a=b");
+    assertEquals("a=b", args.payload().get().toString());
+  }
+
+  @Test
+  void charSequenceMapper() {
+    f.assertThat("--digits=123", "-d45", "--digits", "6", "7").succeeds(
+        "payload", Optional.empty(),
+        "digitSums", Arrays.asList(6, 9, 6),
+        "positional", Optional.of(7));
+    f.assertThat().succeeds(
+        "payload", Optional.empty(),
+        "digitSums", Collections.emptyList(),
+        "positional", Optional.empty());
+  }
+
+  @Test
+  void missingValue() {
+    f.assertThat("--payload").failsWithMessage("Missing value after token: --payload");
+  }
+}
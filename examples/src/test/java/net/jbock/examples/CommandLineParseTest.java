@@ -0,0 +1,61 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandLineParseTest {
+
+  private final CpArguments_Parser parser = new CpArguments_Parser();
+
+  private final ParserTestFixture<CpArguments> f = ParserTestFixture.create(parser);
+
+  @Test
+  void plainTokens() {
+    f.assertResult(parser.parse("  -r\t--backup NUMBERED a  b\n")).succeeds(
+        "recursive", true,
+        "backup", Optional.of(CpArguments.Control.NUMBERED),
+        "source", "a",
+        "dest", "b");
+  }
+
+  @Test
+  void quotes() {
+    f.assertResult(parser.parse("'a b' \"c \\\"d\\\" \\x\" -s ''")).succeeds(
+        "source", "a b",
+        "dest", "c \"d\" \\x",
+        "suffix", Optional.of(""));
+  }
+
+  @Test
+  void adjacentQuotesAndEscapes() {
+    f.assertResult(parser.parse("x'y'\"z\" a\\ b")).succeeds(
+        "source", "xyz",
+        "dest", "a b");
+  }
+
+  @Test
+  void noQuoting() {
+    f.assertResult(parser.withQuoting(CpArguments_Parser.Quoting.WHITESPACE).parse("'a \"b\\")).succeeds(
+        "source", "'a",
+        "dest", "\"b\\");
+  }
+
+  @Test
+  void errors() {
+    f.assertResult(parser.parse("a 'b")).failsWithMessage("Unterminated quote at position 2");
+    f.assertResult(parser.parse("a b\"c")).failsWithMessage("Unterminated quote at position 3");
+    f.assertResult(parser.parse("a b\\")).failsWithMessage("Missing character after backslash");
+    f.assertResult(parser.parse("a")).failsWithMessage("Missing required: DEST");
+  }
+
+  @Test
+  void help() {
+    assertTrue(parser.parse(" --help") instanceof CpArguments_Parser.HelpRequested);
+    assertFalse(parser.parse("a --help") instanceof CpArguments_Parser.HelpRequested);
+  }
+}
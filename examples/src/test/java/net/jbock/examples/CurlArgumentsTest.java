@@ -157,19 +157,29 @@ class CurlArgumentsTest {
   }
 
   @Test
-  void errorInvalidGrouping() {
-    f.assertThat("-vH1").failsWithMessage("Invalid token: -vH1");
+  void testGrouping() {
+    f.assertThat("-vH1").succeeds(
+        "method", Optional.empty(),
+        "headers", singletonList("1"),
+        "verbose", true,
+        "include", false,
+        "urls", emptyList());
   }
 
   @Test
-  void errorInvalidGroupingLong() {
-    f.assertThat("-vXPOST").failsWithMessage("Invalid token: -vXPOST");
+  void testGroupingLong() {
+    f.assertThat("-viXPOST").succeeds(
+        "method", Optional.of("POST"),
+        "headers", emptyList(),
+        "verbose", true,
+        "include", true,
+        "urls", emptyList());
   }
 
   @Test
   void errorGroupingDuplicateFlag() {
     f.assertThat("-v", "-vH'Content-Type: application/xml'").failsWithMessage(
-        "Invalid token: -vH'Content-Type: application/xml'");
+        "Option VERBOSE (-v, --verbose) is not repeatable");
   }
 
   @Test
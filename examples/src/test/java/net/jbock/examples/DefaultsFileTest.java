@@ -0,0 +1,91 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DefaultsFileTest {
+
+  @TempDir
+  Path tmp;
+
+  private final ServiceArguments_Parser parser = new ServiceArguments_Parser()
+      .withEnvironment(Collections.emptyMap());
+
+  private Path write(String content) throws IOException {
+    Path file = tmp.resolve("service.ini");
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static ParserTestFixture<ServiceArguments> fixture(ServiceArguments_Parser parser) {
+    return ParserTestFixture.create(parser);
+  }
+
+  @Test
+  void valuesFromFile() throws IOException {
+    Path file = write("# service defaults\n[server]\nhost = example.com\r\nport: 8080\n");
+    fixture(parser.withDefaults(file)).assertThat().succeeds(
+        "host", "example.com",
+        "port", OptionalInt.of(8080),
+        "verbose", false);
+  }
+
+  @Test
+  void commandLineWins() throws IOException {
+    Path file = write("host=example.com\nport=8080\n");
+    fixture(parser.withDefaults(file)).assertThat("--port", "1").succeeds(
+        "host", "example.com",
+        "port", OptionalInt.of(1));
+  }
+
+  @Test
+  void environmentWinsOverFile() throws IOException {
+    Path file = write("host=example.com\nport=8080\n");
+    fixture(parser.withDefaults(file).withEnvironment(Collections.singletonMap("SERVICE_PORT", "9090")))
+        .assertThat().succeeds("port", OptionalInt.of(9090));
+  }
+
+  @Test
+  void lastValueWinsAndUnknownKeysAreIgnored() throws IOException {
+    Path file = write("colour=blue\nhost=a\n; host=b\nhost=c\nverbose=true\n");
+    fixture(parser.withDefaults(file)).assertThat().succeeds(
+        "host", "c",
+        "verbose", false);
+  }
+
+  @Test
+  void sharedBetweenParsers() throws IOException {
+    ServiceArguments_Parser.Defaults defaults = ServiceArguments_Parser.Defaults.read(write("host=example.com\n"));
+    Files.delete(tmp.resolve("service.ini"));
+    fixture(parser.withDefaults(defaults)).assertThat().succeeds("host", "example.com");
+    fixture(new ServiceArguments_Parser().withDefaults(defaults)).assertThat("-v").succeeds("host", "example.com");
+  }
+
+  @Test
+  void badValue() throws IOException {
+    Path file = write("host=example.com\nport=http\n");
+    fixture(parser.withDefaults(file)).assertThat().failsWithMessage("For input string: \"http\"");
+  }
+
+  @Test
+  void missingRequired() throws IOException {
+    Path file = write("port=8080\n");
+    fixture(parser.withDefaults(file)).assertThat().failsWithMessage("Missing required: HOST (-h, --host)");
+  }
+
+  @Test
+  void fileNotFound() {
+    assertThrows(UncheckedIOException.class, () -> parser.withDefaults(tmp.resolve("nothing.ini")));
+  }
+}
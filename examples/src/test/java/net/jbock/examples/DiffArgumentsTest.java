@@ -0,0 +1,70 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import net.jbock.runtime.ErrorCode;
+import net.jbock.runtime.ParsingFailed;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffArgumentsTest {
+
+  private final DiffArguments_Parser parser = new DiffArguments_Parser();
+
+  private final ParserTestFixture<DiffArguments> f = ParserTestFixture.create(parser);
+
+  @Test
+  void testSuccess() {
+    f.assertThat("--width=80", "-i", "-x", "*.o", "--exclude", "*.a", "-x*.o", "a", "b", "c").succeeds(
+        "original", Paths.get("a"),
+        "changed", Arrays.asList(Paths.get("b"), Paths.get("c")),
+        "ignoreCase", true,
+        "width", 80,
+        "excludes", new HashSet<>(Arrays.asList("*.o", "*.a")),
+        "context", OptionalInt.empty(),
+        "format", Optional.empty());
+  }
+
+  @Test
+  void testOptionalInt() {
+    f.assertThat("-C3", "--width", "80", "--format=UNIFIED", "a").succeeds(
+        "context", OptionalInt.of(3),
+        "format", Optional.of(DiffArguments.Format.UNIFIED),
+        "changed", Collections.emptyList(),
+        "excludes", Collections.emptySet());
+  }
+
+  @Test
+  void testMissingRequired() {
+    ParsingFailed<DiffArguments> failure = f.assertThat("a").parsingFailed();
+    assertEquals(ErrorCode.MISSING_REQUIRED, failure.getCode());
+    assertEquals("WIDTH", failure.getParameter().map(p -> p.getName()).orElse(null));
+  }
+
+  @Test
+  void testMappingFailed() {
+    ParsingFailed<DiffArguments> failure = f.assertThat("--width=80", "-C", "x", "a").parsingFailed();
+    assertEquals(ErrorCode.MAPPING_FAILED, failure.getCode());
+    assertEquals("CONTEXT", failure.getParameter().map(p -> p.getName()).orElse(null));
+    assertTrue(failure.getError().getCause() instanceof NumberFormatException);
+  }
+
+  @Test
+  void testHelp() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.printOnlineHelp(new PrintStream(out));
+    String help = out.toString();
+    assertTrue(help.startsWith("Usage: diff [options...] --width <width> <original> <changed>...\n"), help);
+    assertTrue(help.contains("  -C, --context CONTEXT   Output NUM lines of context\n"), help);
+  }
+}
@@ -0,0 +1,121 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ErrorCodeTest {
+
+  private final CpArguments_Parser parser = new CpArguments_Parser();
+
+  private final ParserTestFixture<CpArguments> f = ParserTestFixture.create(parser);
+
+  private static void assertFailure(CpArguments_Parser.ParsingFailed failure,
+                                    CpArguments_Parser.ErrorCode code,
+                                    CpArguments_Parser.Option option,
+                                    int index) {
+    assertEquals(code, failure.getCode());
+    assertEquals(Optional.ofNullable(option), failure.getOption());
+    assertEquals(index, failure.getIndex());
+  }
+
+  @Test
+  void unknownOption() {
+    assertFailure(f.assertThat("a", "b", "-q").parsingFailed(), CpArguments_Parser.ErrorCode.UNKNOWN_OPTION, null, 2);
+  }
+
+  @Test
+  void missingRequired() {
+    assertFailure(f.assertThat("a").parsingFailed(), CpArguments_Parser.ErrorCode.MISSING_REQUIRED, CpArguments_Parser.Option.DEST, -1);
+  }
+
+  @Test
+  void repeated() {
+    CpArguments_Parser.ParsingFailed failure = f.assertThat("-s", "x", "a", "--s=y").parsingFailed();
+    assertFailure(failure, CpArguments_Parser.ErrorCode.REPEATED, CpArguments_Parser.Option.SUFFIX, 3);
+    assertEquals("Option SUFFIX (-s, --s) is not repeatable", failure.getError().getMessage());
+  }
+
+  @Test
+  void excessParam() {
+    assertFailure(f.assertThat("-s", "x", "a", "b", "c").parsingFailed(), CpArguments_Parser.ErrorCode.EXCESS_PARAM, null, 4);
+  }
+
+  @Test
+  void missingValue() {
+    assertFailure(f.assertThat("a", "b", "--backup").parsingFailed(), CpArguments_Parser.ErrorCode.MISSING_VALUE, CpArguments_Parser.Option.BACKUP, 2);
+  }
+
+  @Test
+  void invalidToken() {
+    assertFailure(f.assertThat("-r=1", "a", "b").parsingFailed(), CpArguments_Parser.ErrorCode.INVALID_TOKEN, CpArguments_Parser.Option.RECURSIVE, 0);
+  }
+
+  @Test
+  void mappingFailed() {
+    CpArguments_Parser.ParsingFailed failure = f.assertThat("a", "b", "--backup", "SOMETIMES").parsingFailed();
+    assertFailure(failure, CpArguments_Parser.ErrorCode.MAPPING_FAILED, CpArguments_Parser.Option.BACKUP, 3);
+    assertTrue(failure.getError().getCause() instanceof IllegalArgumentException);
+  }
+
+  @Test
+  void mappingFailedRepeatable() {
+    ParserTestFixture<IngestArguments> ingest = ParserTestFixture.create(new IngestArguments_Parser());
+    IngestArguments_Parser.ParsingFailed failure = ingest.assertThat("-c", "C1", "1", "--code=C2", "-cX3").parsingFailed();
+    assertEquals(IngestArguments_Parser.ErrorCode.MAPPING_FAILED, failure.getCode());
+    assertEquals(Optional.of(IngestArguments_Parser.Option.CODES), failure.getOption());
+    assertEquals(4, failure.getIndex());
+  }
+
+  @Test
+  void mappingFailedParallel() {
+    ParserTestFixture<IngestArguments> ingest = ParserTestFixture.create(new IngestArguments_Parser());
+    String[] args = new String[201];
+    for (int i = 0; i < 200; i++) {
+      args[i] = "-cC" + i;
+    }
+    args[150] = "-cX";
+    args[200] = "1";
+    IngestArguments_Parser.ParsingFailed failure = ingest.assertThat(args).parsingFailed();
+    assertEquals(IngestArguments_Parser.ErrorCode.MAPPING_FAILED, failure.getCode());
+    assertEquals(150, failure.getIndex());
+  }
+
+  @Test
+  void mappingFailedCollector() {
+    ParserTestFixture<CustomCollectorArguments> custom = ParserTestFixture.create(new CustomCollectorArguments_Parser());
+    CustomCollectorArguments_Parser.ParsingFailed failure = custom.assertThat("-T", "a:2001-01-01", "-T", "b").parsingFailed();
+    assertEquals(CustomCollectorArguments_Parser.ErrorCode.MAPPING_FAILED, failure.getCode());
+    assertEquals(Optional.of(CustomCollectorArguments_Parser.Option.DATE_MAP), failure.getOption());
+    assertEquals(3, failure.getIndex());
+  }
+
+  @Test
+  void unexpected() {
+    Iterator<String> tokens = new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public String next() {
+        throw new IllegalStateException("closed");
+      }
+    };
+    CpArguments_Parser.ParsingFailed failure = f.assertResult(parser.parse(tokens)).parsingFailed();
+    assertFailure(failure, CpArguments_Parser.ErrorCode.UNEXPECTED, null, -1);
+    assertTrue(failure.getError() instanceof IllegalStateException);
+  }
+
+  @Test
+  void invalidQuoting() {
+    CpArguments_Parser.ParsingFailed failure = f.assertResult(parser.parse("a 'b")).parsingFailed();
+    assertEquals(CpArguments_Parser.ErrorCode.INVALID_QUOTING, failure.getCode());
+  }
+}
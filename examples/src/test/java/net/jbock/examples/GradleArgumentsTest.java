@@ -46,9 +46,9 @@ class GradleArgumentsTest {
     f.assertThat("-c=v").failsWithMessage("Invalid token: -c=v");
     f.assertThat("-c=").failsWithMessage("Invalid token: -c=");
     f.assertThat("-cX=1").failsWithMessage("Invalid token: -cX=1");
-    f.assertThat("-cvv").failsWithMessage("Invalid token: -cvv");
+    f.assertThat("-cvv").failsWithMessage("Option VERBOSE (-v, --verbose) is not repeatable");
     f.assertThat("-cvx").failsWithMessage("Invalid token: -cvx");
-    f.assertThat("-cvm").failsWithMessage("Invalid token: -cvm");
+    f.assertThat("-cvm").failsWithMessage("Missing value after token: -cvm");
   }
 
   @Test
@@ -178,8 +178,14 @@ class GradleArgumentsTest {
   }
 
   @Test
-  void errorSuspiciousInput() {
-    f.assertThat("-cvm", "hello").failsWithMessage("Invalid token: -cvm");
+  void testClusterWithValue() {
+    f.assertThat("-cvm", "hello").succeeds(
+        "message", Optional.of("hello"),
+        "file", emptyList(),
+        "dir", Optional.empty(),
+        "cmos", true,
+        "verbose", true,
+        "otherTokens", emptyList());
   }
 
   @Test
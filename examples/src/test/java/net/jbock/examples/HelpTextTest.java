@@ -0,0 +1,56 @@
+package net.jbock.examples;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HelpTextTest {
+
+  private static String capture(Consumer<PrintStream> print) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    print.accept(new PrintStream(out));
+    return out.toString();
+  }
+
+  private static String helpText(RmArguments_Parser parser) throws ReflectiveOperationException {
+    Method helpText = RmArguments_Parser.class.getDeclaredMethod("helpText");
+    helpText.setAccessible(true);
+    return (String) helpText.invoke(parser);
+  }
+
+  @Test
+  void defaultHelpMatchesConfiguredRendering() {
+    RmArguments_Parser rm = new RmArguments_Parser();
+    String defaultHelp = capture(rm::printOnlineHelp);
+    RmArguments_Parser withMessages = rm.withMessages(Collections.singletonMap("unused", "x"));
+    assertEquals(defaultHelp, capture(withMessages::printOnlineHelp));
+
+    CustomMapperArguments_Parser mapper = new CustomMapperArguments_Parser();
+    assertEquals(capture(mapper::printOnlineHelp),
+        capture(mapper.withMessages(Collections.singletonMap("unused", "x"))::printOnlineHelp));
+  }
+
+  @Test
+  void cachedPerConfiguration() throws ReflectiveOperationException {
+    RmArguments_Parser rm = new RmArguments_Parser();
+    RmArguments_Parser narrow = rm.maxLineWidth(30);
+    String wide = helpText(rm);
+    assertNotEquals(wide, helpText(narrow));
+    assertSame(helpText(narrow), helpText(narrow));
+    assertSame(wide, helpText(rm));
+  }
+
+  @Test
+  void defaultHelpSharedByAllInstances() throws ReflectiveOperationException {
+    assertSame(helpText(new RmArguments_Parser()), helpText(new RmArguments_Parser()));
+    assertSame(helpText(new RmArguments_Parser()), helpText(new RmArguments_Parser().withErrorStream(System.err)));
+  }
+}
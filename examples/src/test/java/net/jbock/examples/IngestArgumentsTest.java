@@ -0,0 +1,67 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestArgumentsTest {
+
+  private ParserTestFixture<IngestArguments> f =
+      ParserTestFixture.create(new IngestArguments_Parser());
+
+  @Test
+  void belowThreshold() {
+    f.assertThat("-c", "C1", "-tx", "1.5", "-ty", "2", "-c", "C2").succeeds(
+        "amounts", asList(new BigDecimal("1.5"), new BigDecimal("2")),
+        "tags", new HashSet<>(asList("x", "y")),
+        "codes", asList(1, 2));
+  }
+
+  @Test
+  void aboveThresholdKeepsOrder() {
+    List<String> args = new ArrayList<>();
+    List<BigDecimal> amounts = new ArrayList<>();
+    List<Integer> codes = new ArrayList<>();
+    Set<String> tags = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      args.add("--code=C" + i);
+      args.add("-t" + (i % 7));
+      args.add(i + ".5");
+      amounts.add(new BigDecimal(i + ".5"));
+      codes.add(i);
+      tags.add(Integer.toString(i % 7));
+    }
+    IngestArguments parsed = f.parse(args.toArray(new String[0]));
+    assertEquals(amounts, parsed.amounts());
+    assertEquals(codes, parsed.codes());
+    assertEquals(tags, parsed.tags());
+  }
+
+  @Test
+  void failureAboveThreshold() {
+    List<String> args = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      args.add("-c");
+      args.add(i == 500 ? "X500" : "C" + i);
+    }
+    f.assertThat(args.toArray(new String[0])).failsWithMessage("Invalid code: X500");
+  }
+
+  @Test
+  void failureWithCauseOfSameClass() {
+    List<String> args = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      args.add("-c");
+      args.add(i == 0 ? "Cx" : "C" + i);
+    }
+    f.assertThat(args.toArray(new String[0])).failsWithMessage("Invalid code: Cx");
+  }
+}
@@ -0,0 +1,96 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyArgumentsTest {
+
+  private ParserTestFixture<LazyArguments> f =
+      ParserTestFixture.create(new LazyArguments_Parser());
+
+  @Test
+  void success() {
+    f.assertThat("-n1", "-n2", "--limit=3", "-p", "a+", "-v", "5").succeeds(
+        "count", 5,
+        "numbers", Arrays.asList(1, 2),
+        "limit", OptionalInt.of(3),
+        "counted", Optional.empty(),
+        "verbose", true);
+    f.assertThat("0").succeeds(
+        "count", 0,
+        "pattern", Optional.empty(),
+        "numbers", Collections.emptyList(),
+        "limit", OptionalInt.empty());
+  }
+
+  @Test
+  void mapsOnce() {
+    int before = LazyArguments.MAPPER_CALLS.get();
+    LazyArguments args = new LazyArguments_Parser().parseOrExit(new String[]{"--counted=foo", "1"});
+    assertEquals(before, LazyArguments.MAPPER_CALLS.get());
+    assertEquals(Optional.of("FOO"), args.counted());
+    assertEquals(Optional.of("FOO"), args.counted());
+    assertEquals(before + 1, LazyArguments.MAPPER_CALLS.get());
+  }
+
+  @Test
+  void failureOnAccess() {
+    LazyArguments args = new LazyArguments_Parser().parseOrExit(new String[]{"-n1", "-nx", "-p", "(", "2"});
+    assertEquals(2, args.count());
+    LazyArguments_Parser.MappingFailedException e =
+        assertThrows(LazyArguments_Parser.MappingFailedException.class, args::numbers);
+    assertEquals("NUMBERS", e.getParameter());
+    assertEquals("Invalid value for NUMBERS (-n, --number): For input string: \"x\"", e.getMessage());
+    assertTrue(e.getCause() instanceof NumberFormatException);
+    LazyArguments_Parser.MappingFailedException patternFailed =
+        assertThrows(LazyArguments_Parser.MappingFailedException.class, args::pattern);
+    assertEquals("PATTERN", patternFailed.getParameter());
+    assertFalse(args.verbose());
+  }
+
+  @Test
+  void missingRequiredIsEager() {
+    f.assertThat("-n1").failsWithMessage("Missing required: COUNT");
+  }
+
+  @Test
+  void rawValueReleasedAfterMapping() throws Exception {
+    LazyArguments args = new LazyArguments_Parser().parseOrExit(new String[]{"-n1", "-nx", "-p", "a", "2"});
+    assertThrows(LazyArguments_Parser.MappingFailedException.class, args::numbers);
+    assertNotNull(raw(args, "numbersRaw"));
+    assertNotNull(raw(args, "patternRaw"));
+    args.pattern();
+    assertNull(raw(args, "patternRaw"));
+  }
+
+  private static Object raw(LazyArguments args, String fieldName) throws ReflectiveOperationException {
+    Field field = args.getClass().getDeclaredField(fieldName);
+    field.setAccessible(true);
+    return field.get(args);
+  }
+
+  @Test
+  void stateIsResetBetweenParses() {
+    LazyArguments_Parser parser = new LazyArguments_Parser();
+    LazyArguments first = ((LazyArguments_Parser.ParsingSuccess) parser.parse(new String[]{"-n1", "-n2", "-v", "0"})).getResult();
+    LazyArguments second = ((LazyArguments_Parser.ParsingSuccess) parser.parse(new String[]{"-n3", "1"})).getResult();
+    // the values of the first result are mapped after the second parse
+    assertEquals(Arrays.asList(1, 2), first.numbers());
+    assertEquals(Collections.singletonList(3), second.numbers());
+    assertTrue(first.verbose());
+    assertFalse(second.verbose());
+  }
+}
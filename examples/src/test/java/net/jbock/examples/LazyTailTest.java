@@ -0,0 +1,105 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyTailTest {
+
+  private final XargsArguments_Parser parser = new XargsArguments_Parser();
+
+  private final ParserTestFixture<XargsArguments> f = ParserTestFixture.create(parser);
+
+  private static List<Path> paths(String... paths) {
+    return Arrays.stream(paths).map(Paths::get).collect(Collectors.toList());
+  }
+
+  @Test
+  void optionsBeforeTail() {
+    XargsArguments args = f.assertThat("-t", "-n", "2", "rm", "a", "b").succeeds(
+        "verbose", true,
+        "maxArgs", Optional.of(2),
+        "command", "rm");
+    assertEquals(paths("a", "b"), args.files().collect(Collectors.toList()));
+  }
+
+  @Test
+  void tailIsNotParsed() {
+    XargsArguments args = f.assertThat("rm", "a", "-t", "--", "--max-args=1").succeeds("verbose", false);
+    assertEquals(paths("a", "-t", "--", "--max-args=1"), args.files().collect(Collectors.toList()));
+  }
+
+  @Test
+  void tailAfterDoubleDash() {
+    XargsArguments args = f.assertThat("-t", "--", "-rm", "-a").succeeds(
+        "verbose", true,
+        "command", "-rm");
+    assertEquals(paths("-a"), args.files().collect(Collectors.toList()));
+  }
+
+  @Test
+  void emptyTail() {
+    assertEquals(0, f.assertThat("rm").succeeds().files().count());
+    assertEquals(0, f.assertThat("--", "rm").succeeds().files().count());
+  }
+
+  @Test
+  void tailIsViewOfArray() {
+    String[] argv = {"rm", "a", "b"};
+    XargsArguments args = f.assertThat(argv).succeeds();
+    argv[2] = "c";
+    assertEquals(paths("a", "c"), args.files().collect(Collectors.toList()));
+  }
+
+  @Test
+  void iteratorInput() {
+    Iterator<String> tokens = Stream.concat(Stream.of("echo"),
+        IntStream.range(0, 100_000).mapToObj(Integer::toString)).iterator();
+    XargsArguments args = f.assertResult(parser.parse(tokens)).succeeds("command", "echo");
+    assertTrue(tokens.hasNext());
+    assertEquals(100_000, args.files().count());
+    assertFalse(tokens.hasNext());
+  }
+
+  @Test
+  void streamInput() {
+    XargsArguments args = f.assertResult(parser.parse(Stream.of("-t", "ls", "x"))).succeeds("verbose", true);
+    assertEquals(paths("x"), args.files().collect(Collectors.toList()));
+  }
+
+  @Test
+  void helpRequested() {
+    assertTrue(parser.parse(Stream.of("--help")) instanceof XargsArguments_Parser.HelpRequested);
+    f.assertResult(parser.parse(Stream.of("--", "--help"))).succeeds("command", "--help");
+  }
+
+  @Test
+  void missingCommand() {
+    f.assertResult(parser.parse(Stream.of("-t"))).failsWithMessage("Missing required: COMMAND");
+  }
+
+  @Test
+  void iteratorParam() {
+    ParserTestFixture<SumArguments> sum = ParserTestFixture.create(new SumArguments_Parser());
+    SumArguments args = sum.assertThat("-x", "1", "2", "x").succeeds("hex", true);
+    Iterator<Long> numbers = args.numbers();
+    assertEquals(1L, numbers.next());
+    assertEquals(2L, numbers.next());
+    // mapping happens while the tail is consumed
+    assertThrows(NumberFormatException.class, numbers::next);
+  }
+}
@@ -0,0 +1,88 @@
+package net.jbock.examples;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseAllTest {
+
+  private final CpArguments_Parser parser = new CpArguments_Parser();
+
+  @TempDir
+  Path tmp;
+
+  @Test
+  void resultsInInputOrder() {
+    List<CpArguments_Parser.ParseResult> results = parser.parseAll(IntStream.range(0, 10_000)
+        .mapToObj(i -> i % 3 == 0 ? new String[]{"src" + i} : new String[]{"src" + i, "dest" + i}));
+    assertEquals(10_000, results.size());
+    for (int i = 0; i < results.size(); i++) {
+      CpArguments_Parser.ParseResult result = results.get(i);
+      if (i % 3 == 0) {
+        assertTrue(result instanceof CpArguments_Parser.ParsingFailed);
+      } else {
+        assertTrue(result instanceof CpArguments_Parser.ParsingSuccess);
+        CpArguments args = ((CpArguments_Parser.ParsingSuccess) result).getResult();
+        assertEquals("src" + i, args.source());
+        assertEquals("dest" + i, args.dest());
+      }
+    }
+  }
+
+  @Test
+  void emptyInput() {
+    assertEquals(0, parser.parseAll(Stream.empty()).size());
+  }
+
+  @Test
+  void commandLinesFromFile() throws IOException {
+    Path file = tmp.resolve("jobs");
+    Files.write(file, Arrays.asList("-r a b", "'a b'", "--help", "x \"y z\""));
+    List<CpArguments_Parser.ParseResult> results;
+    try (Stream<CpArguments_Parser.ParseResult> stream = parser.parseAll(file)) {
+      results = stream.collect(Collectors.toList());
+    }
+    assertEquals(4, results.size());
+    assertTrue(((CpArguments_Parser.ParsingSuccess) results.get(0)).getResult().recursive());
+    assertTrue(results.get(1) instanceof CpArguments_Parser.ParsingFailed);
+    assertTrue(results.get(2) instanceof CpArguments_Parser.HelpRequested);
+    assertEquals("y z", ((CpArguments_Parser.ParsingSuccess) results.get(3)).getResult().dest());
+  }
+
+  @Test
+  void configurationIsUsed() throws IOException {
+    Path file = tmp.resolve("jobs");
+    Files.write(file, IntStream.range(0, 1000).mapToObj(i -> "'a b").collect(Collectors.toList()));
+    try (Stream<CpArguments_Parser.ParseResult> results = parser.withQuoting(CpArguments_Parser.Quoting.WHITESPACE)
+        .parseAll(file)) {
+      assertTrue(results.allMatch(result -> result instanceof CpArguments_Parser.ParsingSuccess));
+    }
+  }
+
+  @Test
+  void linesStreamedInFileOrder() throws IOException {
+    Path file = tmp.resolve("jobs");
+    Files.write(file, IntStream.range(0, 10_000).mapToObj(i -> "src" + i + " dest" + i).collect(Collectors.toList()));
+    AtomicInteger count = new AtomicInteger();
+    try (Stream<CpArguments_Parser.ParseResult> results = parser.parseAll(file)) {
+      assertTrue(results.isParallel());
+      results.forEachOrdered(result -> {
+        int i = count.getAndIncrement();
+        assertEquals("dest" + i, ((CpArguments_Parser.ParsingSuccess) result).getResult().dest());
+      });
+    }
+    assertEquals(10_000, count.get());
+  }
+}
@@ -0,0 +1,155 @@
+package net.jbock.examples;
+
+import net.jbock.examples.PrimitiveArraysArguments_Parser.ErrorCode;
+import net.jbock.examples.PrimitiveArraysArguments_Parser.Option;
+import net.jbock.examples.PrimitiveArraysArguments_Parser.ParseResult;
+import net.jbock.examples.PrimitiveArraysArguments_Parser.ParsingFailed;
+import net.jbock.examples.PrimitiveArraysArguments_Parser.ParsingSuccess;
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimitiveArraysArgumentsTest {
+
+  private ParserTestFixture<PrimitiveArraysArguments> f =
+      ParserTestFixture.create(new PrimitiveArraysArguments_Parser());
+
+  @Test
+  void success() {
+    PrimitiveArraysArguments parsed = f.parse("-i1", "--id=-2", "-o", "5000000000", "-w0.5", "7", "8", "-i", "3");
+    assertArrayEquals(new int[]{1, -2, 3}, parsed.ids());
+    assertArrayEquals(new long[]{5000000000L}, parsed.offsets().toArray());
+    assertArrayEquals(new double[]{0.5}, parsed.weights());
+    assertArrayEquals(new int[]{7, 8}, parsed.numbers().toArray());
+  }
+
+  @Test
+  void empty() {
+    PrimitiveArraysArguments parsed = f.parse();
+    assertEquals(0, parsed.ids().length);
+    assertEquals(0, parsed.offsets().count());
+    assertEquals(0, parsed.weights().length);
+    assertEquals(0, parsed.numbers().count());
+  }
+
+  @Test
+  void manyValues() {
+    List<String> args = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      args.add("-i");
+      args.add(Integer.toString(i));
+    }
+    int[] ids = f.parse(args.toArray(new String[0])).ids();
+    assertEquals(1000, ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(i, ids[i]);
+    }
+  }
+
+  @Test
+  void arrayIsCopied() {
+    PrimitiveArraysArguments parsed = f.parse("-i1");
+    parsed.ids()[0] = 2;
+    assertArrayEquals(new int[]{2}, parsed.ids());
+  }
+
+  @Test
+  void invalidNumber() {
+    f.assertThat("-i", "1.5").failsWithMessage("For input string: \"1.5\"");
+    f.assertThat("-w", "x").failsWithMessage("For input string: \"x\"");
+    f.assertThat("1", "x").failsWithMessage("For input string: \"x\"");
+  }
+
+  @Test
+  void failureHasTokenIndex() {
+    PrimitiveArraysArguments_Parser.ParseResult result = new PrimitiveArraysArguments_Parser()
+        .parse(new String[]{"-i1", "-o", "2", "-o", "x"});
+    assertTrue(result instanceof ParsingFailed);
+    ParsingFailed failed = (ParsingFailed) result;
+    assertEquals(ErrorCode.MAPPING_FAILED, failed.getCode());
+    assertEquals(Optional.of(Option.OFFSETS), failed.getOption());
+    assertEquals(4, failed.getIndex());
+  }
+
+  @Test
+  void visitorGetsBoxedValues() {
+    List<Object> values = new ArrayList<>();
+    new PrimitiveArraysArguments_Parser().parse(new String[]{"-i1", "2", "-w", "1.5"},
+        new PrimitiveArraysArguments_Parser.Visitor() {
+          @Override
+          public void ids(PrimitiveArraysArguments_Parser.Value<Integer> value) {
+            values.add(value.get());
+          }
+
+          @Override
+          public void numbers(PrimitiveArraysArguments_Parser.Value<Integer> value) {
+            values.add(value.get());
+          }
+
+          @Override
+          public void weights(PrimitiveArraysArguments_Parser.Value<Double> value) {
+            values.add(value.get());
+          }
+        });
+    assertEquals(3, values.size());
+    assertEquals(1, values.get(0));
+    assertEquals(2, values.get(1));
+    assertEquals(1.5, values.get(2));
+  }
+
+  @Test
+  void stateIsResetBetweenParses() {
+    PrimitiveArraysArguments_Parser parser = new PrimitiveArraysArguments_Parser();
+    PrimitiveArraysArguments first = success(parser.parse(new String[]{"-i1", "-i2", "-o3", "7", "8"}));
+    assertTrue(parser.parse(new String[]{"-i", "x"}) instanceof ParsingFailed);
+    PrimitiveArraysArguments second = success(parser.parse(new String[]{"-i4", "9"}));
+    assertArrayEquals(new int[]{4}, second.ids());
+    assertArrayEquals(new int[]{9}, second.numbers().toArray());
+    assertEquals(0, second.offsets().count());
+    // the streams of the first result are not affected by the later parses
+    assertArrayEquals(new int[]{1, 2}, first.ids());
+    assertArrayEquals(new int[]{7, 8}, first.numbers().toArray());
+    assertArrayEquals(new long[]{3}, first.offsets().toArray());
+  }
+
+  @Test
+  void nestedParse() {
+    PrimitiveArraysArguments_Parser parser = new PrimitiveArraysArguments_Parser();
+    List<PrimitiveArraysArguments> nested = new ArrayList<>();
+    Iterator<String> tokens = Arrays.asList("-i1", "5", "-i2").iterator();
+    ParseResult result = parser.parse(new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return tokens.hasNext();
+      }
+
+      @Override
+      public String next() {
+        nested.add(success(parser.parse(new String[]{"-i9", "6"})));
+        return tokens.next();
+      }
+    });
+    PrimitiveArraysArguments outer = success(result);
+    assertArrayEquals(new int[]{1, 2}, outer.ids());
+    assertArrayEquals(new int[]{5}, outer.numbers().toArray());
+    assertEquals(3, nested.size());
+    for (PrimitiveArraysArguments args : nested) {
+      assertArrayEquals(new int[]{9}, args.ids());
+      assertArrayEquals(new int[]{6}, args.numbers().toArray());
+    }
+  }
+
+  private static PrimitiveArraysArguments success(ParseResult result) {
+    assertTrue(result instanceof ParsingSuccess);
+    return ((ParsingSuccess) result).getResult();
+  }
+}
@@ -0,0 +1,48 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+class PrimitiveNumbersArgumentsTest {
+
+  private ParserTestFixture<PrimitiveNumbersArguments> f =
+      ParserTestFixture.create(new PrimitiveNumbersArguments_Parser());
+
+  @Test
+  void success() {
+    f.assertThat("-s", "5000000000", "--ratio=0.5", "-i3", "--long", "-4", "-d1.5", "12").succeeds(
+        "count", 12,
+        "size", 5000000000L,
+        "ratio", 0.5,
+        "optionalInt", OptionalInt.of(3),
+        "optionalLong", OptionalLong.of(-4),
+        "optionalDouble", OptionalDouble.of(1.5));
+  }
+
+  @Test
+  void absentOptionals() {
+    f.assertThat("-s1", "-r1", "0").succeeds(
+        "count", 0,
+        "size", 1L,
+        "ratio", 1.0,
+        "optionalInt", OptionalInt.empty(),
+        "optionalLong", OptionalLong.empty(),
+        "optionalDouble", OptionalDouble.empty());
+  }
+
+  @Test
+  void missingRequired() {
+    f.assertThat("-s1", "-r1").failsWithMessage("Missing required: COUNT");
+    f.assertThat("-r1", "0").failsWithMessage("Missing required: SIZE (-s, --size)");
+  }
+
+  @Test
+  void invalidNumber() {
+    f.assertThat("-s1", "-r1", "-i", "1.5", "0").failsWithMessage("For input string: \"1.5\"");
+    f.assertThat("-s1", "-r1", "x").failsWithMessage("For input string: \"x\"");
+  }
+}
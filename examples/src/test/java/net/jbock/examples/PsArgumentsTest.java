@@ -3,11 +3,23 @@ package net.jbock.examples;
 import net.jbock.examples.fixture.ParserTestFixture;
 import org.junit.jupiter.api.Test;
 
+import java.util.Optional;
+
 class PsArgumentsTest {
 
   private ParserTestFixture<PsArguments> f =
       ParserTestFixture.create(new PsArguments_Parser());
 
+  @Test
+  void testCluster() {
+    f.assertThat("-aw80").succeeds(
+        "all", true,
+        "width", Optional.of(80));
+    f.assertThat("-aw", "80").succeeds(
+        "all", true,
+        "width", Optional.of(80));
+  }
+
   @Test
   void testPrint() {
     f.assertPrintsHelp(
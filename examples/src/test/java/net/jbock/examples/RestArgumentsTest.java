@@ -4,6 +4,8 @@ import net.jbock.examples.fixture.ParserTestFixture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -11,7 +13,11 @@ import java.util.Vector;
 
 import static net.jbock.examples.fixture.ParserTestFixture.assertArraysEquals;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class RestArgumentsTest {
@@ -49,4 +55,29 @@ class RestArgumentsTest {
     String[] help = f.getHelp(bundle);
     assertArraysEquals(expected, help);
   }
+
+  @Test
+  void testResourceBundleLookupIsLazy() {
+    ResourceBundle bundle = mock(ResourceBundle.class);
+    messages.forEach((k, v) -> when(bundle.getString(eq(k))).thenReturn(v));
+    RestArguments_Parser parser = new RestArguments_Parser().withResourceBundle(bundle);
+    verify(bundle, never()).getString("file");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.printOnlineHelp(new PrintStream(out));
+    parser.printOnlineHelp(new PrintStream(out));
+    verify(bundle, never()).getKeys();
+    verify(bundle, times(1)).getString("file");
+    verify(bundle, times(1)).getString("the.rest");
+  }
+
+  @Test
+  void testMessagesReplaceResourceBundle() {
+    ResourceBundle bundle = mock(ResourceBundle.class);
+    when(bundle.getString(eq("file"))).thenReturn("From bundle");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new RestArguments_Parser().withResourceBundle(bundle).withMessages(messages)
+        .printOnlineHelp(new PrintStream(out));
+    verify(bundle, never()).getString("file");
+    assertEquals(String.join(System.lineSeparator(), expected), out.toString());
+  }
 }
@@ -0,0 +1,91 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ServiceArgumentsTest {
+
+  private final ParserTestFixture<ServiceArguments> f =
+      ParserTestFixture.create(new ServiceArguments_Parser().withEnvironment(env()));
+
+  private static Map<String, String> env() {
+    Map<String, String> env = new HashMap<>();
+    env.put("SERVICE_HOST", "example.com");
+    env.put("SERVICE_PORT", "8080");
+    return env;
+  }
+
+  @Test
+  void fallbackFromEnvironment() {
+    f.assertThat().succeeds(
+        "host", "example.com",
+        "port", OptionalInt.of(8080),
+        "verbose", false);
+  }
+
+  @Test
+  void commandLineWins() {
+    f.assertThat("-h", "localhost", "--port=1").succeeds(
+        "host", "localhost",
+        "port", OptionalInt.of(1),
+        "verbose", false);
+  }
+
+  @Test
+  void emptyEnvironment() {
+    ParserTestFixture<ServiceArguments> g = ParserTestFixture.create(
+        new ServiceArguments_Parser().withEnvironment(Collections.emptyMap()));
+    g.assertThat("-h", "localhost").succeeds(
+        "host", "localhost",
+        "port", OptionalInt.empty(),
+        "verbose", false);
+    g.assertThat("-v").failsWithMessage("Missing required: HOST (-h, --host)");
+  }
+
+  @Test
+  void badFallbackValue() {
+    ParserTestFixture<ServiceArguments> g = ParserTestFixture.create(
+        new ServiceArguments_Parser().withEnvironment(Collections.singletonMap("SERVICE_PORT", "http")));
+    g.assertThat("-h", "localhost").failsWithMessage("For input string: \"http\"");
+  }
+
+  @Test
+  void systemPropertyWinsOverEnvironment() {
+    System.setProperty("service.host", "property.example.com");
+    try {
+      ServiceArguments args = new ServiceArguments_Parser().withEnvironment(env()).parseOrExit(new String[0]);
+      assertEquals("property.example.com", args.host());
+    } finally {
+      System.clearProperty("service.host");
+    }
+  }
+
+  @Test
+  void snapshotTakenOnce() {
+    ServiceArguments_Parser parser = new ServiceArguments_Parser().withEnvironment(env());
+    System.setProperty("service.host", "property.example.com");
+    try {
+      assertEquals("example.com", parser.parseOrExit(new String[0]).host());
+    } finally {
+      System.clearProperty("service.host");
+    }
+  }
+
+  @Test
+  void testPrint() {
+    f.assertPrintsHelp(
+        "Usage: service-arguments [options...] -h <host>",
+        "",
+        "  -h, --host HOST  The host to bind to.",
+        "  -p, --port PORT",
+        "  -v, --verbose",
+        "");
+  }
+}
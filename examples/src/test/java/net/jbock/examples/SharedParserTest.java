@@ -0,0 +1,55 @@
+package net.jbock.examples;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedParserTest {
+
+  private static final SimpleArguments_Parser PARSER = new SimpleArguments_Parser();
+
+  @Test
+  void withersReturnCopy() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    SimpleArguments_Parser modified = PARSER.withErrorStream(new PrintStream(err))
+        .runBeforeExit(r -> {
+          throw new IllegalStateException();
+        });
+    assertNotSame(PARSER, modified);
+    try {
+      modified.parseOrExit(new String[]{"-x", "-x"});
+    } catch (IllegalStateException ignored) {
+    }
+    assertTrue(err.toString().contains("is not repeatable"));
+  }
+
+  @Test
+  void concurrentParse() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<SimpleArguments>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String[] args = i % 2 == 0 ? new String[]{"-x", "--file=" + i} : new String[]{"--file", Integer.toString(i)};
+        futures.add(executor.submit(() -> PARSER.parseOrExit(args)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        SimpleArguments result = futures.get(i).get();
+        assertEquals(i % 2 == 0, result.extract());
+        assertEquals(Optional.of(Integer.toString(i)), result.file());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class SimilarNamesArgumentsTest {
+
+  private ParserTestFixture<SimilarNamesArguments> f =
+      ParserTestFixture.create(new SimilarNamesArguments_Parser());
+
+  @Test
+  void sameLengthNoDiscriminatingChar() {
+    f.assertThat("--aab=1", "--aba", "2", "--baa", "3").succeeds(
+        "aab", Optional.of("1"),
+        "aba", Optional.of("2"),
+        "baa", Optional.of("3"),
+        "cat", false,
+        "cap", false);
+  }
+
+  @Test
+  void sameLengthDiscriminatingChar() {
+    f.assertThat("--caps").succeeds(
+        "aab", Optional.empty(),
+        "aba", Optional.empty(),
+        "baa", Optional.empty(),
+        "cat", false,
+        "cap", true);
+    f.assertThat("--cats").succeeds(
+        "aab", Optional.empty(),
+        "aba", Optional.empty(),
+        "baa", Optional.empty(),
+        "cat", true,
+        "cap", false);
+  }
+
+  @Test
+  void mnemonics() {
+    f.assertThat("-a1", "-b", "2").succeeds(
+        "aab", Optional.of("1"),
+        "aba", Optional.of("2"),
+        "baa", Optional.empty(),
+        "cat", false,
+        "cap", false);
+  }
+
+  @Test
+  void noPrefixMatch() {
+    f.assertThat("--ca").failsWithMessage("Invalid option: --ca");
+    f.assertThat("--capsule").failsWithMessage("Invalid option: --capsule");
+    f.assertThat("--cabs").failsWithMessage("Invalid option: --cabs");
+    f.assertThat("--aaa=1").failsWithMessage("Invalid option: --aaa=1");
+    f.assertThat("-c").failsWithMessage("Invalid option: -c");
+  }
+}
@@ -5,6 +5,9 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class SimpleArgumentsTest {
 
   private ParserTestFixture<SimpleArguments> f =
@@ -26,6 +29,15 @@ class SimpleArgumentsTest {
     f.assertThat("--file", "1", "--help").failsWithMessage("Invalid option: --help");
   }
 
+  @Test
+  void errorWithoutStackTrace() {
+    SimpleArguments_Parser.ParseResult result = new SimpleArguments_Parser().parse(new String[]{"-x", "-x"});
+    assertTrue(result instanceof SimpleArguments_Parser.ParsingFailed);
+    RuntimeException error = ((SimpleArguments_Parser.ParsingFailed) result).getError();
+    assertEquals(0, error.getStackTrace().length);
+    assertEquals("Option EXTRACT (-x, --x) is not repeatable", error.getMessage());
+  }
+
   @Test
   void testPrint() {
     f.assertPrintsHelp(
@@ -24,9 +24,31 @@ class TarArgumentsTest {
         "file", "foo.tar");
   }
 
+  @Test
+  void testCluster() {
+    f.assertThat("-xzf", "foo.tar.gz").succeeds(
+        "extract", true,
+        "create", false,
+        "verbose", false,
+        "compress", true,
+        "file", "foo.tar.gz");
+    f.assertThat("-cvffoo.tar").succeeds(
+        "extract", false,
+        "create", true,
+        "verbose", true,
+        "compress", false,
+        "file", "foo.tar");
+  }
+
+  @Test
+  void errorCluster() {
+    f.assertThat("-xq", "-f", "foo.tar").failsWithMessage("Invalid token: -xq");
+    f.assertThat("-xvx", "-f", "foo.tar").failsWithMessage("Option EXTRACT (-x, --x) is not repeatable");
+  }
+
   @Test
   void flagWithArgument() {
-    f.assertThat("-xf").failsWithMessage("Invalid token: -xf");
+    f.assertThat("-xf").failsWithMessage("Missing value after token: -xf");
     f.assertThat("--x=f").failsWithMessage("Invalid token: --x=f");
   }
 
@@ -0,0 +1,253 @@
+package net.jbock.examples;
+
+import net.jbock.examples.fixture.ParserTestFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ListResourceBundle;
+import java.util.Optional;
+import java.util.ResourceBundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VcsArgumentsTest {
+
+  private final ParserTestFixture<VcsArguments> f =
+      ParserTestFixture.create(new VcsArguments_Parser().withEnvironment(Collections.emptyMap()));
+
+  @TempDir
+  Path tempDir;
+
+  private static VcsAdd add(VcsArguments_Parser.ParsingSuccess success) {
+    return success.accept(new VcsArguments_Parser.SubcommandVisitor<VcsAdd>() {
+      @Override
+      public VcsAdd visit(VcsAdd add) {
+        return add;
+      }
+
+      @Override
+      public VcsAdd visit(VcsCommit commit) {
+        throw new AssertionError("expecting add");
+      }
+    });
+  }
+
+  private static VcsCommit commit(VcsArguments_Parser.ParsingSuccess success) {
+    return success.accept(new VcsArguments_Parser.SubcommandVisitor<VcsCommit>() {
+      @Override
+      public VcsCommit visit(VcsAdd add) {
+        throw new AssertionError("expecting commit");
+      }
+
+      @Override
+      public VcsCommit visit(VcsCommit commit) {
+        return commit;
+      }
+    });
+  }
+
+  private static String subcommandHelp(VcsArguments_Parser parser, String name) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.printSubcommandHelp(name, new PrintStream(out));
+    return out.toString();
+  }
+
+  @Test
+  void testAdd() {
+    VcsArguments_Parser.ParsingSuccess success = f.assertThat("-v", "add", "-A", "a", "b").parsingSuccess();
+    assertTrue(success.getResult().verbose());
+    VcsAdd add = add(success);
+    assertTrue(add.all());
+    assertEquals(Arrays.asList("a", "b"), add.paths());
+  }
+
+  @Test
+  void testCommit() {
+    VcsArguments_Parser.ParsingSuccess success = f.assertThat("commit", "-m", "fix").parsingSuccess();
+    assertFalse(success.getResult().verbose());
+    VcsCommit commit = commit(success);
+    assertEquals("fix", commit.message());
+    assertFalse(commit.amend());
+  }
+
+  @Test
+  void testOptionsOfParentOnlyBeforeCommand() {
+    VcsArguments_Parser.ParsingSuccess success = f.assertThat("add", "--", "-v").parsingSuccess();
+    assertFalse(success.getResult().verbose());
+    assertEquals(Collections.singletonList("-v"), add(success).paths());
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("add", "-v").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.UNKNOWN_OPTION, failed.getCode());
+  }
+
+  @Test
+  void testEndOfOptionsBeforeCommand() {
+    VcsArguments_Parser.ParsingSuccess success = f.assertThat("-v", "--", "add", "-A").parsingSuccess();
+    assertTrue(success.getResult().verbose());
+    assertTrue(add(success).all());
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("--", "-v").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.UNKNOWN_COMMAND, failed.getCode());
+    assertEquals(1, failed.getIndex());
+    f.assertThat("--", "-v").failsWithMessage("Unknown command: -v");
+    f.assertThat("-v", "--").failsWithMessage("Missing command");
+  }
+
+  @Test
+  void testUnknownCommand() {
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("-v", "push").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.UNKNOWN_COMMAND, failed.getCode());
+    assertEquals(1, failed.getIndex());
+    f.assertThat("push").failsWithMessage("Unknown command: push");
+  }
+
+  @Test
+  void testMissingCommand() {
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("-v").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.MISSING_REQUIRED, failed.getCode());
+    f.assertThat().failsWithMessage("Missing command");
+  }
+
+  @Test
+  void testSubcommandFailure() {
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("-v", "commit", "--amend", "-q").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.UNKNOWN_OPTION, failed.getCode());
+    assertEquals(Optional.empty(), failed.getOption());
+    assertEquals(Optional.empty(), failed.getOptionName());
+    // index in the complete input
+    assertEquals(3, failed.getIndex());
+    assertEquals("Invalid option: -q", failed.getError().getMessage());
+    assertNull(failed.getError().getCause());
+    f.assertThat("commit").failsWithMessage("Missing required: MESSAGE (-m, --message)");
+  }
+
+  @Test
+  void testSubcommandFailureOption() {
+    VcsArguments_Parser.ParsingFailed failed = f.assertThat("-v", "commit", "--amend", "-m").parsingFailed();
+    assertEquals(VcsArguments_Parser.ErrorCode.MISSING_VALUE, failed.getCode());
+    // the option belongs to the subcommand
+    assertEquals(Optional.empty(), failed.getOption());
+    assertEquals(Optional.of("MESSAGE"), failed.getOptionName());
+    assertEquals(3, failed.getIndex());
+  }
+
+  @Test
+  void testSubcommandEnvironment() {
+    VcsArguments_Parser parser = new VcsArguments_Parser()
+        .withEnvironment(Collections.singletonMap("VCS_AUTHOR", "ann"));
+    VcsArguments_Parser.ParsingSuccess success = ParserTestFixture.create(parser)
+        .assertThat("commit", "-m", "fix").parsingSuccess();
+    assertEquals(Optional.of("ann"), commit(success).author());
+    success = f.assertThat("commit", "-m", "fix").parsingSuccess();
+    assertEquals(Optional.empty(), commit(success).author());
+  }
+
+  @Test
+  void testSubcommandDefaults() throws Exception {
+    Path file = tempDir.resolve("vcs.properties");
+    Files.write(file, "message=from file\n".getBytes(StandardCharsets.UTF_8));
+    VcsArguments_Parser parser = new VcsArguments_Parser()
+        .withEnvironment(Collections.emptyMap())
+        .withDefaults(file);
+    ParserTestFixture<VcsArguments> withDefaults = ParserTestFixture.create(parser);
+    assertEquals("from file", commit(withDefaults.assertThat("commit").parsingSuccess()).message());
+    assertEquals("fix", commit(withDefaults.assertThat("commit", "-m", "fix").parsingSuccess()).message());
+  }
+
+  @Test
+  void testSubcommandHelp() {
+    VcsArguments_Parser.ParseResult result = new VcsArguments_Parser().parse(new String[]{"commit", "--help"});
+    assertTrue(result instanceof VcsArguments_Parser.HelpRequested);
+    assertEquals(Optional.of("commit"), ((VcsArguments_Parser.HelpRequested) result).getSubcommand());
+    assertTrue(subcommandHelp(new VcsArguments_Parser(), "commit").startsWith("Usage: commit "));
+  }
+
+  @Test
+  void testSubcommandHelpWithMessages() {
+    VcsArguments_Parser parser = new VcsArguments_Parser()
+        .withMessages(Collections.singletonMap("message", "The commit message"));
+    assertTrue(subcommandHelp(parser, "commit").contains("The commit message"));
+  }
+
+  @Test
+  void testSubcommandHelpWithResourceBundle() {
+    ResourceBundle bundle = new ListResourceBundle() {
+      @Override
+      protected Object[][] getContents() {
+        return new Object[][]{{"message", "The commit message"}};
+      }
+    };
+    VcsArguments_Parser parser = new VcsArguments_Parser().withResourceBundle(bundle);
+    assertTrue(subcommandHelp(parser, "commit").contains("The commit message"));
+  }
+
+  @Test
+  void testSubcommandHelpLineWidth() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new VcsCommit_Parser().maxLineWidth(30).printOnlineHelp(new PrintStream(out));
+    assertEquals(out.toString(), subcommandHelp(new VcsArguments_Parser().maxLineWidth(30), "commit"));
+  }
+
+  @Test
+  void testPrint() {
+    f.assertPrintsHelp(
+        "Usage: vcs [options...] <command> [<args>...]",
+        "",
+        "  -v, --verbose  Be verbose",
+        "",
+        "Commands:",
+        "  add            Add file contents to the index",
+        "  commit         Record changes to the repository",
+        "");
+  }
+
+  @Test
+  void testOtherSubcommandsNotLoaded() throws Exception {
+    URL classes = VcsArguments.class.getProtectionDomain().getCodeSource().getLocation();
+    try (IsolatingClassLoader loader = new IsolatingClassLoader(classes)) {
+      Class<?> parserClass = loader.loadClass(VcsArguments_Parser.class.getName());
+      Constructor<?> constructor = parserClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      Method parse = parserClass.getDeclaredMethod("parse", String[].class);
+      parse.setAccessible(true);
+      parse.invoke(constructor.newInstance(), (Object) new String[]{"add", "a"});
+      assertTrue(loader.isLoaded(VcsAdd_Parser.class.getName()));
+      assertFalse(loader.isLoaded(VcsCommit_Parser.class.getName()));
+    }
+  }
+
+  // loads the example classes again, instead of delegating to the parent
+  private static final class IsolatingClassLoader extends URLClassLoader {
+
+    IsolatingClassLoader(URL classes) {
+      super(new URL[]{classes}, VcsArgumentsTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith(VcsArguments.class.getPackage().getName() + ".")) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        return c != null ? c : findClass(name);
+      }
+    }
+
+    boolean isLoaded(String name) {
+      return findLoadedClass(name) != null;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package net.jbock.examples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitorTest {
+
+  @Test
+  void callbacksInInputOrder() {
+    List<String> events = new ArrayList<>();
+    Optional<CpArguments_Parser.ParsingFailed> failure = new CpArguments_Parser().parse(
+        new String[]{"a", "--backup=SIMPLE", "-r", "b"},
+        new CpArguments_Parser.Visitor() {
+          @Override
+          public void source(CpArguments_Parser.Value<String> value) {
+            events.add("source " + value.token() + " " + value.index());
+          }
+
+          @Override
+          public void backup(CpArguments_Parser.Value<CpArguments.Control> value) {
+            events.add("backup " + value.get());
+          }
+
+          @Override
+          public void recursive() {
+            events.add("recursive");
+          }
+
+          @Override
+          public void dest(CpArguments_Parser.Value<String> value) {
+            events.add("dest " + value.get());
+          }
+        });
+    assertFalse(failure.isPresent());
+    assertEquals(Arrays.asList("source a 0", "backup SIMPLE", "recursive", "dest b"), events);
+  }
+
+  @Test
+  void countFlagsInCluster() {
+    int[] count = new int[1];
+    List<CharSequence> files = new ArrayList<>();
+    Optional<TarArguments_Parser.ParsingFailed> failure = new TarArguments_Parser().parse(
+        new String[]{"-xzvf", "foo.tar"},
+        new TarArguments_Parser.Visitor() {
+          @Override
+          public void extract() {
+            count[0]++;
+          }
+
+          @Override
+          public void compress() {
+            count[0]++;
+          }
+
+          @Override
+          public void verbose() {
+            count[0]++;
+          }
+
+          @Override
+          public void file(TarArguments_Parser.Value<String> value) {
+            files.add(value.token());
+            assertEquals(1, value.index());
+          }
+        });
+    assertFalse(failure.isPresent());
+    assertEquals(3, count[0]);
+    assertEquals("foo.tar", files.get(0).toString());
+  }
+
+  @Test
+  void mapperNotCalledUnlessRequested() {
+    Optional<CpArguments_Parser.ParsingFailed> failure = new CpArguments_Parser().parse(
+        new String[]{"--backup=NOPE", "a", "b"}, new CpArguments_Parser.Visitor() {
+        });
+    assertFalse(failure.isPresent());
+  }
+
+  @Test
+  void mappingFailure() {
+    Optional<CpArguments_Parser.ParsingFailed> failure = new CpArguments_Parser().parse(
+        new String[]{"a", "--backup", "NOPE", "b"}, new CpArguments_Parser.Visitor() {
+          @Override
+          public void backup(CpArguments_Parser.Value<CpArguments.Control> value) {
+            value.get();
+          }
+        });
+    assertTrue(failure.isPresent());
+    assertEquals(CpArguments_Parser.ErrorCode.MAPPING_FAILED, failure.get().getCode());
+    assertEquals(Optional.of(CpArguments_Parser.Option.BACKUP), failure.get().getOption());
+    assertEquals(2, failure.get().getIndex());
+  }
+
+  @Test
+  void invalidInput() {
+    CpArguments_Parser.Visitor noop = new CpArguments_Parser.Visitor() {
+    };
+    CpArguments_Parser parser = new CpArguments_Parser();
+    assertEquals(CpArguments_Parser.ErrorCode.MISSING_REQUIRED,
+        parser.parse(new String[]{"a"}, noop).map(CpArguments_Parser.ParsingFailed::getCode).orElse(null));
+    assertEquals(CpArguments_Parser.ErrorCode.REPEATED,
+        parser.parse(new String[]{"-r", "-r", "a", "b"}, noop).map(CpArguments_Parser.ParsingFailed::getCode).orElse(null));
+    assertEquals(CpArguments_Parser.ErrorCode.EXCESS_PARAM,
+        parser.parse(new String[]{"a", "b", "c"}, noop).map(CpArguments_Parser.ParsingFailed::getCode).orElse(null));
+    assertEquals(CpArguments_Parser.ErrorCode.UNKNOWN_OPTION,
+        parser.parse(new String[]{"--help"}, noop).map(CpArguments_Parser.ParsingFailed::getCode).orElse(null));
+  }
+
+  @Test
+  void repeatableAndEscape() {
+    List<String> events = new ArrayList<>();
+    Optional<RestArguments_Parser.ParsingFailed> failure = new RestArguments_Parser().parse(
+        new String[]{"--file=x", "a", "--file", "y", "--", "--file"},
+        new RestArguments_Parser.Visitor() {
+          @Override
+          public void file(RestArguments_Parser.Value<String> value) {
+            events.add("file " + value.get());
+          }
+
+          @Override
+          public void rest(RestArguments_Parser.Value<String> value) {
+            events.add("rest " + value.get());
+          }
+        });
+    assertFalse(failure.isPresent());
+    assertEquals(Arrays.asList("file x", "rest a", "file y", "rest --file"), events);
+  }
+
+  @Test
+  void visitorExceptionIsNotCaught() {
+    assertThrows(IllegalStateException.class, () -> new TarArguments_Parser().parse(
+        new String[]{"-x", "-f", "foo.tar"},
+        new TarArguments_Parser.Visitor() {
+          @Override
+          public void extract() {
+            throw new IllegalStateException();
+          }
+        }));
+  }
+}
@@ -3,9 +3,7 @@ package net.jbock.examples.fixture;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -37,6 +35,8 @@ public final class ParserTestFixture<E> {
   public interface Parser<E> {
     Optional<E> parse(String[] args);
 
+    Object parseResult(String[] args);
+
     Object parseOrExit(String[] args);
 
     Parser<E> withHelpStream(PrintStream out);
@@ -59,8 +59,35 @@ public final class ParserTestFixture<E> {
   }
 
   public static <E> ParserTestFixture<E> create(Object builder) {
-    List<Parser<E>> parser = new ArrayList<>(1);
-    parser.add(new Parser<E>() {
+    return new ParserTestFixture<>(wrap(builder));
+  }
+
+  // also finds the methods that a parser in runtime mode inherits from CommandParser
+  private static Method findMethod(Class<?> type, String methodName, Class<?>... parameterTypes)
+      throws NoSuchMethodException {
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      try {
+        Method method = c.getDeclaredMethod(methodName, parameterTypes);
+        method.setAccessible(true);
+        return method;
+      } catch (NoSuchMethodException e) {
+        // try the superclass
+      }
+    }
+    throw new NoSuchMethodException(type.getName() + "." + methodName);
+  }
+
+  private static Object invoke(Object target, String methodName) {
+    try {
+      return findMethod(target.getClass(), methodName).invoke(target);
+    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // the generated parser is immutable, so each setter returns a new instance
+  private static <E> Parser<E> wrap(Object builder) {
+    return new Parser<E>() {
 
       private Parser<E> callSetter(String methodName, Object parameter) {
         return callSetter(methodName, parameter, parameter.getClass());
@@ -68,10 +95,8 @@ public final class ParserTestFixture<E> {
 
       private Parser<E> callSetter(String methodName, Object parameter, Class<?> parameterType) {
         try {
-          Method outMethod = builder.getClass().getDeclaredMethod(methodName, parameterType);
-          outMethod.setAccessible(true);
-          outMethod.invoke(builder, parameter);
-          return parser.get(0);
+          Method outMethod = findMethod(builder.getClass(), methodName, parameterType);
+          return wrap(outMethod.invoke(builder, parameter));
         } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
           throw new RuntimeException(e);
         }
@@ -81,22 +106,28 @@ public final class ParserTestFixture<E> {
       @SuppressWarnings("unchecked")
       public Optional<E> parse(String[] args) {
         try {
-          Method parseMethod = builder.getClass().getDeclaredMethod("parse", args.getClass());
-          parseMethod.setAccessible(true);
-          Object parseResult = parseMethod.invoke(builder, new Object[]{args});
-          Method resultMethod = parseResult.getClass().getDeclaredMethod("getResult");
-          resultMethod.setAccessible(true);
+          Object parseResult = parseResult(args);
+          Method resultMethod = findMethod(parseResult.getClass(), "getResult");
           return Optional.of((E) resultMethod.invoke(parseResult));
         } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
           return Optional.empty();
         }
       }
 
+      @Override
+      public Object parseResult(String[] args) {
+        try {
+          Method parseMethod = findMethod(builder.getClass(), "parse", args.getClass());
+          return parseMethod.invoke(builder, new Object[]{args});
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
       @Override
       public Object parseOrExit(String[] args) {
         try {
-          Method outMethod = builder.getClass().getDeclaredMethod("parseOrExit", args.getClass());
-          outMethod.setAccessible(true);
+          Method outMethod = findMethod(builder.getClass(), "parseOrExit", args.getClass());
           return outMethod.invoke(builder, new Object[]{args});
         } catch (IllegalAccessException | NoSuchMethodException e) {
           return Optional.empty();
@@ -138,14 +169,21 @@ public final class ParserTestFixture<E> {
       public Parser<E> runBeforeExit(Consumer<?> callback) {
         return callSetter("runBeforeExit", callback, Consumer.class);
       }
-    });
-    return new ParserTestFixture<>(parser.get(0));
+    };
   }
 
   public JsonAssert<E> assertThat(String... args) {
     return new JsonAssert<>(args, parser);
   }
 
+  /**
+   * For the parse methods that don't take a {@code String[]},
+   * like {@code parse(CharSequence)} or {@code parse(Iterator)}.
+   */
+  public ResultAssert<E> assertResult(Object parseResult) {
+    return new ResultAssert<>(parseResult);
+  }
+
   public E parse(String... args) {
     TestOutputStream stdout = new TestOutputStream();
     TestOutputStream stderr = new TestOutputStream();
@@ -158,7 +196,7 @@ public final class ParserTestFixture<E> {
   }
 
   public void assertPrintsHelp(String... expected) {
-    String[] actual = getOut();
+    String[] actual = getOut(parser);
     assertArraysEquals(expected, actual);
   }
 
@@ -281,44 +319,91 @@ public final class ParserTestFixture<E> {
     }
 
 
+    public <S> S parsingSuccess() {
+      return new ResultAssert<E>(parser.parseResult(args)).parsingSuccess();
+    }
+
+    public <F> F parsingFailed() {
+      return new ResultAssert<E>(parser.parseResult(args)).parsingFailed();
+    }
+
     public void satisfies(Predicate<E> predicate) {
       Parsed parsed = getParsed();
       assertTrue(parsed.isPresent(), "Parsing was not successful");
       assertTrue(predicate.test(parsed.get()));
     }
 
-    public void succeeds(Object... expected) {
+    public E succeeds(Object... expected) {
       Parsed parsed = getParsed();
-      try {
-        assertTrue(parsed.isPresent(), "Parsing was not successful: " + parsed.stderr);
-        assertTrue(parsed.stdout.isEmpty());
-        assertTrue(parsed.stderr.isEmpty());
-        for (int i = 0; i < expected.length; i += 2) {
-          String key = (String) expected[i];
-          Object expectedValue = expected[i + 1];
-          Method method = parsed.get().getClass().getDeclaredMethod(key);
-          method.setAccessible(true);
-          Object result = method.invoke(parsed.get());
-          assertEquals(expectedValue, result,
-              String.format("At `%s`: expecting %s but found %s", key, expectedValue, result));
-        }
-      } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-        fail(e);
+      assertTrue(parsed.isPresent(), "Parsing was not successful: " + parsed.stderr);
+      assertTrue(parsed.stdout.isEmpty());
+      assertTrue(parsed.stderr.isEmpty());
+      assertValues(parsed.get(), expected);
+      return parsed.get();
+    }
+  }
+
+  public static final class ResultAssert<E> {
+
+    private final Object parseResult;
+
+    private ResultAssert(Object parseResult) {
+      this.parseResult = parseResult;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <S> S parsingSuccess() {
+      if (isA("ParsingFailed")) {
+        fail("Parsing was not successful: " + ((RuntimeException) invoke(parseResult, "getError")).getMessage());
       }
+      assertTrue(isA("ParsingSuccess"), "Expecting success but found " + parseResult);
+      return (S) parseResult;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <F> F parsingFailed() {
+      assertTrue(isA("ParsingFailed"), "Expecting failure but found " + parseResult);
+      return (F) parseResult;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E succeeds(Object... expected) {
+      E result = (E) invoke(parsingSuccess(), "getResult");
+      assertValues(result, expected);
+      return result;
+    }
+
+    public void failsWithMessage(String expectedMessage) {
+      RuntimeException error = (RuntimeException) invoke(parsingFailed(), "getError");
+      assertEquals(expectedMessage, error.getMessage());
+    }
+
+    // the generated parser and the runtime use the same class names
+    private boolean isA(String simpleName) {
+      return parseResult.getClass().getSimpleName().equals(simpleName);
+    }
+  }
+
+  // expected: alternating method names and values
+  private static void assertValues(Object result, Object[] expected) {
+    for (int i = 0; i < expected.length; i += 2) {
+      String key = (String) expected[i];
+      Object expectedValue = expected[i + 1];
+      Object value = invoke(result, key);
+      assertEquals(expectedValue, value,
+          String.format("At `%s`: expecting %s but found %s", key, expectedValue, value));
     }
   }
 
   public String[] getHelp(Map<String, String> bundle) {
-    parser.withMessages(bundle);
-    return getOut();
+    return getOut(parser.withMessages(bundle));
   }
 
   public String[] getHelp(ResourceBundle bundle) {
-    parser.withResourceBundle(bundle);
-    return getOut();
+    return getOut(parser.withResourceBundle(bundle));
   }
 
-  private String[] getOut() {
+  private String[] getOut(Parser<E> parser) {
     TestOutputStream stdout = new TestOutputStream();
     TestOutputStream stderr = new TestOutputStream();
     try {
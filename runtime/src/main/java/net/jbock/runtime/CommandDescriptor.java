@@ -0,0 +1,108 @@
+package net.jbock.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes a command. The generated parser holds a single instance in a constant.
+ * The lookup tables are built once, when the generated parser class is initialized.
+ * An instance is immutable, so it can be shared by all parsers of the command.
+ */
+public final class CommandDescriptor {
+
+  // 2 space padding on both sides
+  private static final int TOTAL_PADDING = 4;
+
+  private final String synopsis;
+
+  private final boolean helpEnabled;
+
+  private final List<ParameterDescriptor> parameters;
+
+  // option name -> index in parameters
+  private final Map<String, Integer> optionIndex;
+
+  // mnemonic -> index in parameters
+  private final Map<Character, Integer> mnemonicIndex;
+
+  // position -> index in parameters
+  private final int[] positionalIndex;
+
+  private final int shapeWidth;
+
+  /**
+   * @param synopsis the synopsis, without the {@code Usage:} prefix
+   * @param helpEnabled whether {@code --help} as the first token requests the help text
+   * @param parameters all parameters of the command, params in positional order first
+   */
+  public CommandDescriptor(String synopsis, boolean helpEnabled, ParameterDescriptor... parameters) {
+    this.synopsis = synopsis;
+    this.helpEnabled = helpEnabled;
+    this.parameters = Collections.unmodifiableList(Arrays.asList(parameters));
+    this.optionIndex = new HashMap<>();
+    this.mnemonicIndex = new HashMap<>();
+    List<Integer> positional = new ArrayList<>();
+    int maxShape = 0;
+    for (int i = 0; i < parameters.length; i++) {
+      ParameterDescriptor parameter = parameters[i];
+      if (parameter.isPositional()) {
+        positional.add(i);
+      }
+      for (String name : parameter.getNames()) {
+        optionIndex.put(name, i);
+        if (name.length() == 2 && name.charAt(1) != '-') {
+          mnemonicIndex.put(name.charAt(1), i);
+        }
+      }
+      maxShape = Math.max(maxShape, parameter.shape().length());
+    }
+    this.positionalIndex = positional.stream().mapToInt(Integer::intValue).toArray();
+    this.shapeWidth = maxShape + TOTAL_PADDING;
+  }
+
+  public List<ParameterDescriptor> getParameters() {
+    return parameters;
+  }
+
+  public String getSynopsis() {
+    return synopsis;
+  }
+
+  boolean isHelpEnabled() {
+    return helpEnabled;
+  }
+
+  int shapeWidth() {
+    return shapeWidth;
+  }
+
+  /**
+   * @param name an option name, like {@code --suffix}
+   * @return the index of the option, or {@code -1}
+   */
+  int optionIndex(String name) {
+    Integer index = optionIndex.get(name);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param mnemonic the character after the dash, like {@code s} in {@code -s}
+   * @return the index of the option, or {@code -1}
+   */
+  int mnemonicIndex(char mnemonic) {
+    Integer index = mnemonicIndex.get(mnemonic);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param position a position
+   * @return the index of the param, or {@code -1} if there are fewer params
+   */
+  int positionalIndex(int position) {
+    return position < positionalIndex.length ? positionalIndex[position] : -1;
+  }
+}
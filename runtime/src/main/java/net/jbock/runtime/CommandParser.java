@@ -0,0 +1,255 @@
+package net.jbock.runtime;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The shared parse engine. In runtime mode, the generated parser is a thin subclass,
+ * which supplies the {@link CommandDescriptor} and a factory for the command instance.
+ *
+ * <p>The configuration is immutable, so that a single parser instance
+ * can be shared between threads. Each wither returns a modified copy.
+ *
+ * @param <C> the command type
+ */
+public class CommandParser<C> {
+
+  private static final int DEFAULT_WRAP_AFTER = 80;
+
+  private final CommandDescriptor command;
+
+  private final Function<Object[], ? extends C> factory;
+
+  private final PrintStream out;
+
+  private final PrintStream err;
+
+  private final int maxLineWidth;
+
+  // nullable
+  private final Consumer<? super ParseResult<C>> runBeforeExit;
+
+  private final Map<String, String> messages;
+
+  // nullable; keys are looked up only while rendering help
+  private final ResourceBundle bundle;
+
+  // rendered on demand
+  private volatile String helpText;
+
+  /**
+   * @param command the command descriptor
+   * @param factory creates the command instance from the mapped values, in descriptor order
+   */
+  protected CommandParser(CommandDescriptor command, Function<Object[], ? extends C> factory) {
+    this(command, factory, System.out, System.err, DEFAULT_WRAP_AFTER, null, Collections.emptyMap(), null);
+  }
+
+  private CommandParser(CommandDescriptor command, Function<Object[], ? extends C> factory,
+                        PrintStream out, PrintStream err, int maxLineWidth,
+                        Consumer<? super ParseResult<C>> runBeforeExit, Map<String, String> messages,
+                        ResourceBundle bundle) {
+    this.command = command;
+    this.factory = factory;
+    this.out = out;
+    this.err = err;
+    this.maxLineWidth = maxLineWidth;
+    this.runBeforeExit = runBeforeExit;
+    this.messages = messages;
+    this.bundle = bundle;
+  }
+
+  public final ParseResult<C> parse(String[] args) {
+    return parse(Arrays.asList(args).iterator());
+  }
+
+  public final ParseResult<C> parse(Iterator<String> tokens) {
+    try {
+      if (command.isHelpEnabled() && tokens.hasNext()) {
+        String token = tokens.next();
+        if ("--help".equals(token)) {
+          return new HelpRequested<>();
+        }
+        return new ParsingSuccess<>(factory.apply(new ParseRun(command).run(prepend(token, tokens))));
+      }
+      return new ParsingSuccess<>(factory.apply(new ParseRun(command).run(tokens)));
+    } catch (RuntimeException e) {
+      return new ParsingFailed<>(e);
+    }
+  }
+
+  public final C parseOrExit(String[] args) {
+    ParseResult<C> result = parse(args);
+    if (result instanceof ParsingSuccess) {
+      return ((ParsingSuccess<C>) result).getResult();
+    }
+    if (result instanceof HelpRequested) {
+      printOnlineHelp(out);
+      out.flush();
+      beforeExit(result);
+      System.exit(0);
+    }
+    err.println("Error: " + ((ParsingFailed<C>) result).getError().getMessage());
+    if (command.isHelpEnabled()) {
+      err.println("Try '--help' for more information.");
+    }
+    err.flush();
+    beforeExit(result);
+    System.exit(1);
+    throw new RuntimeException();
+  }
+
+  public final CommandParser<C> maxLineWidth(int chars) {
+    return new CommandParser<>(command, factory, out, err, chars, runBeforeExit, messages, bundle);
+  }
+
+  public final CommandParser<C> withMessages(Map<String, String> map) {
+    return new CommandParser<>(command, factory, out, err, maxLineWidth, runBeforeExit,
+        Collections.unmodifiableMap(new HashMap<>(map)), null);
+  }
+
+  /**
+   * The bundle is not copied. Its keys are resolved when the help text is rendered.
+   */
+  public final CommandParser<C> withResourceBundle(ResourceBundle bundle) {
+    return new CommandParser<>(command, factory, out, err, maxLineWidth, runBeforeExit,
+        Collections.emptyMap(), Objects.requireNonNull(bundle));
+  }
+
+  public final CommandParser<C> runBeforeExit(Consumer<? super ParseResult<C>> runBeforeExit) {
+    return new CommandParser<>(command, factory, out, err, maxLineWidth, runBeforeExit, messages, bundle);
+  }
+
+  public final CommandParser<C> withErrorStream(PrintStream err) {
+    return new CommandParser<>(command, factory, out, err, maxLineWidth, runBeforeExit, messages, bundle);
+  }
+
+  public final CommandParser<C> withHelpStream(PrintStream out) {
+    return new CommandParser<>(command, factory, out, err, maxLineWidth, runBeforeExit, messages, bundle);
+  }
+
+  /**
+   * The help text is written in a single call.
+   */
+  public final void printOnlineHelp(PrintStream printStream) {
+    printStream.print(helpText());
+  }
+
+  public final String synopsis() {
+    return command.getSynopsis();
+  }
+
+  private void beforeExit(ParseResult<C> result) {
+    if (runBeforeExit != null) {
+      runBeforeExit.accept(result);
+    }
+  }
+
+  /**
+   * The help text depends only on the configuration, so it is rendered at most once per parser instance.
+   * A race only means that the text is rendered twice; the field is volatile, so the text is published safely.
+   */
+  private String helpText() {
+    String result = helpText;
+    if (result == null) {
+      result = renderHelp();
+      helpText = result;
+    }
+    return result;
+  }
+
+  private String renderHelp() {
+    StringBuilder sb = new StringBuilder();
+    appendWrap(sb, 8, "", "Usage: " + command.getSynopsis());
+    sb.append(System.lineSeparator());
+    int shapeWidth = command.shapeWidth();
+    String shapeFormat = "  %1$-" + (shapeWidth - 2) + "s";
+    for (ParameterDescriptor parameter : command.getParameters()) {
+      appendWrap(sb, shapeWidth, String.format(shapeFormat, parameter.shape()), message(parameter));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The bundle is never enumerated. Only the bundle keys of the parameters are looked up.
+   */
+  private String message(ParameterDescriptor parameter) {
+    String key = parameter.bundleKey();
+    String message = key == null ? null : messages.get(key);
+    if (message == null && bundle != null && key != null) {
+      try {
+        message = bundle.getString(key);
+      } catch (MissingResourceException e) {
+        // fall back to the description
+      }
+    }
+    if (message == null) {
+      message = parameter.description();
+    }
+    return message.trim();
+  }
+
+  private void appendWrap(StringBuilder out, int continuationIndent, String init, String input) {
+    String nl = System.lineSeparator();
+    if (input.isEmpty()) {
+      String trim = init.trim();
+      out.append(init, 0, init.indexOf(trim)).append(trim).append(nl);
+      return;
+    }
+    StringBuilder sb = new StringBuilder(init);
+    for (String token : input.split("\\s+", -1)) {
+      if (token.length() + sb.length() + 1 > maxLineWidth) {
+        if (sb.length() == 0) {
+          out.append(token).append(nl);
+        } else {
+          out.append(sb).append(nl);
+          sb.setLength(0);
+          for (int i = 0; i < continuationIndent; i++) {
+            sb.append(' ');
+          }
+          sb.append(token);
+        }
+      } else {
+        if (sb.length() > 0 && !Character.isWhitespace(sb.charAt(sb.length() - 1))) {
+          sb.append(' ');
+        }
+        sb.append(token);
+      }
+    }
+    if (sb.length() > 0) {
+      out.append(sb).append(nl);
+    }
+  }
+
+  /**
+   * Puts back a token that was already read.
+   */
+  private static Iterator<String> prepend(String token, Iterator<String> it) {
+    return new Iterator<String>() {
+      private boolean first = true;
+
+      @Override
+      public boolean hasNext() {
+        return first || it.hasNext();
+      }
+
+      @Override
+      public String next() {
+        if (first) {
+          first = false;
+          return token;
+        }
+        return it.next();
+      }
+    };
+  }
+}
@@ -0,0 +1,42 @@
+package net.jbock.runtime;
+
+/**
+ * The kind of a parsing failure.
+ */
+public enum ErrorCode {
+
+  /**
+   * A token looks like an option, but there is no such option.
+   */
+  UNKNOWN_OPTION,
+
+  /**
+   * A required parameter is absent.
+   */
+  MISSING_REQUIRED,
+
+  /**
+   * A non-repeatable option was given more than once.
+   */
+  REPEATED,
+
+  /**
+   * There are more positional tokens than params.
+   */
+  EXCESS_PARAM,
+
+  /**
+   * An option that takes a value was the last token.
+   */
+  MISSING_VALUE,
+
+  /**
+   * The mapper or collector of a parameter has thrown an exception.
+   */
+  MAPPING_FAILED,
+
+  /**
+   * A flag was given a value.
+   */
+  INVALID_TOKEN
+}
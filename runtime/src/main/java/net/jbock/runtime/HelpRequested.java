@@ -0,0 +1,12 @@
+package net.jbock.runtime;
+
+/**
+ * The first token was {@code --help}.
+ *
+ * @param <C> the command type
+ */
+public final class HelpRequested<C> extends ParseResult<C> {
+
+  HelpRequested() {
+  }
+}
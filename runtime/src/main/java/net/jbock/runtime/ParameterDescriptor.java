@@ -0,0 +1,171 @@
+package net.jbock.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Describes a single option or param of a command.
+ * The generated parser creates one instance per parameter, in its static initializer.
+ */
+public final class ParameterDescriptor {
+
+  /**
+   * How often a parameter may appear, and how its value is represented.
+   */
+  public enum Kind {
+
+    /**
+     * An option without a value. The value is a {@link Boolean}.
+     */
+    FLAG,
+
+    /**
+     * Exactly once. The value is the mapped token.
+     */
+    REQUIRED,
+
+    /**
+     * At most once. The value is an {@link java.util.Optional} of the mapped token.
+     */
+    OPTIONAL,
+
+    /**
+     * Any number of times. The value is a {@link List} of the mapped tokens,
+     * or the result of the collector.
+     */
+    REPEATABLE
+  }
+
+  private final String name;
+
+  private final Kind kind;
+
+  // empty for a param
+  private final List<String> names;
+
+  // nullable
+  private final String bundleKey;
+
+  private final String shape;
+
+  private final String description;
+
+  // null for a flag
+  private final Function<? super String, ?> mapper;
+
+  // nullable
+  private final Collector<?, ?, ?> collector;
+
+  private ParameterDescriptor(String name, Kind kind, List<String> names, String bundleKey, String shape,
+                              String description, Function<? super String, ?> mapper, Collector<?, ?, ?> collector) {
+    this.name = name;
+    this.kind = kind;
+    this.names = names;
+    this.bundleKey = bundleKey;
+    this.shape = shape;
+    this.description = description;
+    this.mapper = mapper;
+    this.collector = collector;
+  }
+
+  /**
+   * Describes a positional parameter.
+   *
+   * @param name the name of the parameter, like {@code SOURCE}
+   * @param kind the kind, not {@link Kind#FLAG}
+   * @param bundleKey the resource bundle key of the description, or {@code null}
+   * @param shape the first column of the help text
+   * @param description the default description
+   * @param mapper maps a token to a value
+   * @param collector collects the mapped values of a repeatable param, or {@code null}
+   * @return a descriptor
+   */
+  public static ParameterDescriptor param(String name, Kind kind, String bundleKey, String shape, String description,
+                                          Function<? super String, ?> mapper, Collector<?, ?, ?> collector) {
+    return new ParameterDescriptor(name, kind, Collections.emptyList(), bundleKey, shape, description, mapper, collector);
+  }
+
+  /**
+   * Describes an option that takes a value.
+   *
+   * @param name the name of the parameter, like {@code SUFFIX}
+   * @param kind the kind, not {@link Kind#FLAG}
+   * @param bundleKey the resource bundle key of the description, or {@code null}
+   * @param shape the first column of the help text
+   * @param description the default description
+   * @param mapper maps a token to a value
+   * @param collector collects the mapped values of a repeatable option, or {@code null}
+   * @param names the option names, like {@code -s} or {@code --suffix}
+   * @return a descriptor
+   */
+  public static ParameterDescriptor option(String name, Kind kind, String bundleKey, String shape, String description,
+                                           Function<? super String, ?> mapper, Collector<?, ?, ?> collector,
+                                           String... names) {
+    return new ParameterDescriptor(name, kind, Arrays.asList(names), bundleKey, shape, description, mapper, collector);
+  }
+
+  /**
+   * Describes an option that does not take a value.
+   *
+   * @param name the name of the parameter, like {@code RECURSIVE}
+   * @param bundleKey the resource bundle key of the description, or {@code null}
+   * @param shape the first column of the help text
+   * @param description the default description
+   * @param names the option names, like {@code -r} or {@code --recursive}
+   * @return a descriptor
+   */
+  public static ParameterDescriptor flag(String name, String bundleKey, String shape, String description,
+                                         String... names) {
+    return new ParameterDescriptor(name, Kind.FLAG, Arrays.asList(names), bundleKey, shape, description, null, null);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return the option names, or an empty list if this is a param
+   */
+  public List<String> getNames() {
+    return Collections.unmodifiableList(names);
+  }
+
+  public boolean isPositional() {
+    return names.isEmpty();
+  }
+
+  String bundleKey() {
+    return bundleKey;
+  }
+
+  String shape() {
+    return shape;
+  }
+
+  String description() {
+    return description;
+  }
+
+  Function<? super String, ?> mapper() {
+    return mapper;
+  }
+
+  Collector<?, ?, ?> collector() {
+    return collector;
+  }
+
+  /**
+   * @return the name, followed by the option names, if any
+   */
+  @Override
+  public String toString() {
+    return names.isEmpty() ? name : name + " (" + String.join(", ", names) + ")";
+  }
+}
@@ -0,0 +1,13 @@
+package net.jbock.runtime;
+
+/**
+ * The result of a parsing run.
+ * This is either {@link ParsingSuccess}, {@link ParsingFailed} or {@link HelpRequested}.
+ *
+ * @param <C> the command type
+ */
+public abstract class ParseResult<C> {
+
+  ParseResult() {
+  }
+}
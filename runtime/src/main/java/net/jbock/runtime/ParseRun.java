@@ -0,0 +1,205 @@
+package net.jbock.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import static net.jbock.runtime.ParameterDescriptor.Kind.FLAG;
+import static net.jbock.runtime.ParameterDescriptor.Kind.REPEATABLE;
+
+/**
+ * The state of a single parsing run. Not thread-safe; a new instance is used for each run.
+ * The tokens are first stored as they are, then mapped in {@link #build()}.
+ */
+final class ParseRun {
+
+  private final CommandDescriptor command;
+
+  // per parameter: null, Boolean.TRUE for a flag, a String, or a List<String> if repeatable
+  private final Object[] raw;
+
+  private int tokenIndex = -1;
+
+  ParseRun(CommandDescriptor command) {
+    this.command = command;
+    this.raw = new Object[command.getParameters().size()];
+  }
+
+  Object[] run(Iterator<String> it) {
+    int position = 0;
+    while (it.hasNext()) {
+      String token = it.next();
+      tokenIndex++;
+      if ("--".equals(token)) {
+        while (it.hasNext()) {
+          token = it.next();
+          tokenIndex++;
+          position += readParam(position, token);
+        }
+        return build();
+      }
+      int option = tryReadOption(token);
+      if (option >= 0) {
+        read(command.getParameters().get(option), option, token, it);
+        continue;
+      }
+      if (!token.isEmpty() && token.charAt(0) == '-') {
+        throw new ParsingException(ErrorCode.UNKNOWN_OPTION, null, tokenIndex, null, "Invalid option: %s", token);
+      }
+      position += readParam(position, token);
+    }
+    return build();
+  }
+
+  private int tryReadOption(String token) {
+    if (token.length() <= 1 || token.charAt(0) != '-') {
+      return -1;
+    }
+    if (token.charAt(1) != '-') {
+      return command.mnemonicIndex(token.charAt(1));
+    }
+    int index = token.indexOf('=');
+    return command.optionIndex(index < 0 ? token : token.substring(0, index));
+  }
+
+  /**
+   * In a token like {@code -xzf}, each flag is followed by the next mnemonic,
+   * until an option that takes a value ends the cluster.
+   */
+  @SuppressWarnings("unchecked")
+  private void read(ParameterDescriptor option, int i, String token, Iterator<String> it) {
+    // the index of the current mnemonic, if the token is not a long option
+    int position = 1;
+    while (option.getKind() == FLAG) {
+      if (token.charAt(1) == '-' && token.indexOf('=') >= 0) {
+        throw invalidToken(option, token);
+      }
+      if (raw[i] != null) {
+        throw repetitionError(option);
+      }
+      raw[i] = Boolean.TRUE;
+      if (token.charAt(1) == '-' || ++position == token.length()) {
+        return;
+      }
+      int next = command.mnemonicIndex(token.charAt(position));
+      if (next < 0) {
+        throw invalidToken(option, token);
+      }
+      i = next;
+      option = command.getParameters().get(i);
+    }
+    if (option.getKind() == REPEATABLE) {
+      if (raw[i] == null) {
+        raw[i] = new ArrayList<String>();
+      }
+      ((List<String>) raw[i]).add(readOptionArgument(option, token, position, it));
+      return;
+    }
+    if (raw[i] != null) {
+      throw repetitionError(option);
+    }
+    raw[i] = readOptionArgument(option, token, position, it);
+  }
+
+  private ParsingException invalidToken(ParameterDescriptor option, String token) {
+    return new ParsingException(ErrorCode.INVALID_TOKEN, option, tokenIndex, null, "Invalid token: %s", token);
+  }
+
+  private ParsingException repetitionError(ParameterDescriptor option) {
+    return new ParsingException(ErrorCode.REPEATED, option, tokenIndex, null, "Option %s is not repeatable", option);
+  }
+
+  private String readOptionArgument(ParameterDescriptor option, String token, int position, Iterator<String> it) {
+    if (token.charAt(1) == '-') {
+      int index = token.indexOf('=');
+      if (index >= 0) {
+        return token.substring(index + 1);
+      }
+    } else if (token.length() > position + 1) {
+      return token.substring(position + 1);
+    }
+    if (!it.hasNext()) {
+      throw new ParsingException(ErrorCode.MISSING_VALUE, option, tokenIndex, null, "Missing value after token: %s", token);
+    }
+    tokenIndex++;
+    return it.next();
+  }
+
+  @SuppressWarnings("unchecked")
+  private int readParam(int position, String token) {
+    int i = command.positionalIndex(position);
+    if (i < 0) {
+      throw new ParsingException(ErrorCode.EXCESS_PARAM, null, tokenIndex, null, "Excess param: %s", token);
+    }
+    if (command.getParameters().get(i).getKind() == REPEATABLE) {
+      if (raw[i] == null) {
+        raw[i] = new ArrayList<String>();
+      }
+      ((List<String>) raw[i]).add(token);
+      return 0;
+    }
+    raw[i] = token;
+    return 1;
+  }
+
+  private Object[] build() {
+    List<ParameterDescriptor> parameters = command.getParameters();
+    Object[] values = new Object[raw.length];
+    ParameterDescriptor current = null;
+    try {
+      for (int i = 0; i < raw.length; i++) {
+        current = parameters.get(i);
+        values[i] = map(current, raw[i]);
+      }
+    } catch (ParsingException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw new ParsingException(ErrorCode.MAPPING_FAILED, current, -1, e, "%s", e.getMessage());
+    }
+    return values;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object map(ParameterDescriptor parameter, Object raw) {
+    Function<? super String, ?> mapper = parameter.mapper();
+    switch (parameter.getKind()) {
+      case FLAG:
+        return raw != null;
+      case REQUIRED:
+        if (raw == null) {
+          throw new ParsingException(ErrorCode.MISSING_REQUIRED, parameter, -1, null, "Missing required: %s", parameter);
+        }
+        return mapper.apply((String) raw);
+      case OPTIONAL:
+        return raw == null ? Optional.empty() : Optional.ofNullable(mapper.apply((String) raw));
+      case REPEATABLE:
+        List<String> tokens = raw == null ? Collections.emptyList() : (List<String>) raw;
+        Collector<Object, Object, Object> collector = (Collector<Object, Object, Object>) parameter.collector();
+        if (collector != null) {
+          return collect(tokens, mapper, collector);
+        }
+        List<Object> result = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+          result.add(mapper.apply(token));
+        }
+        return result;
+      default:
+        throw new AssertionError("unexpected kind: " + parameter.getKind());
+    }
+  }
+
+  private static Object collect(List<String> tokens, Function<? super String, ?> mapper,
+                                Collector<Object, Object, Object> collector) {
+    Object container = collector.supplier().get();
+    BiConsumer<Object, Object> accumulator = collector.accumulator();
+    for (String token : tokens) {
+      accumulator.accept(container, mapper.apply(token));
+    }
+    return collector.finisher().apply(container);
+  }
+}
@@ -0,0 +1,57 @@
+package net.jbock.runtime;
+
+import java.util.Optional;
+
+/**
+ * Thrown by the parse engine if the input is invalid.
+ * There is no stack trace, and the message is formatted only when it is requested.
+ */
+public final class ParsingException extends RuntimeException {
+
+  private final ErrorCode code;
+
+  // nullable
+  private final ParameterDescriptor parameter;
+
+  private final int index;
+
+  private final String format;
+
+  private final Object[] args;
+
+  ParsingException(ErrorCode code, ParameterDescriptor parameter, int index, Throwable cause,
+                   String format, Object... args) {
+    super(null, cause, false, false);
+    this.code = code;
+    this.parameter = parameter;
+    this.index = index;
+    this.format = format;
+    this.args = args;
+  }
+
+  /**
+   * @return the kind of failure
+   */
+  public ErrorCode getCode() {
+    return code;
+  }
+
+  /**
+   * @return the option or param that could not be read, if any
+   */
+  public Optional<ParameterDescriptor> getParameter() {
+    return Optional.ofNullable(parameter);
+  }
+
+  /**
+   * @return the index of the offending token in the input, or {@code -1} if there is no such token
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  @Override
+  public String getMessage() {
+    return String.format(format, args);
+  }
+}
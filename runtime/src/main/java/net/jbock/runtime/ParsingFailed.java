@@ -0,0 +1,42 @@
+package net.jbock.runtime;
+
+import java.util.Optional;
+
+/**
+ * The input was invalid.
+ *
+ * @param <C> the command type
+ */
+public final class ParsingFailed<C> extends ParseResult<C> {
+
+  private final RuntimeException error;
+
+  ParsingFailed(RuntimeException error) {
+    this.error = error;
+  }
+
+  public RuntimeException getError() {
+    return error;
+  }
+
+  /**
+   * @return the kind of failure
+   */
+  public ErrorCode getCode() {
+    return error instanceof ParsingException ? ((ParsingException) error).getCode() : ErrorCode.INVALID_TOKEN;
+  }
+
+  /**
+   * @return the option or param that could not be read, if any
+   */
+  public Optional<ParameterDescriptor> getParameter() {
+    return error instanceof ParsingException ? ((ParsingException) error).getParameter() : Optional.empty();
+  }
+
+  /**
+   * @return the index of the offending token in the input, or {@code -1} if there is no such token
+   */
+  public int getIndex() {
+    return error instanceof ParsingException ? ((ParsingException) error).getIndex() : -1;
+  }
+}
@@ -0,0 +1,19 @@
+package net.jbock.runtime;
+
+/**
+ * The input was valid.
+ *
+ * @param <C> the command type
+ */
+public final class ParsingSuccess<C> extends ParseResult<C> {
+
+  private final C result;
+
+  ParsingSuccess(C result) {
+    this.result = result;
+  }
+
+  public C getResult() {
+    return result;
+  }
+}
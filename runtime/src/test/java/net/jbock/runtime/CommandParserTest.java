@@ -0,0 +1,155 @@
+package net.jbock.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static net.jbock.runtime.ParameterDescriptor.Kind.OPTIONAL;
+import static net.jbock.runtime.ParameterDescriptor.Kind.REPEATABLE;
+import static net.jbock.runtime.ParameterDescriptor.Kind.REQUIRED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandParserTest {
+
+  private static final String DEFAULT_HELP =
+      "Usage: copy [options...] <source> <dest>...\n" +
+          "\n" +
+          "  source\n" +
+          "  dest\n" +
+          "  -r, --recursive\n" +
+          "  -n, --number NUMBER  A number\n" +
+          "      --tag TAG\n";
+
+  private static final CommandDescriptor DESCRIPTOR = new CommandDescriptor(
+      "copy [options...] <source> <dest>...",
+      true,
+      ParameterDescriptor.param("SOURCE", REQUIRED, null, "source", "", Function.identity(), null),
+      ParameterDescriptor.param("DEST", REPEATABLE, null, "dest", "", Function.identity(), null),
+      ParameterDescriptor.flag("RECURSIVE", "recursive", "-r, --recursive", "", "-r", "--recursive"),
+      ParameterDescriptor.option("NUMBER", OPTIONAL, "number", "-n, --number NUMBER", "A number",
+          Integer::valueOf, null, "-n", "--number"),
+      ParameterDescriptor.option("TAG", REPEATABLE, "tag", "    --tag TAG", "",
+          Function.identity(), Collectors.toCollection(TreeSet::new), "--tag"));
+
+  private static final class Copy {
+    final Object[] values;
+
+    Copy(Object[] values) {
+      this.values = values;
+    }
+  }
+
+  private static final class CopyParser extends CommandParser<Copy> {
+    CopyParser() {
+      super(DESCRIPTOR, Copy::new);
+    }
+  }
+
+  private final CommandParser<Copy> parser = new CopyParser();
+
+  @Test
+  void success() {
+    Object[] values = success("-r", "src", "a", "--number=12", "--tag", "y", "b", "--tag=x");
+    assertEquals("src", values[0]);
+    assertEquals(Arrays.asList("a", "b"), values[1]);
+    assertEquals(true, values[2]);
+    assertEquals(Optional.of(12), values[3]);
+    assertEquals(new TreeSet<>(Arrays.asList("x", "y")), values[4]);
+  }
+
+  @Test
+  void defaults() {
+    Object[] values = success("src");
+    assertEquals(Collections.emptyList(), values[1]);
+    assertEquals(false, values[2]);
+    assertEquals(Optional.empty(), values[3]);
+    assertTrue(((Set<?>) values[4]).isEmpty());
+  }
+
+  @Test
+  void attachedMnemonic() {
+    assertEquals(Optional.of(3), success("-n3", "src")[3]);
+  }
+
+  @Test
+  void cluster() {
+    Object[] values = success("-rn3", "src");
+    assertEquals(true, values[2]);
+    assertEquals(Optional.of(3), values[3]);
+    assertFailure(ErrorCode.INVALID_TOKEN, 0, "Invalid token: -rx", "-rx", "src");
+    assertFailure(ErrorCode.REPEATED, 0, "Option RECURSIVE (-r, --recursive) is not repeatable", "-rr", "src");
+  }
+
+  @Test
+  void escapeSequence() {
+    Object[] values = success("--", "-r", "--tag");
+    assertEquals("-r", values[0]);
+    assertEquals(Collections.singletonList("--tag"), values[1]);
+    assertEquals(false, values[2]);
+  }
+
+  @Test
+  void failures() {
+    assertFailure(ErrorCode.MISSING_REQUIRED, -1, "Missing required: SOURCE", "-r");
+    assertFailure(ErrorCode.REPEATED, 2, "Option RECURSIVE (-r, --recursive) is not repeatable", "src", "-r", "-r");
+    assertFailure(ErrorCode.UNKNOWN_OPTION, 1, "Invalid option: --foo", "src", "--foo");
+    assertFailure(ErrorCode.MISSING_VALUE, 1, "Missing value after token: -n", "src", "-n");
+    assertFailure(ErrorCode.INVALID_TOKEN, 0, "Invalid token: --recursive=1", "--recursive=1");
+    assertFailure(ErrorCode.MAPPING_FAILED, -1, "For input string: \"x\"", "src", "-n", "x");
+  }
+
+  @Test
+  void helpRequested() {
+    assertTrue(parser.parse(new String[]{"--help"}) instanceof HelpRequested);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.printOnlineHelp(new PrintStream(out));
+    assertEquals(DEFAULT_HELP.replace("\n", System.lineSeparator()), out.toString());
+  }
+
+  @Test
+  void renderedHelpMatchesDefault() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.withMessages(Collections.emptyMap()).maxLineWidth(81).printOnlineHelp(new PrintStream(out));
+    assertEquals(DEFAULT_HELP.replace("\n", System.lineSeparator()), out.toString());
+  }
+
+  @Test
+  void messages() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.withMessages(Collections.singletonMap("tag", "Some tags")).printOnlineHelp(new PrintStream(out));
+    assertTrue(out.toString().contains("      --tag TAG        Some tags"));
+  }
+
+  @Test
+  void parserIsImmutable() {
+    CommandParser<Copy> other = parser.maxLineWidth(40);
+    assertFalse(other == parser);
+    assertSame(ParsingSuccess.class, other.parse(new String[]{"src"}).getClass());
+  }
+
+  private Object[] success(String... args) {
+    ParseResult<Copy> result = parser.parse(args);
+    assertTrue(result instanceof ParsingSuccess, () -> ((ParsingFailed<Copy>) result).getError().getMessage());
+    return ((ParsingSuccess<Copy>) result).getResult().values;
+  }
+
+  private void assertFailure(ErrorCode code, int index, String message, String... args) {
+    ParseResult<Copy> result = parser.parse(args);
+    assertTrue(result instanceof ParsingFailed);
+    ParsingFailed<Copy> failed = (ParsingFailed<Copy>) result;
+    assertEquals(code, failed.getCode());
+    assertEquals(index, failed.getIndex());
+    assertEquals(message, failed.getError().getMessage());
+  }
+}